@@ -0,0 +1,198 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.rmi.NoSuchObjectException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import javax.management.MBeanServer;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.net.JFRConnectionToolkit;
+import io.cryostat.core.sys.Clock;
+import io.cryostat.core.sys.Environment;
+import io.cryostat.core.sys.FileSystem;
+import io.cryostat.core.tui.ClientWriter;
+import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.TargetDiscoveryEvent;
+import io.cryostat.platform.discovery.BaseNodeType;
+import io.cryostat.platform.discovery.EnvironmentNode;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+
+/**
+ * In-process stand-ins for remote JMX targets. Each target is a {@link JMXConnectorServer} with its
+ * own RMI registry port, exposing this JVM's platform {@link MBeanServer} (including its
+ * FlightRecorder MXBean), so benchmarked connections go through the real RMI connector and
+ * cryostat-core connection code without any external processes.
+ */
+final class LocalJmxTargets implements AutoCloseable {
+
+    static final TargetConnectionManager.ConnectedTask<Integer> LIST_RECORDINGS =
+            connection -> connection.getService().getAvailableRecordings().size();
+
+    private final List<Registry> registries = new ArrayList<>();
+    private final List<JMXConnectorServer> servers = new ArrayList<>();
+    private final List<ConnectionDescriptor> descriptors = new ArrayList<>();
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    private LocalJmxTargets() {}
+
+    static LocalJmxTargets start(int count) throws IOException {
+        LocalJmxTargets targets = new LocalJmxTargets();
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (int i = 0; i < count; i++) {
+                int port = findFreePort();
+                targets.registries.add(LocateRegistry.createRegistry(port));
+                JMXServiceURL url =
+                        new JMXServiceURL(
+                                String.format(
+                                        "service:jmx:rmi:///jndi/rmi://localhost:%d/jmxrmi", port));
+                JMXConnectorServer server =
+                        JMXConnectorServerFactory.newJMXConnectorServer(url, null, mbs);
+                server.start();
+                targets.servers.add(server);
+                targets.descriptors.add(new ConnectionDescriptor(url.toString()));
+            }
+        } catch (IOException | RuntimeException e) {
+            targets.close();
+            throw e;
+        }
+        return targets;
+    }
+
+    List<ConnectionDescriptor> getDescriptors() {
+        return Collections.unmodifiableList(descriptors);
+    }
+
+    TargetConnectionManager createManager(
+            int maxTargetConnections, int maxActivePooledConnections, int taskThreads) {
+        ExecutorService taskWorkers = Executors.newFixedThreadPool(taskThreads);
+        executors.add(taskWorkers);
+        Duration ttl = Duration.ofSeconds(10);
+        return new TargetConnectionManager(
+                () ->
+                        new JFRConnectionToolkit(
+                                new NullClientWriter(), new FileSystem(), new Environment()),
+                new NullPlatformClient(),
+                ForkJoinPool.commonPool(),
+                Scheduler.systemScheduler(),
+                ttl,
+                ttl,
+                0,
+                maxTargetConnections,
+                0,
+                maxActivePooledConnections,
+                Duration.ofSeconds(30),
+                new TargetTaskExecutor(taskWorkers, maxActivePooledConnections),
+                new UnreachableTargetCache(new Clock(), Duration.ZERO, Duration.ZERO),
+                Logger.INSTANCE);
+    }
+
+    @Override
+    public void close() {
+        executors.forEach(ExecutorService::shutdownNow);
+        for (JMXConnectorServer server : servers) {
+            try {
+                server.stop();
+            } catch (IOException e) {
+                Logger.INSTANCE.warn(e);
+            }
+        }
+        for (Registry registry : registries) {
+            try {
+                UnicastRemoteObject.unexportObject(registry, true);
+            } catch (NoSuchObjectException e) {
+                Logger.INSTANCE.warn(e);
+            }
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class NullClientWriter implements ClientWriter {
+        @Override
+        public void print(String s) {}
+
+        @Override
+        public void println(Exception e) {}
+    }
+
+    private static class NullPlatformClient implements PlatformClient {
+        @Override
+        public void start() {}
+
+        @Override
+        public List<ServiceRef> listDiscoverableServices() {
+            return List.of();
+        }
+
+        @Override
+        public void addTargetDiscoveryListener(Consumer<TargetDiscoveryEvent> listener) {}
+
+        @Override
+        public void removeTargetDiscoveryListener(Consumer<TargetDiscoveryEvent> listener) {}
+
+        @Override
+        public EnvironmentNode getDiscoveryTree() {
+            return new EnvironmentNode("Universe", BaseNodeType.UNIVERSE);
+        }
+    }
+}
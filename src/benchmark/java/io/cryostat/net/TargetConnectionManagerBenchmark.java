@@ -0,0 +1,121 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Throughput of {@link TargetConnectionManager} tasks against a single target, comparing the cached
+ * and uncached (pooled) connection paths and the asynchronous task executor, both uncontended and
+ * with several threads working against the same {@link ConnectionDescriptor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class TargetConnectionManagerBenchmark {
+
+    static final int CONTENDED_THREADS = 8;
+
+    @Param({"2"})
+    int maxActivePooledConnections;
+
+    LocalJmxTargets targets;
+    TargetConnectionManager mgr;
+    ConnectionDescriptor descriptor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        targets = LocalJmxTargets.start(1);
+        mgr = targets.createManager(-1, maxActivePooledConnections, CONTENDED_THREADS);
+        descriptor = targets.getDescriptors().get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        targets.close();
+    }
+
+    @Benchmark
+    public int cached() throws Exception {
+        return mgr.executeConnectedTask(descriptor, LocalJmxTargets.LIST_RECORDINGS);
+    }
+
+    @Benchmark
+    public int uncached() throws Exception {
+        return mgr.executeConnectedTask(descriptor, LocalJmxTargets.LIST_RECORDINGS, false);
+    }
+
+    @Benchmark
+    public int async() throws Exception {
+        return mgr.executeConnectedTaskAsync(descriptor, LocalJmxTargets.LIST_RECORDINGS)
+                .toCompletableFuture()
+                .get();
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public int contendedCached() throws Exception {
+        return cached();
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public int contendedUncached() throws Exception {
+        return uncached();
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public int contendedAsync() throws Exception {
+        return async();
+    }
+}
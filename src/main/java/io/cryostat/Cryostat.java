@@ -48,8 +48,12 @@ import io.cryostat.core.log.Logger;
 import io.cryostat.core.sys.Environment;
 import io.cryostat.messaging.MessagingServer;
 import io.cryostat.net.HttpServer;
+import io.cryostat.net.TargetConnectionWarmer;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.ServiceRefRegistry;
+import io.cryostat.recordings.ArchiveCatalog;
+import io.cryostat.recordings.ArchiveRetention;
 import io.cryostat.rules.RuleProcessor;
 import io.cryostat.rules.RuleRegistry;
 
@@ -76,12 +80,16 @@ class Cryostat {
         client.httpServer().addShutdownListener(() -> future.complete(null));
 
         client.credentialsManager().load();
+        client.archiveCatalog().start();
+        client.archiveRetention().start();
         client.ruleRegistry().loadRules();
         client.ruleProcessor().enable();
+        client.targetConnectionWarmer().enable();
         client.httpServer().start();
         client.webServer().start();
         client.messagingServer().start();
         client.platformClient().start();
+        client.serviceRefRegistry().start();
 
         future.join();
     }
@@ -91,10 +99,16 @@ class Cryostat {
     interface Client {
         CredentialsManager credentialsManager();
 
+        ArchiveCatalog archiveCatalog();
+
+        ArchiveRetention archiveRetention();
+
         RuleRegistry ruleRegistry();
 
         RuleProcessor ruleProcessor();
 
+        TargetConnectionWarmer targetConnectionWarmer();
+
         HttpServer httpServer();
 
         WebServer webServer();
@@ -103,6 +117,8 @@ class Cryostat {
 
         PlatformClient platformClient();
 
+        ServiceRefRegistry serviceRefRegistry();
+
         @Component.Builder
         interface Builder {
             Client build();
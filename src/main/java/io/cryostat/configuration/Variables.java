@@ -47,6 +47,14 @@ public final class Variables {
     // report generation
     public static final String REPORT_GENERATOR_ENV = "CRYOSTAT_REPORT_GENERATOR";
     public static final String SUBPROCESS_MAX_HEAP_ENV = "CRYOSTAT_REPORT_GENERATION_MAX_HEAP";
+    public static final String REPORT_WORKERS = "CRYOSTAT_REPORT_WORKERS";
+    public static final String REPORT_CONCURRENCY = "CRYOSTAT_REPORT_CONCURRENCY";
+    public static final String REPORT_MEMORY_BUDGET = "CRYOSTAT_REPORT_MEMORY_BUDGET";
+    public static final String REPORT_WORKER_MAX_JOBS = "CRYOSTAT_REPORT_WORKER_MAX_JOBS";
+    public static final String RULE_RESULT_CACHE_MAX_BYTES = "CRYOSTAT_RULE_RESULT_CACHE_MAX_BYTES";
+    public static final String REPORT_CACHE_PATH = "CRYOSTAT_REPORT_CACHE_PATH";
+    public static final String REPORT_CACHE_MAX_BYTES = "CRYOSTAT_REPORT_CACHE_MAX_BYTES";
+    public static final String REPORT_CACHE_COMPRESSION = "CRYOSTAT_REPORT_CACHE_COMPRESSION";
 
     // SSL configuration
     public static final String DISABLE_SSL = "CRYOSTAT_DISABLE_SSL";
@@ -68,12 +76,47 @@ public final class Variables {
     public static final String MAX_CONNECTIONS_ENV_VAR = "CRYOSTAT_MAX_WS_CONNECTIONS";
     public static final String ENABLE_CORS_ENV = "CRYOSTAT_CORS_ORIGIN";
     public static final String HTTP_REQUEST_TIMEOUT = "CRYOSTAT_HTTP_REQUEST_TIMEOUT";
+    public static final String MAX_UPLOAD_SIZE = "CRYOSTAT_MAX_UPLOAD_SIZE";
 
     // JMX connections configuration
     public static final String TARGET_CACHE_SIZE = "CRYOSTAT_TARGET_CACHE_SIZE";
     public static final String TARGET_CACHE_TTL = "CRYOSTAT_TARGET_CACHE_TTL";
+    public static final String TARGET_CACHE_MAX_TTL = "CRYOSTAT_TARGET_CACHE_MAX_TTL";
+    public static final String TARGET_CACHE_COST_WEIGHT = "CRYOSTAT_TARGET_CACHE_COST_WEIGHT";
+    public static final String TARGET_POOL_MIN_IDLE = "CRYOSTAT_TARGET_POOL_MIN_IDLE";
+    public static final String TARGET_POOL_MAX_ACTIVE = "CRYOSTAT_TARGET_POOL_MAX_ACTIVE";
+    public static final String TARGET_POOL_MAX_WAIT = "CRYOSTAT_TARGET_POOL_MAX_WAIT";
+    public static final String TARGET_TASK_THREADS = "CRYOSTAT_TARGET_TASK_THREADS";
+    public static final String TARGET_TASK_MAX_CONCURRENT = "CRYOSTAT_TARGET_TASK_MAX_CONCURRENT";
+    public static final String TARGET_UNREACHABLE_BACKOFF = "CRYOSTAT_TARGET_UNREACHABLE_BACKOFF";
+    public static final String TARGET_UNREACHABLE_BACKOFF_MAX =
+            "CRYOSTAT_TARGET_UNREACHABLE_BACKOFF_MAX";
+    public static final String TARGET_WARMUP_SELECTOR = "CRYOSTAT_TARGET_WARMUP_SELECTOR";
+    public static final String TARGET_WARMUP_CONCURRENCY = "CRYOSTAT_TARGET_WARMUP_CONCURRENCY";
+    public static final String TARGET_BATCH_PARALLELISM = "CRYOSTAT_TARGET_BATCH_PARALLELISM";
+    public static final String RECORDING_TRANSFER_PARALLELISM =
+            "CRYOSTAT_RECORDING_TRANSFER_PARALLELISM";
 
     // paths configuration
     public static final String ARCHIVE_PATH = "CRYOSTAT_ARCHIVE_PATH";
+    public static final String ARCHIVE_COMPRESSION = "CRYOSTAT_ARCHIVE_COMPRESSION";
+    public static final String ARCHIVE_DEDUPLICATION = "CRYOSTAT_ARCHIVE_DEDUPLICATION";
+    public static final String ARCHIVE_INCREMENTAL = "CRYOSTAT_ARCHIVE_INCREMENTAL";
+    public static final String ARCHIVE_S3_ENDPOINT = "CRYOSTAT_ARCHIVE_S3_ENDPOINT";
+    public static final String ARCHIVE_S3_BUCKET = "CRYOSTAT_ARCHIVE_S3_BUCKET";
+    public static final String ARCHIVE_S3_REGION = "CRYOSTAT_ARCHIVE_S3_REGION";
+    public static final String ARCHIVE_S3_ACCESS_KEY = "CRYOSTAT_ARCHIVE_S3_ACCESS_KEY";
+    public static final String ARCHIVE_S3_SECRET_KEY = "CRYOSTAT_ARCHIVE_S3_SECRET_KEY";
+    public static final String ARCHIVE_SAVE_THREADS = "CRYOSTAT_ARCHIVE_SAVE_THREADS";
+    public static final String ARCHIVE_SAVE_QUEUE_SIZE = "CRYOSTAT_ARCHIVE_SAVE_QUEUE_SIZE";
+    public static final String ARCHIVE_MAX_SIZE = "CRYOSTAT_ARCHIVE_MAX_SIZE";
+    public static final String ARCHIVE_MAX_AGE = "CRYOSTAT_ARCHIVE_MAX_AGE";
+    public static final String ARCHIVE_MAX_COUNT = "CRYOSTAT_ARCHIVE_MAX_COUNT";
+    public static final String ARCHIVE_TARGET_MAX_SIZE = "CRYOSTAT_ARCHIVE_TARGET_MAX_SIZE";
+    public static final String ARCHIVE_TARGET_MAX_AGE = "CRYOSTAT_ARCHIVE_TARGET_MAX_AGE";
+    public static final String ARCHIVE_TARGET_MAX_COUNT = "CRYOSTAT_ARCHIVE_TARGET_MAX_COUNT";
+    public static final String ARCHIVE_RETENTION_INTERVAL = "CRYOSTAT_ARCHIVE_RETENTION_INTERVAL";
+    public static final String ARCHIVE_RETENTION_EVICTION_RATE =
+            "CRYOSTAT_ARCHIVE_RETENTION_EVICTION_RATE";
     public static final String CONFIG_PATH = "CRYOSTAT_CONFIG_PATH";
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.cryostat.core.net.JFRConnection;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+
+/**
+ * Connection cache expiry policy which adapts each connection's time-to-live to how often its
+ * target is used and how expensive it is to reconnect to. Connections to targets which are accessed
+ * at regular intervals shorter than the maximum TTL are kept open for twice the observed access
+ * interval, so that periodic clients (ex. dashboards polling every 15 seconds) reuse a single
+ * connection rather than reconnecting on every poll. Optionally, the time taken to establish the
+ * connection is multiplied by a cost weight and added to the TTL, so that slow-to-connect targets
+ * are held open for longer. Targets accessed infrequently keep the base TTL. Connections opened
+ * ahead of their first use to warm them up are held for the maximum TTL until that first use, and
+ * the warm-up does not count as an access.
+ */
+class AdaptiveConnectionExpiry implements Expiry<ConnectionDescriptor, JFRConnection> {
+
+    static final int INTERVAL_MULTIPLIER = 2;
+    static final double INTERVAL_SMOOTHING = 0.3;
+    // accesses closer together than this are considered part of the same request or burst of
+    // requests, rather than a separate use of the target
+    static final long BURST_WINDOW_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final long baseTtlNanos;
+    private final long maxTtlNanos;
+    private final double costWeight;
+    private final Map<ConnectionDescriptor, AccessStats> stats = new ConcurrentHashMap<>();
+
+    AdaptiveConnectionExpiry(Duration baseTtl, Duration maxTtl, double costWeight) {
+        this.baseTtlNanos = baseTtl.toNanos();
+        this.maxTtlNanos = Math.max(baseTtlNanos, maxTtl.toNanos());
+        this.costWeight = Math.max(0, costWeight);
+    }
+
+    @Override
+    public long expireAfterCreate(ConnectionDescriptor key, JFRConnection value, long currentTime) {
+        AccessStats s = stats.get(key);
+        if (s != null && s.warmingUp) {
+            return maxTtlNanos;
+        }
+        return recordAccess(key, currentTime);
+    }
+
+    @Override
+    public long expireAfterUpdate(
+            ConnectionDescriptor key, JFRConnection value, long currentTime, long currentDuration) {
+        return recordAccess(key, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+            ConnectionDescriptor key, JFRConnection value, long currentTime, long currentDuration) {
+        return recordAccess(key, currentTime);
+    }
+
+    /** Record how long it took to establish a connection for the given descriptor. */
+    void recordConnectionCost(ConnectionDescriptor key, Duration connectTime) {
+        stats.computeIfAbsent(key, k -> new AccessStats()).connectNanos = connectTime.toNanos();
+    }
+
+    /** Treat a connection created for the given descriptor as a warm-up rather than a use. */
+    void beginWarmUp(ConnectionDescriptor key) {
+        stats.computeIfAbsent(key, k -> new AccessStats()).warmingUp = true;
+    }
+
+    void endWarmUp(ConnectionDescriptor key) {
+        AccessStats s = stats.get(key);
+        if (s != null) {
+            s.warmingUp = false;
+        }
+    }
+
+    /** Forget all recorded access history for connections to the given target. */
+    void evict(String targetId) {
+        stats.keySet().removeIf(cd -> Objects.equals(cd.getTargetId(), targetId));
+    }
+
+    /** @return the TTL which a connection for the given descriptor currently receives */
+    Duration getEffectiveTtl(ConnectionDescriptor key) {
+        AccessStats s = stats.get(key);
+        return Duration.ofNanos(s == null ? baseTtlNanos : computeTtl(s));
+    }
+
+    private long recordAccess(ConnectionDescriptor key, long currentTime) {
+        AccessStats s = stats.computeIfAbsent(key, k -> new AccessStats());
+        synchronized (s) {
+            long interval = currentTime - s.lastAccess;
+            if (s.accessed && interval >= BURST_WINDOW_NANOS) {
+                s.interval =
+                        s.interval == 0
+                                ? interval
+                                : (long)
+                                        ((1 - INTERVAL_SMOOTHING) * s.interval
+                                                + INTERVAL_SMOOTHING * interval);
+            }
+            s.accessed = true;
+            s.lastAccess = currentTime;
+            return computeTtl(s);
+        }
+    }
+
+    private long computeTtl(AccessStats s) {
+        long ttl = baseTtlNanos;
+        if (s.interval > 0 && s.interval <= maxTtlNanos) {
+            ttl = Math.max(ttl, saturatedMultiply(s.interval, INTERVAL_MULTIPLIER));
+        }
+        ttl = saturatedAdd(ttl, (long) (costWeight * s.connectNanos));
+        return Math.min(ttl, maxTtlNanos);
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        long r = a * b;
+        return (a != 0 && r / a != b) ? Long.MAX_VALUE : r;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long r = a + b;
+        return r < a ? Long.MAX_VALUE : r;
+    }
+
+    private static class AccessStats {
+        boolean accessed;
+        long lastAccess;
+        long interval;
+        volatile long connectNanos;
+        volatile boolean warmingUp;
+    }
+}
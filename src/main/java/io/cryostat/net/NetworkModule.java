@@ -37,19 +37,25 @@
  */
 package io.cryostat.net;
 
+import java.lang.management.ManagementFactory;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import io.cryostat.configuration.ConfigurationModule;
+import io.cryostat.configuration.CredentialsManager;
 import io.cryostat.configuration.Variables;
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.net.JFRConnectionToolkit;
+import io.cryostat.core.sys.Clock;
 import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.core.tui.ClientWriter;
@@ -57,6 +63,7 @@ import io.cryostat.net.reports.ReportsModule;
 import io.cryostat.net.security.SecurityModule;
 import io.cryostat.net.web.WebModule;
 import io.cryostat.platform.PlatformClient;
+import io.cryostat.util.DaemonExecutors;
 
 import com.github.benmanes.caffeine.cache.Scheduler;
 import dagger.Binds;
@@ -110,21 +117,152 @@ public abstract class NetworkModule {
         return Duration.ofSeconds(Integer.parseInt(env.getEnv(Variables.TARGET_CACHE_TTL, "10")));
     }
 
+    @Provides
+    @Named(Variables.TARGET_CACHE_MAX_TTL)
+    static Duration provideMaxAdaptiveTargetTTL(Environment env) {
+        return Duration.ofSeconds(
+                Integer.parseInt(env.getEnv(Variables.TARGET_CACHE_MAX_TTL, "60")));
+    }
+
+    @Provides
+    @Named(Variables.TARGET_CACHE_COST_WEIGHT)
+    static double provideTargetConnectionCostWeight(Environment env) {
+        return Double.parseDouble(env.getEnv(Variables.TARGET_CACHE_COST_WEIGHT, "0"));
+    }
+
+    @Provides
+    @Named(Variables.TARGET_POOL_MIN_IDLE)
+    static int provideMinIdlePooledConnections(Environment env) {
+        return Integer.parseInt(env.getEnv(Variables.TARGET_POOL_MIN_IDLE, "0"));
+    }
+
+    @Provides
+    @Named(Variables.TARGET_POOL_MAX_ACTIVE)
+    static int provideMaxActivePooledConnections(Environment env) {
+        return Integer.parseInt(env.getEnv(Variables.TARGET_POOL_MAX_ACTIVE, "2"));
+    }
+
+    @Provides
+    @Named(Variables.TARGET_POOL_MAX_WAIT)
+    static Duration provideMaxPoolWait(Environment env) {
+        return Duration.ofSeconds(
+                Integer.parseInt(env.getEnv(Variables.TARGET_POOL_MAX_WAIT, "30")));
+    }
+
+    @Provides
+    @Named(Variables.TARGET_TASK_THREADS)
+    static int provideTargetTaskThreads(Environment env) {
+        return Integer.parseInt(env.getEnv(Variables.TARGET_TASK_THREADS, "20"));
+    }
+
+    @Provides
+    @Named(Variables.TARGET_TASK_MAX_CONCURRENT)
+    static int provideMaxConcurrentTargetTasks(Environment env) {
+        return Integer.parseInt(env.getEnv(Variables.TARGET_TASK_MAX_CONCURRENT, "2"));
+    }
+
+    @Provides
+    @Named(Variables.TARGET_UNREACHABLE_BACKOFF)
+    static Duration provideUnreachableTargetBackoff(Environment env) {
+        return Duration.ofSeconds(
+                Integer.parseInt(env.getEnv(Variables.TARGET_UNREACHABLE_BACKOFF, "2")));
+    }
+
+    @Provides
+    @Named(Variables.TARGET_UNREACHABLE_BACKOFF_MAX)
+    static Duration provideMaxUnreachableTargetBackoff(Environment env) {
+        return Duration.ofSeconds(
+                Integer.parseInt(env.getEnv(Variables.TARGET_UNREACHABLE_BACKOFF_MAX, "60")));
+    }
+
+    @Provides
+    @Singleton
+    static UnreachableTargetCache provideUnreachableTargetCache(
+            Clock clock,
+            @Named(Variables.TARGET_UNREACHABLE_BACKOFF) Duration initialBackoff,
+            @Named(Variables.TARGET_UNREACHABLE_BACKOFF_MAX) Duration maxBackoff) {
+        return new UnreachableTargetCache(clock, initialBackoff, maxBackoff);
+    }
+
+    @Provides
+    @Singleton
+    static TargetTaskExecutor provideTargetTaskExecutor(
+            @Named(Variables.TARGET_TASK_THREADS) int threads,
+            @Named(Variables.TARGET_TASK_MAX_CONCURRENT) int maxConcurrentTasksPerTarget) {
+        ExecutorService workers = DaemonExecutors.newFixedThreadPool(threads);
+        return new TargetTaskExecutor(workers, maxConcurrentTasksPerTarget);
+    }
+
     @Provides
     @Singleton
     static TargetConnectionManager provideTargetConnectionManager(
             Lazy<JFRConnectionToolkit> connectionToolkit,
             PlatformClient platformClient,
             @Named(Variables.TARGET_CACHE_TTL) Duration maxTargetTtl,
+            @Named(Variables.TARGET_CACHE_MAX_TTL) Duration maxAdaptiveTargetTtl,
+            @Named(Variables.TARGET_CACHE_COST_WEIGHT) double connectionCostWeight,
             @Named(Variables.TARGET_CACHE_SIZE) int maxTargetConnections,
+            @Named(Variables.TARGET_POOL_MIN_IDLE) int minIdlePooledConnections,
+            @Named(Variables.TARGET_POOL_MAX_ACTIVE) int maxActivePooledConnections,
+            @Named(Variables.TARGET_POOL_MAX_WAIT) Duration maxPoolWait,
+            TargetTaskExecutor taskExecutor,
+            UnreachableTargetCache unreachableTargets,
+            Logger logger) {
+        TargetConnectionManager manager =
+                new TargetConnectionManager(
+                        connectionToolkit,
+                        platformClient,
+                        ForkJoinPool.commonPool(),
+                        Scheduler.systemScheduler(),
+                        maxTargetTtl,
+                        maxAdaptiveTargetTtl,
+                        connectionCostWeight,
+                        maxTargetConnections,
+                        minIdlePooledConnections,
+                        maxActivePooledConnections,
+                        maxPoolWait,
+                        taskExecutor,
+                        unreachableTargets,
+                        logger);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(
+                            manager.getPoolStatistics(),
+                            new ObjectName("io.cryostat:type=TargetConnectionPool"));
+        } catch (JMException e) {
+            logger.warn(e);
+        }
+        return manager;
+    }
+
+    @Provides
+    @Named(Variables.TARGET_WARMUP_SELECTOR)
+    static String provideTargetWarmupSelector(Environment env) {
+        return env.getEnv(Variables.TARGET_WARMUP_SELECTOR, "");
+    }
+
+    @Provides
+    @Named(Variables.TARGET_WARMUP_CONCURRENCY)
+    static int provideTargetWarmupConcurrency(Environment env) {
+        return Integer.parseInt(env.getEnv(Variables.TARGET_WARMUP_CONCURRENCY, "2"));
+    }
+
+    @Provides
+    @Singleton
+    static TargetConnectionWarmer provideTargetConnectionWarmer(
+            PlatformClient platformClient,
+            TargetConnectionManager targetConnectionManager,
+            CredentialsManager credentialsManager,
+            @Named(Variables.TARGET_WARMUP_SELECTOR) String selector,
+            @Named(Variables.TARGET_WARMUP_CONCURRENCY) int concurrency,
             Logger logger) {
-        return new TargetConnectionManager(
-                connectionToolkit,
+        ExecutorService executor = DaemonExecutors.newFixedThreadPool(concurrency);
+        return new TargetConnectionWarmer(
                 platformClient,
-                ForkJoinPool.commonPool(),
-                Scheduler.systemScheduler(),
-                maxTargetTtl,
-                maxTargetConnections,
+                targetConnectionManager,
+                credentialsManager,
+                executor,
+                selector,
                 logger);
     }
 
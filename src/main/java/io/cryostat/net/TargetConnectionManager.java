@@ -42,6 +42,10 @@ import java.time.Duration;
 import java.util.Collections;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -75,6 +79,12 @@ public class TargetConnectionManager {
     private final Logger logger;
 
     private final LoadingCache<ConnectionDescriptor, JFRConnection> connections;
+    private final TargetConnectionPool pool;
+    private final AdaptiveConnectionExpiry expiry;
+    private final TargetTaskExecutor taskExecutor;
+    private final UnreachableTargetCache unreachableTargets;
+    private final ConcurrentHashMap<ConnectionDescriptor, CompletableFuture<Void>> connectAttempts =
+            new ConcurrentHashMap<>();
 
     TargetConnectionManager(
             Lazy<JFRConnectionToolkit> jfrConnectionToolkit,
@@ -82,36 +92,60 @@ public class TargetConnectionManager {
             Executor executor,
             Scheduler scheduler,
             Duration ttl,
+            Duration maxTtl,
+            double connectionCostWeight,
             int maxTargetConnections,
+            int minIdlePooledConnections,
+            int maxActivePooledConnections,
+            Duration maxPoolWait,
+            TargetTaskExecutor taskExecutor,
+            UnreachableTargetCache unreachableTargets,
             Logger logger) {
         this.jfrConnectionToolkit = jfrConnectionToolkit;
+        this.taskExecutor = taskExecutor;
+        this.unreachableTargets = unreachableTargets;
         this.logger = logger;
+        this.expiry = new AdaptiveConnectionExpiry(ttl, maxTtl, connectionCostWeight);
 
         Caffeine<ConnectionDescriptor, JFRConnection> cacheBuilder =
                 Caffeine.newBuilder()
                         .executor(executor)
                         .scheduler(scheduler)
-                        .expireAfterAccess(ttl)
+                        .expireAfter(expiry)
                         .removalListener(this::closeConnection);
         if (maxTargetConnections >= 0) {
             cacheBuilder = cacheBuilder.maximumSize(maxTargetConnections);
         }
         this.connections = cacheBuilder.build(this::connect);
+        this.pool =
+                new TargetConnectionPool(
+                        this::connect,
+                        executor,
+                        scheduler,
+                        ttl,
+                        minIdlePooledConnections,
+                        maxActivePooledConnections,
+                        maxPoolWait,
+                        logger);
 
         // force removal of connections from cache when we're notified about targets being lost.
         // This should already be taken care of by the connection close listener, but this provides
         // some additional insurance in case a target disappears and the underlying JMX network
-        // connection doesn't immediately report itself as closed
+        // connection doesn't immediately report itself as closed. Any unreachable state is also
+        // forgotten when a target appears or disappears, since its network location may have
+        // changed
         platform.addTargetDiscoveryListener(
                 tde -> {
+                    String targetId = tde.getServiceRef().getServiceUri().toString();
+                    unreachableTargets.reset(targetId);
                     if (EventKind.LOST.equals(tde.getEventKind())) {
                         for (ConnectionDescriptor cd : connections.asMap().keySet()) {
-                            if (Objects.equals(
-                                    cd.getTargetId(),
-                                    tde.getServiceRef().getServiceUri().toString())) {
+                            if (Objects.equals(cd.getTargetId(), targetId)) {
                                 connections.invalidate(cd);
                             }
                         }
+                        pool.evict(targetId);
+                        expiry.evict(targetId);
                     }
                 });
     }
@@ -125,13 +159,14 @@ public class TargetConnectionManager {
      * Execute a {@link ConnectedTask}, optionally caching the connection for future re-use. If
      * useCache is true then the connection will be retrieved from cache if available, or created
      * and stored in the cache if not. This is subject to the cache maxSize and TTL policy. If
-     * useCache is false then a connection will be taken from cache if available, otherwise a new
-     * connection will be created externally from the cache. After the task has completed the
-     * connection will be closed only if the connection was not originally retrieved from the cache,
-     * otherwise the connection is left as-is to be subject to the cache's standard eviction policy.
-     * "Interactive" use cases should prefer to call this with useCache==true (or simply call {@link
-     * #executeConnectedTask(ConnectionDescriptor cd, ConnectedTask task)} instead). Automated use
-     * cases such as Automated Rules should call this with useCache==false.
+     * useCache is false then a connection will be taken from cache if available, otherwise a
+     * connection will be leased from the per-target {@link TargetConnectionPool}. After the task
+     * has completed a leased connection is returned to the pool for re-use by later or concurrent
+     * tasks against the same target, and a cached connection is left as-is to be subject to the
+     * cache's standard eviction policy. "Interactive" use cases should prefer to call this with
+     * useCache==true (or simply call {@link #executeConnectedTask(ConnectionDescriptor cd,
+     * ConnectedTask task)} instead). Automated use cases such as Automated Rules should call this
+     * with useCache==false.
      */
     public <T> T executeConnectedTask(
             ConnectionDescriptor connectionDescriptor, ConnectedTask<T> task, boolean useCache)
@@ -140,18 +175,87 @@ public class TargetConnectionManager {
             return task.execute(connections.get(connectionDescriptor));
         } else {
             JFRConnection connection = connections.getIfPresent(connectionDescriptor);
-            boolean cached = connection != null;
-            if (!cached) {
-                connection = connect(connectionDescriptor);
-            }
-            try {
+            if (connection != null) {
                 return task.execute(connection);
-            } finally {
-                if (!cached) {
-                    connection.close();
-                }
             }
+            try (TargetConnectionPool.Lease lease = pool.lease(connectionDescriptor)) {
+                return task.execute(lease.getConnection());
+            }
+        }
+    }
+
+    /**
+     * Execute a {@link ConnectedTask} on a connection leased from the per-target {@link
+     * TargetConnectionPool}, but only if one is available without waiting. This allows a task which
+     * already holds a connection to spread additional work over further connections to the same
+     * target while the pool has capacity, and to fall back to its own connection otherwise.
+     *
+     * @return the result of the task, or empty if no pooled connection was available
+     */
+    public <T> Optional<T> tryExecutePooledTask(
+            ConnectionDescriptor connectionDescriptor, ConnectedTask<T> task) throws Exception {
+        TargetConnectionPool.Lease lease = pool.tryLease(connectionDescriptor);
+        if (lease == null) {
+            return Optional.empty();
         }
+        try (lease) {
+            return Optional.ofNullable(task.execute(lease.getConnection()));
+        }
+    }
+
+    /**
+     * Open and cache a connection to the target ahead of its first use, and execute the given
+     * {@link ConnectedTask} against it. The warm-up does not count as a use of the target: the
+     * connection is held for {@link NetworkModule.TARGET_CACHE_MAX_TTL} until it is first used, and
+     * expires according to the usual policy from then on. Does nothing if a connection for the
+     * specified {@link ConnectionDescriptor} is already cached.
+     */
+    public void warmUpConnection(ConnectionDescriptor connectionDescriptor, ConnectedTask<?> task)
+            throws Exception {
+        if (connections.asMap().containsKey(connectionDescriptor)) {
+            return;
+        }
+        expiry.beginWarmUp(connectionDescriptor);
+        try {
+            task.execute(connections.get(connectionDescriptor));
+        } finally {
+            expiry.endWarmUp(connectionDescriptor);
+        }
+    }
+
+    /** @return the hit/miss/wait-time statistics of the uncached connection pool */
+    TargetConnectionPoolMXBean getPoolStatistics() {
+        return pool;
+    }
+
+    /**
+     * @return the time-to-live currently applied to the cached connection for the specified {@link
+     *     ConnectionDescriptor}. This is at least {@link NetworkModule.TARGET_CACHE_TTL}, and grows
+     *     up to {@link NetworkModule.TARGET_CACHE_MAX_TTL} for targets which are accessed
+     *     frequently or are slow to connect to.
+     */
+    public Duration getEffectiveTtl(ConnectionDescriptor connectionDescriptor) {
+        return expiry.getEffectiveTtl(connectionDescriptor);
+    }
+
+    public <T> CompletionStage<T> executeConnectedTaskAsync(
+            ConnectionDescriptor connectionDescriptor, ConnectedTask<T> task) {
+        return executeConnectedTaskAsync(connectionDescriptor, task, true);
+    }
+
+    /**
+     * Asynchronous variant of {@link #executeConnectedTask(ConnectionDescriptor, ConnectedTask,
+     * boolean)}. The task, including establishing the connection if required, is run on a dedicated
+     * bounded worker pool rather than the caller's thread, which allows event loop handlers to
+     * perform JMX operations without blocking. At most a fixed number of tasks per target occupy
+     * worker threads at any time, so requests for slow targets queue up behind each other rather
+     * than delaying requests for other targets.
+     */
+    public <T> CompletionStage<T> executeConnectedTaskAsync(
+            ConnectionDescriptor connectionDescriptor, ConnectedTask<T> task, boolean useCache) {
+        return taskExecutor.submit(
+                connectionDescriptor.getTargetId(),
+                () -> executeConnectedTask(connectionDescriptor, task, useCache));
     }
 
     /**
@@ -183,7 +287,10 @@ public class TargetConnectionManager {
         }
         try {
             JMXConnectionClosed evt =
-                    new JMXConnectionClosed(descriptor.getTargetId(), cause.name());
+                    new JMXConnectionClosed(
+                            descriptor.getTargetId(),
+                            cause.name(),
+                            expiry.getEffectiveTtl(descriptor).toMillis());
             logger.info("Removing cached connection for {}: {}", descriptor.getTargetId(), cause);
             evt.begin();
             try {
@@ -203,41 +310,92 @@ public class TargetConnectionManager {
     }
 
     private JFRConnection connect(ConnectionDescriptor connectionDescriptor) throws Exception {
+        return connect(
+                connectionDescriptor, () -> this.connections.invalidate(connectionDescriptor));
+    }
+
+    /**
+     * Connect to the target, failing fast if the target was recently found to be unreachable. Only
+     * one connection attempt per {@link ConnectionDescriptor} is in flight at a time while the
+     * target's reachability is unknown: concurrent callers wait for the outcome of the attempt
+     * already in progress and rethrow its failure, rather than each waiting out their own
+     * connection timeout against the same dead target. If that attempt succeeds, the waiting
+     * callers go on to open their own connections concurrently, since each caller needs a distinct
+     * connection.
+     */
+    private JFRConnection connect(ConnectionDescriptor connectionDescriptor, Runnable closeListener)
+            throws Exception {
+        String targetId = connectionDescriptor.getTargetId();
+        unreachableTargets.checkReachable(targetId);
+        CompletableFuture<Void> attempt = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight =
+                connectAttempts.putIfAbsent(connectionDescriptor, attempt);
+        if (inFlight != null) {
+            try {
+                inFlight.join();
+            } catch (CompletionException ce) {
+                if (ce.getCause() instanceof Exception) {
+                    throw (Exception) ce.getCause();
+                }
+                throw ce;
+            }
+            attempt = null;
+        }
         try {
-            return attemptConnectAsJMXServiceURL(connectionDescriptor);
-        } catch (MalformedURLException mue) {
-            return attemptConnectAsHostPortPair(connectionDescriptor);
+            long start = System.nanoTime();
+            JFRConnection connection = attemptConnect(connectionDescriptor, closeListener);
+            expiry.recordConnectionCost(
+                    connectionDescriptor, Duration.ofNanos(System.nanoTime() - start));
+            unreachableTargets.reset(targetId);
+            if (attempt != null) {
+                attempt.complete(null);
+            }
+            return connection;
+        } catch (Exception e) {
+            unreachableTargets.onFailure(targetId, e);
+            if (attempt != null) {
+                attempt.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            if (attempt != null) {
+                connectAttempts.remove(connectionDescriptor, attempt);
+            }
         }
     }
 
-    private JFRConnection attemptConnectAsJMXServiceURL(ConnectionDescriptor connectionDescriptor)
-            throws Exception {
+    private JFRConnection attemptConnect(
+            ConnectionDescriptor connectionDescriptor, Runnable closeListener) throws Exception {
         return connect(
-                connectionDescriptor,
-                new JMXServiceURL(connectionDescriptor.getTargetId()),
-                connectionDescriptor.getCredentials());
+                getServiceURL(connectionDescriptor.getTargetId()),
+                connectionDescriptor.getCredentials(),
+                closeListener);
     }
 
-    private JFRConnection attemptConnectAsHostPortPair(ConnectionDescriptor connectionDescriptor)
-            throws Exception {
-        String s = connectionDescriptor.getTargetId();
-        Matcher m = HOST_PORT_PAIR_PATTERN.matcher(s);
-        if (!m.find()) {
-            throw new MalformedURLException(s);
-        }
-        String host = m.group(1);
-        String port = m.group(2);
-        if (port == null) {
-            port = "9091";
+    /**
+     * @return the JMX service URL used to connect to the target with the given ID, which is either
+     *     a JMX service URL itself or a host:port pair
+     * @throws MalformedURLException if the target ID is neither
+     */
+    public JMXServiceURL getServiceURL(String targetId) throws MalformedURLException {
+        try {
+            return new JMXServiceURL(targetId);
+        } catch (MalformedURLException mue) {
+            Matcher m = HOST_PORT_PAIR_PATTERN.matcher(targetId);
+            if (!m.find()) {
+                throw new MalformedURLException(targetId);
+            }
+            String host = m.group(1);
+            String port = m.group(2);
+            if (port == null) {
+                port = "9091";
+            }
+            return jfrConnectionToolkit.get().createServiceURL(host, Integer.parseInt(port));
         }
-        return connect(
-                connectionDescriptor,
-                jfrConnectionToolkit.get().createServiceURL(host, Integer.parseInt(port)),
-                connectionDescriptor.getCredentials());
     }
 
     private JFRConnection connect(
-            ConnectionDescriptor cacheKey, JMXServiceURL url, Optional<Credentials> credentials)
+            JMXServiceURL url, Optional<Credentials> credentials, Runnable closeListener)
             throws Exception {
         JMXConnectionOpened evt = new JMXConnectionOpened(url.toString());
         logger.info("Creating connection for {}", url);
@@ -251,7 +409,7 @@ public class TargetConnectionManager {
                             Collections.singletonList(
                                     () -> {
                                         logger.info("Connection for {} closed", url);
-                                        this.connections.invalidate(cacheKey);
+                                        closeListener.run();
                                     }));
         } catch (Exception e) {
             evt.setExceptionThrown(true);
@@ -298,11 +456,13 @@ public class TargetConnectionManager {
         String serviceUri;
         boolean exceptionThrown;
         String reason;
+        long effectiveTtlMs;
 
-        JMXConnectionClosed(String serviceUri, String reason) {
+        JMXConnectionClosed(String serviceUri, String reason, long effectiveTtlMs) {
             this.serviceUri = serviceUri;
             this.exceptionThrown = false;
             this.reason = reason;
+            this.effectiveTtlMs = effectiveTtlMs;
         }
 
         void setExceptionThrown(boolean exceptionThrown) {
@@ -0,0 +1,382 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.net.JFRConnection;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Bounded per-target pool of {@link JFRConnection}s used for uncached ("automated") connected
+ * tasks. Each {@link ConnectionDescriptor} gets its own partition with at most maxActive leased
+ * connections. Returned connections are kept idle for re-use, and idle connections beyond minIdle
+ * are closed once they have been idle for longer than the idle timeout. Leases are re-entrant per
+ * thread, so a task which leases a connection and then calls into another task against the same
+ * target will re-use its existing lease rather than waiting on (or deadlocking against) the pool.
+ */
+public class TargetConnectionPool implements TargetConnectionPoolMXBean {
+
+    private final ConnectionFactory connectionFactory;
+    private final Executor executor;
+    private final Scheduler scheduler;
+    private final Duration idleTimeout;
+    private final int minIdle;
+    private final int maxActive;
+    private final Duration maxWait;
+    private final Logger logger;
+
+    private final Map<ConnectionDescriptor, Partition> partitions = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<ConnectionDescriptor, Lease>> threadLeases =
+            ThreadLocal.withInitial(ConcurrentHashMap::new);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    TargetConnectionPool(
+            ConnectionFactory connectionFactory,
+            Executor executor,
+            Scheduler scheduler,
+            Duration idleTimeout,
+            int minIdle,
+            int maxActive,
+            Duration maxWait,
+            Logger logger) {
+        this.connectionFactory = connectionFactory;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.idleTimeout = idleTimeout;
+        this.minIdle = Math.max(0, minIdle);
+        this.maxActive = maxActive;
+        this.maxWait = maxWait;
+        this.logger = logger;
+    }
+
+    /**
+     * Lease a connection to the specified target, waiting up to the configured maximum wait time if
+     * the target's partition already has maxActive connections leased out. The returned {@link
+     * Lease} must be closed to return the connection to the pool.
+     *
+     * @throws TimeoutException if no connection became available within the maximum wait time
+     */
+    Lease lease(ConnectionDescriptor connectionDescriptor) throws Exception {
+        Lease lease = lease(connectionDescriptor, maxWait.toNanos());
+        if (lease == null) {
+            throw new TimeoutException(
+                    String.format(
+                            "Timed out waiting for a pooled connection to %s",
+                            connectionDescriptor.getTargetId()));
+        }
+        return lease;
+    }
+
+    /**
+     * Lease a connection to the specified target only if one is available without waiting, ie. if
+     * the target's partition has fewer than maxActive connections leased out.
+     *
+     * @return the {@link Lease}, which must be closed to return the connection to the pool, or null
+     *     if none was available
+     */
+    Lease tryLease(ConnectionDescriptor connectionDescriptor) throws Exception {
+        return lease(connectionDescriptor, 0);
+    }
+
+    private Lease lease(ConnectionDescriptor connectionDescriptor, long maxWaitNanos)
+            throws Exception {
+        Map<ConnectionDescriptor, Lease> held = threadLeases.get();
+        Lease existing = held.get(connectionDescriptor);
+        if (existing != null) {
+            existing.depth++;
+            hits.increment();
+            return existing;
+        }
+
+        Partition partition = partitions.computeIfAbsent(connectionDescriptor, Partition::new);
+        JMXConnectionLeased evt = new JMXConnectionLeased(connectionDescriptor.getTargetId());
+        evt.begin();
+        try {
+            long start = System.nanoTime();
+            boolean acquired = partition.permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+            waitNanos.add(System.nanoTime() - start);
+            if (!acquired) {
+                if (maxWaitNanos > 0) {
+                    timeouts.increment();
+                    evt.setTimedOut(true);
+                }
+                return null;
+            }
+
+            JFRConnection connection;
+            try {
+                connection = pollIdle(partition);
+                if (connection != null) {
+                    hits.increment();
+                    evt.setHit(true);
+                } else {
+                    misses.increment();
+                    connection = createConnection(partition);
+                }
+            } catch (Exception e) {
+                partition.permits.release();
+                throw e;
+            }
+            partition.leased.add(connection);
+
+            Lease lease = new Lease(held, partition, connection);
+            held.put(connectionDescriptor, lease);
+            return lease;
+        } finally {
+            evt.end();
+            if (evt.shouldCommit()) {
+                evt.commit();
+            }
+        }
+    }
+
+    /**
+     * Close and remove all pooled connections for the given target. Connections which are currently
+     * leased out are closed when they are returned.
+     */
+    void evict(String targetId) {
+        Iterator<Map.Entry<ConnectionDescriptor, Partition>> it = partitions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ConnectionDescriptor, Partition> entry = it.next();
+            if (!entry.getKey().getTargetId().equals(targetId)) {
+                continue;
+            }
+            it.remove();
+            IdleConnection idle;
+            while ((idle = entry.getValue().idle.pollFirst()) != null) {
+                close(idle.connection);
+            }
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return partitions.values().stream().mapToInt(p -> p.leased.size()).sum();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return partitions.values().stream().mapToInt(p -> p.idle.size()).sum();
+    }
+
+    private JFRConnection pollIdle(Partition partition) {
+        IdleConnection idle = partition.idle.pollFirst();
+        return idle == null ? null : idle.connection;
+    }
+
+    private JFRConnection createConnection(Partition partition) throws Exception {
+        AtomicReference<JFRConnection> ref = new AtomicReference<>();
+        JFRConnection connection =
+                connectionFactory.connect(
+                        partition.descriptor, () -> discard(partition, ref.get()));
+        ref.set(connection);
+        return connection;
+    }
+
+    private void release(Lease lease) {
+        Partition partition = lease.partition;
+        lease.owner.remove(partition.descriptor, lease);
+        boolean current = partitions.get(partition.descriptor) == partition;
+        if (partition.leased.remove(lease.connection) && current) {
+            partition.idle.offerFirst(new IdleConnection(lease.connection, System.nanoTime()));
+            scheduler.schedule(
+                    executor, () -> reap(partition), idleTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } else if (!current) {
+            close(lease.connection);
+        }
+        partition.permits.release();
+    }
+
+    private void discard(Partition partition, JFRConnection connection) {
+        if (connection == null) {
+            return;
+        }
+        logger.info("Pooled connection for {} closed", partition.descriptor.getTargetId());
+        partition.leased.remove(connection);
+        partition.idle.removeIf(idle -> idle.connection == connection);
+    }
+
+    private void reap(Partition partition) {
+        long now = System.nanoTime();
+        while (partition.idle.size() > minIdle) {
+            IdleConnection oldest = partition.idle.peekLast();
+            if (oldest == null || now - oldest.idleSince < idleTimeout.toNanos()) {
+                return;
+            }
+            if (partition.idle.removeLastOccurrence(oldest)) {
+                logger.info(
+                        "Closing idle pooled connection for {}",
+                        partition.descriptor.getTargetId());
+                close(oldest.connection);
+            }
+        }
+    }
+
+    private void close(JFRConnection connection) {
+        try {
+            connection.close();
+        } catch (Exception e) {
+            logger.error(e);
+        }
+    }
+
+    interface ConnectionFactory {
+        JFRConnection connect(ConnectionDescriptor connectionDescriptor, Runnable closeListener)
+                throws Exception;
+    }
+
+    class Lease implements AutoCloseable {
+        private final Map<ConnectionDescriptor, Lease> owner;
+        private final Partition partition;
+        private final JFRConnection connection;
+        private int depth;
+
+        private Lease(
+                Map<ConnectionDescriptor, Lease> owner,
+                Partition partition,
+                JFRConnection connection) {
+            this.owner = owner;
+            this.partition = partition;
+            this.connection = connection;
+            this.depth = 1;
+        }
+
+        JFRConnection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            if (--depth == 0) {
+                release(this);
+            }
+        }
+    }
+
+    private class Partition {
+        private final ConnectionDescriptor descriptor;
+        private final Semaphore permits;
+        private final Deque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+        private final Set<JFRConnection> leased = ConcurrentHashMap.newKeySet();
+
+        private Partition(ConnectionDescriptor descriptor) {
+            this.descriptor = descriptor;
+            this.permits = new Semaphore(maxActive > 0 ? maxActive : Integer.MAX_VALUE, true);
+        }
+    }
+
+    private static class IdleConnection {
+        private final JFRConnection connection;
+        private final long idleSince;
+
+        private IdleConnection(JFRConnection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    @Name("io.cryostat.net.TargetConnectionPool.JMXConnectionLeased")
+    @Label("JMX Connection Pool Lease")
+    @Category("Cryostat")
+    @SuppressFBWarnings(
+            value = "URF_UNREAD_FIELD",
+            justification = "The event fields are recorded with JFR instead of accessed directly")
+    public static class JMXConnectionLeased extends Event {
+        String serviceUri;
+        boolean hit;
+        boolean timedOut;
+
+        JMXConnectionLeased(String serviceUri) {
+            this.serviceUri = serviceUri;
+            this.hit = false;
+            this.timedOut = false;
+        }
+
+        void setHit(boolean hit) {
+            this.hit = hit;
+        }
+
+        void setTimedOut(boolean timedOut) {
+            this.timedOut = timedOut;
+        }
+    }
+}
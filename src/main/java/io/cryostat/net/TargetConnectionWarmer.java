@@ -0,0 +1,173 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import io.cryostat.configuration.CredentialsManager;
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.net.discovery.JvmDiscoveryClient.EventKind;
+import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.TargetDiscoveryEvent;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Opens connections to newly discovered targets in the background, so that the first request
+ * against a target does not need to wait for the JMX connection to be established. Warmed
+ * connections are kept open until that first request arrives, within the maximum cache TTL. Only
+ * targets with labels matching the configured selector are warmed up, and only a bounded number at
+ * a time (determined by the provided {@link Executor}). The selector is a comma-separated list of
+ * requirements which must all be satisfied, each of the form {@code key=value}, {@code key!=value},
+ * {@code key} or {@code !key}. The selector {@code *} matches every target.
+ */
+public class TargetConnectionWarmer implements Consumer<TargetDiscoveryEvent> {
+
+    static final String MATCH_ALL = "*";
+
+    private final PlatformClient platformClient;
+    private final TargetConnectionManager targetConnectionManager;
+    private final CredentialsManager credentialsManager;
+    private final Executor executor;
+    private final Predicate<Map<String, String>> selector;
+    private final Logger logger;
+
+    TargetConnectionWarmer(
+            PlatformClient platformClient,
+            TargetConnectionManager targetConnectionManager,
+            CredentialsManager credentialsManager,
+            Executor executor,
+            String selector,
+            Logger logger) {
+        this.platformClient = platformClient;
+        this.targetConnectionManager = targetConnectionManager;
+        this.credentialsManager = credentialsManager;
+        this.executor = executor;
+        this.selector = parseSelector(selector);
+        this.logger = logger;
+    }
+
+    public void enable() {
+        if (selector != null) {
+            this.platformClient.addTargetDiscoveryListener(this);
+        }
+    }
+
+    public void disable() {
+        this.platformClient.removeTargetDiscoveryListener(this);
+    }
+
+    @Override
+    public void accept(TargetDiscoveryEvent tde) {
+        if (selector == null || !EventKind.FOUND.equals(tde.getEventKind())) {
+            return;
+        }
+        ServiceRef serviceRef = tde.getServiceRef();
+        if (!selector.test(serviceRef.getLabels())) {
+            return;
+        }
+        executor.execute(() -> warmUp(serviceRef));
+    }
+
+    private void warmUp(ServiceRef serviceRef) {
+        logger.trace("Warming up connection to {}", serviceRef.getServiceUri());
+        try {
+            targetConnectionManager.warmUpConnection(
+                    new ConnectionDescriptor(
+                            serviceRef, credentialsManager.getCredentials(serviceRef)),
+                    this::prefetch);
+        } catch (Exception e) {
+            logger.warn("Failed to warm up connection to {}", serviceRef.getServiceUri());
+            logger.warn(e);
+        }
+    }
+
+    private Void prefetch(JFRConnection connection) throws Exception {
+        // these queries are cheap, but the first of each against a new connection lazily
+        // initializes the remote services and event type metadata that later requests rely on
+        connection.getService().getAvailableEventTypes();
+        connection.getService().getAvailableRecordings();
+        connection.getTemplateService().getTemplates();
+        return null;
+    }
+
+    /** @return the selector predicate, or null if warm-up is disabled */
+    static Predicate<Map<String, String>> parseSelector(String selector) {
+        if (StringUtils.isBlank(selector)) {
+            return null;
+        }
+        if (MATCH_ALL.equals(selector.trim())) {
+            return labels -> true;
+        }
+        List<Predicate<Map<String, String>>> requirements = new ArrayList<>();
+        for (String requirement : selector.split(",")) {
+            requirement = requirement.trim();
+            if (requirement.isEmpty()) {
+                continue;
+            }
+            int idx;
+            if ((idx = requirement.indexOf("!=")) > 0) {
+                String key = requirement.substring(0, idx).trim();
+                String value = requirement.substring(idx + 2).trim();
+                requirements.add(labels -> !Objects.equals(labels.get(key), value));
+            } else if ((idx = requirement.indexOf('=')) > 0) {
+                String key = requirement.substring(0, idx).trim();
+                String value = StringUtils.removeStart(requirement.substring(idx + 1), "=").trim();
+                requirements.add(labels -> Objects.equals(labels.get(key), value));
+            } else if (requirement.startsWith("!")) {
+                String key = requirement.substring(1).trim();
+                requirements.add(labels -> !labels.containsKey(key));
+            } else {
+                String key = requirement;
+                requirements.add(labels -> labels.containsKey(key));
+            }
+        }
+        if (requirements.isEmpty()) {
+            return null;
+        }
+        return labels -> requirements.stream().allMatch(r -> r.test(labels));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs blocking per-target tasks on a bounded shared worker pool, while limiting how many tasks for
+ * any single target may occupy workers at once. Tasks beyond that limit wait in a per-target FIFO
+ * queue and are only handed to the worker pool as earlier tasks for the same target complete, so a
+ * slow or unresponsive target with many queued requests cannot starve requests for other targets of
+ * worker threads.
+ */
+public class TargetTaskExecutor {
+
+    private final Executor workers;
+    private final int maxConcurrentTasksPerTarget;
+    private final Map<String, TargetQueue> queues = new ConcurrentHashMap<>();
+
+    TargetTaskExecutor(Executor workers, int maxConcurrentTasksPerTarget) {
+        this.workers = workers;
+        this.maxConcurrentTasksPerTarget = Math.max(1, maxConcurrentTasksPerTarget);
+    }
+
+    public <T> CompletableFuture<T> submit(String targetId, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Task<T> t = new Task<>(task, future);
+        while (true) {
+            TargetQueue queue = queues.computeIfAbsent(targetId, k -> new TargetQueue());
+            synchronized (queue) {
+                if (queue.retired) {
+                    continue;
+                }
+                if (queue.running >= maxConcurrentTasksPerTarget) {
+                    queue.pending.add(t);
+                    return future;
+                }
+                queue.running++;
+            }
+            dispatch(targetId, queue, t);
+            return future;
+        }
+    }
+
+    private void dispatch(String targetId, TargetQueue queue, Task<?> task) {
+        try {
+            workers.execute(
+                    () -> {
+                        try {
+                            task.run();
+                        } finally {
+                            next(targetId, queue);
+                        }
+                    });
+        } catch (RejectedExecutionException ree) {
+            task.future.completeExceptionally(ree);
+            next(targetId, queue);
+        }
+    }
+
+    private void next(String targetId, TargetQueue queue) {
+        Task<?> next;
+        synchronized (queue) {
+            next = queue.pending.poll();
+            if (next == null) {
+                queue.running--;
+                if (queue.running == 0) {
+                    queue.retired = true;
+                    queues.remove(targetId, queue);
+                }
+                return;
+            }
+        }
+        dispatch(targetId, queue, next);
+    }
+
+    private static class Task<T> {
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future;
+
+        private Task(Callable<T> callable, CompletableFuture<T> future) {
+            this.callable = callable;
+            this.future = future;
+        }
+
+        private void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static class TargetQueue {
+        private final Queue<Task<?>> pending = new ArrayDeque<>();
+        private int running;
+        private boolean retired;
+    }
+}
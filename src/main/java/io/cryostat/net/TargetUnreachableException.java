@@ -0,0 +1,71 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import org.openjdk.jmc.rjmx.ConnectionException;
+
+/**
+ * Thrown instead of attempting a connection to a target which recently failed to connect and is
+ * still within its backoff period. The cause is the original connection failure, but this failure
+ * should be reported as the target being temporarily unavailable regardless of that cause.
+ */
+public class TargetUnreachableException extends ConnectionException {
+
+    private final long retryAfter;
+    private final long retryAfterSeconds;
+
+    public TargetUnreachableException(String targetId, long now, long retryAfter, Exception cause) {
+        super(
+                String.format(
+                        "Target %s was recently unreachable, not retrying until %d",
+                        targetId, retryAfter));
+        this.retryAfter = retryAfter;
+        this.retryAfterSeconds = Math.max(1, (retryAfter - now + 999) / 1000);
+        initCause(cause);
+    }
+
+    /** @return epoch milliseconds after which connection attempts will be retried */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /** @return whole seconds until connection attempts will be retried, for a Retry-After header */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
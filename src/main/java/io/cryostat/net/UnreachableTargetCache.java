@@ -0,0 +1,184 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.rmi.ConnectIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.cryostat.core.sys.Clock;
+import io.cryostat.platform.discovery.UnreachableTarget;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Remembers targets which recently failed to connect for network-level reasons (unknown host,
+ * connection refused, connection I/O failure, timeout) so that further connection attempts can fail
+ * fast rather than each waiting out the full connection timeout. Each consecutive failure doubles
+ * the time until the next attempt is allowed, up to a configured maximum. A target is forgotten
+ * once it has gone the maximum backoff past its retry time without failing again, so that a target
+ * which is retried and fails soon after its backoff elapses continues backing off from where it
+ * left off.
+ */
+public class UnreachableTargetCache {
+
+    private final Clock clock;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Map<String, Failure> targets = new ConcurrentHashMap<>();
+
+    UnreachableTargetCache(Clock clock, Duration initialBackoff, Duration maxBackoff) {
+        this.clock = clock;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * @return the unreachable state of the target if a connection attempt to it recently failed and
+     *     its backoff period has not yet elapsed
+     */
+    public Optional<UnreachableTarget> get(String targetId) {
+        return getFailure(targetId).map(failure -> failure.target);
+    }
+
+    /** @return true if any target is currently within its backoff period */
+    public boolean hasUnreachableTargets() {
+        if (targets.isEmpty()) {
+            return false;
+        }
+        long now = clock.now().toEpochMilli();
+        targets.values().removeIf(failure -> isStale(failure, now));
+        return targets.values().stream().anyMatch(failure -> !isExpired(failure, now));
+    }
+
+    /**
+     * @throws TargetUnreachableException if the target is currently within its backoff period. The
+     *     exception's cause is the original connection failure.
+     */
+    void checkReachable(String targetId) throws TargetUnreachableException {
+        Optional<Failure> failure = getFailure(targetId);
+        if (failure.isPresent()) {
+            throw new TargetUnreachableException(
+                    targetId,
+                    clock.now().toEpochMilli(),
+                    failure.get().target.getRetryAfter(),
+                    failure.get().cause);
+        }
+    }
+
+    /** Record a failed connection attempt, if it failed for a network-level reason. */
+    void onFailure(String targetId, Exception failure) {
+        if (maxBackoff.isZero() || !isUnreachable(failure)) {
+            return;
+        }
+        long now = clock.now().toEpochMilli();
+        targets.compute(
+                targetId,
+                (k, previous) -> {
+                    int failures =
+                            previous == null || isStale(previous, now)
+                                    ? 1
+                                    : previous.target.getConsecutiveFailures() + 1;
+                    long backoff =
+                            Math.min(
+                                    maxBackoff.toMillis(),
+                                    initialBackoff.toMillis()
+                                            << Math.min(failures - 1, Integer.SIZE - 2));
+                    return new Failure(
+                            new UnreachableTarget(
+                                    ExceptionUtils.getRootCause(failure).toString(),
+                                    failures,
+                                    now + backoff),
+                            failure);
+                });
+    }
+
+    /** Forget any recorded failures for the target, ex. after a successful connection. */
+    void reset(String targetId) {
+        targets.remove(targetId);
+    }
+
+    private Optional<Failure> getFailure(String targetId) {
+        Failure failure = targets.get(targetId);
+        if (failure == null) {
+            return Optional.empty();
+        }
+        long now = clock.now().toEpochMilli();
+        if (isStale(failure, now)) {
+            targets.remove(targetId, failure);
+        }
+        if (isExpired(failure, now)) {
+            return Optional.empty();
+        }
+        return Optional.of(failure);
+    }
+
+    private boolean isExpired(Failure failure, long now) {
+        return now >= failure.target.getRetryAfter();
+    }
+
+    private boolean isStale(Failure failure, long now) {
+        return now >= failure.target.getRetryAfter() + maxBackoff.toMillis();
+    }
+
+    static boolean isUnreachable(Exception failure) {
+        Throwable rootCause = ExceptionUtils.getRootCause(failure);
+        return rootCause instanceof UnknownHostException
+                || rootCause instanceof ConnectException
+                || rootCause instanceof NoRouteToHostException
+                || rootCause instanceof SocketTimeoutException
+                || ExceptionUtils.indexOfType(failure, ConnectIOException.class) >= 0
+                || ExceptionUtils.indexOfType(failure, java.rmi.ConnectException.class) >= 0;
+    }
+
+    private static class Failure {
+        private final UnreachableTarget target;
+        private final Exception cause;
+
+        private Failure(UnreachableTarget target, Exception cause) {
+            this.target = target;
+            this.cause = cause;
+        }
+    }
+}
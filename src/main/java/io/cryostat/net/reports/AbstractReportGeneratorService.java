@@ -44,7 +44,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor;
 
@@ -54,6 +56,8 @@ import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -62,12 +66,17 @@ abstract class AbstractReportGeneratorService implements ReportGeneratorService
     static final int READ_BUFFER_SIZE = 64 * 1024; // 64 KB
 
     protected final TargetConnectionManager targetConnectionManager;
+    protected final SegmentedRecordingTransfer recordingTransfer;
     protected final FileSystem fs;
     protected final Logger logger;
 
     protected AbstractReportGeneratorService(
-            TargetConnectionManager targetConnectionManager, FileSystem fs, Logger logger) {
+            TargetConnectionManager targetConnectionManager,
+            SegmentedRecordingTransfer recordingTransfer,
+            FileSystem fs,
+            Logger logger) {
         this.targetConnectionManager = targetConnectionManager;
+        this.recordingTransfer = recordingTransfer;
         this.fs = fs;
         this.logger = logger;
     }
@@ -75,34 +84,60 @@ abstract class AbstractReportGeneratorService implements ReportGeneratorService
     @Override
     public final CompletableFuture<Path> exec(RecordingDescriptor recordingDescriptor)
             throws Exception {
+        return execOnCopy(
+                recordingDescriptor, recording -> exec(recording, fs.createTempFile(null, null)));
+    }
+
+    @Override
+    public final CompletableFuture<Void> execRules(
+            RecordingDescriptor recordingDescriptor, Set<String> ruleIds, Consumer<String> onResult)
+            throws Exception {
+        return execOnCopy(
+                recordingDescriptor, recording -> execRules(recording, ruleIds, onResult));
+    }
+
+    private <T> CompletableFuture<T> execOnCopy(
+            RecordingDescriptor recordingDescriptor, RecordingTask<T> task) throws Exception {
         Path recording =
                 getRecordingFromLiveTarget(
                         recordingDescriptor.recordingName,
-                        recordingDescriptor.connectionDescriptor);
-        Path saveFile = fs.createTempFile(null, null);
-        CompletableFuture<Path> cf = exec(recording, saveFile);
-        return cf.whenComplete(
-                (p, t) -> {
-                    try {
-                        fs.deleteIfExists(recording);
-                    } catch (IOException e) {
-                        logger.warn(e);
-                    }
-                });
+                        recordingDescriptor.connectionDescriptor,
+                        recordingDescriptor.range);
+        CompletableFuture<T> cf;
+        try {
+            cf = task.exec(recording);
+        } catch (Exception e) {
+            deleteCopy(recording);
+            throw e;
+        }
+        return cf.whenComplete((v, t) -> deleteCopy(recording));
+    }
+
+    private void deleteCopy(Path recording) {
+        try {
+            fs.deleteIfExists(recording);
+        } catch (IOException e) {
+            logger.warn(e);
+        }
     }
 
-    Path getRecordingFromLiveTarget(String recordingName, ConnectionDescriptor cd)
+    Path getRecordingFromLiveTarget(
+            String recordingName, ConnectionDescriptor cd, RecordingTimeRange range)
             throws Exception {
         return this.targetConnectionManager.executeConnectedTask(
                 cd,
                 conn ->
                         copyRecordingToFile(
-                                conn, cd, recordingName, fs.createTempFile(null, null)));
+                                conn, cd, recordingName, range, fs.createTempFile(null, null)));
     }
 
     @SuppressFBWarnings("RCN_REDUNDANT_NULLCHECK_WOULD_HAVE_BEEN_A_NPE")
     Path copyRecordingToFile(
-            JFRConnection conn, ConnectionDescriptor cd, String recordingName, Path path)
+            JFRConnection conn,
+            ConnectionDescriptor cd,
+            String recordingName,
+            RecordingTimeRange range,
+            Path path)
             throws Exception {
         for (IRecordingDescriptor rec : conn.getService().getAvailableRecordings()) {
             if (!Objects.equals(rec.getName(), recordingName)) {
@@ -110,7 +145,7 @@ abstract class AbstractReportGeneratorService implements ReportGeneratorService
             }
             try (OutputStream out = new BufferedOutputStream(new FileOutputStream(path.toFile()))) {
                 try (conn;
-                        InputStream in = conn.getService().openStream(rec, false)) {
+                        InputStream in = recordingTransfer.openStream(cd, conn, rec, range)) {
                     byte[] buff = new byte[READ_BUFFER_SIZE];
                     int n = 0;
                     while ((n = in.read(buff)) != -1) {
@@ -127,4 +162,8 @@ abstract class AbstractReportGeneratorService implements ReportGeneratorService
         }
         throw new RecordingNotFoundException(cd.getTargetId(), recordingName);
     }
+
+    private interface RecordingTask<T> {
+        CompletableFuture<T> exec(Path recording) throws Exception;
+    }
 }
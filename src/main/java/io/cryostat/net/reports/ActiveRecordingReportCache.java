@@ -39,11 +39,13 @@ package io.cryostat.net.reports;
 
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.inject.Named;
 import javax.inject.Provider;
@@ -54,6 +56,7 @@ import io.cryostat.core.log.Logger;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.TargetConnectionManager;
+import io.cryostat.recordings.RecordingTimeRange;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
@@ -65,6 +68,7 @@ class ActiveRecordingReportCache {
     protected final FileSystem fs;
     protected final LoadingCache<RecordingDescriptor, String> cache;
     protected final TargetConnectionManager targetConnectionManager;
+    protected final ReportScheduler scheduler;
     protected final long generationTimeoutSeconds;
     protected final Logger logger;
 
@@ -72,11 +76,13 @@ class ActiveRecordingReportCache {
             Provider<ReportGeneratorService> reportGeneratorServiceProvider,
             FileSystem fs,
             TargetConnectionManager targetConnectionManager,
+            ReportScheduler scheduler,
             @Named(ReportsModule.REPORT_GENERATION_TIMEOUT_SECONDS) long generationTimeoutSeconds,
             Logger logger) {
         this.reportGeneratorServiceProvider = reportGeneratorServiceProvider;
         this.fs = fs;
         this.targetConnectionManager = targetConnectionManager;
+        this.scheduler = scheduler;
         this.generationTimeoutSeconds = generationTimeoutSeconds;
         this.logger = logger;
 
@@ -90,15 +96,56 @@ class ActiveRecordingReportCache {
     }
 
     Future<String> get(ConnectionDescriptor connectionDescriptor, String recordingName) {
+        return get(connectionDescriptor, recordingName, RecordingTimeRange.UNBOUNDED);
+    }
+
+    Future<String> get(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range) {
         CompletableFuture<String> f = new CompletableFuture<>();
         try {
-            f.complete(cache.get(new RecordingDescriptor(connectionDescriptor, recordingName)));
+            RecordingDescriptor key =
+                    new RecordingDescriptor(connectionDescriptor, recordingName, range);
+            // ranged reports are not cached, since a relative or open-ended range selects
+            // different data on every request
+            f.complete(range.isUnbounded() ? cache.get(key) : getReport(key));
         } catch (Exception e) {
             f.completeExceptionally(e);
         }
         return f;
     }
 
+    /**
+     * Evaluate the given rules against a recording and pass each result to onResult as a line of
+     * JSON as soon as it is available. Individual rule results may be reused by the report
+     * generator, but since each caller receives its own stream of results, concurrent requests are
+     * not deduplicated.
+     */
+    Future<Void> getRuleResults(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range,
+            Set<String> ruleIds,
+            Consumer<String> onResult) {
+        RecordingDescriptor recordingDescriptor =
+                new RecordingDescriptor(connectionDescriptor, recordingName, range);
+        return scheduler.submit(
+                new Object(),
+                connectionDescriptor.getTargetId(),
+                ReportScheduler.UNKNOWN_SIZE,
+                () -> {
+                    try {
+                        return reportGeneratorServiceProvider
+                                .get()
+                                .execRules(recordingDescriptor, ruleIds, onResult)
+                                .get(generationTimeoutSeconds, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        throw new CompletionException(e.getCause());
+                    }
+                });
+    }
+
     boolean delete(ConnectionDescriptor connectionDescriptor, String recordingName) {
         RecordingDescriptor key = new RecordingDescriptor(connectionDescriptor, recordingName);
         boolean hasKey = cache.asMap().containsKey(key);
@@ -112,50 +159,64 @@ class ActiveRecordingReportCache {
     }
 
     protected String getReport(RecordingDescriptor recordingDescriptor) throws Exception {
-        Path saveFile = null;
+        logger.trace("Active report cache miss for {}", recordingDescriptor.recordingName);
         try {
-            logger.trace("Active report cache miss for {}", recordingDescriptor.recordingName);
-            try {
-                saveFile =
-                        reportGeneratorServiceProvider
-                                .get()
-                                .exec(recordingDescriptor)
-                                .get(generationTimeoutSeconds, TimeUnit.SECONDS);
-                return fs.readString(saveFile);
-            } catch (ExecutionException | CompletionException e) {
-                logger.error(e);
+            // the recording has to be copied out of the target before its size is known
+            return scheduler
+                    .submit(
+                            recordingDescriptor,
+                            recordingDescriptor.connectionDescriptor.getTargetId(),
+                            ReportScheduler.UNKNOWN_SIZE,
+                            () -> generateReport(recordingDescriptor))
+                    .get(generationTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException | CompletionException e) {
+            logger.error(e);
 
+            if (recordingDescriptor.range.isUnbounded()) {
                 delete(recordingDescriptor.connectionDescriptor, recordingDescriptor.recordingName);
+            }
 
-                if (e.getCause()
-                        instanceof SubprocessReportGenerator.SubprocessReportGenerationException) {
-                    SubprocessReportGenerator.SubprocessReportGenerationException
-                            generationException =
-                                    (SubprocessReportGenerator.SubprocessReportGenerationException)
-                                            e.getCause();
-
-                    SubprocessReportGenerator.ExitStatus status = generationException.getStatus();
-                    if (status == SubprocessReportGenerator.ExitStatus.OUT_OF_MEMORY) {
-                        // subprocess OOM'd and therefore most likely did not properly clean up
-                        // the cloned recording stream before exiting, so we do it here
-                        String cloneName = "Clone of " + recordingDescriptor.recordingName;
-                        targetConnectionManager.executeConnectedTask(
-                                recordingDescriptor.connectionDescriptor,
-                                conn -> {
-                                    Optional<IRecordingDescriptor> clone =
-                                            conn.getService().getAvailableRecordings().stream()
-                                                    .filter(r -> r.getName().equals(cloneName))
-                                                    .findFirst();
-                                    if (clone.isPresent()) {
-                                        conn.getService().close(clone.get());
-                                        logger.trace("Cleaned dangling recording {}", cloneName);
-                                    }
-                                    return null;
-                                });
-                    }
+            if (e.getCause()
+                    instanceof SubprocessReportGenerator.SubprocessReportGenerationException) {
+                SubprocessReportGenerator.SubprocessReportGenerationException generationException =
+                        (SubprocessReportGenerator.SubprocessReportGenerationException)
+                                e.getCause();
+
+                SubprocessReportGenerator.ExitStatus status = generationException.getStatus();
+                if (status == SubprocessReportGenerator.ExitStatus.OUT_OF_MEMORY) {
+                    // subprocess OOM'd and therefore most likely did not properly clean up
+                    // the cloned recording stream before exiting, so we do it here
+                    String cloneName = "Clone of " + recordingDescriptor.recordingName;
+                    targetConnectionManager.executeConnectedTask(
+                            recordingDescriptor.connectionDescriptor,
+                            conn -> {
+                                Optional<IRecordingDescriptor> clone =
+                                        conn.getService().getAvailableRecordings().stream()
+                                                .filter(r -> r.getName().equals(cloneName))
+                                                .findFirst();
+                                if (clone.isPresent()) {
+                                    conn.getService().close(clone.get());
+                                    logger.trace("Cleaned dangling recording {}", cloneName);
+                                }
+                                return null;
+                            });
                 }
-                throw e;
             }
+            throw e;
+        }
+    }
+
+    private String generateReport(RecordingDescriptor recordingDescriptor) throws Exception {
+        Path saveFile = null;
+        try {
+            saveFile =
+                    reportGeneratorServiceProvider
+                            .get()
+                            .exec(recordingDescriptor)
+                            .get(generationTimeoutSeconds, TimeUnit.SECONDS);
+            return fs.readString(saveFile);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
         } finally {
             if (saveFile != null) {
                 fs.deleteIfExists(saveFile);
@@ -39,22 +39,35 @@ package io.cryostat.net.reports;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.inject.Named;
 import javax.inject.Provider;
 
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.sys.FileSystem;
+import io.cryostat.recordings.ArchiveCatalog;
 import io.cryostat.recordings.RecordingArchiveHelper;
+import io.cryostat.recordings.RecordingNotFoundException;
 
 class ArchivedRecordingReportCache {
 
+    // archived recordings are not attributed to a target, so their reports share one turn
+    static final String ARCHIVED_REPORTS_OWNER = "archives";
+
     protected final FileSystem fs;
     protected final Provider<ReportGeneratorService> reportGeneratorServiceProvider;
     protected final RecordingArchiveHelper recordingArchiveHelper;
+    protected final ArchiveCatalog archiveCatalog;
+    protected final ArchivedReportStore reportStore;
+    protected final ReportScheduler scheduler;
     protected final long generationTimeoutSeconds;
     protected final Logger logger;
 
@@ -62,46 +75,153 @@ class ArchivedRecordingReportCache {
             FileSystem fs,
             Provider<ReportGeneratorService> reportGeneratorServiceProvider,
             RecordingArchiveHelper recordingArchiveHelper,
+            ArchiveCatalog archiveCatalog,
+            ArchivedReportStore reportStore,
+            ReportScheduler scheduler,
             @Named(ReportsModule.REPORT_GENERATION_TIMEOUT_SECONDS) long generationTimeoutSeconds,
             Logger logger) {
         this.fs = fs;
         this.reportGeneratorServiceProvider = reportGeneratorServiceProvider;
         this.recordingArchiveHelper = recordingArchiveHelper;
+        this.archiveCatalog = archiveCatalog;
+        this.reportStore = reportStore;
+        this.scheduler = scheduler;
         this.generationTimeoutSeconds = generationTimeoutSeconds;
         this.logger = logger;
     }
 
-    Future<Path> get(String recordingName) {
-        CompletableFuture<Path> f = new CompletableFuture<>();
-        Path dest = recordingArchiveHelper.getCachedReportPath(recordingName);
-        if (fs.isReadable(dest) && fs.isRegularFile(dest)) {
-            f.complete(dest);
-            return f;
+    /**
+     * @return the report of the archived recording, which the caller must close once it has been
+     *     served
+     */
+    Future<ArchivedReport> get(String recordingName) {
+        try {
+            ArchiveCatalog.Entry entry = getCatalogEntry(recordingName);
+            Optional<ArchivedReport> report =
+                    reportStore.getKnownHash(entry).flatMap(reportStore::pin);
+            if (report.isPresent()) {
+                return CompletableFuture.completedFuture(report.get());
+            }
+
+            Path archivedRecording = recordingArchiveHelper.getRecordingPath(recordingName).get();
+            // the recording may have to be read to hash it, so that is left to the job too
+            return scheduler
+                    .submit(
+                            recordingName,
+                            ARCHIVED_REPORTS_OWNER,
+                            entry.getSize(),
+                            () -> getOrGenerateReport(entry, archivedRecording))
+                    .thenApply(hash -> pin(recordingName, hash));
+        } catch (Exception e) {
+            logger.error(e);
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
+    /**
+     * Evaluate the given rules, or all rules if none are given, against an archived recording and
+     * pass each result to onResult as a line of JSON as soon as it is available.
+     */
+    Future<Void> getRuleResults(
+            String recordingName, Set<String> ruleIds, Consumer<String> onResult) {
         try {
-            logger.trace("Archived report cache miss for {}", recordingName);
-
+            ArchiveCatalog.Entry entry = getCatalogEntry(recordingName);
             Path archivedRecording = recordingArchiveHelper.getRecordingPath(recordingName).get();
-            Path saveFile =
-                    reportGeneratorServiceProvider
-                            .get()
-                            .exec(archivedRecording, dest)
-                            .get(generationTimeoutSeconds, TimeUnit.SECONDS);
-            f.complete(saveFile);
+            return scheduler.submit(
+                    new Object(),
+                    ARCHIVED_REPORTS_OWNER,
+                    entry.getSize(),
+                    () ->
+                            evaluate(
+                                    archivedRecording,
+                                    recording ->
+                                            reportGeneratorServiceProvider
+                                                    .get()
+                                                    .execRules(recording, ruleIds, onResult)));
         } catch (Exception e) {
             logger.error(e);
-            f.completeExceptionally(e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private ArchiveCatalog.Entry getCatalogEntry(String recordingName)
+            throws IOException, RecordingNotFoundException {
+        return archiveCatalog
+                .get(recordingName)
+                .orElseThrow(() -> new RecordingNotFoundException("archives", recordingName));
+    }
+
+    private ArchivedReport pin(String recordingName, String hash) {
+        // only possible if the store is too small to hold even the reports currently being served
+        return reportStore
+                .pin(hash)
+                .orElseThrow(
+                        () ->
+                                new CompletionException(
+                                        new ReportGenerationException(
+                                                String.format(
+                                                        "Report of %s was evicted before it could"
+                                                                + " be served",
+                                                        recordingName))));
+    }
+
+    private String getOrGenerateReport(ArchiveCatalog.Entry entry, Path archivedRecording)
+            throws Exception {
+        String hash =
+                reportStore.getHash(
+                        entry, () -> recordingArchiveHelper.openRecording(archivedRecording));
+        if (!reportStore.contains(hash)) {
+            logger.trace("Archived report cache miss for {}", entry.getName());
+            generateReport(archivedRecording, hash);
+        }
+        return hash;
+    }
+
+    private void generateReport(Path archivedRecording, String hash) throws Exception {
+        Path dest = reportStore.createTempFile();
+        try {
+            evaluate(
+                    archivedRecording,
+                    recording -> reportGeneratorServiceProvider.get().exec(recording, dest));
+            reportStore.put(hash, dest);
+        } catch (Exception e) {
+            deleteReportFile(dest);
+            throw e;
+        }
+    }
+
+    private <T> T evaluate(Path archivedRecording, RecordingTask<T> task) throws Exception {
+        try {
+            Path recording = recordingArchiveHelper.decompressIfNeeded(archivedRecording);
             try {
-                fs.deleteIfExists(dest);
-            } catch (IOException ioe) {
-                logger.warn(ioe);
+                return task.exec(recording).get(generationTimeoutSeconds, TimeUnit.SECONDS);
+            } finally {
+                if (!recording.equals(archivedRecording)) {
+                    fs.deleteIfExists(recording);
+                }
             }
+        } catch (Exception e) {
+            logger.error(e);
+            if (e instanceof ExecutionException) {
+                throw new CompletionException(e.getCause());
+            }
+            throw e;
+        }
+    }
+
+    private void deleteReportFile(Path dest) {
+        try {
+            fs.deleteIfExists(dest);
+        } catch (IOException ioe) {
+            logger.warn(ioe);
         }
-        return f;
     }
 
     boolean delete(String recordingName) {
-        return recordingArchiveHelper.deleteReport(recordingName);
+        return reportStore.forget(recordingName);
+    }
+
+    private interface RecordingTask<T> {
+        CompletableFuture<T> exec(Path recording) throws Exception;
     }
 }
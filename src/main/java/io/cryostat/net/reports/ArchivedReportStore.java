@@ -0,0 +1,385 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.reports;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.recordings.ArchiveCatalog;
+import io.cryostat.recordings.ArchiveCompression;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * A disk-backed cache of the HTML reports of archived recordings. Reports are keyed by the SHA-256
+ * hash of the uncompressed recording, so that recordings which are renamed, or uploaded or archived
+ * more than once, share a single report. The hash of each archived recording is remembered along
+ * with its size and modification time, so a recording is only read to hash it again if it has
+ * changed.
+ *
+ * <p>Lookups are served from an in-memory index without touching the filesystem. The index is
+ * bounded by the total size of the stored reports, evicting the least recently used reports first,
+ * and is persisted within the cache directory so that it, along with the remembered recording
+ * hashes, survives restarts. Reports are handed out pinned, and a pinned report is passed over by
+ * eviction until every {@link ArchivedReport} for it has been closed, so that a report's file is
+ * not deleted while it is being served. Reports may optionally be stored compressed.
+ */
+class ArchivedReportStore {
+
+    static final String INDEX_FILE_NAME = ".cryostat-report-index.json";
+    static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final Pattern REPORT_FILE_PATTERN =
+            Pattern.compile("^([0-9a-f]{64})\\.html(\\.gz)?$");
+
+    private final Path directory;
+    private final long maxBytes;
+    private final ArchiveCompression compression;
+    private final Gson gson;
+    private final Logger logger;
+
+    // access ordered, so that iteration begins with the least recently used report
+    private final LinkedHashMap<String, Report> reports = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, RecordingHash> recordingHashes = new HashMap<>();
+    private final Map<String, Integer> pins = new HashMap<>();
+    private long totalBytes;
+
+    ArchivedReportStore(
+            Path directory,
+            long maxBytes,
+            ArchiveCompression compression,
+            Gson gson,
+            Logger logger) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.compression = compression;
+        this.gson = gson;
+        this.logger = logger;
+    }
+
+    /**
+     * Create the cache directory if needed and load the reports stored in it, ordered by the
+     * persisted index if there is one. Leftover temporary files are removed.
+     */
+    synchronized void start() throws IOException {
+        Files.createDirectories(directory);
+        Index index = loadIndex();
+
+        Map<String, Path> found = new LinkedHashMap<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                String fileName = child.getFileName().toString();
+                Matcher m = REPORT_FILE_PATTERN.matcher(fileName);
+                if (m.matches()) {
+                    found.put(m.group(1), child);
+                } else if (fileName.endsWith(TEMP_FILE_SUFFIX)) {
+                    Files.deleteIfExists(child);
+                }
+            }
+        }
+
+        List<String> order = new ArrayList<>(found.keySet());
+        order.removeAll(index.reports);
+        // reports missing from the index are treated as least recently used
+        order.addAll(index.reports);
+        for (String hash : order) {
+            Path file = found.get(hash);
+            if (file != null) {
+                add(hash, file);
+            }
+        }
+        for (Map.Entry<String, RecordingHash> entry : index.recordings.entrySet()) {
+            if (reports.containsKey(entry.getValue().hash)) {
+                recordingHashes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        evict(null);
+        logger.info(
+                "Loaded {} cached archived recording reports totalling {} bytes",
+                reports.size(),
+                totalBytes);
+    }
+
+    /**
+     * @return the hash of the archived recording if it has been hashed before and has not changed
+     *     since, without reading the recording
+     */
+    synchronized Optional<String> getKnownHash(ArchiveCatalog.Entry recording) {
+        RecordingHash known = recordingHashes.get(recording.getName());
+        if (known != null && known.matches(recording)) {
+            return Optional.of(known.hash);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the hash of the archived recording, reading it from the given stream only if the
+     *     recording is new or has changed since it was last hashed
+     */
+    String getHash(ArchiveCatalog.Entry recording, RecordingOpener opener) throws IOException {
+        Optional<String> known = getKnownHash(recording);
+        if (known.isPresent()) {
+            return known.get();
+        }
+        String hash;
+        try (InputStream stream = opener.open()) {
+            hash = DigestUtils.sha256Hex(stream);
+        }
+        synchronized (this) {
+            recordingHashes.put(recording.getName(), new RecordingHash(recording, hash));
+        }
+        return hash;
+    }
+
+    /** @return true if a report of the recording with the given hash is stored */
+    synchronized boolean contains(String hash) {
+        return reports.containsKey(hash);
+    }
+
+    /**
+     * @return the stored report of the recording with the given hash, if any, pinned until it is
+     *     closed
+     */
+    synchronized Optional<ArchivedReport> pin(String hash) {
+        Report report = reports.get(hash);
+        if (report == null) {
+            return Optional.empty();
+        }
+        pins.merge(hash, 1, Integer::sum);
+        return Optional.of(new ArchivedReport(this, hash, report.file));
+    }
+
+    /** Unpin a report, evicting reports which were passed over while pinned if still needed. */
+    synchronized void release(String hash) {
+        if (pins.computeIfPresent(hash, (k, n) -> n > 1 ? n - 1 : null) == null && evict(null)) {
+            persist();
+        }
+    }
+
+    /** @return a new temporary file in the cache directory, for a report to be generated into */
+    Path createTempFile() throws IOException {
+        return Files.createTempFile(directory, "report", TEMP_FILE_SUFFIX);
+    }
+
+    /**
+     * Store a report generated into a file from {@link #createTempFile()} as the report of the
+     * recording with the given hash, evicting older reports as needed to stay within the size
+     * bound.
+     *
+     * @return the stored report
+     */
+    Path put(String hash, Path generated) throws IOException {
+        Path file;
+        if (compression == ArchiveCompression.NONE) {
+            file = directory.resolve(hash + ".html");
+            Files.move(
+                    generated,
+                    file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            file = directory.resolve(hash + ".html.gz");
+            Path compressed = directory.resolve(file.getFileName() + TEMP_FILE_SUFFIX);
+            try (InputStream in = Files.newInputStream(generated)) {
+                Files.deleteIfExists(compressed);
+                compression.write(in, compressed);
+            } finally {
+                Files.deleteIfExists(generated);
+            }
+            Files.move(
+                    compressed,
+                    file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        synchronized (this) {
+            Report previous = reports.remove(hash);
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            add(hash, file);
+            evict(hash);
+            persist();
+        }
+        return file;
+    }
+
+    /**
+     * Forget the hash of the named recording. Its report is left in the cache, since it may be
+     * shared with other recordings, and is eventually evicted if it is no longer requested.
+     *
+     * @return true if the recording's hash was known
+     */
+    synchronized boolean forget(String recordingName) {
+        return recordingHashes.remove(recordingName) != null;
+    }
+
+    /** @return the encoding the given stored report is in */
+    static ArchiveCompression getCompression(Path report) {
+        return report.getFileName().toString().endsWith(".gz")
+                ? ArchiveCompression.GZIP
+                : ArchiveCompression.NONE;
+    }
+
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void add(String hash, Path file) throws IOException {
+        Report report = new Report(file, Files.size(file));
+        reports.put(hash, report);
+        totalBytes += report.size;
+    }
+
+    /** @return true if any report was evicted */
+    private boolean evict(String keep) {
+        boolean evicted = false;
+        Iterator<Map.Entry<String, Report>> it = reports.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Report> eldest = it.next();
+            if (eldest.getKey().equals(keep) || pins.containsKey(eldest.getKey())) {
+                continue;
+            }
+            it.remove();
+            evicted = true;
+            totalBytes -= eldest.getValue().size;
+            recordingHashes.values().removeIf(h -> h.hash.equals(eldest.getKey()));
+            try {
+                Files.deleteIfExists(eldest.getValue().file);
+                logger.trace("Evicted cached archived report {}", eldest.getValue().file);
+            } catch (IOException e) {
+                logger.warn(e);
+            }
+        }
+        return evicted;
+    }
+
+    /** Persist the index, in least to most recently used order. */
+    synchronized void persist() {
+        Path indexFile = directory.resolve(INDEX_FILE_NAME);
+        Path tmp = directory.resolve(INDEX_FILE_NAME + TEMP_FILE_SUFFIX);
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(new Index(new ArrayList<>(reports.keySet()), recordingHashes), writer);
+            }
+            Files.move(
+                    tmp,
+                    indexFile,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to persist archived report index");
+            logger.warn(e);
+        }
+    }
+
+    private Index loadIndex() {
+        Path indexFile = directory.resolve(INDEX_FILE_NAME);
+        if (!Files.exists(indexFile)) {
+            return new Index(List.of(), Map.of());
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            Index index = gson.fromJson(reader, Index.class);
+            if (index != null && index.reports != null && index.recordings != null) {
+                return index;
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Failed to load archived report index");
+            logger.warn(e);
+        }
+        return new Index(List.of(), Map.of());
+    }
+
+    interface RecordingOpener {
+        InputStream open() throws IOException;
+    }
+
+    private static class Report {
+        final Path file;
+        final long size;
+
+        Report(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    static class RecordingHash {
+        final long size;
+        final long archivedTime;
+        final String hash;
+
+        RecordingHash(ArchiveCatalog.Entry recording, String hash) {
+            this.size = recording.getSize();
+            this.archivedTime = recording.getArchivedTime();
+            this.hash = hash;
+        }
+
+        boolean matches(ArchiveCatalog.Entry recording) {
+            return size == recording.getSize() && archivedTime == recording.getArchivedTime();
+        }
+    }
+
+    static class Index {
+        final List<String> reports;
+        final Map<String, RecordingHash> recordings;
+
+        Index(List<String> reports, Map<String, RecordingHash> recordings) {
+            this.reports = reports;
+            this.recordings = recordings;
+        }
+    }
+}
@@ -40,6 +40,7 @@ package io.cryostat.net.reports;
 import java.util.Objects;
 
 import io.cryostat.net.ConnectionDescriptor;
+import io.cryostat.recordings.RecordingTimeRange;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -47,10 +48,19 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 class RecordingDescriptor {
     final ConnectionDescriptor connectionDescriptor;
     final String recordingName;
+    final RecordingTimeRange range;
 
     RecordingDescriptor(ConnectionDescriptor connectionDescriptor, String recordingName) {
+        this(connectionDescriptor, recordingName, RecordingTimeRange.UNBOUNDED);
+    }
+
+    RecordingDescriptor(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range) {
         this.connectionDescriptor = Objects.requireNonNull(connectionDescriptor);
         this.recordingName = Objects.requireNonNull(recordingName);
+        this.range = Objects.requireNonNull(range);
     }
 
     @Override
@@ -68,11 +78,16 @@ class RecordingDescriptor {
         return new EqualsBuilder()
                 .append(connectionDescriptor, rd.connectionDescriptor)
                 .append(recordingName, rd.recordingName)
+                .append(range, rd.range)
                 .isEquals();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(connectionDescriptor).append(recordingName).hashCode();
+        return new HashCodeBuilder()
+                .append(connectionDescriptor)
+                .append(recordingName)
+                .append(range)
+                .hashCode();
     }
 }
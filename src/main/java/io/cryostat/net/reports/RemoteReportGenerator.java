@@ -49,6 +49,7 @@ import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
 import io.cryostat.util.HttpStatusCodeIdentifier;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -65,13 +66,14 @@ class RemoteReportGenerator extends AbstractReportGeneratorService {
 
     RemoteReportGenerator(
             TargetConnectionManager targetConnectionManager,
+            SegmentedRecordingTransfer recordingTransfer,
             FileSystem fs,
             Vertx vertx,
             WebClient http,
             Environment env,
             @Named(ReportsModule.REPORT_GENERATION_TIMEOUT_SECONDS) long generationTimeoutSeconds,
             Logger logger) {
-        super(targetConnectionManager, fs, logger);
+        super(targetConnectionManager, recordingTransfer, fs, logger);
         this.vertx = vertx;
         this.http = http;
         this.env = env;
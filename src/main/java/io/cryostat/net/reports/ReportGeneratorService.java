@@ -38,10 +38,27 @@
 package io.cryostat.net.reports;
 
 import java.nio.file.Path;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 interface ReportGeneratorService {
     CompletableFuture<Path> exec(Path in, Path out) throws Exception;
 
     CompletableFuture<Path> exec(RecordingDescriptor rd) throws Exception;
+
+    /**
+     * Evaluate the rules with the given IDs, or all rules if none are given, and pass each result
+     * to onResult as a line of JSON as soon as it is available.
+     */
+    default CompletableFuture<Void> execRules(
+            Path in, Set<String> ruleIds, Consumer<String> onResult) throws Exception {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException(
+                        getClass().getSimpleName() + " does not support rule evaluation"));
+    }
+
+    CompletableFuture<Void> execRules(
+            RecordingDescriptor rd, Set<String> ruleIds, Consumer<String> onResult)
+            throws Exception;
 }
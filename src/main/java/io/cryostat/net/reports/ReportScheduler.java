@@ -0,0 +1,281 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.reports;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.core.sys.Clock;
+
+/**
+ * Admits report generation jobs onto a bounded worker pool. Requests for a report which is already
+ * queued or being generated share the pending result rather than generating it again. Queued jobs
+ * are kept in FIFO order per owner, and owners take turns, so that a burst of requests against one
+ * target does not starve reports for others. A job is only started once its estimated memory cost
+ * fits within the memory budget alongside the jobs already running, unless it would run alone.
+ */
+class ReportScheduler implements ReportSchedulerMXBean {
+
+    /** Estimated cost of a job whose recording size is not known in advance. */
+    static final long UNKNOWN_SIZE = -1;
+
+    // a parsed recording takes up a few times its size on disk while rules are evaluated
+    static final int HEAP_BYTES_PER_RECORDING_BYTE = 4;
+
+    private final Executor workers;
+    private final int maxActiveReports;
+    private final long maxReportBytes;
+    private final long memoryBudgetBytes;
+    private final Clock clock;
+    private final Map<Object, Job<?>> jobs = new HashMap<>();
+    private final Map<String, Deque<Job<?>>> pending = new HashMap<>();
+    private final Deque<String> owners = new ArrayDeque<>();
+    private int queueDepth;
+    private int activeReports;
+    private long reservedBytes;
+    private long dispatchedReports;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    /**
+     * @param maxReportBytes the memory available to a single report, or 0 if unbounded, in which
+     *     case jobs are admitted on concurrency alone
+     * @param memoryBudgetBytes the memory available to all concurrent reports together, or 0 if
+     *     unbounded, in which case jobs are admitted on concurrency alone
+     */
+    ReportScheduler(
+            Executor workers,
+            int maxActiveReports,
+            long maxReportBytes,
+            long memoryBudgetBytes,
+            Clock clock) {
+        this.workers = workers;
+        this.maxActiveReports = Math.max(1, maxActiveReports);
+        this.maxReportBytes = Math.max(0, maxReportBytes);
+        this.memoryBudgetBytes = this.maxReportBytes > 0 ? Math.max(0, memoryBudgetBytes) : 0;
+        this.clock = clock;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> submit(
+            Object key, String owner, long recordingBytes, Callable<T> task) {
+        List<Job<?>> ready;
+        Job<T> job;
+        synchronized (this) {
+            Job<?> existing = jobs.get(key);
+            if (existing != null) {
+                return (CompletableFuture<T>) existing.future;
+            }
+            job =
+                    new Job<>(
+                            key,
+                            estimateCost(recordingBytes),
+                            clock.getMonotonicTime(),
+                            task,
+                            new CompletableFuture<>());
+            jobs.put(key, job);
+            Deque<Job<?>> queue = pending.computeIfAbsent(owner, o -> new ArrayDeque<>());
+            if (queue.isEmpty()) {
+                owners.addLast(owner);
+            }
+            queue.addLast(job);
+            queueDepth++;
+            ready = takeReady();
+        }
+        ready.forEach(this::dispatch);
+        return job.future;
+    }
+
+    /** @return the result of the queued or running job for the given key, if any */
+    @SuppressWarnings("unchecked")
+    synchronized <T> Optional<CompletableFuture<T>> getPending(Object key) {
+        return Optional.ofNullable(jobs.get(key)).map(job -> (CompletableFuture<T>) job.future);
+    }
+
+    @Override
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public synchronized int getActiveReports() {
+        return activeReports;
+    }
+
+    @Override
+    public int getMaxActiveReports() {
+        return maxActiveReports;
+    }
+
+    @Override
+    public synchronized long getReservedMemoryBytes() {
+        return reservedBytes;
+    }
+
+    @Override
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    @Override
+    public synchronized long getAverageWaitMillis() {
+        if (dispatchedReports == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / dispatchedReports);
+    }
+
+    @Override
+    public synchronized long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+    }
+
+    long estimateCost(long recordingBytes) {
+        if (maxReportBytes == 0) {
+            return 0;
+        }
+        if (recordingBytes < 0 || recordingBytes > maxReportBytes / HEAP_BYTES_PER_RECORDING_BYTE) {
+            return maxReportBytes;
+        }
+        return recordingBytes * HEAP_BYTES_PER_RECORDING_BYTE;
+    }
+
+    // must be called while holding this object's lock
+    private List<Job<?>> takeReady() {
+        List<Job<?>> ready = new ArrayList<>();
+        long now = clock.getMonotonicTime();
+        while (activeReports < maxActiveReports && !owners.isEmpty()) {
+            String owner = owners.peekFirst();
+            Deque<Job<?>> queue = pending.get(owner);
+            Job<?> job = queue.peekFirst();
+            if (memoryBudgetBytes > 0
+                    && activeReports > 0
+                    && reservedBytes + job.cost > memoryBudgetBytes) {
+                // hold the line rather than letting smaller jobs overtake, so that a large
+                // recording is not starved by a steady stream of small ones
+                break;
+            }
+            queue.removeFirst();
+            owners.removeFirst();
+            if (queue.isEmpty()) {
+                pending.remove(owner);
+            } else {
+                owners.addLast(owner);
+            }
+            queueDepth--;
+            activeReports++;
+            reservedBytes += job.cost;
+            long wait = now - job.submitted;
+            dispatchedReports++;
+            totalWaitNanos += wait;
+            maxWaitNanos = Math.max(maxWaitNanos, wait);
+            ready.add(job);
+        }
+        return ready;
+    }
+
+    private void dispatch(Job<?> job) {
+        try {
+            workers.execute(
+                    () -> {
+                        try {
+                            job.run();
+                        } finally {
+                            complete(job);
+                        }
+                    });
+        } catch (RejectedExecutionException ree) {
+            job.future.completeExceptionally(ree);
+            complete(job);
+        }
+    }
+
+    private void complete(Job<?> job) {
+        List<Job<?>> ready;
+        synchronized (this) {
+            jobs.remove(job.key);
+            activeReports--;
+            reservedBytes -= job.cost;
+            ready = takeReady();
+        }
+        ready.forEach(this::dispatch);
+    }
+
+    private static class Job<T> {
+        private final Object key;
+        private final long cost;
+        private final long submitted;
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future;
+
+        private Job(
+                Object key,
+                long cost,
+                long submitted,
+                Callable<T> callable,
+                CompletableFuture<T> future) {
+            this.key = key;
+            this.cost = cost;
+            this.submitted = submitted;
+            this.callable = callable;
+            this.future = future;
+        }
+
+        private void run() {
+            if (future.isDone()) {
+                // cancelled by its requester while queued
+                return;
+            }
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
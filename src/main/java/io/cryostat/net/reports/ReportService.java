@@ -37,10 +37,12 @@
  */
 package io.cryostat.net.reports;
 
-import java.nio.file.Path;
+import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import io.cryostat.net.ConnectionDescriptor;
+import io.cryostat.recordings.RecordingTimeRange;
 
 public class ReportService {
 
@@ -53,10 +55,19 @@ public class ReportService {
         this.archivedCache = archivedCache;
     }
 
-    public Future<Path> get(String recordingName) {
+    /**
+     * @return the report of the archived recording, which must be closed once it has been served so
+     *     that it may be evicted
+     */
+    public Future<ArchivedReport> get(String recordingName) {
         return archivedCache.get(recordingName);
     }
 
+    public Future<Void> getRuleResults(
+            String recordingName, Set<String> ruleIds, Consumer<String> onResult) {
+        return archivedCache.getRuleResults(recordingName, ruleIds, onResult);
+    }
+
     public boolean delete(String recordingName) {
         return archivedCache.delete(recordingName);
     }
@@ -65,6 +76,23 @@ public class ReportService {
         return activeCache.get(connectionDescriptor, recordingName);
     }
 
+    public Future<String> get(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range) {
+        return activeCache.get(connectionDescriptor, recordingName, range);
+    }
+
+    public Future<Void> getRuleResults(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range,
+            Set<String> ruleIds,
+            Consumer<String> onResult) {
+        return activeCache.getRuleResults(
+                connectionDescriptor, recordingName, range, ruleIds, onResult);
+    }
+
     public boolean delete(ConnectionDescriptor connectionDescriptor, String recordingName) {
         return activeCache.delete(connectionDescriptor, recordingName);
     }
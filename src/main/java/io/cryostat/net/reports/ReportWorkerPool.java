@@ -0,0 +1,367 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.reports;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.inject.Provider;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.net.reports.SubprocessReportGenerator.ExitStatus;
+import io.cryostat.net.reports.SubprocessReportGenerator.SubprocessReportGenerationException;
+import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.util.JavaProcess;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Pool of long-lived {@link SubprocessReportGenerator} worker processes. Each worker is forked
+ * once, connects back to this process over a loopback socket and then generates reports for any
+ * number of jobs, so that report generation does not pay for JVM startup, initialization and JIT
+ * warmup every time. Jobs still run in a separate process with its own small heap and raised OOM
+ * score, so a report which exhausts the worker's memory only costs that worker. Workers which fail,
+ * time out or have served the configured number of jobs are discarded and replaced on demand.
+ *
+ * <p>The protocol is line based. The worker first sends the token it was given in its environment,
+ * which ensures that the connection came from the forked process. For each job this process then
+ * sends the recording path, the destination file path and the kind of report on one line each, and
+ * the worker answers with the {@link ExitStatus} code of the job. The kind of report is either
+ * {@link #HTML_JOB} or {@link #RULES_JOB} followed by the space-separated IDs of the rules to
+ * evaluate. Rules jobs have no destination file, and the worker instead sends each rule's result as
+ * a line of JSON as soon as it is evaluated, ahead of the exit status.
+ */
+class ReportWorkerPool {
+
+    static final String WORKER_TOKEN_ENV = "CRYOSTAT_REPORT_WORKER_TOKEN";
+    static final String HTML_JOB = "html";
+    static final String RULES_JOB = "rules";
+
+    private final Provider<JavaProcess.Builder> javaProcessBuilderProvider;
+    private final int maxHeapMegabytes;
+    private final int maxJobsPerWorker;
+    private final ExecutorService executor;
+    private final Logger logger;
+    private final BlockingDeque<Worker> idleWorkers = new LinkedBlockingDeque<>();
+    private final SecureRandom random = new SecureRandom();
+
+    ReportWorkerPool(
+            Provider<JavaProcess.Builder> javaProcessBuilderProvider,
+            int maxHeapMegabytes,
+            int maxJobsPerWorker,
+            ExecutorService executor,
+            Logger logger) {
+        this.javaProcessBuilderProvider = javaProcessBuilderProvider;
+        this.maxHeapMegabytes = maxHeapMegabytes;
+        this.maxJobsPerWorker = maxJobsPerWorker;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    /**
+     * Generate the report of the recording at the given path into saveFile, which must already
+     * contain the serialized report transformers. The number of reports generated concurrently is
+     * bounded by the size of the executor this pool was created with.
+     */
+    CompletableFuture<Path> submit(Path recording, Path saveFile, long timeoutSeconds) {
+        return submit(
+                        recording,
+                        saveFile.toAbsolutePath().toString(),
+                        HTML_JOB,
+                        null,
+                        timeoutSeconds)
+                .thenApply(v -> saveFile);
+    }
+
+    /**
+     * Evaluate the given rules, or all rules if none are given, against the recording at the given
+     * path, passing each result to onResult as a line of JSON as soon as the worker has evaluated
+     * it.
+     */
+    CompletableFuture<Void> submitRules(
+            Path recording, Set<String> ruleIds, Consumer<String> onResult, long timeoutSeconds) {
+        StringBuilder job = new StringBuilder(RULES_JOB);
+        ruleIds.forEach(id -> job.append(' ').append(id));
+        return submit(recording, "", job.toString(), onResult, timeoutSeconds);
+    }
+
+    private CompletableFuture<Void> submit(
+            Path recording,
+            String saveFile,
+            String job,
+            Consumer<String> onResult,
+            long timeoutSeconds) {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    ExitStatus status;
+                    try {
+                        status = run(recording, saveFile, job, onResult, timeoutSeconds);
+                    } catch (InterruptedException e) {
+                        logger.error(e);
+                        Thread.currentThread().interrupt();
+                        status = ExitStatus.TERMINATED;
+                    } catch (IOException e) {
+                        logger.error(e);
+                        throw new CompletionException(e);
+                    }
+                    switch (status) {
+                        case OK:
+                            return null;
+                        case NO_SUCH_RECORDING:
+                            throw new CompletionException(
+                                    new RecordingNotFoundException(
+                                            "archives", recording.toString()));
+                        default:
+                            throw new CompletionException(
+                                    new SubprocessReportGenerationException(status));
+                    }
+                },
+                executor);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+        Worker worker;
+        while ((worker = idleWorkers.poll()) != null) {
+            worker.close();
+        }
+    }
+
+    private ExitStatus run(
+            Path recording,
+            String saveFile,
+            String job,
+            Consumer<String> onResult,
+            long timeoutSeconds)
+            throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds - 1);
+        Worker worker = idleWorkers.poll();
+        while (worker != null && !worker.isAlive()) {
+            worker.close();
+            worker = idleWorkers.poll();
+        }
+        if (worker == null) {
+            worker = spawn(deadline);
+            if (worker == null) {
+                return ExitStatus.TIMED_OUT;
+            }
+        }
+        ExitStatus status = worker.run(recording, saveFile, job, onResult, deadline);
+        if (worker.isReusable(status)) {
+            idleWorkers.offerFirst(worker);
+        } else {
+            worker.close();
+        }
+        return status;
+    }
+
+    private Worker spawn(long deadline) throws IOException, InterruptedException {
+        byte[] tokenBytes = new byte[16];
+        random.nextBytes(tokenBytes);
+        String token = Hex.encodeHexString(tokenBytes);
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Process proc =
+                    javaProcessBuilderProvider
+                            .get()
+                            .klazz(SubprocessReportGenerator.class)
+                            .env(Map.of(WORKER_TOKEN_ENV, token))
+                            .jvmArgs(createJvmArgs(maxHeapMegabytes))
+                            .processArgs(List.of(String.valueOf(server.getLocalPort())))
+                            .exec();
+            try {
+                while (true) {
+                    long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMs <= 0 || !proc.isAlive()) {
+                        proc.destroyForcibly();
+                        return null;
+                    }
+                    server.setSoTimeout((int) Math.min(remainingMs, Integer.MAX_VALUE));
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    } catch (SocketTimeoutException ste) {
+                        continue;
+                    }
+                    Worker worker = new Worker(proc, socket);
+                    socket.setSoTimeout((int) Math.max(1, remainingMs));
+                    if (Objects.equals(token, worker.in.readLine())) {
+                        return worker;
+                    }
+                    logger.warn("Rejected report worker connection from {}", socket);
+                    socket.close();
+                }
+            } catch (IOException e) {
+                proc.destroyForcibly();
+                throw e;
+            }
+        }
+    }
+
+    static List<String> createJvmArgs(int maxHeapMegabytes) {
+        List<String> args = new ArrayList<>();
+        if (maxHeapMegabytes > 0) {
+            args.add(String.format("-Xms%dM", maxHeapMegabytes));
+            args.add(String.format("-Xmx%dM", maxHeapMegabytes));
+        }
+        args.add("-XX:+ExitOnOutOfMemoryError");
+        // use Serial GC since we have a small heap and likely little garbage to clean,
+        // and low GC overhead is more important here than minimizing pause time since the
+        // result will end up cached for subsequent user accesses so long as the process
+        // succeeds in the end
+        args.add("-XX:+UseSerialGC");
+        return args;
+    }
+
+    private class Worker {
+        private final Process proc;
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+        private int jobs;
+
+        private Worker(Process proc, Socket socket) throws IOException {
+            this.proc = proc;
+            this.socket = socket;
+            this.in =
+                    new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out =
+                    new BufferedWriter(
+                            new OutputStreamWriter(
+                                    socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        private boolean isAlive() {
+            return proc.isAlive() && !socket.isClosed();
+        }
+
+        private boolean isReusable(ExitStatus status) {
+            // a job which failed for reasons specific to its recording leaves the worker usable,
+            // but after anything else the worker's state is unknown
+            return jobs < maxJobsPerWorker
+                    && isAlive()
+                    && (status == ExitStatus.OK
+                            || status == ExitStatus.NO_SUCH_RECORDING
+                            || status == ExitStatus.IO_EXCEPTION);
+        }
+
+        private ExitStatus run(
+                Path recording,
+                String saveFile,
+                String job,
+                Consumer<String> onResult,
+                long deadline)
+                throws InterruptedException {
+            jobs++;
+            try {
+                out.write(recording.toAbsolutePath().toString());
+                out.newLine();
+                out.write(saveFile);
+                out.newLine();
+                out.write(job);
+                out.newLine();
+                out.flush();
+                String reply;
+                while ((reply = readLine(deadline)) != null) {
+                    if (!reply.startsWith("{")) {
+                        return ExitStatus.byExitCode(Integer.parseInt(reply.trim()));
+                    }
+                    if (onResult == null) {
+                        throw new IOException("Unexpected rule result from report worker");
+                    }
+                    try {
+                        onResult.accept(reply);
+                    } catch (RuntimeException e) {
+                        // the consumer's failure does not affect the job, whose remaining results
+                        // must still be read off the connection
+                        logger.warn(e);
+                    }
+                }
+            } catch (SocketTimeoutException ste) {
+                return ExitStatus.TIMED_OUT;
+            } catch (IOException | NumberFormatException e) {
+                logger.warn(e);
+            }
+            // the worker went away mid-job, most likely by exiting on OutOfMemoryError
+            if (proc.waitFor(1, TimeUnit.SECONDS)) {
+                return ExitStatus.byExitCode(proc.exitValue());
+            }
+            return ExitStatus.OTHER;
+        }
+
+        private String readLine(long deadline) throws IOException {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                throw new SocketTimeoutException();
+            }
+            socket.setSoTimeout((int) Math.min(remainingMs, Integer.MAX_VALUE));
+            return in.readLine();
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn(e);
+            }
+            proc.destroyForcibly();
+        }
+    }
+}
@@ -37,22 +37,38 @@
  */
 package io.cryostat.net.reports;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import io.cryostat.configuration.Variables;
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.reports.ReportTransformer;
+import io.cryostat.core.sys.Clock;
 import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.TargetConnectionManager;
+import io.cryostat.net.web.WebModule;
 import io.cryostat.net.web.http.HttpModule;
+import io.cryostat.recordings.ArchiveCatalog;
+import io.cryostat.recordings.ArchiveCompression;
 import io.cryostat.recordings.RecordingArchiveHelper;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
+import io.cryostat.util.DaemonExecutors;
 import io.cryostat.util.JavaProcess;
 
+import com.google.gson.Gson;
 import dagger.Module;
 import dagger.Provides;
 import io.vertx.core.Vertx;
@@ -80,12 +96,14 @@ public abstract class ReportsModule {
             Provider<ReportGeneratorService> reportGeneratorServiceProvider,
             FileSystem fs,
             TargetConnectionManager targetConnectionManager,
+            ReportScheduler scheduler,
             @Named(REPORT_GENERATION_TIMEOUT_SECONDS) long generationTimeoutSeconds,
             Logger logger) {
         return new ActiveRecordingReportCache(
                 reportGeneratorServiceProvider,
                 fs,
                 targetConnectionManager,
+                scheduler,
                 generationTimeoutSeconds,
                 logger);
     }
@@ -96,16 +114,93 @@ public abstract class ReportsModule {
             FileSystem fs,
             Provider<ReportGeneratorService> reportGeneratorServiceProvider,
             RecordingArchiveHelper recordingArchiveHelper,
+            ArchiveCatalog archiveCatalog,
+            ArchivedReportStore reportStore,
+            ReportScheduler scheduler,
             @Named(REPORT_GENERATION_TIMEOUT_SECONDS) long generationTimeoutSeconds,
             Logger logger) {
         return new ArchivedRecordingReportCache(
                 fs,
                 reportGeneratorServiceProvider,
                 recordingArchiveHelper,
+                archiveCatalog,
+                reportStore,
+                scheduler,
                 generationTimeoutSeconds,
                 logger);
     }
 
+    @Provides
+    @Singleton
+    static ArchivedReportStore provideArchivedReportStore(
+            Environment env,
+            @Named(WebModule.WEBSERVER_TEMP_DIR_PATH) Path webServerTempPath,
+            Gson gson,
+            Logger logger) {
+        // without a configured cache path, reports are kept in the web server's temporary
+        // directory, and so do not survive restarts
+        Path directory =
+                env.hasEnv(Variables.REPORT_CACHE_PATH)
+                        ? Paths.get(env.getEnv(Variables.REPORT_CACHE_PATH))
+                        : webServerTempPath.resolve("reports");
+        ArchivedReportStore store =
+                new ArchivedReportStore(
+                        directory,
+                        Long.parseLong(
+                                env.getEnv(
+                                        Variables.REPORT_CACHE_MAX_BYTES,
+                                        String.valueOf(256 * 1024 * 1024))),
+                        ArchiveCompression.fromName(
+                                env.getEnv(Variables.REPORT_CACHE_COMPRESSION, "none")),
+                        gson,
+                        logger);
+        try {
+            store.start();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(store::persist));
+        return store;
+    }
+
+    @Provides
+    @Singleton
+    static ReportScheduler provideReportScheduler(Environment env, Clock clock, Logger logger) {
+        int concurrency =
+                Integer.parseInt(
+                        env.getEnv(
+                                Variables.REPORT_CONCURRENCY,
+                                env.getEnv(Variables.REPORT_WORKERS, "1")));
+        long maxHeapBytes =
+                Long.parseLong(env.getEnv(Variables.SUBPROCESS_MAX_HEAP_ENV, "0")) * 1024 * 1024;
+        ExecutorService executor = DaemonExecutors.newFixedThreadPool(concurrency);
+        long memoryBudgetBytes =
+                env.hasEnv(Variables.REPORT_MEMORY_BUDGET)
+                        ? Long.parseLong(env.getEnv(Variables.REPORT_MEMORY_BUDGET)) * 1024 * 1024
+                        : estimateReportMemoryBudget();
+        ReportScheduler scheduler =
+                new ReportScheduler(executor, concurrency, maxHeapBytes, memoryBudgetBytes, clock);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(scheduler, new ObjectName("io.cryostat:type=ReportScheduler"));
+        } catch (JMException e) {
+            logger.warn(e);
+        }
+        return scheduler;
+    }
+
+    // the physical memory size reported by the JVM is the container's memory limit when running in
+    // a container. Whatever is not reserved for Cryostat's own heap is left to report generation
+    static long estimateReportMemoryBudget() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (!(os instanceof com.sun.management.OperatingSystemMXBean)) {
+            return 0;
+        }
+        long totalBytes =
+                ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+        return Math.max(0, totalBytes - Runtime.getRuntime().maxMemory());
+    }
+
     @Provides
     static JavaProcess.Builder provideJavaProcessBuilder() {
         return new JavaProcess.Builder();
@@ -125,6 +220,7 @@ public abstract class ReportsModule {
     @Provides
     static RemoteReportGenerator provideRemoteReportGenerator(
             TargetConnectionManager targetConnectionManager,
+            SegmentedRecordingTransfer recordingTransfer,
             FileSystem fs,
             Vertx vertx,
             WebClient http,
@@ -132,24 +228,64 @@ public abstract class ReportsModule {
             @Named(REPORT_GENERATION_TIMEOUT_SECONDS) long generationTimeoutSeconds,
             Logger logger) {
         return new RemoteReportGenerator(
-                targetConnectionManager, fs, vertx, http, env, generationTimeoutSeconds, logger);
+                targetConnectionManager,
+                recordingTransfer,
+                fs,
+                vertx,
+                http,
+                env,
+                generationTimeoutSeconds,
+                logger);
+    }
+
+    @Provides
+    @Singleton
+    static ReportWorkerPool provideReportWorkerPool(
+            Environment env, Provider<JavaProcess.Builder> javaProcessBuilder, Logger logger) {
+        int workers = Integer.parseInt(env.getEnv(Variables.REPORT_WORKERS, "1"));
+        ExecutorService executor =
+                Executors.newFixedThreadPool(workers, DaemonExecutors.threadFactory());
+        ReportWorkerPool pool =
+                new ReportWorkerPool(
+                        javaProcessBuilder,
+                        Integer.parseInt(env.getEnv(Variables.SUBPROCESS_MAX_HEAP_ENV, "0")),
+                        Integer.parseInt(env.getEnv(Variables.REPORT_WORKER_MAX_JOBS, "100")),
+                        executor,
+                        logger);
+        Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdown));
+        return pool;
+    }
+
+    @Provides
+    @Singleton
+    static RuleResultCache provideRuleResultCache(Environment env, FileSystem fs, Logger logger) {
+        return new RuleResultCache(
+                fs,
+                RuleResultCache.discoverRuleVersions(),
+                Long.parseLong(
+                        env.getEnv(
+                                Variables.RULE_RESULT_CACHE_MAX_BYTES,
+                                String.valueOf(16 * 1024 * 1024))),
+                logger);
     }
 
     @Provides
     static SubprocessReportGenerator provideSubprocessReportGenerator(
-            Environment env,
             FileSystem fs,
             TargetConnectionManager targetConnectionManager,
+            SegmentedRecordingTransfer recordingTransfer,
             Set<ReportTransformer> reportTransformers,
-            Provider<JavaProcess.Builder> javaProcessBuilder,
+            ReportWorkerPool workerPool,
+            RuleResultCache ruleResultCache,
             @Named(REPORT_GENERATION_TIMEOUT_SECONDS) long generationTimeoutSeconds,
             Logger logger) {
         return new SubprocessReportGenerator(
-                env,
                 fs,
                 targetConnectionManager,
+                recordingTransfer,
                 reportTransformers,
-                javaProcessBuilder,
+                workerPool,
+                ruleResultCache,
                 generationTimeoutSeconds,
                 logger);
     }
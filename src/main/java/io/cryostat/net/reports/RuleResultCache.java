@@ -0,0 +1,178 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.reports;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.FileSystem;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.JsonParser;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Caches individual rule results, as produced by {@link ReportGeneratorService#execRules(Path, Set,
+ * Consumer)}, keyed on the SHA-256 hash of the recording's contents along with the rule's ID and
+ * version. Only the rules without a cached result for a recording are passed on for evaluation, so
+ * repeated requests for the same recording, whether for the same or a different selection of rules,
+ * only pay for the rules which have not been evaluated against it before. Since the key is derived
+ * from the recording's contents rather than its name, an unchanged recording copied from a target,
+ * or the same recording archived under several names, also shares its results.
+ */
+class RuleResultCache {
+
+    private final FileSystem fs;
+    private final Map<String, String> ruleVersions;
+    private final Cache<String, String> cache;
+    private final Logger logger;
+
+    /**
+     * @param ruleVersions the IDs of all known rules, in the order their results are written,
+     *     mapped to an identifier for the version of each rule's implementation
+     * @param maxBytes the maximum total length of cached results
+     */
+    RuleResultCache(FileSystem fs, Map<String, String> ruleVersions, long maxBytes, Logger logger) {
+        this.fs = fs;
+        this.ruleVersions = ruleVersions;
+        this.cache =
+                Caffeine.newBuilder()
+                        .maximumWeight(maxBytes)
+                        .<String, String>weigher((k, v) -> k.length() + v.length())
+                        .build();
+        this.logger = logger;
+    }
+
+    /**
+     * Pass the results of the given rules, or all rules if none are given, against the recording to
+     * onResult as lines of JSON. Cached results are passed on immediately and the remaining rules
+     * are evaluated by the given evaluator, whose results are passed on and added to the cache as
+     * they arrive.
+     */
+    CompletableFuture<Void> get(
+            Path recording, Set<String> ruleIds, Consumer<String> onResult, RuleEvaluator evaluator)
+            throws Exception {
+        String hash;
+        try (InputStream stream = fs.newInputStream(recording)) {
+            hash = DigestUtils.sha256Hex(stream);
+        }
+
+        List<String> hits = new ArrayList<>();
+        Set<String> misses = new HashSet<>();
+        for (String ruleId : ruleVersions.keySet()) {
+            if (!ruleIds.isEmpty() && !ruleIds.contains(ruleId)) {
+                continue;
+            }
+            String result = cache.getIfPresent(key(hash, ruleId));
+            if (result != null) {
+                hits.add(result);
+            } else {
+                misses.add(ruleId);
+            }
+        }
+        logger.trace(
+                "Rule result cache hits {} misses {} for {}",
+                hits.size(),
+                misses.size(),
+                recording);
+
+        hits.forEach(onResult);
+        if (misses.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return evaluator.evaluate(
+                recording,
+                misses,
+                result -> {
+                    try {
+                        String ruleId =
+                                JsonParser.parseString(result)
+                                        .getAsJsonObject()
+                                        .get("id")
+                                        .getAsString();
+                        cache.put(key(hash, ruleId), result);
+                    } catch (RuntimeException e) {
+                        logger.warn(e);
+                    }
+                    onResult.accept(result);
+                });
+    }
+
+    private String key(String hash, String ruleId) {
+        return String.format("%s/%s/%s", hash, ruleId, ruleVersions.get(ruleId));
+    }
+
+    /**
+     * Map the IDs of the rules available to the report generator to their versions. Rules do not
+     * carry versions of their own, so a rule's version is its implementation class along with the
+     * version of the library which provides it.
+     */
+    static Map<String, String> discoverRuleVersions() {
+        Map<String, String> versions = new TreeMap<>();
+        for (IRule rule : RuleRegistry.getRules()) {
+            Class<?> klazz = rule.getClass();
+            versions.put(
+                    rule.getId(),
+                    String.format(
+                            "%s:%s",
+                            klazz.getName(),
+                            Objects.toString(
+                                    klazz.getPackage().getImplementationVersion(), "unknown")));
+        }
+        return versions;
+    }
+
+    interface RuleEvaluator {
+        CompletableFuture<Void> evaluate(
+                Path recording, Set<String> ruleIds, Consumer<String> onResult) throws Exception;
+    }
+}
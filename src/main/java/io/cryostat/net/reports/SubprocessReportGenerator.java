@@ -37,63 +37,80 @@
  */
 package io.cryostat.net.reports;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.inject.Named;
-import javax.inject.Provider;
 
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.rules.IResult;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.ResultToolkit;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+import org.openjdk.jmc.flightrecorder.rules.TypedResult;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.openjdk.jmc.rjmx.ConnectionException;
 
-import io.cryostat.configuration.Variables;
 import io.cryostat.core.CryostatCore;
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.reports.ReportGenerator;
 import io.cryostat.core.reports.ReportTransformer;
-import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.TargetConnectionManager;
-import io.cryostat.recordings.RecordingNotFoundException;
-import io.cryostat.util.JavaProcess;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
+
+import com.google.gson.Gson;
 
 public class SubprocessReportGenerator extends AbstractReportGeneratorService {
 
-    private final Environment env;
     private final Set<ReportTransformer> reportTransformers;
-    private final Provider<JavaProcess.Builder> javaProcessBuilderProvider;
+    private final ReportWorkerPool workerPool;
+    private final RuleResultCache ruleResultCache;
     private final long generationTimeoutSeconds;
 
     SubprocessReportGenerator(
-            Environment env,
             FileSystem fs,
             TargetConnectionManager targetConnectionManager,
+            SegmentedRecordingTransfer recordingTransfer,
             Set<ReportTransformer> reportTransformers,
-            Provider<JavaProcess.Builder> javaProcessBuilderProvider,
+            ReportWorkerPool workerPool,
+            RuleResultCache ruleResultCache,
             @Named(ReportsModule.REPORT_GENERATION_TIMEOUT_SECONDS) long generationTimeoutSeconds,
             Logger logger) {
-        super(targetConnectionManager, fs, logger);
-        this.env = env;
+        super(targetConnectionManager, recordingTransfer, fs, logger);
         this.reportTransformers = reportTransformers;
-        this.javaProcessBuilderProvider = javaProcessBuilderProvider;
+        this.workerPool = workerPool;
+        this.ruleResultCache = ruleResultCache;
         this.generationTimeoutSeconds = generationTimeoutSeconds;
     }
 
     @Override
-    public synchronized CompletableFuture<Path> exec(Path recording, Path saveFile)
+    public CompletableFuture<Path> exec(Path recording, Path saveFile)
             throws NoSuchMethodException, SecurityException, IllegalAccessException,
                     IllegalArgumentException, InvocationTargetException, IOException,
                     InterruptedException, ReportGenerationException {
@@ -110,70 +127,20 @@ public class SubprocessReportGenerator extends AbstractReportGeneratorService {
                 StandardOpenOption.TRUNCATE_EXISTING,
                 StandardOpenOption.DSYNC,
                 StandardOpenOption.WRITE);
-        JavaProcess.Builder procBuilder =
-                javaProcessBuilderProvider
-                        .get()
-                        .klazz(SubprocessReportGenerator.class)
-                        .jvmArgs(
-                                createJvmArgs(
-                                        Integer.parseInt(
-                                                env.getEnv(
-                                                        Variables.SUBPROCESS_MAX_HEAP_ENV, "0"))))
-                        .processArgs(createProcessArgs(recording, saveFile));
-        return CompletableFuture.supplyAsync(
-                () -> {
-                    Process proc = null;
-                    try {
-                        proc = procBuilder.exec();
-                        proc.waitFor(generationTimeoutSeconds - 1, TimeUnit.SECONDS);
-                        ExitStatus status =
-                                proc.isAlive()
-                                        ? ExitStatus.TIMED_OUT
-                                        : ExitStatus.byExitCode(proc.exitValue());
-                        switch (status) {
-                            case OK:
-                                return saveFile;
-                            case NO_SUCH_RECORDING:
-                                throw new RecordingNotFoundException(
-                                        "archives", recording.toString());
-                            default:
-                                throw new SubprocessReportGenerationException(status);
-                        }
-                    } catch (InterruptedException e) {
-                        logger.error(e);
-                        throw new CompletionException(
-                                new SubprocessReportGenerationException(ExitStatus.TERMINATED));
-                    } catch (IOException
-                            | ReportGenerationException
-                            | RecordingNotFoundException
-                            | IllegalThreadStateException e) {
-                        logger.error(e);
-                        throw new CompletionException(e);
-                    } finally {
-                        if (proc != null) {
-                            proc.destroyForcibly();
-                        }
-                    }
-                });
+        return workerPool.submit(recording, saveFile, generationTimeoutSeconds);
     }
 
-    private List<String> createJvmArgs(int maxHeapMegabytes) throws IOException {
-        List<String> args = new ArrayList<>();
-        if (maxHeapMegabytes > 0) {
-            args.add(String.format("-Xms%dM", maxHeapMegabytes));
-            args.add(String.format("-Xmx%dM", maxHeapMegabytes));
+    @Override
+    public CompletableFuture<Void> execRules(
+            Path recording, Set<String> ruleIds, Consumer<String> onResult) throws Exception {
+        if (recording == null) {
+            throw new IllegalArgumentException("Recording may not be null");
         }
-        args.add("-XX:+ExitOnOutOfMemoryError");
-        // use Serial GC since we have a small heap and likely little garbage to clean,
-        // and low GC overhead is more important here than minimizing pause time since the
-        // result will end up cached for subsequent user accesses so long as the process
-        // succeeds in the end
-        args.add("-XX:+UseSerialGC");
-        return args;
-    }
-
-    private List<String> createProcessArgs(Path recording, Path saveFile) {
-        return List.of(recording.toAbsolutePath().toString(), saveFile.toAbsolutePath().toString());
+        return ruleResultCache.get(
+                recording,
+                ruleIds,
+                onResult,
+                (r, ids, sink) -> workerPool.submitRules(r, ids, sink, generationTimeoutSeconds));
     }
 
     private String serializeTransformersSet() {
@@ -237,17 +204,54 @@ public class SubprocessReportGenerator extends AbstractReportGeneratorService {
             System.exit(ExitStatus.OTHER.code);
         }
 
-        if (args.length != 2) {
+        if (args.length != 1) {
             throw new IllegalArgumentException(Arrays.asList(args).toString());
         }
-        var recording = Paths.get(args[0]);
-        Set<ReportTransformer> transformers = Collections.emptySet();
-        var saveFile = Paths.get(args[1]);
+        int port = Integer.parseInt(args[0]);
+        String token = System.getenv(ReportWorkerPool.WORKER_TOKEN_ENV);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in =
+                        new BufferedReader(
+                                new InputStreamReader(
+                                        socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out =
+                        new PrintWriter(
+                                new OutputStreamWriter(
+                                        socket.getOutputStream(), StandardCharsets.UTF_8),
+                                true)) {
+            out.println(token);
+            String recording;
+            while ((recording = in.readLine()) != null) {
+                String saveFile = in.readLine();
+                String job = in.readLine();
+                if (saveFile == null || job == null) {
+                    break;
+                }
+                out.println(
+                        runJob(fs, Paths.get(recording), Paths.get(saveFile), job, out::println)
+                                .code);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(ExitStatus.IO_EXCEPTION.code);
+        }
+        // the parent closed the connection, either on shutdown or to recycle this worker
+        System.exit(ExitStatus.OK.code);
+    }
+
+    static ExitStatus runJob(
+            FileSystem fs, Path recording, Path saveFile, String job, Consumer<String> results) {
+        List<String> jobArgs = Arrays.asList(job.split(" "));
+        if (ReportWorkerPool.RULES_JOB.equals(jobArgs.get(0))) {
+            return runRulesJob(
+                    recording, new HashSet<>(jobArgs.subList(1, jobArgs.size())), results);
+        }
+        Set<ReportTransformer> transformers;
         try {
             transformers = deserializeTransformers(fs.readString(saveFile));
         } catch (Exception e) {
             Logger.INSTANCE.error(e);
-            System.exit(ExitStatus.OTHER.code);
+            return ExitStatus.OTHER;
         }
 
         try {
@@ -263,16 +267,68 @@ public class SubprocessReportGenerator extends AbstractReportGeneratorService {
                     StandardOpenOption.TRUNCATE_EXISTING,
                     StandardOpenOption.DSYNC,
                     StandardOpenOption.WRITE);
-            System.exit(ExitStatus.OK.code);
+            return ExitStatus.OK;
+        } catch (SubprocessReportGenerationException e) {
+            return e.getStatus();
         } catch (ConnectionException e) {
             e.printStackTrace();
-            System.exit(ExitStatus.TARGET_CONNECTION_FAILURE.code);
+            return ExitStatus.TARGET_CONNECTION_FAILURE;
         } catch (IOException e) {
             e.printStackTrace();
-            System.exit(ExitStatus.IO_EXCEPTION.code);
+            return ExitStatus.IO_EXCEPTION;
         } catch (Exception e) {
             e.printStackTrace();
-            System.exit(ExitStatus.OTHER.code);
+            return ExitStatus.OTHER;
+        }
+    }
+
+    static ExitStatus runRulesJob(Path recording, Set<String> ruleIds, Consumer<String> results) {
+        try {
+            Logger.INSTANCE.info(
+                    SubprocessReportGenerator.class.getName() + " evaluating rules {}", ruleIds);
+            evaluateRulesFromFile(recording, ruleIds, results);
+            return ExitStatus.OK;
+        } catch (SubprocessReportGenerationException e) {
+            return e.getStatus();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ExitStatus.IO_EXCEPTION;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ExitStatus.OTHER;
+        }
+    }
+
+    /**
+     * Evaluate the rules with the given IDs, or all rules if none are given, and pass each result
+     * on as a line of JSON as soon as it is available, so that neither the recording's full set of
+     * results nor a rendered document is held in memory.
+     */
+    static void evaluateRulesFromFile(Path recording, Set<String> ruleIds, Consumer<String> results)
+            throws Exception {
+        var fs = new FileSystem();
+        if (!fs.isRegularFile(recording)) {
+            throw new SubprocessReportGenerationException(ExitStatus.NO_SUCH_RECORDING);
+        }
+        IItemCollection items;
+        try (InputStream stream = fs.newInputStream(recording)) {
+            items = JfrLoaderToolkit.loadEvents(stream);
+        }
+        List<IRule> rules =
+                RuleRegistry.getRules().stream()
+                        .filter(rule -> ruleIds.isEmpty() || ruleIds.contains(rule.getId()))
+                        .collect(Collectors.toList());
+        Map<IRule, Future<IResult>> evaluations =
+                RulesToolkit.evaluateParallel(
+                        rules,
+                        items,
+                        IPreferenceValueProvider.DEFAULT_VALUES,
+                        Runtime.getRuntime().availableProcessors());
+        Gson gson = new Gson();
+        for (Map.Entry<IRule, Future<IResult>> evaluation : evaluations.entrySet()) {
+            // compact JSON never contains a line break, so each result is exactly one line
+            results.accept(
+                    gson.toJson(new RuleResult(evaluation.getKey(), evaluation.getValue().get())));
         }
     }
 
@@ -290,6 +346,26 @@ public class SubprocessReportGenerator extends AbstractReportGeneratorService {
         }
     }
 
+    static class RuleResult {
+        final String id;
+        final String name;
+        final String topic;
+        final double score;
+        final String summary;
+
+        RuleResult(IRule rule, IResult result) {
+            this.id = rule.getId();
+            this.name = rule.getName();
+            this.topic = rule.getTopic();
+            IQuantity resultScore = result.getResult(TypedResult.SCORE);
+            this.score =
+                    resultScore != null
+                            ? resultScore.doubleValue()
+                            : result.getSeverity().getLimit();
+            this.summary = ResultToolkit.populateMessage(result, result.getSummary(), false);
+        }
+    }
+
     public enum ExitStatus {
         OK(0, ""),
         TARGET_CONNECTION_FAILURE(1, "Connection to target JVM failed."),
@@ -41,7 +41,9 @@ import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
 import java.rmi.ConnectIOException;
 import java.util.Base64;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -54,8 +56,11 @@ import io.cryostat.core.net.Credentials;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.OpenShiftAuthManager.PermissionDeniedException;
+import io.cryostat.net.TargetUnreachableException;
 
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.ext.web.RoutingContext;
@@ -69,6 +74,9 @@ public abstract class AbstractAuthenticatedRequestHandler implements RequestHand
     public static final String JMX_AUTHENTICATE_HEADER = "X-JMX-Authenticate";
     public static final String JMX_AUTHORIZATION_HEADER = "X-JMX-Authorization";
 
+    private static final String REQUEST_CONTEXT_KEY =
+            AbstractAuthenticatedRequestHandler.class.getName() + ".requestContext";
+
     protected final AuthManager auth;
 
     protected AbstractAuthenticatedRequestHandler(AuthManager auth) {
@@ -85,6 +93,7 @@ public abstract class AbstractAuthenticatedRequestHandler implements RequestHand
                 // expected to go into catch clause below
                 throw new HttpStatusException(401, "HTTP Authorization Failure");
             }
+            ctx.put(REQUEST_CONTEXT_KEY, Vertx.currentContext());
             // set Content-Type: text/plain by default. Handler implementations may replace this.
             ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.PLAINTEXT.mime());
             handleAuthenticated(ctx);
@@ -107,6 +116,56 @@ public abstract class AbstractAuthenticatedRequestHandler implements RequestHand
         }
     }
 
+    /**
+     * Fail the request with an error response for an exception which occurred asynchronously, after
+     * {@link #handleAuthenticated(RoutingContext)} has already returned. The exception is mapped to
+     * a response status in the same way as exceptions thrown directly from {@link
+     * #handleAuthenticated(RoutingContext)}. This may be called from any thread, the request is
+     * failed on its own Vert.x context.
+     */
+    protected void failAsync(RoutingContext ctx, Throwable t) {
+        requestContextExecutor(ctx).execute(() -> fail(ctx, t));
+    }
+
+    /**
+     * @return an Executor which runs tasks on the Vert.x context handling the request. Completions
+     *     of asynchronous tasks happen on whichever thread completed the task, so they must be
+     *     moved onto this executor before using the {@link RoutingContext} or its response, which
+     *     are not thread-safe.
+     */
+    protected Executor requestContextExecutor(RoutingContext ctx) {
+        Context captured = ctx.get(REQUEST_CONTEXT_KEY);
+        // not captured if handleAuthenticated was invoked directly, in which case this must be
+        // called on the request's context
+        Context context = captured != null ? captured : ctx.vertx().getOrCreateContext();
+        return task -> {
+            if (context == Vertx.currentContext()) {
+                task.run();
+            } else {
+                context.runOnContext(v -> task.run());
+            }
+        };
+    }
+
+    private void fail(RoutingContext ctx, Throwable t) {
+        Throwable cause = t;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        try {
+            if (cause instanceof HttpStatusException) {
+                throw (HttpStatusException) cause;
+            }
+            if (cause instanceof ConnectionException) {
+                handleConnectionException(ctx, (ConnectionException) cause);
+            }
+            throw new HttpStatusException(500, cause.getMessage(), cause);
+        } catch (HttpStatusException e) {
+            ctx.fail(e);
+        }
+    }
+
     protected Future<Boolean> validateRequestAuthorization(HttpServerRequest req) throws Exception {
         return auth.validateHttpHeader(
                 () -> req.getHeader(HttpHeaders.AUTHORIZATION), resourceActions());
@@ -163,6 +222,14 @@ public abstract class AbstractAuthenticatedRequestHandler implements RequestHand
     }
 
     private void handleConnectionException(RoutingContext ctx, ConnectionException e) {
+        if (e instanceof TargetUnreachableException) {
+            ctx.response()
+                    .putHeader(
+                            HttpHeaders.RETRY_AFTER,
+                            String.valueOf(
+                                    ((TargetUnreachableException) e).getRetryAfterSeconds()));
+            throw new HttpStatusException(503, "Target Unreachable", e);
+        }
         Throwable cause = e.getCause();
         if (cause instanceof SecurityException || cause instanceof SaslException) {
             ctx.response().putHeader(JMX_AUTHENTICATE_HEADER, "Basic");
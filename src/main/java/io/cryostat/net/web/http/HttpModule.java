@@ -59,10 +59,17 @@ import dagger.Provides;
 public abstract class HttpModule {
 
     public static final String HTTP_REQUEST_TIMEOUT_SECONDS = "HTTP_REQUEST_TIMEOUT_SECONDS";
+    public static final String MAX_UPLOAD_SIZE_BYTES = "MAX_UPLOAD_SIZE_BYTES";
 
     @Provides
     @Named(HTTP_REQUEST_TIMEOUT_SECONDS)
     static long provideReportGenerationTimeoutSeconds(Environment env) {
         return Long.parseLong(env.getEnv(Variables.HTTP_REQUEST_TIMEOUT, "29"));
     }
+
+    @Provides
+    @Named(MAX_UPLOAD_SIZE_BYTES)
+    static long provideMaxUploadSizeBytes(Environment env) {
+        return Long.parseLong(env.getEnv(Variables.MAX_UPLOAD_SIZE, "1024")) * 1024 * 1024;
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * Adapts a blocking {@link InputStream} to a Vert.x {@link ReadStream}, so that it can be piped
+ * into an {@link io.vertx.core.http.HttpServerResponse} or other {@link
+ * io.vertx.core.streams.WriteStream} with back-pressure. Reads are performed one chunk at a time on
+ * a worker thread and only while the stream has outstanding demand, so a destination that reports
+ * {@code writeQueueFull()} pauses reading from the source until it drains. Each chunk is read
+ * directly into the array backing the emitted {@link Buffer} rather than being copied into it. The
+ * source stream is closed once it is exhausted, fails, or this stream is {@link #close()}d.
+ */
+public class InputStreamReadStream implements ReadStream<Buffer> {
+
+    private final Context context;
+    private final InputStream source;
+    private final int chunkSize;
+
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+    private long demand = Long.MAX_VALUE;
+    private boolean reading;
+    private boolean closed;
+
+    public InputStreamReadStream(Context context, InputStream source, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.context = context;
+        this.source = source;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public synchronized InputStreamReadStream handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        readMore();
+        return this;
+    }
+
+    @Override
+    public synchronized InputStreamReadStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    @Override
+    public synchronized InputStreamReadStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public synchronized InputStreamReadStream pause() {
+        demand = 0;
+        return this;
+    }
+
+    @Override
+    public InputStreamReadStream resume() {
+        return fetch(Long.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized InputStreamReadStream fetch(long amount) {
+        if (amount > 0) {
+            demand += amount;
+            if (demand < 0) {
+                demand = Long.MAX_VALUE;
+            }
+            readMore();
+        }
+        return this;
+    }
+
+    /**
+     * Stop reading and close the source stream. No further handlers will be called. This should be
+     * called if the destination is closed before the source has been fully read.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        closeSource();
+    }
+
+    private synchronized void readMore() {
+        if (reading || closed || demand == 0 || handler == null) {
+            return;
+        }
+        reading = true;
+        context.executeBlocking(this::readChunk, false, this::onChunk);
+    }
+
+    private void readChunk(Promise<Buffer> promise) {
+        try {
+            byte[] bytes = new byte[chunkSize];
+            int n = source.read(bytes, 0, chunkSize);
+            promise.complete(n < 0 ? null : Buffer.buffer(Unpooled.wrappedBuffer(bytes, 0, n)));
+        } catch (IOException ioe) {
+            promise.fail(ioe);
+        }
+    }
+
+    private void onChunk(AsyncResult<Buffer> result) {
+        Handler<Buffer> dataHandler = null;
+        Handler<Void> onEnd = null;
+        Handler<Throwable> onException = null;
+        synchronized (this) {
+            reading = false;
+            if (closed) {
+                return;
+            }
+            if (result.failed()) {
+                closed = true;
+                onException = exceptionHandler;
+            } else if (result.result() == null) {
+                closed = true;
+                onEnd = endHandler;
+            } else {
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+                dataHandler = handler;
+            }
+        }
+        if (result.failed()) {
+            closeSource();
+            if (onException != null) {
+                onException.handle(result.cause());
+            }
+        } else if (result.result() == null) {
+            closeSource();
+            if (onEnd != null) {
+                onEnd.handle(null);
+            }
+        } else {
+            if (dataHandler != null) {
+                dataHandler.handle(result.result());
+            }
+            readMore();
+        }
+    }
+
+    private void closeSource() {
+        try {
+            source.close();
+        } catch (IOException ioe) {
+            // the stream has already been fully read or abandoned, so there is nothing to recover
+        }
+    }
+}
@@ -59,6 +59,7 @@ import io.cryostat.core.log.Logger;
 import io.cryostat.core.net.Credentials;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.ConnectionDescriptor;
+import io.cryostat.net.TargetUnreachableException;
 import io.cryostat.net.security.jwt.AssetJwtHelper;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
@@ -69,6 +70,7 @@ import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.proc.BadJWTException;
 import dagger.Lazy;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.ext.web.RoutingContext;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
@@ -94,6 +96,10 @@ abstract class AbstractJwtConsumingHandler implements RequestHandler {
         try {
             JWT jwt = validateJwt(ctx);
             handleWithValidJwt(ctx, jwt);
+        } catch (TargetUnreachableException e) {
+            ctx.response()
+                    .putHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            throw new ApiException(503, "Target Unreachable", e);
         } catch (ConnectionException e) {
             Throwable cause = e.getCause();
             if (cause instanceof SecurityException || cause instanceof SaslException) {
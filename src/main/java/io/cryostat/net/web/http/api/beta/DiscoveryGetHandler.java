@@ -43,6 +43,7 @@ import java.util.Set;
 import javax.inject.Inject;
 
 import io.cryostat.net.AuthManager;
+import io.cryostat.net.UnreachableTargetCache;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.api.ApiVersion;
@@ -50,7 +51,9 @@ import io.cryostat.net.web.http.api.v2.AbstractV2RequestHandler;
 import io.cryostat.net.web.http.api.v2.IntermediateResponse;
 import io.cryostat.net.web.http.api.v2.RequestParameters;
 import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.discovery.AbstractNode;
 import io.cryostat.platform.discovery.EnvironmentNode;
+import io.cryostat.platform.discovery.TargetNode;
 
 import com.google.gson.Gson;
 import io.vertx.core.http.HttpMethod;
@@ -58,11 +61,17 @@ import io.vertx.core.http.HttpMethod;
 class DiscoveryGetHandler extends AbstractV2RequestHandler<EnvironmentNode> {
 
     private final PlatformClient platformClient;
+    private final UnreachableTargetCache unreachableTargets;
 
     @Inject
-    DiscoveryGetHandler(AuthManager auth, PlatformClient platformClient, Gson gson) {
+    DiscoveryGetHandler(
+            AuthManager auth,
+            PlatformClient platformClient,
+            UnreachableTargetCache unreachableTargets,
+            Gson gson) {
         super(auth, gson);
         this.platformClient = platformClient;
+        this.unreachableTargets = unreachableTargets;
     }
 
     @Override
@@ -102,6 +111,36 @@ class DiscoveryGetHandler extends AbstractV2RequestHandler<EnvironmentNode> {
 
     @Override
     public IntermediateResponse<EnvironmentNode> handle(RequestParameters params) throws Exception {
-        return new IntermediateResponse<EnvironmentNode>().body(platformClient.getDiscoveryTree());
+        EnvironmentNode tree = platformClient.getDiscoveryTree();
+        if (unreachableTargets.hasUnreachableTargets()) {
+            tree = markUnreachable(tree);
+        }
+        return new IntermediateResponse<EnvironmentNode>().body(tree);
+    }
+
+    private EnvironmentNode markUnreachable(EnvironmentNode node) {
+        EnvironmentNode copy =
+                new EnvironmentNode(node.getName(), node.getNodeType(), node.getLabels());
+        for (AbstractNode child : node.getChildren()) {
+            if (child instanceof EnvironmentNode) {
+                copy.addChildNode(markUnreachable((EnvironmentNode) child));
+            } else if (child instanceof TargetNode) {
+                TargetNode target = (TargetNode) child;
+                copy.addChildNode(
+                        unreachableTargets
+                                .get(target.getTarget().getServiceUri().toString())
+                                .<AbstractNode>map(
+                                        u ->
+                                                new TargetNode(
+                                                        target.getNodeType(),
+                                                        target.getTarget(),
+                                                        target.getLabels(),
+                                                        u))
+                                .orElse(target));
+            } else {
+                copy.addChildNode(child);
+            }
+        }
+        return copy;
     }
 }
@@ -50,7 +50,9 @@ import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.security.jwt.AssetJwtHelper;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.InputStreamReadStream;
 import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.ArchiveCompression;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingNotFoundException;
 
@@ -58,10 +60,12 @@ import com.nimbusds.jwt.JWT;
 import dagger.Lazy;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
 
 class RecordingGetHandler extends AbstractJwtConsumingHandler {
+    protected static final int WRITE_BUFFER_SIZE = 64 * 1024; // 64 KB
 
     private final RecordingArchiveHelper recordingArchiveHelper;
 
@@ -96,9 +100,15 @@ class RecordingGetHandler extends AbstractJwtConsumingHandler {
         return basePath() + "recordings/:recordingName";
     }
 
+    // locating and opening the archived recording may read from a remote archive store
     @Override
     public boolean isAsync() {
-        return true;
+        return false;
+    }
+
+    @Override
+    public boolean isOrdered() {
+        return false;
     }
 
     @Override
@@ -106,16 +116,45 @@ class RecordingGetHandler extends AbstractJwtConsumingHandler {
         String recordingName = ctx.pathParam("recordingName");
         try {
             Path archivedRecording = recordingArchiveHelper.getRecordingPath(recordingName).get();
-            ctx.response()
-                    .putHeader(
-                            HttpHeaders.CONTENT_DISPOSITION,
-                            String.format("attachment; filename=\"%s\"", recordingName));
-            ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime());
-            ctx.response()
-                    .putHeader(
-                            HttpHeaders.CONTENT_LENGTH,
-                            Long.toString(archivedRecording.toFile().length()));
-            ctx.response().sendFile(archivedRecording.toAbsolutePath().toString());
+            HttpServerResponse response = ctx.response();
+            response.putHeader(
+                    HttpHeaders.CONTENT_DISPOSITION,
+                    String.format("attachment; filename=\"%s\"", recordingName));
+            response.putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime());
+            ArchiveCompression compression =
+                    recordingArchiveHelper.getCompression(archivedRecording);
+            if (compression.isAcceptedBy(ctx.request().getHeader(HttpHeaders.ACCEPT_ENCODING))
+                    && recordingArchiveHelper.isStoredAsFile(archivedRecording)) {
+                if (compression.getContentEncoding() != null) {
+                    response.putHeader(
+                            HttpHeaders.CONTENT_ENCODING, compression.getContentEncoding());
+                }
+                response.putHeader(
+                        HttpHeaders.CONTENT_LENGTH,
+                        Long.toString(archivedRecording.toFile().length()));
+                response.sendFile(archivedRecording.toAbsolutePath().toString());
+                return;
+            }
+            // the client cannot accept the stored encoding, or the recording is stored as
+            // deduplicated chunks or in a remote store, so stream and decompress it on the fly
+            response.setChunked(true);
+            InputStreamReadStream recording =
+                    new InputStreamReadStream(
+                            ctx.vertx().getOrCreateContext(),
+                            recordingArchiveHelper.openRecording(archivedRecording),
+                            WRITE_BUFFER_SIZE);
+            response.closeHandler(v -> recording.close());
+            recording
+                    .pipe()
+                    .endOnFailure(false)
+                    .to(
+                            response,
+                            res -> {
+                                if (res.failed()) {
+                                    recording.close();
+                                    response.reset();
+                                }
+                            });
         } catch (ExecutionException e) {
             if (e.getCause() instanceof RecordingNotFoundException) {
                 throw new HttpStatusException(404, e.getMessage(), e);
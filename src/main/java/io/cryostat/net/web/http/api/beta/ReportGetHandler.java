@@ -37,6 +37,8 @@
  */
 package io.cryostat.net.web.http.api.beta;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.EnumSet;
 import java.util.Set;
@@ -49,25 +51,31 @@ import javax.inject.Named;
 
 import io.cryostat.core.log.Logger;
 import io.cryostat.net.AuthManager;
+import io.cryostat.net.reports.ArchivedReport;
 import io.cryostat.net.reports.ReportService;
 import io.cryostat.net.reports.ReportsModule;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.security.jwt.AssetJwtHelper;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.InputStreamReadStream;
 import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.ArchiveCompression;
 import io.cryostat.recordings.RecordingNotFoundException;
 
 import com.nimbusds.jwt.JWT;
 import dagger.Lazy;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 class ReportGetHandler extends AbstractJwtConsumingHandler {
 
+    protected static final int WRITE_BUFFER_SIZE = 64 * 1024; // 64 KB
+
     private final ReportService reportService;
     private final long generationTimeoutSeconds;
 
@@ -121,15 +129,13 @@ class ReportGetHandler extends AbstractJwtConsumingHandler {
     public void handleWithValidJwt(RoutingContext ctx, JWT jwt) throws Exception {
         String recordingName = ctx.pathParam("recordingName");
         try {
-            Path report =
+            ArchivedReport report =
                     reportService
                             .get(recordingName)
                             .get(generationTimeoutSeconds, TimeUnit.SECONDS);
             ctx.response().putHeader(HttpHeaders.CONTENT_DISPOSITION, "inline");
             ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.HTML.mime());
-            ctx.response()
-                    .putHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(report.toFile().length()));
-            ctx.response().sendFile(report.toAbsolutePath().toString());
+            sendReport(ctx, report);
         } catch (ExecutionException | CompletionException ee) {
             if (ExceptionUtils.getRootCause(ee) instanceof RecordingNotFoundException) {
                 throw new HttpStatusException(404, ee);
@@ -137,4 +143,51 @@ class ReportGetHandler extends AbstractJwtConsumingHandler {
             throw ee;
         }
     }
+
+    private void sendReport(RoutingContext ctx, ArchivedReport report) throws IOException {
+        try {
+            sendReportFile(ctx, report);
+        } catch (IOException | RuntimeException e) {
+            report.close();
+            throw e;
+        }
+    }
+
+    private void sendReportFile(RoutingContext ctx, ArchivedReport report) throws IOException {
+        HttpServerResponse response = ctx.response();
+        Path file = report.getFile();
+        ArchiveCompression compression = report.getCompression();
+        if (compression.isAcceptedBy(ctx.request().getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            if (compression.getContentEncoding() != null) {
+                response.putHeader(HttpHeaders.CONTENT_ENCODING, compression.getContentEncoding());
+            }
+            response.putHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(file.toFile().length()));
+            response.sendFile(file.toAbsolutePath().toString(), res -> report.close());
+            return;
+        }
+        // the client cannot accept the encoding the report is cached in, so decompress it on the
+        // fly
+        response.setChunked(true);
+        InputStreamReadStream stream =
+                new InputStreamReadStream(
+                        ctx.vertx().getOrCreateContext(),
+                        ArchiveCompression.decompress(Files.newInputStream(file)),
+                        WRITE_BUFFER_SIZE);
+        response.closeHandler(
+                v -> {
+                    stream.close();
+                    report.close();
+                });
+        stream.pipe()
+                .endOnFailure(false)
+                .to(
+                        response,
+                        res -> {
+                            if (res.failed()) {
+                                stream.close();
+                                response.reset();
+                            }
+                            report.close();
+                        });
+    }
 }
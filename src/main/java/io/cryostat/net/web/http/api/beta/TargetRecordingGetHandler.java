@@ -37,6 +37,7 @@
  */
 package io.cryostat.net.web.http.api.beta;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.EnumSet;
@@ -54,20 +55,24 @@ import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.security.jwt.AssetJwtHelper;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.InputStreamReadStream;
 import io.cryostat.net.web.http.api.ApiVersion;
 import io.cryostat.net.web.http.api.v2.ApiException;
+import io.cryostat.recordings.RecordingTimeRange;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
 
 import com.nimbusds.jwt.JWT;
 import dagger.Lazy;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 
 class TargetRecordingGetHandler extends AbstractJwtConsumingHandler {
     protected static final int WRITE_BUFFER_SIZE = 64 * 1024; // 64 KB
 
     private final TargetConnectionManager targetConnectionManager;
+    private final SegmentedRecordingTransfer recordingTransfer;
 
     @Inject
     TargetRecordingGetHandler(
@@ -75,9 +80,11 @@ class TargetRecordingGetHandler extends AbstractJwtConsumingHandler {
             AssetJwtHelper jwtFactory,
             Lazy<WebServer> webServer,
             TargetConnectionManager targetConnectionManager,
+            SegmentedRecordingTransfer recordingTransfer,
             Logger logger) {
         super(auth, jwtFactory, webServer, logger);
         this.targetConnectionManager = targetConnectionManager;
+        this.recordingTransfer = recordingTransfer;
     }
 
     @Override
@@ -122,6 +129,12 @@ class TargetRecordingGetHandler extends AbstractJwtConsumingHandler {
     void handleRecordingDownloadRequest(RoutingContext ctx, JWT jwt, String recordingName)
             throws Exception {
         ConnectionDescriptor connectionDescriptor = getConnectionDescriptorFromJwt(ctx, jwt);
+        RecordingTimeRange range;
+        try {
+            range = RecordingTimeRange.fromQueryParams(ctx.queryParams());
+        } catch (IllegalArgumentException iae) {
+            throw new ApiException(400, iae.getMessage(), iae);
+        }
         Optional<InputStream> stream =
                 targetConnectionManager.executeConnectedTask(
                         connectionDescriptor,
@@ -131,8 +144,11 @@ class TargetRecordingGetHandler extends AbstractJwtConsumingHandler {
                                         .map(
                                                 desc -> {
                                                     try {
-                                                        return conn.getService()
-                                                                .openStream(desc, false);
+                                                        return recordingTransfer.openStream(
+                                                                connectionDescriptor,
+                                                                conn,
+                                                                desc,
+                                                                range);
                                                     } catch (Exception e) {
                                                         logger.error(e);
                                                         throw new ApiException(500, e);
@@ -144,25 +160,40 @@ class TargetRecordingGetHandler extends AbstractJwtConsumingHandler {
             throw new ApiException(404, String.format("%s not found", recordingName));
         }
 
-        ctx.response().setChunked(true);
-        ctx.response()
-                .putHeader(
-                        HttpHeaders.CONTENT_DISPOSITION,
-                        String.format("attachment; filename=\"%s.jfr\"", recordingName));
-        ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime());
-        try (InputStream s = stream.get()) {
-            byte[] buff = new byte[WRITE_BUFFER_SIZE];
-            int n;
-            while ((n = s.read(buff)) != -1) {
-                // FIXME replace this with Vertx async IO, ie. ReadStream/WriteStream/Pump
-                ctx.response().write(Buffer.buffer(n).appendBytes(buff, 0, n));
-                if (!targetConnectionManager.markConnectionInUse(connectionDescriptor)) {
-                    throw new IOException(
-                            "Target connection unexpectedly closed while streaming recording");
-                }
-            }
-
-            ctx.response().end();
-        }
+        HttpServerResponse response = ctx.response();
+        response.setChunked(true);
+        response.putHeader(
+                HttpHeaders.CONTENT_DISPOSITION,
+                String.format("attachment; filename=\"%s.jfr\"", recordingName));
+        response.putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime());
+        InputStreamReadStream recording =
+                new InputStreamReadStream(
+                        ctx.vertx().getOrCreateContext(),
+                        new FilterInputStream(stream.get()) {
+                            @Override
+                            public int read(byte[] b, int off, int len) throws IOException {
+                                if (!targetConnectionManager.markConnectionInUse(
+                                        connectionDescriptor)) {
+                                    throw new IOException(
+                                            "Target connection unexpectedly closed while streaming"
+                                                    + " recording");
+                                }
+                                return super.read(b, off, len);
+                            }
+                        },
+                        WRITE_BUFFER_SIZE);
+        response.closeHandler(v -> recording.close());
+        recording
+                .pipe()
+                .endOnFailure(false)
+                .to(
+                        response,
+                        res -> {
+                            if (res.failed()) {
+                                logger.error(res.cause());
+                                recording.close();
+                                response.reset();
+                            }
+                        });
     }
 }
@@ -57,6 +57,7 @@ import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.api.ApiVersion;
 import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
 
 import com.nimbusds.jwt.JWT;
 import dagger.Lazy;
@@ -116,19 +117,28 @@ class TargetReportGetHandler extends AbstractJwtConsumingHandler {
 
     @Override
     public boolean isOrdered() {
-        return true;
+        return false;
     }
 
     @Override
     public void handleWithValidJwt(RoutingContext ctx, JWT jwt) throws Exception {
         String recordingName = ctx.pathParam("recordingName");
+        RecordingTimeRange range;
+        try {
+            range = RecordingTimeRange.fromQueryParams(ctx.queryParams());
+        } catch (IllegalArgumentException iae) {
+            throw new HttpStatusException(400, iae.getMessage(), iae);
+        }
         ctx.response().putHeader(HttpHeaders.CONTENT_DISPOSITION, "inline");
         ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.HTML.mime());
         try {
             ctx.response()
                     .end(
                             reportService
-                                    .get(getConnectionDescriptorFromJwt(ctx, jwt), recordingName)
+                                    .get(
+                                            getConnectionDescriptorFromJwt(ctx, jwt),
+                                            recordingName,
+                                            range)
                                     .get(reportGenerationTimeoutSeconds, TimeUnit.SECONDS));
         } catch (CompletionException | ExecutionException ee) {
 
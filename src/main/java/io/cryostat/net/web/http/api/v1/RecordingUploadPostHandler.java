@@ -51,6 +51,7 @@ import javax.inject.Named;
 
 import io.cryostat.configuration.Variables;
 import io.cryostat.core.sys.Environment;
+import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
@@ -76,6 +77,7 @@ class RecordingUploadPostHandler extends AbstractAuthenticatedRequestHandler {
     private final long httpTimeoutSeconds;
     private final WebClient webClient;
     private final RecordingArchiveHelper recordingArchiveHelper;
+    private final FileSystem fs;
 
     @Inject
     RecordingUploadPostHandler(
@@ -83,12 +85,14 @@ class RecordingUploadPostHandler extends AbstractAuthenticatedRequestHandler {
             Environment env,
             @Named(HttpModule.HTTP_REQUEST_TIMEOUT_SECONDS) long httpTimeoutSeconds,
             WebClient webClient,
-            RecordingArchiveHelper recordingArchiveHelper) {
+            RecordingArchiveHelper recordingArchiveHelper,
+            FileSystem fs) {
         super(auth);
         this.env = env;
         this.httpTimeoutSeconds = httpTimeoutSeconds;
         this.webClient = webClient;
         this.recordingArchiveHelper = recordingArchiveHelper;
+        this.fs = fs;
     }
 
     @Override
@@ -159,6 +163,19 @@ class RecordingUploadPostHandler extends AbstractAuthenticatedRequestHandler {
             throw e;
         }
 
+        // the datasource expects an uncompressed recording
+        Path uploadPath = recordingArchiveHelper.decompressIfNeeded(recordingPath);
+        try {
+            return upload(recordingName, uploadPath, uploadUrl);
+        } finally {
+            if (!uploadPath.equals(recordingPath)) {
+                fs.deleteIfExists(uploadPath);
+            }
+        }
+    }
+
+    private ResponseMessage upload(String recordingName, Path recordingPath, URL uploadUrl)
+            throws Exception {
         MultipartForm form =
                 MultipartForm.create()
                         .binaryFileUpload(
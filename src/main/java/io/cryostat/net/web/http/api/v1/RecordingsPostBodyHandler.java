@@ -37,16 +37,10 @@
  */
 package io.cryostat.net.web.http.api.v1;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Set;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 
-import io.cryostat.MainModule;
-import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
@@ -54,28 +48,12 @@ import io.cryostat.net.web.http.api.ApiVersion;
 
 import io.vertx.core.http.HttpMethod;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.BodyHandler;
 
 class RecordingsPostBodyHandler extends AbstractAuthenticatedRequestHandler {
 
-    private final BodyHandler bodyHandler;
-
     @Inject
-    RecordingsPostBodyHandler(
-            AuthManager auth,
-            @Named(MainModule.RECORDINGS_PATH) Path recordingsPath,
-            FileSystem fs) {
+    RecordingsPostBodyHandler(AuthManager auth) {
         super(auth);
-        Path fileUploads = recordingsPath.resolve("file-uploads");
-        this.bodyHandler = BodyHandler.create(fileUploads.toAbsolutePath().toString());
-        try {
-            // FIXME put this somewhere more appropriate
-            if (!fs.isDirectory(fileUploads)) {
-                Files.createDirectories(fileUploads);
-            }
-        } catch (IOException ioe) {
-            throw new RuntimeException(ioe);
-        }
     }
 
     @Override
@@ -100,6 +78,9 @@ class RecordingsPostBodyHandler extends AbstractAuthenticatedRequestHandler {
 
     @Override
     public void handleAuthenticated(RoutingContext ctx) throws Exception {
-        this.bodyHandler.handle(ctx);
+        // RecordingsPostHandler streams the upload into the archive itself once the request has
+        // been authorized, so hold back the body until then rather than buffering it to disk here
+        ctx.request().pause();
+        ctx.next();
     }
 }
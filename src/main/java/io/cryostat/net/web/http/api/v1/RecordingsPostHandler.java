@@ -37,11 +37,8 @@
  */
 package io.cryostat.net.web.http.api.v1;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.FileAlreadyExistsException;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
@@ -51,28 +48,29 @@ import java.util.regex.Pattern;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
-import org.openjdk.jmc.flightrecorder.internal.FlightRecordingLoader;
-import org.openjdk.jmc.flightrecorder.internal.InvalidJfrFileException;
-
-import io.cryostat.MainModule;
 import io.cryostat.core.log.Logger;
-import io.cryostat.core.sys.FileSystem;
 import io.cryostat.messaging.notifications.NotificationFactory;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.HttpServer;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
 import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.HttpModule;
 import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.ArchiveCatalog;
+import io.cryostat.recordings.ArchiveStorage;
+import io.cryostat.recordings.JfrStreamValidator;
+import io.cryostat.recordings.JfrStreamValidator.InvalidJfrStreamException;
+import io.cryostat.rules.ArchivePathException;
 
 import com.google.gson.Gson;
 import io.vertx.core.AsyncResult;
-import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
-import io.vertx.ext.web.FileUpload;
+import io.vertx.core.http.HttpServerFileUpload;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
 
@@ -84,11 +82,12 @@ class RecordingsPostHandler extends AbstractAuthenticatedRequestHandler {
     static final String PATH = "recordings";
 
     private final Vertx vertx;
-    private final FileSystem fs;
-    private final Path savedRecordingsPath;
+    private final long maxUploadSize;
     private final Gson gson;
     private final Logger logger;
     private final NotificationFactory notificationFactory;
+    private final ArchiveCatalog archiveCatalog;
+    private final ArchiveStorage storage;
 
     private static final String NOTIFICATION_CATEGORY = "RecordingSaved";
 
@@ -96,18 +95,20 @@ class RecordingsPostHandler extends AbstractAuthenticatedRequestHandler {
     RecordingsPostHandler(
             AuthManager auth,
             HttpServer httpServer,
-            FileSystem fs,
-            @Named(MainModule.RECORDINGS_PATH) Path savedRecordingsPath,
+            @Named(HttpModule.MAX_UPLOAD_SIZE_BYTES) long maxUploadSize,
             Gson gson,
             Logger logger,
-            NotificationFactory notificationFactory) {
+            NotificationFactory notificationFactory,
+            ArchiveCatalog archiveCatalog,
+            ArchiveStorage storage) {
         super(auth);
         this.vertx = httpServer.getVertx();
-        this.fs = fs;
-        this.savedRecordingsPath = savedRecordingsPath;
+        this.maxUploadSize = maxUploadSize;
         this.gson = gson;
         this.logger = logger;
         this.notificationFactory = notificationFactory;
+        this.archiveCatalog = archiveCatalog;
+        this.storage = storage;
     }
 
     @Override
@@ -147,228 +148,222 @@ class RecordingsPostHandler extends AbstractAuthenticatedRequestHandler {
 
     @Override
     public void handleAuthenticated(RoutingContext ctx) throws Exception {
-        if (!fs.isDirectory(savedRecordingsPath)) {
-            throw new HttpStatusException(503, "Recording saving not available");
+        try {
+            storage.validate();
+        } catch (ArchivePathException e) {
+            // the request body is never read, so don't leave it on a kept-alive connection
+            ctx.response().putHeader(HttpHeaders.CONNECTION, "close");
+            throw new HttpStatusException(503, "Recording saving not available", e);
         }
 
-        FileUpload upload = null;
-        for (FileUpload fu : ctx.fileUploads()) {
-            // ignore unrecognized form fields
-            if ("recording".equals(fu.name())) {
-                upload = fu;
-            } else {
-                deleteTempFileUpload(fu);
+        HttpServerRequest request = ctx.request();
+        String contentLength = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength) > maxUploadSize) {
+                    ctx.response().putHeader(HttpHeaders.CONNECTION, "close");
+                    throw new HttpStatusException(413, "Recording exceeds the maximum upload size");
+                }
+            } catch (NumberFormatException e) {
+                throw new HttpStatusException(400, "Invalid Content-Length", e);
             }
         }
 
-        if (upload == null) {
-            throw new HttpStatusException(400, "No recording submission");
-        }
-
-        String fileName = upload.fileName();
-        if (fileName == null || fileName.isEmpty()) {
-            deleteTempFileUpload(upload);
-            throw new HttpStatusException(400, "Recording name must not be empty");
-        }
+        // the request body was paused by RecordingsPostBodyHandler, so nothing has been read yet
+        RecordingUpload upload = new RecordingUpload(ctx);
+        request.setExpectMultipart(true);
+        request.uploadHandler(upload::handleFileUpload);
+        request.exceptionHandler(upload::fail);
+        request.endHandler(upload::handleRequestEnd);
+        request.resume();
+    }
 
-        if (fileName.endsWith(".jfr")) {
-            fileName = fileName.substring(0, fileName.length() - 4);
+    private String storeRecording(
+            String subdirectoryName, String basename, int counter, UploadInputStream content)
+            throws IOException {
+        // TODO byte-sized rename limit is arbitrary. Probably plenty since recordings
+        // are also differentiated by second-resolution timestamp
+        for (int i = counter; i < Byte.MAX_VALUE; i++) {
+            String filename = i > 1 ? basename + "." + i + ".jfr" : basename + ".jfr";
+            if (storage.exists(subdirectoryName, filename)) {
+                continue;
+            }
+            try {
+                storage.write(subdirectoryName, filename, content);
+                return filename;
+            } catch (FileAlreadyExistsException e) {
+                // another recording was saved under this name since we checked. The upload can
+                // only be retried under the next name if none of it has been consumed yet
+                if (content.getBytesRead() > 0) {
+                    throw e;
+                }
+            }
         }
+        throw new IOException(
+                "Recording could not be saved. File already exists and rename attempts were exhausted.");
+    }
 
-        Matcher m = RECORDING_FILENAME_PATTERN.matcher(fileName);
-        if (!m.matches()) {
-            deleteTempFileUpload(upload);
-            throw new HttpStatusException(400, "Incorrect recording file name pattern");
+    /**
+     * The state of a single upload request. The recording form field is validated and streamed into
+     * the archive as it arrives, and the request is failed as soon as the data is found to be
+     * invalid or too large, rather than after the whole upload has been received. All methods are
+     * called on the request's event loop.
+     */
+    private class RecordingUpload {
+        private final RoutingContext ctx;
+        private final JfrStreamValidator validator = new JfrStreamValidator();
+        private HttpServerFileUpload fileUpload;
+        private UploadInputStream content;
+        private long received;
+        private boolean done;
+
+        RecordingUpload(RoutingContext ctx) {
+            this.ctx = ctx;
         }
 
-        String targetName = m.group(1);
-        String recordingName = m.group(2);
-        String timestamp = m.group(3);
-        int count =
-                m.group(4) == null || m.group(4).isEmpty()
-                        ? 0
-                        : Integer.parseInt(m.group(4).substring(1));
-
-        final String subdirectoryName = "unlabelled";
-        final String basename = String.format("%s_%s_%s", targetName, recordingName, timestamp);
-        final String uploadedFileName = upload.uploadedFileName();
-        validateRecording(
-                upload.uploadedFileName(),
-                (res) ->
-                        saveRecording(
-                                subdirectoryName,
-                                basename,
-                                uploadedFileName,
-                                count,
-                                (res2) -> {
-                                    if (res2.failed()) {
-                                        ctx.fail(res2.cause());
-                                        return;
-                                    }
-
-                                    ctx.response()
-                                            .putHeader(
-                                                    HttpHeaders.CONTENT_TYPE,
-                                                    HttpMimeType.JSON.mime())
-                                            .end(gson.toJson(Map.of("name", res2.result())));
-
-                                    notificationFactory
-                                            .createBuilder()
-                                            .metaCategory(NOTIFICATION_CATEGORY)
-                                            .metaType(HttpMimeType.JSON)
-                                            .message(Map.of("recording", res2.result()))
-                                            .build()
-                                            .send();
-                                }));
-    }
+        void handleFileUpload(HttpServerFileUpload fu) {
+            // ignore unrecognized form fields, and any further recordings
+            if (done || content != null || !"recording".equals(fu.name())) {
+                discard(fu);
+                return;
+            }
 
-    private void validateRecording(String recordingFile, Handler<AsyncResult<Void>> handler) {
-        vertx.executeBlocking(
-                event -> {
-                    try {
-                        // try loading chunk info to see if it's a valid file
-                        try (var is = new BufferedInputStream(new FileInputStream(recordingFile))) {
-                            var supplier = FlightRecordingLoader.createChunkSupplier(is);
-                            var chunks = FlightRecordingLoader.readChunkInfo(supplier);
-                            if (chunks.size() < 1) {
-                                throw new InvalidJfrFileException();
-                            }
-                        }
-                        event.complete();
-                    } catch (CouldNotLoadRecordingException | IOException e) {
-                        event.fail(e);
-                    }
-                },
-                res -> {
-                    if (res.failed()) {
-                        Throwable t;
-                        if (res.cause() instanceof CouldNotLoadRecordingException) {
-                            t =
-                                    new HttpStatusException(
-                                            400, "Not a valid JFR recording file", res.cause());
-                        } else {
-                            t = res.cause();
-                        }
-                        vertx.fileSystem().deleteBlocking(recordingFile);
+            String fileName = fu.filename();
+            if (fileName == null || fileName.isEmpty()) {
+                discard(fu);
+                fail(new HttpStatusException(400, "Recording name must not be empty"));
+                return;
+            }
 
-                        handler.handle(makeFailedAsyncResult(t));
-                        return;
-                    }
+            if (fileName.endsWith(".jfr")) {
+                fileName = fileName.substring(0, fileName.length() - 4);
+            }
 
-                    handler.handle(makeAsyncResult(null));
-                });
-    }
+            Matcher m = RECORDING_FILENAME_PATTERN.matcher(fileName);
+            if (!m.matches()) {
+                discard(fu);
+                fail(new HttpStatusException(400, "Incorrect recording file name pattern"));
+                return;
+            }
 
-    private void saveRecording(
-            String subdirectoryName,
-            String basename,
-            String tmpFile,
-            int counter,
-            Handler<AsyncResult<String>> handler) {
-        // TODO byte-sized rename limit is arbitrary. Probably plenty since recordings
-        // are also differentiated by second-resolution timestamp
-        if (counter >= Byte.MAX_VALUE) {
-            handler.handle(
-                    makeFailedAsyncResult(
-                            new IOException(
-                                    "Recording could not be saved. File already exists and rename attempts were exhausted.")));
-            return;
+            String targetName = m.group(1);
+            String recordingName = m.group(2);
+            String timestamp = m.group(3);
+            int count =
+                    m.group(4) == null || m.group(4).isEmpty()
+                            ? 0
+                            : Integer.parseInt(m.group(4).substring(1));
+
+            final String subdirectoryName = "unlabelled";
+            final String basename = String.format("%s_%s_%s", targetName, recordingName, timestamp);
+
+            this.fileUpload = fu;
+            this.content = new UploadInputStream(vertx.getOrCreateContext());
+            fu.handler(this::handleData);
+            fu.exceptionHandler(this::fail);
+            fu.endHandler(this::handleUploadEnd);
+
+            vertx.<String>executeBlocking(
+                    event -> {
+                        try {
+                            String filename =
+                                    storeRecording(subdirectoryName, basename, count, content);
+                            archiveCatalog.add(subdirectoryName, filename, null, null);
+                            event.complete(filename);
+                        } catch (IOException e) {
+                            event.fail(e);
+                        } finally {
+                            content.close();
+                        }
+                    },
+                    false,
+                    this::handleSaved);
         }
 
-        String filename = counter > 1 ? basename + "." + counter + ".jfr" : basename + ".jfr";
-        Path specificRecordingsPath = savedRecordingsPath.resolve(subdirectoryName);
-
-        if (!fs.exists(specificRecordingsPath)) {
+        void handleData(Buffer buf) {
+            if (done) {
+                return;
+            }
+            received += buf.length();
+            if (received > maxUploadSize) {
+                fail(new HttpStatusException(413, "Recording exceeds the maximum upload size"));
+                return;
+            }
             try {
-                Files.createDirectory(specificRecordingsPath);
-            } catch (IOException e) {
-                handler.handle(makeFailedAsyncResult(e));
+                validator.update(buf.getBytes(), 0, buf.length());
+            } catch (InvalidJfrStreamException e) {
+                fail(new HttpStatusException(400, "Not a valid JFR recording file", e));
                 return;
             }
+            content.write(buf);
+            if (content.writeQueueFull()) {
+                fileUpload.pause();
+                content.drainHandler(v -> fileUpload.resume());
+            }
         }
 
-        vertx.fileSystem()
-                .exists(
-                        specificRecordingsPath.resolve(filename).toString(),
-                        (res) -> {
-                            if (res.failed()) {
-                                handler.handle(makeFailedAsyncResult(res.cause()));
-                                return;
-                            }
-
-                            if (res.result()) {
-                                saveRecording(
-                                        subdirectoryName, basename, tmpFile, counter + 1, handler);
-                                return;
-                            }
-
-                            // verified no name clash at this time
-                            vertx.fileSystem()
-                                    .move(
-                                            tmpFile,
-                                            specificRecordingsPath.resolve(filename).toString(),
-                                            (res2) -> {
-                                                if (res2.failed()) {
-                                                    handler.handle(
-                                                            makeFailedAsyncResult(res2.cause()));
-                                                    return;
-                                                }
-
-                                                handler.handle(makeAsyncResult(filename));
-                                            });
-                        });
-    }
-
-    private void deleteTempFileUpload(FileUpload upload) {
-        Path p = savedRecordingsPath.resolve("file-uploads").resolve(upload.uploadedFileName());
-        vertx.fileSystem().deleteBlocking(p.toString());
-    }
-
-    private <T> AsyncResult<T> makeAsyncResult(T result) {
-        return new AsyncResult<>() {
-            @Override
-            public T result() {
-                return result;
+        void handleUploadEnd(Void v) {
+            if (done) {
+                return;
             }
-
-            @Override
-            public Throwable cause() {
-                return null;
+            try {
+                validator.finish();
+            } catch (InvalidJfrStreamException e) {
+                fail(new HttpStatusException(400, "Not a valid JFR recording file", e));
+                return;
             }
+            content.end();
+        }
 
-            @Override
-            public boolean succeeded() {
-                return true;
+        void handleRequestEnd(Void v) {
+            if (!done && content == null) {
+                fail(new HttpStatusException(400, "No recording submission"));
             }
+        }
 
-            @Override
-            public boolean failed() {
-                return false;
+        void handleSaved(AsyncResult<String> res) {
+            if (res.failed()) {
+                if (!done) {
+                    logger.warn(res.cause());
+                }
+                fail(res.cause());
+                return;
             }
-        };
-    }
-
-    private <T> AsyncResult<T> makeFailedAsyncResult(Throwable cause) {
-        return new AsyncResult<>() {
-            @Override
-            public T result() {
-                return null;
+            if (done) {
+                return;
             }
+            done = true;
+
+            ctx.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime())
+                    .end(gson.toJson(Map.of("name", res.result())));
+
+            notificationFactory
+                    .createBuilder()
+                    .metaCategory(NOTIFICATION_CATEGORY)
+                    .metaType(HttpMimeType.JSON)
+                    .message(Map.of("recording", res.result()))
+                    .build()
+                    .send();
+        }
 
-            @Override
-            public Throwable cause() {
-                return cause;
+        void fail(Throwable t) {
+            if (done) {
+                return;
             }
-
-            @Override
-            public boolean succeeded() {
-                return false;
+            done = true;
+            if (content != null) {
+                content.abort(t);
+                discard(fileUpload);
             }
+            // the client may still be sending the rest of the upload, which is discarded
+            ctx.response().putHeader(HttpHeaders.CONNECTION, "close");
+            failAsync(ctx, t);
+        }
 
-            @Override
-            public boolean failed() {
-                return true;
-            }
-        };
+        private void discard(HttpServerFileUpload fu) {
+            fu.handler(buf -> {});
+            fu.resume();
+        }
     }
 }
@@ -37,6 +37,8 @@
  */
 package io.cryostat.net.web.http.api.v1;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.EnumSet;
 import java.util.Set;
@@ -49,23 +51,29 @@ import javax.inject.Named;
 
 import io.cryostat.core.log.Logger;
 import io.cryostat.net.AuthManager;
+import io.cryostat.net.reports.ArchivedReport;
 import io.cryostat.net.reports.ReportGenerationException;
 import io.cryostat.net.reports.ReportService;
 import io.cryostat.net.reports.ReportsModule;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
 import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.InputStreamReadStream;
 import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.ArchiveCompression;
 import io.cryostat.recordings.RecordingNotFoundException;
 
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 class ReportGetHandler extends AbstractAuthenticatedRequestHandler {
 
+    protected static final int WRITE_BUFFER_SIZE = 64 * 1024; // 64 KB
+
     private final ReportService reportService;
     private final long reportGenerationTimeoutSeconds;
 
@@ -118,14 +126,12 @@ class ReportGetHandler extends AbstractAuthenticatedRequestHandler {
     public void handleAuthenticated(RoutingContext ctx) throws Exception {
         String recordingName = ctx.pathParam("recordingName");
         try {
-            Path report =
+            ArchivedReport report =
                     reportService
                             .get(recordingName)
                             .get(reportGenerationTimeoutSeconds, TimeUnit.SECONDS);
             ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.HTML.mime());
-            ctx.response()
-                    .putHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(report.toFile().length()));
-            ctx.response().sendFile(report.toAbsolutePath().toString());
+            sendReport(ctx, report);
         } catch (ExecutionException | CompletionException ee) {
             if (ExceptionUtils.getRootCause(ee) instanceof ReportGenerationException) {
                 ReportGenerationException rge =
@@ -138,4 +144,51 @@ class ReportGetHandler extends AbstractAuthenticatedRequestHandler {
             throw ee;
         }
     }
+
+    private void sendReport(RoutingContext ctx, ArchivedReport report) throws IOException {
+        try {
+            sendReportFile(ctx, report);
+        } catch (IOException | RuntimeException e) {
+            report.close();
+            throw e;
+        }
+    }
+
+    private void sendReportFile(RoutingContext ctx, ArchivedReport report) throws IOException {
+        HttpServerResponse response = ctx.response();
+        Path file = report.getFile();
+        ArchiveCompression compression = report.getCompression();
+        if (compression.isAcceptedBy(ctx.request().getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            if (compression.getContentEncoding() != null) {
+                response.putHeader(HttpHeaders.CONTENT_ENCODING, compression.getContentEncoding());
+            }
+            response.putHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(file.toFile().length()));
+            response.sendFile(file.toAbsolutePath().toString(), res -> report.close());
+            return;
+        }
+        // the client cannot accept the encoding the report is cached in, so decompress it on the
+        // fly
+        response.setChunked(true);
+        InputStreamReadStream stream =
+                new InputStreamReadStream(
+                        ctx.vertx().getOrCreateContext(),
+                        ArchiveCompression.decompress(Files.newInputStream(file)),
+                        WRITE_BUFFER_SIZE);
+        response.closeHandler(
+                v -> {
+                    stream.close();
+                    report.close();
+                });
+        stream.pipe()
+                .endOnFailure(false)
+                .to(
+                        response,
+                        res -> {
+                            if (res.failed()) {
+                                stream.close();
+                                response.reset();
+                            }
+                            report.close();
+                        });
+    }
 }
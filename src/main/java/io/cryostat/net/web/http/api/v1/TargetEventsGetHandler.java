@@ -94,13 +94,13 @@ class TargetEventsGetHandler extends AbstractAuthenticatedRequestHandler {
 
     @Override
     public boolean isAsync() {
-        return false;
+        return true;
     }
 
     @Override
     public void handleAuthenticated(RoutingContext ctx) throws Exception {
-        List<SerializableEventTypeInfo> templates =
-                connectionManager.executeConnectedTask(
+        connectionManager
+                .executeConnectedTaskAsync(
                         getConnectionDescriptorFromContext(ctx),
                         connection -> {
                             Collection<? extends IEventTypeInfo> origInfos =
@@ -111,8 +111,17 @@ class TargetEventsGetHandler extends AbstractAuthenticatedRequestHandler {
                                 infos.add(new SerializableEventTypeInfo(info));
                             }
                             return infos;
-                        });
-        ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
-        ctx.response().end(gson.toJson(templates));
+                        })
+                .whenCompleteAsync(
+                        (templates, t) -> {
+                            if (t != null) {
+                                failAsync(ctx, t);
+                                return;
+                            }
+                            ctx.response()
+                                    .putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
+                            ctx.response().end(gson.toJson(templates));
+                        },
+                        requestContextExecutor(ctx));
     }
 }
@@ -37,6 +37,7 @@
  */
 package io.cryostat.net.web.http.api.v1;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.EnumSet;
@@ -51,12 +52,14 @@ import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
 import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.InputStreamReadStream;
 import io.cryostat.net.web.http.api.ApiVersion;
 import io.cryostat.recordings.RecordingTargetHelper;
+import io.cryostat.recordings.RecordingTimeRange;
 
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
 
@@ -112,28 +115,51 @@ class TargetRecordingGetHandler extends AbstractAuthenticatedRequestHandler {
 
     void handleRecordingDownloadRequest(RoutingContext ctx, String recordingName) throws Exception {
         ConnectionDescriptor connectionDescriptor = getConnectionDescriptorFromContext(ctx);
+        RecordingTimeRange range;
+        try {
+            range = RecordingTimeRange.fromQueryParams(ctx.queryParams());
+        } catch (IllegalArgumentException iae) {
+            throw new HttpStatusException(400, iae.getMessage(), iae);
+        }
         Optional<InputStream> stream =
-                recordingTargetHelper.getRecording(connectionDescriptor, recordingName).get();
+                recordingTargetHelper
+                        .getRecording(connectionDescriptor, recordingName, range)
+                        .get();
 
         if (stream.isEmpty()) {
             throw new HttpStatusException(404, String.format("%s not found", recordingName));
         }
 
-        ctx.response().setChunked(true);
-        ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime());
-        try (InputStream s = stream.get()) {
-            byte[] buff = new byte[WRITE_BUFFER_SIZE];
-            int n;
-            while ((n = s.read(buff)) != -1) {
-                // FIXME replace this with Vertx async IO, ie. ReadStream/WriteStream/Pump
-                ctx.response().write(Buffer.buffer(n).appendBytes(buff, 0, n));
-                if (!targetConnectionManager.markConnectionInUse(connectionDescriptor)) {
-                    throw new IOException(
-                            "Target connection unexpectedly closed while streaming recording");
-                }
-            }
-
-            ctx.response().end();
-        }
+        HttpServerResponse response = ctx.response();
+        response.setChunked(true);
+        response.putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime());
+        InputStreamReadStream recording =
+                new InputStreamReadStream(
+                        ctx.vertx().getOrCreateContext(),
+                        new FilterInputStream(stream.get()) {
+                            @Override
+                            public int read(byte[] b, int off, int len) throws IOException {
+                                if (!targetConnectionManager.markConnectionInUse(
+                                        connectionDescriptor)) {
+                                    throw new IOException(
+                                            "Target connection unexpectedly closed while streaming"
+                                                    + " recording");
+                                }
+                                return super.read(b, off, len);
+                            }
+                        },
+                        WRITE_BUFFER_SIZE);
+        response.closeHandler(v -> recording.close());
+        recording
+                .pipe()
+                .endOnFailure(false)
+                .to(
+                        response,
+                        res -> {
+                            if (res.failed()) {
+                                recording.close();
+                                response.reset();
+                            }
+                        });
     }
 }
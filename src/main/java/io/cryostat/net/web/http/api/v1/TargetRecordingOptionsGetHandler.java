@@ -103,21 +103,30 @@ class TargetRecordingOptionsGetHandler extends AbstractAuthenticatedRequestHandl
 
     @Override
     public boolean isAsync() {
-        return false;
+        return true;
     }
 
     @Override
     public void handleAuthenticated(RoutingContext ctx) throws Exception {
-        Map<String, Object> optionMap =
-                connectionManager.executeConnectedTask(
+        connectionManager
+                .executeConnectedTaskAsync(
                         getConnectionDescriptorFromContext(ctx),
                         connection -> {
                             RecordingOptionsBuilder builder =
                                     recordingOptionsBuilderFactory.create(connection.getService());
                             return getRecordingOptions(connection.getService(), builder);
-                        });
-        ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
-        ctx.response().end(gson.toJson(optionMap));
+                        })
+                .whenCompleteAsync(
+                        (optionMap, t) -> {
+                            if (t != null) {
+                                failAsync(ctx, t);
+                                return;
+                            }
+                            ctx.response()
+                                    .putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
+                            ctx.response().end(gson.toJson(optionMap));
+                        },
+                        requestContextExecutor(ctx));
     }
 
     static Map<String, Object> getRecordingOptions(
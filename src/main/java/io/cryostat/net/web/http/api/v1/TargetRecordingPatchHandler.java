@@ -39,6 +39,7 @@ package io.cryostat.net.web.http.api.v1;
 
 import java.util.EnumSet;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 
 import javax.inject.Inject;
 
@@ -93,7 +94,7 @@ public class TargetRecordingPatchHandler extends AbstractAuthenticatedRequestHan
 
     @Override
     public boolean isAsync() {
-        return false;
+        return true;
     }
 
     @Override
@@ -103,15 +104,30 @@ public class TargetRecordingPatchHandler extends AbstractAuthenticatedRequestHan
         if (mtd == null) {
             throw new HttpStatusException(400, "Unsupported null operation");
         }
+        CompletionStage<Void> result;
         switch (mtd.toLowerCase()) {
             case "save":
-                patchSave.handle(ctx, getConnectionDescriptorFromContext(ctx));
+                result =
+                        patchSave.handle(
+                                ctx,
+                                getConnectionDescriptorFromContext(ctx),
+                                requestContextExecutor(ctx));
                 break;
             case "stop":
-                patchStop.handle(ctx, getConnectionDescriptorFromContext(ctx));
+                result =
+                        patchStop.handle(
+                                ctx,
+                                getConnectionDescriptorFromContext(ctx),
+                                requestContextExecutor(ctx));
                 break;
             default:
                 throw new HttpStatusException(400, "Unsupported operation " + mtd);
         }
+        result.whenComplete(
+                (v, t) -> {
+                    if (t != null) {
+                        failAsync(ctx, t);
+                    }
+                });
     }
 }
@@ -37,7 +37,10 @@
  */
 package io.cryostat.net.web.http.api.v1;
 
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.inject.Inject;
 
@@ -45,6 +48,7 @@ import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.recordings.EmptyRecordingException;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
 
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
@@ -59,21 +63,45 @@ class TargetRecordingPatchSave {
         this.recordingArchiveHelper = recordingArchiveHelper;
     }
 
-    void handle(RoutingContext ctx, ConnectionDescriptor connectionDescriptor) throws Exception {
+    /**
+     * @param requestContext executor for the request's Vert.x context, on which the response is
+     *     completed
+     */
+    CompletionStage<Void> handle(
+            RoutingContext ctx, ConnectionDescriptor connectionDescriptor, Executor requestContext)
+            throws Exception {
         String recordingName = ctx.pathParam("recordingName");
-
+        RecordingTimeRange range;
         try {
-            String saveName =
-                    recordingArchiveHelper.saveRecording(connectionDescriptor, recordingName).get();
-            ctx.response().end(saveName);
-        } catch (ExecutionException e) {
-            if (ExceptionUtils.getRootCause(e) instanceof RecordingNotFoundException) {
-                throw new HttpStatusException(404, e.getMessage(), e);
-            } else if (e.getCause() instanceof EmptyRecordingException) {
-                ctx.response().setStatusCode(204);
-                ctx.response().end();
-            }
-            throw e;
+            range = RecordingTimeRange.fromQueryParams(ctx.queryParams());
+        } catch (IllegalArgumentException iae) {
+            throw new HttpStatusException(400, iae.getMessage(), iae);
         }
+
+        return recordingArchiveHelper
+                .saveRecording(connectionDescriptor, recordingName, range)
+                .handleAsync(
+                        (saveName, t) -> {
+                            if (t == null) {
+                                ctx.response().end(saveName);
+                                return null;
+                            }
+                            Throwable cause =
+                                    t instanceof CompletionException && t.getCause() != null
+                                            ? t.getCause()
+                                            : t;
+                            if (ExceptionUtils.getRootCause(cause)
+                                    instanceof RecordingNotFoundException) {
+                                throw new HttpStatusException(404, cause.getMessage(), cause);
+                            } else if (cause instanceof EmptyRecordingException) {
+                                ctx.response().setStatusCode(204);
+                                ctx.response().end();
+                                return null;
+                            } else if (cause instanceof RejectedExecutionException) {
+                                throw new HttpStatusException(503, cause.getMessage(), cause);
+                            }
+                            throw new CompletionException(cause);
+                        },
+                        requestContext);
     }
 }
@@ -39,6 +39,8 @@ package io.cryostat.net.web.http.api.v1;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 import javax.inject.Inject;
 
@@ -67,40 +69,56 @@ class TargetRecordingPatchStop {
         this.notificationFactory = notificationFactory;
     }
 
-    void handle(RoutingContext ctx, ConnectionDescriptor connectionDescriptor) throws Exception {
+    /**
+     * @param requestContext executor for the request's Vert.x context, on which the response is
+     *     completed
+     */
+    CompletionStage<Void> handle(
+            RoutingContext ctx, ConnectionDescriptor connectionDescriptor, Executor requestContext)
+            throws Exception {
         String recordingName = ctx.pathParam("recordingName");
 
-        targetConnectionManager.executeConnectedTask(
-                connectionDescriptor,
-                connection -> {
-                    Optional<IRecordingDescriptor> descriptor =
-                            connection.getService().getAvailableRecordings().stream()
-                                    .filter(recording -> recording.getName().equals(recordingName))
-                                    .findFirst();
-                    if (descriptor.isPresent()) {
-                        connection.getService().stop(descriptor.get());
-                        return null;
-                    } else {
-                        throw new HttpStatusException(
-                                404,
-                                String.format(
-                                        "Recording with name \"%s\" not found", recordingName));
-                    }
-                });
-        ctx.response().setStatusCode(200);
-        ctx.response().end();
+        return targetConnectionManager
+                .executeConnectedTaskAsync(
+                        connectionDescriptor,
+                        connection -> {
+                            Optional<IRecordingDescriptor> descriptor =
+                                    connection.getService().getAvailableRecordings().stream()
+                                            .filter(
+                                                    recording ->
+                                                            recording
+                                                                    .getName()
+                                                                    .equals(recordingName))
+                                            .findFirst();
+                            if (descriptor.isPresent()) {
+                                connection.getService().stop(descriptor.get());
+                                return null;
+                            } else {
+                                throw new HttpStatusException(
+                                        404,
+                                        String.format(
+                                                "Recording with name \"%s\" not found",
+                                                recordingName));
+                            }
+                        })
+                .thenRunAsync(
+                        () -> {
+                            ctx.response().setStatusCode(200);
+                            ctx.response().end();
 
-        notificationFactory
-                .createBuilder()
-                .metaCategory(NOTIFICATION_CATEGORY)
-                .metaType(HttpMimeType.JSON)
-                .message(
-                        Map.of(
-                                "recording",
-                                recordingName,
-                                "target",
-                                connectionDescriptor.getTargetId()))
-                .build()
-                .send();
+                            notificationFactory
+                                    .createBuilder()
+                                    .metaCategory(NOTIFICATION_CATEGORY)
+                                    .metaType(HttpMimeType.JSON)
+                                    .message(
+                                            Map.of(
+                                                    "recording",
+                                                    recordingName,
+                                                    "target",
+                                                    connectionDescriptor.getTargetId()))
+                                    .build()
+                                    .send();
+                        },
+                        requestContext);
     }
 }
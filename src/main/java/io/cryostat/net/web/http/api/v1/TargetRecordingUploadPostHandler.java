@@ -56,6 +56,7 @@ import io.cryostat.core.net.JFRConnection;
 import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.AuthManager;
+import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
@@ -63,6 +64,8 @@ import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.HttpModule;
 import io.cryostat.net.web.http.api.ApiVersion;
 import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
 import io.cryostat.util.HttpStatusCodeIdentifier;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -79,6 +82,7 @@ class TargetRecordingUploadPostHandler extends AbstractAuthenticatedRequestHandl
 
     private final Environment env;
     private final TargetConnectionManager targetConnectionManager;
+    private final SegmentedRecordingTransfer recordingTransfer;
     private final long httpTimeoutSeconds;
     private final WebClient webClient;
     private final FileSystem fs;
@@ -88,12 +92,14 @@ class TargetRecordingUploadPostHandler extends AbstractAuthenticatedRequestHandl
             AuthManager auth,
             Environment env,
             TargetConnectionManager targetConnectionManager,
+            SegmentedRecordingTransfer recordingTransfer,
             @Named(HttpModule.HTTP_REQUEST_TIMEOUT_SECONDS) long httpTimeoutSeconds,
             WebClient webClient,
             FileSystem fs) {
         super(auth);
         this.env = env;
         this.targetConnectionManager = targetConnectionManager;
+        this.recordingTransfer = recordingTransfer;
         this.httpTimeoutSeconds = httpTimeoutSeconds;
         this.webClient = webClient;
         this.fs = fs;
@@ -162,11 +168,23 @@ class TargetRecordingUploadPostHandler extends AbstractAuthenticatedRequestHandl
     private ResponseMessage doPost(RoutingContext ctx, URL uploadUrl) throws Exception {
         String targetId = ctx.pathParam("targetId");
         String recordingName = ctx.pathParam("recordingName");
+        RecordingTimeRange range;
+        try {
+            range = RecordingTimeRange.fromQueryParams(ctx.queryParams());
+        } catch (IllegalArgumentException iae) {
+            throw new HttpStatusException(400, iae.getMessage(), iae);
+        }
+        ConnectionDescriptor connectionDescriptor = getConnectionDescriptorFromContext(ctx);
         Path recordingPath =
                 targetConnectionManager.executeConnectedTask(
-                        getConnectionDescriptorFromContext(ctx),
+                        connectionDescriptor,
                         connection ->
-                                getRecordingCopyPath(connection, targetId, recordingName)
+                                getRecordingCopyPath(
+                                                connection,
+                                                connectionDescriptor,
+                                                targetId,
+                                                recordingName,
+                                                range)
                                         .orElseThrow(
                                                 () ->
                                                         new RecordingNotFoundException(
@@ -206,7 +224,12 @@ class TargetRecordingUploadPostHandler extends AbstractAuthenticatedRequestHandl
     }
 
     Optional<Path> getRecordingCopyPath(
-            JFRConnection connection, String targetId, String recordingName) throws Exception {
+            JFRConnection connection,
+            ConnectionDescriptor connectionDescriptor,
+            String targetId,
+            String recordingName,
+            RecordingTimeRange range)
+            throws Exception {
         return connection.getService().getAvailableRecordings().stream()
                 .filter(recording -> recording.getName().equals(recordingName))
                 .findFirst()
@@ -215,7 +238,11 @@ class TargetRecordingUploadPostHandler extends AbstractAuthenticatedRequestHandl
                             try {
                                 Path tempFile = fs.createTempFile(null, null);
                                 try (InputStream stream =
-                                        connection.getService().openStream(descriptor, false)) {
+                                        recordingTransfer.openStream(
+                                                connectionDescriptor,
+                                                connection,
+                                                descriptor,
+                                                range)) {
                                     fs.copy(stream, tempFile, StandardCopyOption.REPLACE_EXISTING);
                                 }
                                 return tempFile;
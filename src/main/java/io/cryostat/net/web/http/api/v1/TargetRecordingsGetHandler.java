@@ -101,14 +101,14 @@ class TargetRecordingsGetHandler extends AbstractAuthenticatedRequestHandler {
 
     @Override
     public boolean isAsync() {
-        return false;
+        return true;
     }
 
     @Override
     public void handleAuthenticated(RoutingContext ctx) throws Exception {
         WebServer webServer = webServerProvider.get();
-        List<HyperlinkedSerializableRecordingDescriptor> descriptors =
-                connectionManager.executeConnectedTask(
+        connectionManager
+                .executeConnectedTaskAsync(
                         getConnectionDescriptorFromContext(ctx),
                         connection -> {
                             List<IRecordingDescriptor> origDescriptors =
@@ -125,8 +125,17 @@ class TargetRecordingsGetHandler extends AbstractAuthenticatedRequestHandler {
                                                         connection, desc.getName())));
                             }
                             return list;
-                        });
-        ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
-        ctx.response().end(gson.toJson(descriptors));
+                        })
+                .whenCompleteAsync(
+                        (descriptors, t) -> {
+                            if (t != null) {
+                                failAsync(ctx, t);
+                                return;
+                            }
+                            ctx.response()
+                                    .putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
+                            ctx.response().end(gson.toJson(descriptors));
+                        },
+                        requestContextExecutor(ctx));
     }
 }
@@ -100,21 +100,30 @@ class TargetTemplatesGetHandler extends AbstractAuthenticatedRequestHandler {
 
     @Override
     public boolean isAsync() {
-        return false;
+        return true;
     }
 
     @Override
     public void handleAuthenticated(RoutingContext ctx) throws Exception {
-        List<Template> templates =
-                connectionManager.executeConnectedTask(
+        connectionManager
+                .executeConnectedTaskAsync(
                         getConnectionDescriptorFromContext(ctx),
                         connection -> {
                             List<Template> list =
                                     new ArrayList<>(connection.getTemplateService().getTemplates());
                             list.add(ALL_EVENTS_TEMPLATE);
                             return list;
-                        });
-        ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
-        ctx.response().end(gson.toJson(templates));
+                        })
+                .whenCompleteAsync(
+                        (templates, t) -> {
+                            if (t != null) {
+                                failAsync(ctx, t);
+                                return;
+                            }
+                            ctx.response()
+                                    .putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
+                            ctx.response().end(gson.toJson(templates));
+                        },
+                        requestContextExecutor(ctx));
     }
 }
@@ -47,7 +47,7 @@ import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.api.ApiVersion;
-import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.ServiceRefRegistry;
 
 import com.google.gson.Gson;
 import io.vertx.core.http.HttpHeaders;
@@ -56,13 +56,13 @@ import io.vertx.ext.web.RoutingContext;
 
 class TargetsGetHandler extends AbstractAuthenticatedRequestHandler {
 
-    private final PlatformClient platformClient;
+    private final ServiceRefRegistry serviceRefRegistry;
     private final Gson gson;
 
     @Inject
-    TargetsGetHandler(AuthManager auth, PlatformClient platformClient, Gson gson) {
+    TargetsGetHandler(AuthManager auth, ServiceRefRegistry serviceRefRegistry, Gson gson) {
         super(auth);
-        this.platformClient = platformClient;
+        this.serviceRefRegistry = serviceRefRegistry;
         this.gson = gson;
     }
 
@@ -94,6 +94,6 @@ class TargetsGetHandler extends AbstractAuthenticatedRequestHandler {
     @Override
     public void handleAuthenticated(RoutingContext ctx) throws Exception {
         ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
-        ctx.response().end(gson.toJson(this.platformClient.listDiscoverableServices()));
+        ctx.response().end(gson.toJson(this.serviceRefRegistry.list()));
     }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+/**
+ * Hands the buffers written to it on an event loop to a worker thread reading them as an {@link
+ * InputStream}, so that an upload can be passed to blocking storage as it arrives. Writers are
+ * expected to pause while {@link #writeQueueFull()}, and are resumed through the drain handler once
+ * the reader has caught up. Writes made after the reader has closed the stream are discarded.
+ */
+class UploadInputStream extends InputStream implements WriteStream<Buffer> {
+
+    static final int DEFAULT_WRITE_QUEUE_MAX_SIZE = 4 * 1024 * 1024;
+
+    // sentinel marking the end of the written data, compared by identity
+    private static final Buffer END = Buffer.buffer(0);
+
+    private final Context context;
+    private final BlockingQueue<Buffer> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private final AtomicReference<Handler<AsyncResult<Void>>> endHandler = new AtomicReference<>();
+    private volatile int writeQueueMaxSize = DEFAULT_WRITE_QUEUE_MAX_SIZE;
+    private volatile boolean ended;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private Handler<Void> drainHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    // reader state, only used by the reading thread
+    private Buffer current;
+    private int position;
+    private long bytesRead;
+
+    UploadInputStream(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public UploadInputStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public UploadInputStream write(Buffer data) {
+        if (ended || closed || data.length() == 0) {
+            return this;
+        }
+        queuedBytes.addAndGet(data.length());
+        queue.add(data);
+        return this;
+    }
+
+    @Override
+    public UploadInputStream write(Buffer data, Handler<AsyncResult<Void>> handler) {
+        write(data);
+        if (handler != null) {
+            handler.handle(Future.succeededFuture());
+        }
+        return this;
+    }
+
+    /**
+     * Mark the end of the written data. The handler given to {@link #end(Handler)} is called once
+     * the reader has read up to this point, or fails if the reader closes the stream before then.
+     */
+    @Override
+    public void end() {
+        end((Handler<AsyncResult<Void>>) null);
+    }
+
+    @Override
+    public void end(Handler<AsyncResult<Void>> handler) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        if (handler != null) {
+            endHandler.set(handler);
+        }
+        queue.add(END);
+        if (closed) {
+            completeEnd(new IOException("Upload stream was closed before the upload ended"));
+        }
+    }
+
+    /**
+     * End the written data unsuccessfully, so that the reader fails with an {@link IOException}
+     * rather than seeing the end of the stream.
+     */
+    void abort(Throwable cause) {
+        if (ended) {
+            return;
+        }
+        failure = cause;
+        end();
+    }
+
+    @Override
+    public UploadInputStream setWriteQueueMaxSize(int maxSize) {
+        this.writeQueueMaxSize = maxSize;
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        if (closed || queuedBytes.get() < writeQueueMaxSize) {
+            return false;
+        }
+        drainRequested.set(true);
+        return true;
+    }
+
+    @Override
+    public UploadInputStream drainHandler(Handler<Void> handler) {
+        this.drainHandler = handler;
+        return this;
+    }
+
+    /** @return the number of bytes handed to the reader so far */
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (current == null || position == current.length()) {
+            if (current == END) {
+                return -1;
+            }
+            current = take();
+            position = 0;
+            if (current == END) {
+                if (failure != null) {
+                    throw new IOException("Upload was aborted", failure);
+                }
+                completeEnd(null);
+                return -1;
+            }
+        }
+        int n = Math.min(len, current.length() - position);
+        current.getBytes(position, position + n, b, off);
+        position += n;
+        bytesRead += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current == null || current == END ? 0 : current.length() - position;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.clear();
+        queuedBytes.set(0);
+        if (ended) {
+            completeEnd(new IOException("Upload stream was closed before the upload ended"));
+        } else {
+            context.runOnContext(
+                    v -> {
+                        if (exceptionHandler != null) {
+                            exceptionHandler.handle(
+                                    new IOException(
+                                            "Upload stream was closed before the upload ended"));
+                        }
+                    });
+        }
+        drain();
+    }
+
+    private Buffer take() throws IOException {
+        Buffer buf;
+        try {
+            buf = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        long remaining = queuedBytes.addAndGet(-buf.length());
+        if (remaining <= writeQueueMaxSize / 2) {
+            drain();
+        }
+        return buf;
+    }
+
+    private void drain() {
+        if (drainRequested.compareAndSet(true, false)) {
+            context.runOnContext(
+                    v -> {
+                        if (drainHandler != null) {
+                            drainHandler.handle(null);
+                        }
+                    });
+        }
+    }
+
+    private void completeEnd(Throwable t) {
+        Handler<AsyncResult<Void>> handler = endHandler.getAndSet(null);
+        if (handler == null) {
+            return;
+        }
+        context.runOnContext(
+                v -> handler.handle(t == null ? Future.succeededFuture() : Future.failedFuture(t)));
+    }
+}
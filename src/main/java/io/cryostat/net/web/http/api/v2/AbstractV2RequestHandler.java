@@ -53,6 +53,7 @@ import io.cryostat.net.AuthManager;
 import io.cryostat.net.AuthorizationErrorException;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.OpenShiftAuthManager.PermissionDeniedException;
+import io.cryostat.net.TargetUnreachableException;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.RequestHandler;
 import io.cryostat.net.web.http.api.ApiMeta;
@@ -196,6 +197,14 @@ public abstract class AbstractV2RequestHandler<T> implements RequestHandler {
     }
 
     private void handleConnectionException(RoutingContext ctx, ConnectionException e) {
+        if (e instanceof TargetUnreachableException) {
+            ctx.response()
+                    .putHeader(
+                            HttpHeaders.RETRY_AFTER,
+                            String.valueOf(
+                                    ((TargetUnreachableException) e).getRetryAfterSeconds()));
+            throw new ApiException(503, "Connection Failure", "Target Unreachable", e);
+        }
         Throwable cause = e.getCause();
         if (cause instanceof SecurityException) {
             ctx.response().putHeader(JMX_AUTHENTICATE_HEADER, "Basic");
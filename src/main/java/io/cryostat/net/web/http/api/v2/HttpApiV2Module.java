@@ -45,6 +45,8 @@ import java.util.function.Function;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import io.cryostat.configuration.Variables;
+import io.cryostat.core.sys.Environment;
 import io.cryostat.net.security.CertificateValidator;
 import io.cryostat.net.web.http.RequestHandler;
 
@@ -84,6 +86,26 @@ public abstract class HttpApiV2Module {
     @IntoSet
     abstract RequestHandler bindTargetSnapshotPostHandler(TargetSnapshotPostHandler handler);
 
+    @Binds
+    @IntoSet
+    abstract RequestHandler bindTargetsBatchPostHandler(TargetsBatchPostHandler handler);
+
+    @Binds
+    @IntoSet
+    abstract RequestHandler bindTargetReportRulesGetHandler(TargetReportRulesGetHandler handler);
+
+    @Binds
+    @IntoSet
+    abstract RequestHandler bindReportRulesGetHandler(ReportRulesGetHandler handler);
+
+    @Binds
+    @IntoSet
+    abstract RequestHandler bindTargetsBatchPostBodyHandler(TargetsBatchPostBodyHandler handler);
+
+    @Binds
+    @IntoSet
+    abstract RequestHandler bindRecordingsGetHandler(RecordingsGetHandler handler);
+
     @Binds
     @IntoSet
     abstract RequestHandler bindCertificatePostHandler(CertificatePostHandler handler);
@@ -97,6 +119,12 @@ public abstract class HttpApiV2Module {
     @IntoSet
     abstract RequestHandler bindTargetEventsGetHandler(TargetEventsGetHandler handler);
 
+    @Provides
+    @Named(Variables.TARGET_BATCH_PARALLELISM)
+    static int provideTargetBatchParallelism(Environment env) {
+        return Integer.parseInt(env.getEnv(Variables.TARGET_BATCH_PARALLELISM, "10"));
+    }
+
     @Provides
     @Singleton
     @Named("OutputStreamFunction")
@@ -0,0 +1,477 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v2;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.SocketException;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.Clock;
+import io.cryostat.net.AuthManager;
+import io.cryostat.net.security.ResourceAction;
+import io.cryostat.net.web.WebServer;
+import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.HttpResponseWriter;
+import io.cryostat.net.web.http.api.ApiMeta;
+import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.ArchiveCatalog;
+import io.cryostat.recordings.RecordingArchiveHelper;
+import io.cryostat.recordings.RecordingTimeRange;
+import io.cryostat.rules.ArchivePathException;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Lists archived recordings one page at a time, optionally filtered and sorted, from the {@link
+ * ArchiveCatalog} rather than by walking the archive directory. Only one page of recordings is
+ * selected per request, without sorting the whole archive, and the page is streamed into the
+ * response as it is serialized. Each page includes an opaque cursor which can be passed back to
+ * retrieve the following page.
+ */
+class RecordingsGetHandler extends AbstractV2RequestHandler<RecordingsGetHandler.Page> {
+
+    static final String PATH = "recordings";
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+    static final int RESPONSE_CHUNK_SIZE = 16 * 1024;
+
+    private final RecordingArchiveHelper recordingArchiveHelper;
+    private final Provider<WebServer> webServerProvider;
+    private final Clock clock;
+    private final Logger logger;
+
+    @Inject
+    RecordingsGetHandler(
+            AuthManager auth,
+            RecordingArchiveHelper recordingArchiveHelper,
+            Provider<WebServer> webServerProvider,
+            Clock clock,
+            Gson gson,
+            Logger logger) {
+        super(auth, gson);
+        this.recordingArchiveHelper = recordingArchiveHelper;
+        this.webServerProvider = webServerProvider;
+        this.clock = clock;
+        this.logger = logger;
+    }
+
+    @Override
+    public boolean requiresAuthentication() {
+        return true;
+    }
+
+    @Override
+    public ApiVersion apiVersion() {
+        return ApiVersion.V2;
+    }
+
+    @Override
+    public HttpMethod httpMethod() {
+        return HttpMethod.GET;
+    }
+
+    @Override
+    public Set<ResourceAction> resourceActions() {
+        return EnumSet.of(ResourceAction.READ_RECORDING);
+    }
+
+    @Override
+    public String path() {
+        return basePath() + PATH;
+    }
+
+    @Override
+    public HttpMimeType mimeType() {
+        return HttpMimeType.JSON;
+    }
+
+    @Override
+    public IntermediateResponse<Page> handle(RequestParameters params) throws Exception {
+        Query query;
+        try {
+            query =
+                    Query.from(
+                            params.getQueryParams(),
+                            recordingArchiveHelper,
+                            gson,
+                            clock.getWallTime());
+        } catch (IllegalArgumentException iae) {
+            throw new ApiException(400, iae.getMessage(), iae);
+        }
+        List<ArchiveCatalog.Entry> entries;
+        try {
+            // select one more than requested to learn whether there is a following page
+            entries =
+                    recordingArchiveHelper
+                            .getRecordings(query.filter(), query.order(), query.limit + 1)
+                            .get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ArchivePathException) {
+                throw new ApiException(501, e.getMessage(), e);
+            }
+            throw e;
+        }
+        String nextCursor = null;
+        if (entries.size() > query.limit) {
+            entries = entries.subList(0, query.limit);
+            nextCursor = query.cursorAfter(entries.get(query.limit - 1), gson);
+        }
+        return new IntermediateResponse<Page>().body(new Page(entries, nextCursor));
+    }
+
+    @Override
+    protected void writeResponse(RoutingContext ctx, IntermediateResponse<Page> response) {
+        HttpServerResponse httpResponse = ctx.response();
+        httpResponse.setStatusCode(response.getStatusCode());
+        if (response.getStatusMessage() != null) {
+            httpResponse.setStatusMessage(response.getStatusMessage());
+        }
+        response.getHeaders().forEach(httpResponse::putHeader);
+        httpResponse.putHeader(HttpHeaders.CONTENT_TYPE, mimeType().mime());
+        httpResponse.setChunked(true);
+
+        Page page = response.getBody();
+        WebServer webServer = webServerProvider.get();
+        try (JsonWriter writer =
+                gson.newJsonWriter(new HttpResponseWriter(httpResponse, RESPONSE_CHUNK_SIZE))) {
+            writer.beginObject();
+            writer.name("meta");
+            gson.toJson(
+                    new ApiMeta(mimeType(), httpResponse.getStatusMessage()),
+                    ApiMeta.class,
+                    writer);
+            writer.name("data").beginObject();
+            writer.name("result").beginObject();
+            writer.name("recordings").beginArray();
+            for (ArchiveCatalog.Entry entry : page.entries) {
+                try {
+                    gson.toJson(
+                            new ArchivedRecording(entry, webServer),
+                            ArchivedRecording.class,
+                            writer);
+                } catch (SocketException | UnknownHostException | URISyntaxException e) {
+                    logger.warn(e);
+                }
+            }
+            writer.endArray();
+            writer.name("nextCursor").value(page.nextCursor);
+            writer.endObject();
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException ioe) {
+            throw new ApiException(500, ioe.getMessage(), ioe);
+        }
+        httpResponse.end();
+    }
+
+    static class Page {
+        final List<ArchiveCatalog.Entry> entries;
+        final String nextCursor;
+
+        Page(List<ArchiveCatalog.Entry> entries, String nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    static class ArchivedRecording {
+        final String name;
+        final String encodedServiceUri;
+        final String downloadUrl;
+        final String reportUrl;
+        final long size;
+        final long archivedTime;
+        final Long startTime;
+        final Long endTime;
+        final String rule;
+
+        ArchivedRecording(ArchiveCatalog.Entry entry, WebServer webServer)
+                throws SocketException, UnknownHostException, URISyntaxException {
+            this.name = entry.getName();
+            this.encodedServiceUri = entry.getSubdirectory();
+            this.downloadUrl = webServer.getArchivedDownloadURL(entry.getName());
+            this.reportUrl = webServer.getArchivedReportURL(entry.getName());
+            this.size = entry.getSize();
+            this.archivedTime = entry.getArchivedTime();
+            this.startTime = entry.getDataStartTime();
+            this.endTime = entry.getDataEndTime();
+            this.rule = entry.getRule();
+        }
+    }
+
+    enum SortKey {
+        NAME("name", null),
+        ARCHIVED_TIME("archivedTime", ArchiveCatalog.Entry::getArchivedTime),
+        SIZE("size", ArchiveCatalog.Entry::getSize),
+        START_TIME("startTime", SortKey::startOf),
+        ;
+
+        private final String param;
+        private final ToLongFunction<ArchiveCatalog.Entry> key;
+
+        SortKey(String param, ToLongFunction<ArchiveCatalog.Entry> key) {
+            this.param = param;
+            this.key = key;
+        }
+
+        static SortKey fromParam(String param) {
+            for (SortKey sortKey : values()) {
+                if (sortKey.param.equals(param)) {
+                    return sortKey;
+                }
+            }
+            throw new IllegalArgumentException("Unknown sort key " + param);
+        }
+
+        Comparator<ArchiveCatalog.Entry> comparator() {
+            Comparator<ArchiveCatalog.Entry> byName =
+                    Comparator.comparing(ArchiveCatalog.Entry::getName);
+            return key == null ? byName : Comparator.comparingLong(key).thenComparing(byName);
+        }
+
+        // recordings of unknown data time range, ex. uploads, are placed by their archive time
+        static long startOf(ArchiveCatalog.Entry entry) {
+            Long start = entry.getDataStartTime();
+            return start != null ? start : entry.getArchivedTime();
+        }
+
+        static long endOf(ArchiveCatalog.Entry entry) {
+            Long end = entry.getDataEndTime();
+            return end != null ? end : entry.getArchivedTime();
+        }
+    }
+
+    /** The position of the last recording of a page, within a particular sort order. */
+    static class Cursor {
+        String sort;
+        boolean descending;
+        long value;
+        String name;
+    }
+
+    static class Query {
+        SortKey sortKey = SortKey.NAME;
+        boolean descending;
+        int limit = DEFAULT_LIMIT;
+        String encodedServiceUri;
+        String rule;
+        String name;
+        Long minSize;
+        Long maxSize;
+        Long since;
+        Long until;
+        Cursor after;
+
+        static Query from(
+                MultiMap params,
+                RecordingArchiveHelper recordingArchiveHelper,
+                Gson gson,
+                long nowMs) {
+            Query query = new Query();
+            if (params.contains("sort")) {
+                query.sortKey = SortKey.fromParam(params.get("sort"));
+            }
+            if (params.contains("order")) {
+                String order = params.get("order");
+                if ("desc".equalsIgnoreCase(order)) {
+                    query.descending = true;
+                } else if (!"asc".equalsIgnoreCase(order)) {
+                    throw new IllegalArgumentException("Unknown order " + order);
+                }
+            }
+            if (params.contains("limit")) {
+                Long limit = parseLong(params, "limit");
+                if (limit == null || limit < 1 || limit > MAX_LIMIT) {
+                    throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+                }
+                query.limit = limit.intValue();
+            }
+            String target = StringUtils.trimToNull(params.get("target"));
+            if (target != null) {
+                // archived recordings are grouped by the service URL that connections to their
+                // target use, so a host:port or unnormalized target ID must be resolved to it
+                try {
+                    query.encodedServiceUri = recordingArchiveHelper.getSubdirectoryName(target);
+                } catch (MalformedURLException | URISyntaxException e) {
+                    throw new IllegalArgumentException("Invalid target " + target, e);
+                }
+            }
+            query.rule = StringUtils.trimToNull(params.get("rule"));
+            query.name = StringUtils.trimToNull(params.get("name"));
+            if (query.name != null) {
+                query.name = query.name.toLowerCase(Locale.ROOT);
+            }
+            query.minSize = parseLong(params, "minSize");
+            query.maxSize = parseLong(params, "maxSize");
+            RecordingTimeRange range = RecordingTimeRange.fromQueryParams(params);
+            if (!range.isUnbounded()) {
+                query.since = range.getSince(nowMs).orElse(null);
+                query.until = range.getUntil().orElse(null);
+            }
+            if (params.contains("cursor")) {
+                query.after = decodeCursor(params.get("cursor"), gson);
+                if (!query.sortKey.param.equals(query.after.sort)
+                        || query.descending != query.after.descending) {
+                    throw new IllegalArgumentException(
+                            "cursor does not belong to the requested sort order");
+                }
+            }
+            return query;
+        }
+
+        /**
+         * @return the comparator to select recordings with, or null for ascending name order, which
+         *     the catalog already maintains
+         */
+        Comparator<ArchiveCatalog.Entry> order() {
+            if (sortKey == SortKey.NAME && !descending) {
+                return null;
+            }
+            Comparator<ArchiveCatalog.Entry> comparator = sortKey.comparator();
+            return descending ? comparator.reversed() : comparator;
+        }
+
+        Predicate<ArchiveCatalog.Entry> filter() {
+            return entry -> {
+                if (encodedServiceUri != null
+                        && !encodedServiceUri.equals(entry.getSubdirectory())) {
+                    return false;
+                }
+                if (rule != null && !rule.equals(entry.getRule())) {
+                    return false;
+                }
+                if (name != null && !entry.getName().toLowerCase(Locale.ROOT).contains(name)) {
+                    return false;
+                }
+                if (minSize != null && entry.getSize() < minSize) {
+                    return false;
+                }
+                if (maxSize != null && entry.getSize() > maxSize) {
+                    return false;
+                }
+                if (since != null && SortKey.endOf(entry) < since) {
+                    return false;
+                }
+                if (until != null && SortKey.startOf(entry) > until) {
+                    return false;
+                }
+                return after == null || isAfterCursor(entry);
+            };
+        }
+
+        private boolean isAfterCursor(ArchiveCatalog.Entry entry) {
+            int c =
+                    sortKey.key == null
+                            ? 0
+                            : Long.compare(sortKey.key.applyAsLong(entry), after.value);
+            if (c == 0) {
+                c = entry.getName().compareTo(after.name);
+            }
+            return descending ? c < 0 : c > 0;
+        }
+
+        String cursorAfter(ArchiveCatalog.Entry entry, Gson gson) {
+            Cursor cursor = new Cursor();
+            cursor.sort = sortKey.param;
+            cursor.descending = descending;
+            cursor.value = sortKey.key == null ? 0 : sortKey.key.applyAsLong(entry);
+            cursor.name = entry.getName();
+            return Base64.getUrlEncoder()
+                    .withoutPadding()
+                    .encodeToString(gson.toJson(cursor).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decodeCursor(String encoded, Gson gson) {
+            try {
+                Cursor cursor =
+                        gson.fromJson(
+                                new String(
+                                        Base64.getUrlDecoder().decode(encoded),
+                                        StandardCharsets.UTF_8),
+                                Cursor.class);
+                if (cursor == null || cursor.sort == null || cursor.name == null) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return cursor;
+            } catch (JsonParseException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+
+        private static Long parseLong(MultiMap params, String key) {
+            String value = params.get(key);
+            if (StringUtils.isBlank(value)) {
+                return null;
+            }
+            long l;
+            try {
+                l = Long.parseLong(value);
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException(key + " must be an integer", nfe);
+            }
+            if (l < 0) {
+                throw new IllegalArgumentException(key + " must not be negative");
+            }
+            return l;
+        }
+    }
+}
@@ -53,8 +53,8 @@ import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.api.ApiVersion;
-import io.cryostat.platform.PlatformClient;
 import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.rules.Rule;
 import io.cryostat.rules.RuleRegistry;
 
@@ -69,7 +69,7 @@ class RuleDeleteHandler extends AbstractV2RequestHandler<List<RuleDeleteHandler.
 
     private final RuleRegistry ruleRegistry;
     private final TargetConnectionManager targetConnectionManager;
-    private final PlatformClient platformClient;
+    private final ServiceRefRegistry serviceRefRegistry;
     private final CredentialsManager credentialsManager;
     private final Logger logger;
 
@@ -78,14 +78,14 @@ class RuleDeleteHandler extends AbstractV2RequestHandler<List<RuleDeleteHandler.
             AuthManager auth,
             RuleRegistry ruleRegistry,
             TargetConnectionManager targetConnectionManager,
-            PlatformClient platformClient,
+            ServiceRefRegistry serviceRefRegistry,
             CredentialsManager credentialsManager,
             Gson gson,
             Logger logger) {
         super(auth, gson);
         this.ruleRegistry = ruleRegistry;
         this.targetConnectionManager = targetConnectionManager;
-        this.platformClient = platformClient;
+        this.serviceRefRegistry = serviceRefRegistry;
         this.credentialsManager = credentialsManager;
         this.logger = logger;
     }
@@ -135,7 +135,7 @@ class RuleDeleteHandler extends AbstractV2RequestHandler<List<RuleDeleteHandler.
         }
         List<CleanupFailure> failures = new ArrayList<>();
         if (Boolean.valueOf(params.getQueryParams().get(CLEAN_PARAM))) {
-            for (ServiceRef ref : platformClient.listDiscoverableServices()) {
+            for (ServiceRef ref : serviceRefRegistry.list()) {
                 if (!ruleRegistry.applies(rule, ref)) {
                     continue;
                 }
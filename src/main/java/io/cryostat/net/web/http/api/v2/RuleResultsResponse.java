@@ -0,0 +1,138 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v2;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import io.cryostat.net.web.http.HttpMimeType;
+
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+
+/**
+ * Streams rule results to a client as newline-delimited JSON, writing each result out as soon as
+ * the report generator produces it. The response is only committed once the first result arrives,
+ * so a failure before then can still be reported with an error status. If the client disconnects,
+ * the evaluation is cancelled rather than left to write into a closed response.
+ */
+class RuleResultsResponse implements Consumer<String> {
+
+    private final HttpServerResponse response;
+    private Future<Void> evaluation;
+    private boolean started;
+    private boolean closed;
+
+    RuleResultsResponse(HttpServerResponse response) {
+        this.response = response;
+        this.response.closeHandler(v -> close());
+    }
+
+    @Override
+    public synchronized void accept(String result) {
+        if (closed) {
+            return;
+        }
+        start();
+        response.write(result + "\n");
+    }
+
+    /**
+     * Wait for the evaluation producing this response's results and end the response once it
+     * completes. If evaluation fails or times out before any result has been written, the failure
+     * is rethrown so that the caller can respond with an error status; otherwise the response is
+     * reset, since its status has already been sent.
+     */
+    void complete(Future<Void> evaluation, long timeoutSeconds)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        synchronized (this) {
+            this.evaluation = evaluation;
+            if (closed) {
+                evaluation.cancel(true);
+                return;
+            }
+        }
+        try {
+            evaluation.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (CancellationException e) {
+            // the client went away
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            evaluation.cancel(true);
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (!started) {
+                    throw e;
+                }
+                response.reset();
+            }
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            start();
+            response.end();
+        }
+    }
+
+    private void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        response.setChunked(true);
+        response.putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.NDJSON.mime());
+    }
+
+    private synchronized void close() {
+        closed = true;
+        if (evaluation != null) {
+            evaluation.cancel(true);
+        }
+    }
+}
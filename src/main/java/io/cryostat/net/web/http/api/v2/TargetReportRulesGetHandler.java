@@ -0,0 +1,172 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v2;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import io.cryostat.net.AuthManager;
+import io.cryostat.net.reports.ReportService;
+import io.cryostat.net.reports.ReportsModule;
+import io.cryostat.net.reports.SubprocessReportGenerator;
+import io.cryostat.net.security.ResourceAction;
+import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
+import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Evaluates automated analysis rules against a target's recording and responds with the results as
+ * newline-delimited JSON, one object per rule with its {@code id}, {@code name}, {@code topic},
+ * {@code score} and {@code summary}. The optional {@code rules} query parameter, which may be
+ * repeated or comma-separated, restricts evaluation to the rules with the given IDs. Each result is
+ * written to the response as soon as the report generator has evaluated its rule, so no HTML report
+ * is rendered and no results file is left behind if the client disconnects or evaluation times out.
+ */
+class TargetReportRulesGetHandler extends AbstractAuthenticatedRequestHandler {
+
+    static final String PATH = "targets/:targetId/reports/:recordingName/rules";
+
+    private final ReportService reportService;
+    private final long reportGenerationTimeoutSeconds;
+
+    @Inject
+    TargetReportRulesGetHandler(
+            AuthManager auth,
+            ReportService reportService,
+            @Named(ReportsModule.REPORT_GENERATION_TIMEOUT_SECONDS)
+                    long reportGenerationTimeoutSeconds) {
+        super(auth);
+        this.reportService = reportService;
+        this.reportGenerationTimeoutSeconds = reportGenerationTimeoutSeconds;
+    }
+
+    @Override
+    public ApiVersion apiVersion() {
+        return ApiVersion.V2;
+    }
+
+    @Override
+    public HttpMethod httpMethod() {
+        return HttpMethod.GET;
+    }
+
+    @Override
+    public String path() {
+        return basePath() + PATH;
+    }
+
+    @Override
+    public Set<ResourceAction> resourceActions() {
+        return EnumSet.of(
+                ResourceAction.READ_TARGET,
+                ResourceAction.READ_RECORDING,
+                ResourceAction.CREATE_REPORT,
+                ResourceAction.READ_REPORT);
+    }
+
+    @Override
+    public boolean isAsync() {
+        return false;
+    }
+
+    @Override
+    public void handleAuthenticated(RoutingContext ctx) throws Exception {
+        String recordingName = ctx.pathParam("recordingName");
+        RecordingTimeRange range;
+        try {
+            range = RecordingTimeRange.fromQueryParams(ctx.queryParams());
+        } catch (IllegalArgumentException iae) {
+            throw new HttpStatusException(400, iae.getMessage(), iae);
+        }
+        Set<String> ruleIds = new HashSet<>();
+        for (String param : ctx.queryParams().getAll("rules")) {
+            for (String id : param.split(",")) {
+                if (StringUtils.isNotBlank(id)) {
+                    ruleIds.add(id.trim());
+                }
+            }
+        }
+
+        RuleResultsResponse response = new RuleResultsResponse(ctx.response());
+        try {
+            response.complete(
+                    reportService.getRuleResults(
+                            getConnectionDescriptorFromContext(ctx),
+                            recordingName,
+                            range,
+                            ruleIds,
+                            response),
+                    reportGenerationTimeoutSeconds);
+        } catch (ExecutionException ee) {
+            Throwable rootCause = ExceptionUtils.getRootCause(ee);
+            if (rootCause instanceof UnsupportedOperationException) {
+                throw new HttpStatusException(501, rootCause.getMessage(), ee);
+            }
+            if (recordingNotFound(rootCause)) {
+                throw new HttpStatusException(404, ee);
+            }
+            throw ee;
+        }
+    }
+
+    private boolean recordingNotFound(Throwable rootCause) {
+        if (rootCause instanceof RecordingNotFoundException) {
+            return true;
+        }
+        if (!(rootCause instanceof SubprocessReportGenerator.SubprocessReportGenerationException)) {
+            return false;
+        }
+        SubprocessReportGenerator.ExitStatus status =
+                ((SubprocessReportGenerator.SubprocessReportGenerationException) rootCause)
+                        .getStatus();
+        return status == SubprocessReportGenerator.ExitStatus.TARGET_CONNECTION_FAILURE
+                || status == SubprocessReportGenerator.ExitStatus.NO_SUCH_RECORDING;
+    }
+}
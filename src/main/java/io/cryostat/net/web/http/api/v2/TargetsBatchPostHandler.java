@@ -0,0 +1,423 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v2;
+
+import java.net.UnknownHostException;
+import java.rmi.ConnectIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.security.sasl.SaslException;
+
+import org.openjdk.jmc.common.unit.QuantityConversionException;
+import org.openjdk.jmc.flightrecorder.configuration.recording.RecordingOptionsBuilder;
+import org.openjdk.jmc.rjmx.ConnectionException;
+import org.openjdk.jmc.rjmx.services.jfr.IEventTypeInfo;
+import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor;
+
+import io.cryostat.configuration.CredentialsManager;
+import io.cryostat.configuration.Variables;
+import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.templates.Template;
+import io.cryostat.core.templates.TemplateType;
+import io.cryostat.jmc.serialization.HyperlinkedSerializableRecordingDescriptor;
+import io.cryostat.jmc.serialization.SerializableEventTypeInfo;
+import io.cryostat.net.AuthManager;
+import io.cryostat.net.ConnectionDescriptor;
+import io.cryostat.net.TargetConnectionManager;
+import io.cryostat.net.TargetTaskExecutor;
+import io.cryostat.net.TargetUnreachableException;
+import io.cryostat.net.security.ResourceAction;
+import io.cryostat.net.web.WebServer;
+import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
+import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.RecordingOptionsBuilderFactory;
+import io.cryostat.recordings.RecordingTargetHelper;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.annotations.SerializedName;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Performs one operation against many targets in a single request. The request body is a JSON
+ * object naming the operation and the targets to perform it on:
+ *
+ * <pre>
+ * {"operation": "recordings", "targetIds": ["service:jmx:rmi:///jndi/rmi://foo:9091/jmxrmi", ...]}
+ * </pre>
+ *
+ * The operations are {@code recordings}, {@code events} and {@code templates}, which list the
+ * corresponding target resources, {@code snapshot}, which creates a snapshot recording, and {@code
+ * start}, which starts a recording using the {@code recordingName}, {@code events} and optional
+ * {@code duration} (in seconds) fields of the request body. Targets are connected to using their
+ * stored credentials. At most {@link Variables#TARGET_BATCH_PARALLELISM} targets are worked on
+ * concurrently, and the response is streamed as newline-delimited JSON with one {@link BatchResult}
+ * per target, in order of completion.
+ */
+class TargetsBatchPostHandler extends AbstractAuthenticatedRequestHandler {
+
+    static final String PATH = "targets/batch";
+
+    private final TargetConnectionManager connectionManager;
+    private final TargetTaskExecutor taskExecutor;
+    private final CredentialsManager credentialsManager;
+    private final RecordingTargetHelper recordingTargetHelper;
+    private final RecordingOptionsBuilderFactory recordingOptionsBuilderFactory;
+    private final Provider<WebServer> webServerProvider;
+    private final int parallelism;
+    private final Gson gson;
+
+    @Inject
+    TargetsBatchPostHandler(
+            AuthManager auth,
+            TargetConnectionManager connectionManager,
+            TargetTaskExecutor taskExecutor,
+            CredentialsManager credentialsManager,
+            RecordingTargetHelper recordingTargetHelper,
+            RecordingOptionsBuilderFactory recordingOptionsBuilderFactory,
+            Provider<WebServer> webServerProvider,
+            @Named(Variables.TARGET_BATCH_PARALLELISM) int parallelism,
+            Gson gson) {
+        super(auth);
+        this.connectionManager = connectionManager;
+        this.taskExecutor = taskExecutor;
+        this.credentialsManager = credentialsManager;
+        this.recordingTargetHelper = recordingTargetHelper;
+        this.recordingOptionsBuilderFactory = recordingOptionsBuilderFactory;
+        this.webServerProvider = webServerProvider;
+        this.parallelism = Math.max(1, parallelism);
+        this.gson = gson;
+    }
+
+    @Override
+    public ApiVersion apiVersion() {
+        return ApiVersion.V2;
+    }
+
+    @Override
+    public HttpMethod httpMethod() {
+        return HttpMethod.POST;
+    }
+
+    @Override
+    public Set<ResourceAction> resourceActions() {
+        return EnumSet.of(ResourceAction.READ_TARGET);
+    }
+
+    @Override
+    public String path() {
+        return basePath() + PATH;
+    }
+
+    @Override
+    public void handleAuthenticated(RoutingContext ctx) throws Exception {
+        BatchRequest request;
+        try {
+            request = gson.fromJson(ctx.getBodyAsString(), BatchRequest.class);
+        } catch (JsonSyntaxException jse) {
+            throw new HttpStatusException(400, jse);
+        }
+        if (request == null || request.operation == null) {
+            throw new HttpStatusException(400, "\"operation\" must be provided");
+        }
+        if (request.targetIds == null || request.targetIds.isEmpty()) {
+            throw new HttpStatusException(400, "\"targetIds\" must be provided");
+        }
+        if (request.operation == Operation.START
+                && (StringUtils.isBlank(request.recordingName)
+                        || StringUtils.isBlank(request.events))) {
+            throw new HttpStatusException(400, "\"recordingName\" and \"events\" must be provided");
+        }
+        boolean permitted =
+                auth.validateHttpHeader(
+                                () -> ctx.request().getHeader(HttpHeaders.AUTHORIZATION),
+                                request.operation.resourceActions)
+                        .get();
+        if (!permitted) {
+            throw new HttpStatusException(401, "HTTP Authorization Failure");
+        }
+
+        HttpServerResponse response = ctx.response();
+        response.setChunked(true);
+        response.putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.NDJSON.mime());
+        new Batch(response, request, requestContextExecutor(ctx)).start();
+    }
+
+    private Object perform(BatchRequest request, ConnectionDescriptor cd) throws Exception {
+        switch (request.operation) {
+            case RECORDINGS:
+                return connectionManager.executeConnectedTask(cd, this::listRecordings);
+            case EVENTS:
+                return connectionManager.executeConnectedTask(cd, this::listEventTypes);
+            case TEMPLATES:
+                return connectionManager.executeConnectedTask(
+                        cd, connection -> listTemplates(connection));
+            case SNAPSHOT:
+                return createSnapshot(cd);
+            case START:
+                return startRecording(request, cd);
+            default:
+                throw new UnsupportedOperationException(request.operation.toString());
+        }
+    }
+
+    private List<HyperlinkedSerializableRecordingDescriptor> listRecordings(
+            JFRConnection connection) throws Exception {
+        WebServer webServer = webServerProvider.get();
+        List<IRecordingDescriptor> descriptors = connection.getService().getAvailableRecordings();
+        List<HyperlinkedSerializableRecordingDescriptor> list = new ArrayList<>(descriptors.size());
+        for (IRecordingDescriptor desc : descriptors) {
+            list.add(
+                    new HyperlinkedSerializableRecordingDescriptor(
+                            desc,
+                            webServer.getDownloadURL(connection, desc.getName()),
+                            webServer.getReportURL(connection, desc.getName())));
+        }
+        return list;
+    }
+
+    private List<SerializableEventTypeInfo> listEventTypes(JFRConnection connection)
+            throws Exception {
+        Collection<? extends IEventTypeInfo> infos =
+                connection.getService().getAvailableEventTypes();
+        List<SerializableEventTypeInfo> list = new ArrayList<>(infos.size());
+        for (IEventTypeInfo info : infos) {
+            list.add(new SerializableEventTypeInfo(info));
+        }
+        return list;
+    }
+
+    private List<Template> listTemplates(JFRConnection connection) throws Exception {
+        return connection.getTemplateService().getTemplates();
+    }
+
+    private HyperlinkedSerializableRecordingDescriptor createSnapshot(ConnectionDescriptor cd)
+            throws Exception {
+        HyperlinkedSerializableRecordingDescriptor snapshot =
+                recordingTargetHelper.createSnapshot(cd).get();
+        if (!recordingTargetHelper.verifySnapshot(cd, snapshot.getName()).get()) {
+            throw new HttpStatusException(
+                    202,
+                    String.format(
+                            "Snapshot %s failed to create: The resultant recording was unreadable"
+                                    + " for some reason, likely due to a lack of Active,"
+                                    + " non-Snapshot source recordings to take event data from.",
+                            snapshot.getName()));
+        }
+        return snapshot;
+    }
+
+    private HyperlinkedSerializableRecordingDescriptor startRecording(
+            BatchRequest request, ConnectionDescriptor cd) throws Exception {
+        Pair<String, TemplateType> template =
+                RecordingTargetHelper.parseEventSpecifierToTemplate(request.events);
+        return connectionManager.executeConnectedTask(
+                cd,
+                connection -> {
+                    RecordingOptionsBuilder builder =
+                            recordingOptionsBuilderFactory
+                                    .create(connection.getService())
+                                    .name(request.recordingName);
+                    if (request.duration != null) {
+                        builder = builder.duration(TimeUnit.SECONDS.toMillis(request.duration));
+                    }
+                    IRecordingDescriptor descriptor =
+                            recordingTargetHelper.startRecording(
+                                    cd, builder.build(), template.getLeft(), template.getRight());
+                    WebServer webServer = webServerProvider.get();
+                    return new HyperlinkedSerializableRecordingDescriptor(
+                            descriptor,
+                            webServer.getDownloadURL(connection, descriptor.getName()),
+                            webServer.getReportURL(connection, descriptor.getName()));
+                });
+    }
+
+    static int statusOf(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException)
+                && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof HttpStatusException) {
+            return ((HttpStatusException) t).getStatusCode();
+        }
+        if (t instanceof IllegalArgumentException || t instanceof QuantityConversionException) {
+            return 400;
+        }
+        if (t instanceof RejectedExecutionException || t instanceof TargetUnreachableException) {
+            return 503;
+        }
+        if (t instanceof ConnectionException) {
+            Throwable cause = t.getCause();
+            if (cause instanceof SecurityException || cause instanceof SaslException) {
+                return 427;
+            }
+            Throwable rootCause = ExceptionUtils.getRootCause(t);
+            if (rootCause instanceof ConnectIOException) {
+                return 502;
+            }
+            if (rootCause instanceof UnknownHostException) {
+                return 404;
+            }
+        }
+        return 500;
+    }
+
+    /**
+     * Tracks the progress of one batch request and streams its results as they complete. All of its
+     * state and the response are only accessed on the request's Vert.x context.
+     */
+    private class Batch {
+        private final HttpServerResponse response;
+        private final BatchRequest request;
+        private final Executor requestContext;
+        private final Iterator<String> pending;
+        private int inFlight;
+        private boolean closed;
+
+        Batch(HttpServerResponse response, BatchRequest request, Executor requestContext) {
+            this.response = response;
+            this.request = request;
+            this.requestContext = requestContext;
+            this.pending = request.targetIds.iterator();
+            response.closeHandler(v -> closed = true);
+        }
+
+        void start() {
+            for (int i = 0; i < parallelism && pending.hasNext(); i++) {
+                submitNext();
+            }
+        }
+
+        private void submitNext() {
+            String targetId = pending.next();
+            ConnectionDescriptor cd =
+                    new ConnectionDescriptor(targetId, credentialsManager.getCredentials(targetId));
+            Callable<Object> task = () -> perform(request, cd);
+            inFlight++;
+            taskExecutor
+                    .submit(targetId, task)
+                    .whenCompleteAsync((r, t) -> complete(targetId, r, t), requestContext);
+        }
+
+        private void complete(String targetId, Object result, Throwable t) {
+            inFlight--;
+            if (closed) {
+                return;
+            }
+            BatchResult line =
+                    t == null
+                            ? new BatchResult(targetId, 200, result, null)
+                            : new BatchResult(
+                                    targetId, statusOf(t), null, ExceptionUtils.getMessage(t));
+            response.write(gson.toJson(line) + "\n");
+            if (pending.hasNext()) {
+                submitNext();
+            } else if (inFlight == 0) {
+                closed = true;
+                response.end();
+            }
+        }
+    }
+
+    enum Operation {
+        @SerializedName("recordings")
+        RECORDINGS(ResourceAction.READ_TARGET, ResourceAction.READ_RECORDING),
+        @SerializedName("events")
+        EVENTS(ResourceAction.READ_TARGET),
+        @SerializedName("templates")
+        TEMPLATES(ResourceAction.READ_TARGET, ResourceAction.READ_TEMPLATE),
+        @SerializedName("snapshot")
+        SNAPSHOT(ResourceAction.READ_TARGET, ResourceAction.UPDATE_RECORDING),
+        @SerializedName("start")
+        START(
+                ResourceAction.READ_TARGET,
+                ResourceAction.CREATE_RECORDING,
+                ResourceAction.READ_TEMPLATE),
+        ;
+
+        private final Set<ResourceAction> resourceActions;
+
+        Operation(ResourceAction first, ResourceAction... rest) {
+            this.resourceActions = EnumSet.of(first, rest);
+        }
+    }
+
+    static class BatchRequest {
+        Operation operation;
+        List<String> targetIds;
+        String recordingName;
+        String events;
+        Long duration;
+    }
+
+    static class BatchResult {
+        final String targetId;
+        final int status;
+        final Object data;
+        final String error;
+
+        BatchResult(String targetId, int status, Object data, String error) {
+            this.targetId = targetId;
+            this.status = status;
+            this.data = data;
+            this.error = error;
+        }
+    }
+}
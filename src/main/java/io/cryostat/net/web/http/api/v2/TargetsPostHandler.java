@@ -43,7 +43,6 @@ import java.net.URISyntaxException;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -52,9 +51,9 @@ import io.cryostat.net.AuthManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.api.ApiVersion;
-import io.cryostat.platform.PlatformClient;
 import io.cryostat.platform.ServiceRef;
 import io.cryostat.platform.ServiceRef.AnnotationKey;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.platform.internal.CustomTargetPlatformClient;
 import io.cryostat.util.URIUtil;
 
@@ -67,17 +66,17 @@ class TargetsPostHandler extends AbstractV2RequestHandler<ServiceRef> {
 
     static final String PATH = "targets";
 
-    private final PlatformClient platformClient;
+    private final ServiceRefRegistry serviceRefRegistry;
     private final CustomTargetPlatformClient customTargetPlatformClient;
 
     @Inject
     TargetsPostHandler(
             AuthManager auth,
             Gson gson,
-            PlatformClient platformClient,
+            ServiceRefRegistry serviceRefRegistry,
             CustomTargetPlatformClient customTargetPlatformClient) {
         super(auth, gson);
-        this.platformClient = platformClient;
+        this.serviceRefRegistry = serviceRefRegistry;
         this.customTargetPlatformClient = customTargetPlatformClient;
     }
 
@@ -134,10 +133,8 @@ class TargetsPostHandler extends AbstractV2RequestHandler<ServiceRef> {
                 throw new ApiException(400, "\"alias\" form parameter must be provided");
             }
             URI uri = URIUtil.createAbsolute(connectUrl);
-            for (ServiceRef serviceRef : platformClient.listDiscoverableServices()) {
-                if (Objects.equals(uri, serviceRef.getServiceUri())) {
-                    throw new ApiException(400, "Duplicate connectUrl");
-                }
+            if (serviceRefRegistry.get(uri).isPresent()) {
+                throw new ApiException(400, "Duplicate connectUrl");
             }
             Map<AnnotationKey, String> cryostatAnnotations = new HashMap<>();
             ServiceRef serviceRef = new ServiceRef(uri, alias);
@@ -78,6 +78,12 @@ public abstract class PlatformModule {
                 platformStrategy.getPlatformClient());
     }
 
+    @Provides
+    @Singleton
+    static ServiceRefRegistry provideServiceRefRegistry(PlatformClient platformClient) {
+        return new ServiceRefRegistry(platformClient);
+    }
+
     @Provides
     @Singleton
     static CustomTargetPlatformClient provideCustomTargetPlatformClient(
@@ -0,0 +1,119 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.platform;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Live index of the currently discovered targets, keyed by service URI. The index is seeded from
+ * {@link PlatformClient#listDiscoverableServices()} once when started, and is afterward kept up to
+ * date from {@link TargetDiscoveryEvent}s, so that looking up a target does not require listing
+ * every discoverable service again. This matters on platforms such as Kubernetes, where each such
+ * listing is a request to the API server.
+ */
+public class ServiceRefRegistry implements Consumer<TargetDiscoveryEvent> {
+
+    private final PlatformClient platformClient;
+    private final Map<URI, ServiceRef> byServiceUri = new ConcurrentHashMap<>();
+    // URIs of targets found or lost while the seed listing is in flight. The listing may be older
+    // than those events, so it must not override them. Null when not seeding
+    private Set<URI> updatedWhileSeeding;
+
+    public ServiceRefRegistry(PlatformClient platformClient) {
+        this.platformClient = platformClient;
+        this.platformClient.addTargetDiscoveryListener(this);
+    }
+
+    public void start() {
+        synchronized (this) {
+            updatedWhileSeeding = new HashSet<>();
+        }
+        try {
+            // listed without holding the lock, so that discovery events are not blocked behind a
+            // potentially slow platform request
+            List<ServiceRef> serviceRefs = platformClient.listDiscoverableServices();
+            synchronized (this) {
+                for (ServiceRef serviceRef : serviceRefs) {
+                    URI serviceUri = serviceRef.getServiceUri();
+                    if (!updatedWhileSeeding.contains(serviceUri)) {
+                        byServiceUri.putIfAbsent(serviceUri, serviceRef);
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                updatedWhileSeeding = null;
+            }
+        }
+    }
+
+    public Optional<ServiceRef> get(URI serviceUri) {
+        return Optional.ofNullable(byServiceUri.get(serviceUri));
+    }
+
+    public List<ServiceRef> list() {
+        return new ArrayList<>(byServiceUri.values());
+    }
+
+    @Override
+    public synchronized void accept(TargetDiscoveryEvent tde) {
+        ServiceRef serviceRef = tde.getServiceRef();
+        URI serviceUri = serviceRef.getServiceUri();
+        switch (tde.getEventKind()) {
+            case FOUND:
+                byServiceUri.put(serviceUri, serviceRef);
+                break;
+            case LOST:
+                byServiceUri.remove(serviceUri);
+                break;
+            default:
+                throw new UnsupportedOperationException(tde.getEventKind().toString());
+        }
+        if (updatedWhileSeeding != null) {
+            updatedWhileSeeding.add(serviceUri);
+        }
+    }
+}
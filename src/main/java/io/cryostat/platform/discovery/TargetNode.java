@@ -50,20 +50,38 @@ public class TargetNode extends AbstractNode {
     @SuppressFBWarnings("URF_UNREAD_FIELD")
     private final ServiceRef target;
 
+    private final UnreachableTarget unreachable;
+
     public TargetNode(NodeType nodeType, ServiceRef target) {
-        super(target.getServiceUri().toString(), nodeType, Collections.emptyMap());
-        this.target = target;
+        this(nodeType, target, Collections.emptyMap());
     }
 
     public TargetNode(NodeType nodeType, ServiceRef target, Map<String, String> labels) {
+        this(nodeType, target, labels, null);
+    }
+
+    public TargetNode(
+            NodeType nodeType,
+            ServiceRef target,
+            Map<String, String> labels,
+            UnreachableTarget unreachable) {
         super(target.getServiceUri().toString(), nodeType, labels);
         this.target = target;
+        this.unreachable = unreachable;
     }
 
     public ServiceRef getTarget() {
         return target;
     }
 
+    /**
+     * @return the target's recent connection failure state, or null if it is not known to be
+     *     unreachable
+     */
+    public UnreachableTarget getUnreachable() {
+        return unreachable;
+    }
+
     @Override
     public int hashCode() {
         return new HashCodeBuilder().appendSuper(super.hashCode()).append(target).build();
@@ -0,0 +1,621 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.FileSystem;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * An index of the recordings in the archive directory, so that lookups and listings do not need to
+ * walk the archive on every request. The catalog is kept up to date as Cryostat itself saves,
+ * uploads and deletes recordings, and a {@link WatchService} reconciles it with any out-of-band
+ * changes to the archive directory. A snapshot of the catalog is persisted within the archive
+ * directory so that it, and metadata which cannot be recovered from the archived files themselves,
+ * is available immediately on the next startup. The archive is still walked once in the background
+ * after startup to reconcile the snapshot with any changes made while Cryostat was not running.
+ *
+ * <p>A remote {@link ArchiveStorage} can neither be watched nor hold the snapshot, since it may be
+ * shared with other Cryostat replicas, so a remote archive is instead listed periodically.
+ */
+public class ArchiveCatalog {
+
+    static final String CATALOG_FILE_NAME = ".cryostat-archive-catalog.json";
+    static final String UPLOADS_SUBDIRECTORY = "file-uploads";
+    static final long PERSIST_DELAY_MS = TimeUnit.SECONDS.toMillis(5);
+    static final long REMOTE_RECONCILE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    // <target>_auto_<rule>_<timestamp>[.n].jfr, see Rule#getRecordingName()
+    private static final Pattern RULE_RECORDING_PATTERN =
+            Pattern.compile("^[^_]*_auto_(.+)_\\d{8}T\\d{6}Z(\\.\\d+)?\\.jfr$");
+
+    private final FileSystem fs;
+    private final ArchiveStorage storage;
+    // null if the archive is kept in a remote store
+    private final Path archivePath;
+    private final Gson gson;
+    private final ScheduledExecutorService executor;
+    private final Logger logger;
+
+    private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Entry> ordered = new ConcurrentSkipListMap<>();
+    private final Object reconcileLock = new Object();
+    private final AtomicBoolean persistScheduled = new AtomicBoolean();
+    private volatile boolean loaded;
+    private volatile boolean persistent;
+    private volatile WatchService watchService;
+
+    ArchiveCatalog(
+            FileSystem fs,
+            ArchiveStorage storage,
+            Gson gson,
+            ScheduledExecutorService executor,
+            Logger logger) {
+        this.fs = fs;
+        this.storage = storage;
+        this.archivePath = storage.getLocalPath().orElse(null);
+        this.gson = gson;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    /**
+     * Load the persisted catalog snapshot, if any, and begin reconciling the catalog with the
+     * contents of the archive directory in the background.
+     */
+    public void start() {
+        if (archivePath == null) {
+            executor.scheduleWithFixedDelay(
+                    () -> {
+                        try {
+                            reconcile();
+                        } catch (IOException e) {
+                            logger.warn(e);
+                        }
+                    },
+                    0,
+                    REMOTE_RECONCILE_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (!fs.isDirectory(archivePath)) {
+            logger.warn("Archive path {} is not a directory, catalog disabled", archivePath);
+            return;
+        }
+        this.persistent = Files.isWritable(archivePath);
+        loadSnapshot();
+        executor.execute(
+                () -> {
+                    try {
+                        watch();
+                        reconcile();
+                    } catch (IOException e) {
+                        logger.error(e);
+                    }
+                });
+    }
+
+    public void stop() {
+        WatchService ws = this.watchService;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException e) {
+                logger.warn(e);
+            }
+        }
+        if (persistScheduled.get()) {
+            persist();
+        }
+    }
+
+    /** @return the catalog entry for the archived recording with the given file name */
+    public Optional<Entry> get(String name) throws IOException {
+        ensureLoaded();
+        return Optional.ofNullable(byName.get(name));
+    }
+
+    /** @return all catalog entries, ordered by name */
+    public List<Entry> list() throws IOException {
+        ensureLoaded();
+        return new ArrayList<>(ordered.values());
+    }
+
+    /** @return at most limit catalog entries ordered by name, skipping the first offset entries */
+    public List<Entry> list(int offset, int limit) throws IOException {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        ensureLoaded();
+        return ordered.values().stream().skip(offset).limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Select at most limit catalog entries matching the filter. If an order is given, the entries
+     * which sort first are selected, without sorting the whole catalog. Otherwise entries are
+     * selected in name order.
+     */
+    public List<Entry> list(Predicate<Entry> filter, Comparator<Entry> order, int limit)
+            throws IOException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        ensureLoaded();
+        if (order == null) {
+            return ordered.values().stream()
+                    .filter(filter)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+        if (limit == 0) {
+            return List.of();
+        }
+        // keep the best limit entries seen so far, with the worst of them at the head
+        PriorityQueue<Entry> selected = new PriorityQueue<>(limit, order.reversed());
+        for (Entry entry : ordered.values()) {
+            if (!filter.test(entry)) {
+                continue;
+            }
+            if (selected.size() < limit) {
+                selected.add(entry);
+            } else if (order.compare(entry, selected.peek()) < 0) {
+                selected.poll();
+                selected.add(entry);
+            }
+        }
+        List<Entry> result = new ArrayList<>(selected);
+        result.sort(order);
+        return result;
+    }
+
+    public int size() throws IOException {
+        ensureLoaded();
+        return byName.size();
+    }
+
+    /**
+     * Add or refresh the entry for a recording which has just been written into the archive.
+     *
+     * @param dataStartTime the start time of the recording data in epoch milliseconds, if known
+     * @param dataEndTime the end time of the recording data in epoch milliseconds, if known
+     */
+    public void add(String subdirectory, String name, Long dataStartTime, Long dataEndTime) {
+        try {
+            Optional<ArchiveStorage.StoredFile> file = storage.stat(subdirectory, name);
+            if (file.isEmpty()) {
+                throw new NoSuchFileException(subdirectory + "/" + name);
+            }
+            long size = getRecordingSize(subdirectory, file.get());
+            synchronized (this) {
+                // a concurrent refresh may already have cataloged the file, in which case keep any
+                // data times it carried over which the caller does not know
+                Entry existing = byName.get(name);
+                if (existing != null && existing.getSubdirectory().equals(subdirectory)) {
+                    if (dataStartTime == null) {
+                        dataStartTime = existing.getDataStartTime();
+                    }
+                    if (dataEndTime == null) {
+                        dataEndTime = existing.getDataEndTime();
+                    }
+                }
+                put(
+                        new Entry(
+                                subdirectory,
+                                name,
+                                size,
+                                file.get().getLastModified(),
+                                dataStartTime,
+                                dataEndTime));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not catalog archived recording {}/{}", subdirectory, name);
+            logger.warn(e);
+        }
+    }
+
+    public void remove(String name) {
+        Entry removed;
+        synchronized (this) {
+            removed = byName.remove(name);
+            if (removed != null) {
+                ordered.remove(name);
+            }
+        }
+        if (removed != null) {
+            schedulePersist();
+        }
+    }
+
+    /**
+     * Walk the archive directory and bring the catalog in line with its contents. Metadata of
+     * entries which are still present is retained.
+     */
+    void reconcile() throws IOException {
+        synchronized (reconcileLock) {
+            Set<String> seen = new HashSet<>();
+            for (String subdirectory : storage.listSubdirectories()) {
+                if (isIgnored(subdirectory)) {
+                    continue;
+                }
+                scan(subdirectory, seen);
+            }
+            for (Entry entry : byName.values()) {
+                if (!seen.contains(entry.getName())
+                        && !storage.exists(entry.getSubdirectory(), entry.getName())) {
+                    remove(entry.getName());
+                }
+            }
+            this.loaded = true;
+            logger.info("Archive catalog contains {} recordings", byName.size());
+        }
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        synchronized (reconcileLock) {
+            if (!loaded) {
+                reconcile();
+            }
+        }
+    }
+
+    private void scan(String subdirectory, Set<String> seen) throws IOException {
+        for (ArchiveStorage.StoredFile file : storage.list(subdirectory)) {
+            refresh(subdirectory, file);
+            seen.add(file.getName());
+        }
+    }
+
+    private void refresh(String subdirectory, String name) {
+        Optional<ArchiveStorage.StoredFile> file;
+        try {
+            file = storage.stat(subdirectory, name);
+        } catch (IOException e) {
+            logger.warn(e);
+            return;
+        }
+        if (file.isEmpty()) {
+            // removed again before we got to it
+            Entry existing = byName.get(name);
+            if (existing != null && existing.getSubdirectory().equals(subdirectory)) {
+                remove(name);
+            }
+            return;
+        }
+        refresh(subdirectory, file.get());
+    }
+
+    private void refresh(String subdirectory, ArchiveStorage.StoredFile file) {
+        String name = file.getName();
+        long size = getRecordingSize(subdirectory, file);
+        // read and replace the entry atomically with respect to add(), so that data times it puts
+        // are not overwritten by an entry built from a stale read
+        synchronized (this) {
+            Entry existing = byName.get(name);
+            Long dataStartTime = null;
+            Long dataEndTime = null;
+            if (existing != null && existing.getSubdirectory().equals(subdirectory)) {
+                if (existing.getSize() == size
+                        && existing.getArchivedTime() == file.getLastModified()) {
+                    return;
+                }
+                dataStartTime = existing.getDataStartTime();
+                dataEndTime = existing.getDataEndTime();
+            }
+            put(
+                    new Entry(
+                            subdirectory,
+                            name,
+                            size,
+                            file.getLastModified(),
+                            dataStartTime,
+                            dataEndTime));
+        }
+    }
+
+    private long getRecordingSize(String subdirectory, ArchiveStorage.StoredFile file) {
+        if (archivePath == null) {
+            // deduplication is only supported for local archives
+            return file.getSize();
+        }
+        return ArchiveChunkStore.getRecordingSize(
+                archivePath.resolve(subdirectory).resolve(file.getName()), file.getSize());
+    }
+
+    private void put(Entry entry) {
+        synchronized (this) {
+            byName.put(entry.getName(), entry);
+            ordered.put(entry.getName(), entry);
+        }
+        schedulePersist();
+    }
+
+    private boolean isIgnored(String subdirectory) {
+        return CATALOG_FILE_NAME.equals(subdirectory)
+                || (CATALOG_FILE_NAME + ".tmp").equals(subdirectory)
+                || UPLOADS_SUBDIRECTORY.equals(subdirectory)
+                || ArchiveChunkStore.CHUNKS_DIRECTORY.equals(subdirectory);
+    }
+
+    private void watch() throws IOException {
+        WatchService ws = archivePath.getFileSystem().newWatchService();
+        this.watchService = ws;
+        Map<WatchKey, String> keys = new ConcurrentHashMap<>();
+        keys.put(archivePath.register(ws, ENTRY_CREATE, ENTRY_DELETE), "");
+        for (String subdirectory : fs.listDirectoryChildren(archivePath)) {
+            Path dir = archivePath.resolve(subdirectory);
+            if (!isIgnored(subdirectory) && fs.isDirectory(dir)) {
+                keys.put(dir.register(ws, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), subdirectory);
+            }
+        }
+        Thread watcher = new Thread(() -> processWatchEvents(ws, keys), "archive-catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void processWatchEvents(WatchService ws, Map<WatchKey, String> keys) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = ws.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            String subdirectory = keys.get(key);
+            try {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    handleWatchEvent(ws, keys, subdirectory, event);
+                }
+            } catch (IOException e) {
+                logger.warn(e);
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    private void handleWatchEvent(
+            WatchService ws, Map<WatchKey, String> keys, String subdirectory, WatchEvent<?> event)
+            throws IOException {
+        if (OVERFLOW.equals(event.kind())) {
+            logger.trace("Archive catalog watch events overflowed, reconciling");
+            executor.execute(
+                    () -> {
+                        try {
+                            reconcile();
+                        } catch (IOException e) {
+                            logger.warn(e);
+                        }
+                    });
+            return;
+        }
+        String name = Objects.toString(event.context());
+        if (subdirectory == null || isIgnored(name)) {
+            return;
+        }
+        if (subdirectory.isEmpty()) {
+            // a target subdirectory was added to or removed from the archive root
+            Path dir = archivePath.resolve(name);
+            if (ENTRY_CREATE.equals(event.kind()) && fs.isDirectory(dir)) {
+                keys.put(dir.register(ws, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), name);
+                scan(name, new HashSet<>());
+            } else if (ENTRY_DELETE.equals(event.kind())) {
+                for (Entry entry : byName.values()) {
+                    if (entry.getSubdirectory().equals(name)) {
+                        remove(entry.getName());
+                    }
+                }
+            }
+            return;
+        }
+        if (ENTRY_DELETE.equals(event.kind())) {
+            Entry existing = byName.get(name);
+            if (existing != null && existing.getSubdirectory().equals(subdirectory)) {
+                remove(name);
+            }
+        } else {
+            refresh(subdirectory, name);
+        }
+    }
+
+    private void schedulePersist() {
+        if (!persistent || !persistScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        executor.schedule(this::persist, PERSIST_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @SuppressFBWarnings("RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
+    void persist() {
+        persistScheduled.set(false);
+        Path catalogFile = archivePath.resolve(CATALOG_FILE_NAME);
+        Path tmp = archivePath.resolve(CATALOG_FILE_NAME + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(new Snapshot(new ArrayList<>(ordered.values())), writer);
+            }
+            Files.move(
+                    tmp,
+                    catalogFile,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to persist archive catalog");
+            logger.warn(e);
+        }
+    }
+
+    private void loadSnapshot() {
+        Path catalogFile = archivePath.resolve(CATALOG_FILE_NAME);
+        if (!fs.exists(catalogFile)) {
+            return;
+        }
+        try (BufferedReader reader = fs.readFile(catalogFile)) {
+            Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+            if (snapshot == null || snapshot.entries == null) {
+                return;
+            }
+            synchronized (this) {
+                for (Entry entry : snapshot.entries) {
+                    byName.put(entry.getName(), entry);
+                    ordered.put(entry.getName(), entry);
+                }
+            }
+            this.loaded = true;
+            logger.info(
+                    "Loaded archive catalog snapshot with {} recordings", snapshot.entries.size());
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Failed to load archive catalog snapshot, archive will be rescanned");
+            logger.warn(e);
+        }
+    }
+
+    static class Snapshot {
+        final List<Entry> entries;
+
+        Snapshot(List<Entry> entries) {
+            this.entries = entries;
+        }
+    }
+
+    public static class Entry {
+        private final String subdirectory;
+        private final String name;
+        private final long size;
+        private final long archivedTime;
+        private final Long dataStartTime;
+        private final Long dataEndTime;
+        private final String rule;
+
+        Entry(
+                String subdirectory,
+                String name,
+                long size,
+                long archivedTime,
+                Long dataStartTime,
+                Long dataEndTime) {
+            this.subdirectory = subdirectory;
+            this.name = name;
+            this.size = size;
+            this.archivedTime = archivedTime;
+            this.dataStartTime = dataStartTime;
+            this.dataEndTime = dataEndTime;
+            Matcher m = RULE_RECORDING_PATTERN.matcher(name);
+            this.rule = m.matches() ? m.group(1) : null;
+        }
+
+        /** @return the archive subdirectory, which is the encoded service URI of the target */
+        public String getSubdirectory() {
+            return subdirectory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Path getPath(Path archivePath) {
+            return archivePath.resolve(subdirectory).resolve(name).normalize().toAbsolutePath();
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /** @return the last modification time of the archived file, in epoch milliseconds */
+        public long getArchivedTime() {
+            return archivedTime;
+        }
+
+        /** @return the start time of the recording data in epoch milliseconds, if known */
+        public Long getDataStartTime() {
+            return dataStartTime;
+        }
+
+        /** @return the end time of the recording data in epoch milliseconds, if known */
+        public Long getDataEndTime() {
+            return dataEndTime;
+        }
+
+        /** @return the name of the automated rule which created the recording, if any */
+        public String getRule() {
+            return rule;
+        }
+    }
+}
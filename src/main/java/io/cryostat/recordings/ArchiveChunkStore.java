@@ -0,0 +1,450 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.cryostat.core.log.Logger;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+
+/**
+ * A content-addressed store for the JFR chunks of archived recordings. Recordings which are
+ * archived repeatedly while they are still running, for example by rules with an archival period,
+ * share most of their chunks with the previous archived copy. When deduplication is enabled, each
+ * archived recording is split on its JFR chunk boundaries, each distinct chunk is stored only once
+ * within the archive's chunk directory, and the recording itself is replaced by a small manifest
+ * listing its chunks. Manifests keep the archived recording's file name, and are recognized by
+ * their leading bytes, so archives may contain a mix of manifests and whole recordings.
+ *
+ * <p>Chunks are reference counted by the manifests which list them, and are deleted along with the
+ * last manifest referring to them. Chunks left unreferenced by manifests removed out-of-band are
+ * cleaned up the next time the store is loaded or compacted.
+ */
+public class ArchiveChunkStore {
+
+    static final String CHUNKS_DIRECTORY = ".cryostat-chunks";
+    static final String MANIFEST_HEADER = "#cryostat-chunk-manifest";
+    static final int MANIFEST_VERSION = 1;
+    // manifests list one short line per chunk, so anything larger is a whole recording
+    static final long MAX_MANIFEST_SIZE = 1024 * 1024;
+    static final long TEMP_FILE_MAX_AGE_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final byte[] MANIFEST_MAGIC =
+            (MANIFEST_HEADER + " ").getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_HEADER_LINE_LENGTH = 128;
+    private static final String CHUNK_SUFFIX = ".chunk";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path archivePath;
+    private final Path chunksPath;
+    private final ArchiveCompression compression;
+    private final boolean enabled;
+    private final Logger logger;
+
+    private final Map<String, Integer> references = new HashMap<>();
+    private boolean loaded;
+
+    ArchiveChunkStore(
+            Path archivePath, ArchiveCompression compression, boolean enabled, Logger logger) {
+        this.archivePath = archivePath;
+        this.chunksPath = archivePath.resolve(CHUNKS_DIRECTORY);
+        this.compression = compression;
+        this.enabled = enabled;
+        this.logger = logger;
+    }
+
+    /** @return whether newly archived recordings should be written into this store */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Split the recording stream into its JFR chunks, store any chunks which are not already
+     * stored, and write a manifest of the recording's chunks to the destination. The destination
+     * must not already exist.
+     */
+    public void write(InputStream recording, Path destination) throws IOException {
+        Files.createDirectories(chunksPath);
+        Files.createDirectories(destination.getParent());
+        List<Chunk> chunks = new ArrayList<>();
+        try {
+            Chunk chunk;
+            while ((chunk = writeChunk(recording)) != null) {
+                chunks.add(chunk);
+            }
+            commit(chunks, destination);
+        } finally {
+            for (Chunk chunk : chunks) {
+                Files.deleteIfExists(chunk.tempFile);
+            }
+        }
+    }
+
+    /** @return a stream of the recording reassembled from the chunks listed by the manifest */
+    public InputStream open(Path manifestFile) throws IOException {
+        List<String> hashes = readManifest(manifestFile);
+        List<InputStream> streams = new ArrayList<>(hashes.size());
+        try {
+            for (String hash : hashes) {
+                streams.add(ArchiveCompression.decompress(Files.newInputStream(chunkPath(hash))));
+            }
+        } catch (IOException ioe) {
+            for (InputStream stream : streams) {
+                stream.close();
+            }
+            throw ioe;
+        }
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    /** Delete the manifest, and any of its chunks which are not listed by another manifest. */
+    public synchronized void delete(Path manifestFile) throws IOException {
+        ensureLoaded();
+        List<String> hashes = readManifest(manifestFile);
+        Files.deleteIfExists(manifestFile);
+        for (String hash : hashes) {
+            release(hash);
+        }
+    }
+
+    /**
+     * Recount the references to each chunk from the manifests in the archive, and clean up any
+     * chunks left unreferenced by manifests removed out-of-band since the store was loaded.
+     */
+    public synchronized void compact() throws IOException {
+        if (!Files.isDirectory(chunksPath)) {
+            return;
+        }
+        this.loaded = false;
+        ensureLoaded();
+    }
+
+    /** @return whether the file is a chunk manifest rather than a whole recording */
+    public boolean isManifest(Path file) throws IOException {
+        if (Files.size(file) > MAX_MANIFEST_SIZE) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MANIFEST_MAGIC.length), MANIFEST_MAGIC);
+        }
+    }
+
+    /**
+     * @return the size of the recording archived in the file, which for a manifest is the total
+     *     size of its chunks, and otherwise the given size of the file itself
+     */
+    public static long getRecordingSize(Path file, long fileSize) {
+        if (fileSize > MAX_MANIFEST_SIZE) {
+            return fileSize;
+        }
+        byte[] head;
+        try (InputStream in = Files.newInputStream(file)) {
+            head = in.readNBytes(MAX_HEADER_LINE_LENGTH);
+        } catch (IOException e) {
+            return fileSize;
+        }
+        String line = new String(head, StandardCharsets.US_ASCII);
+        int end = line.indexOf('\n');
+        if (end < 0 || !line.startsWith(new String(MANIFEST_MAGIC, StandardCharsets.US_ASCII))) {
+            return fileSize;
+        }
+        try {
+            return parseHeader(line.substring(0, end));
+        } catch (IOException e) {
+            return fileSize;
+        }
+    }
+
+    private Chunk writeChunk(InputStream recording) throws IOException {
+        byte[] header = recording.readNBytes(JfrChunkHeader.SIZE_PREFIX_LENGTH);
+        if (header.length == 0) {
+            return null;
+        }
+        // anything which does not start with a complete chunk header, including a chunk which
+        // is still being written and so does not have its final size yet, is stored as one piece
+        InputStream body = recording;
+        if (header.length == JfrChunkHeader.SIZE_PREFIX_LENGTH && JfrChunkHeader.hasMagic(header)) {
+            long size = JfrChunkHeader.getSize(header);
+            if (size > JfrChunkHeader.SIZE_PREFIX_LENGTH) {
+                BoundedInputStream bounded =
+                        new BoundedInputStream(recording, size - JfrChunkHeader.SIZE_PREFIX_LENGTH);
+                bounded.setPropagateClose(false);
+                body = bounded;
+            }
+        }
+        MessageDigest digest = newDigest();
+        CountingInputStream counting =
+                new CountingInputStream(
+                        new DigestInputStream(
+                                new SequenceInputStream(new ByteArrayInputStream(header), body),
+                                digest));
+        Path tempFile = chunksPath.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            compression.write(counting, tempFile);
+        } catch (IOException ioe) {
+            Files.deleteIfExists(tempFile);
+            throw ioe;
+        }
+        return new Chunk(Hex.encodeHexString(digest.digest()), counting.getByteCount(), tempFile);
+    }
+
+    private synchronized void commit(List<Chunk> chunks, Path destination) throws IOException {
+        if (Files.exists(destination)) {
+            throw new FileAlreadyExistsException(destination.toString());
+        }
+        ensureLoaded();
+        List<String> added = new ArrayList<>();
+        try {
+            for (Chunk chunk : chunks) {
+                Path stored = chunkPath(chunk.hash);
+                if (Files.exists(stored)) {
+                    Files.delete(chunk.tempFile);
+                } else {
+                    Files.createDirectories(stored.getParent());
+                    Files.move(chunk.tempFile, stored, StandardCopyOption.ATOMIC_MOVE);
+                    added.add(chunk.hash);
+                }
+            }
+            writeManifest(chunks, destination);
+        } catch (IOException ioe) {
+            for (String hash : added) {
+                if (!references.containsKey(hash)) {
+                    Files.deleteIfExists(chunkPath(hash));
+                }
+            }
+            throw ioe;
+        }
+        for (Chunk chunk : chunks) {
+            references.merge(chunk.hash, 1, Integer::sum);
+        }
+        logger.trace(
+                "Archived {} with {} chunks, {} of them new",
+                destination,
+                chunks.size(),
+                added.size());
+    }
+
+    private void writeManifest(List<Chunk> chunks, Path destination) throws IOException {
+        long total = chunks.stream().mapToLong(c -> c.size).sum();
+        Path tempFile = chunksPath.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.US_ASCII)) {
+                writer.write(String.format("%s %d %d%n", MANIFEST_HEADER, MANIFEST_VERSION, total));
+                for (Chunk chunk : chunks) {
+                    writer.write(String.format("%s %d%n", chunk.hash, chunk.size));
+                }
+            }
+            // move into place whole so that the archive catalog never sees a partial manifest
+            Files.move(tempFile, destination, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void release(String hash) throws IOException {
+        int count = references.getOrDefault(hash, 0) - 1;
+        if (count > 0) {
+            references.put(hash, count);
+        } else {
+            references.remove(hash);
+            Files.deleteIfExists(chunkPath(hash));
+        }
+    }
+
+    /**
+     * Count the references to each chunk from the manifests in the archive, and clean up any chunks
+     * which are no longer referenced and any temporary files left behind by interrupted writes.
+     */
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        references.clear();
+        boolean complete = true;
+        for (Path dir : listChildren(archivePath)) {
+            if (dir.equals(chunksPath) || !Files.isDirectory(dir)) {
+                continue;
+            }
+            for (Path file : listChildren(dir)) {
+                try {
+                    if (!Files.isRegularFile(file) || !isManifest(file)) {
+                        continue;
+                    }
+                    for (String hash : readManifest(file)) {
+                        references.merge(hash, 1, Integer::sum);
+                    }
+                } catch (IOException e) {
+                    logger.warn("Could not read archived recording manifest {}", file);
+                    logger.warn(e);
+                    complete = false;
+                }
+            }
+        }
+        this.loaded = true;
+        if (complete) {
+            sweep();
+        } else {
+            logger.warn("Skipping archive chunk cleanup, not all manifests could be read");
+        }
+    }
+
+    private void sweep() throws IOException {
+        if (!Files.isDirectory(chunksPath)) {
+            return;
+        }
+        long staleTime = System.currentTimeMillis() - TEMP_FILE_MAX_AGE_MS;
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(chunksPath)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        int removed = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            boolean unreferenced =
+                    name.endsWith(CHUNK_SUFFIX)
+                            && !references.containsKey(
+                                    name.substring(0, name.length() - CHUNK_SUFFIX.length()));
+            boolean staleTemp =
+                    name.endsWith(TEMP_SUFFIX)
+                            && Files.getLastModifiedTime(file).toMillis() < staleTime;
+            if ((unreferenced || staleTemp) && Files.deleteIfExists(file)) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            logger.info("Removed {} unreferenced archive chunk files", removed);
+        }
+    }
+
+    private List<Path> listChildren(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> children = Files.list(dir)) {
+            return children.collect(Collectors.toList());
+        }
+    }
+
+    Path chunkPath(String hash) {
+        return chunksPath.resolve(hash.substring(0, 2)).resolve(hash + CHUNK_SUFFIX);
+    }
+
+    /** @return the hashes of the chunks listed by the manifest, in order */
+    private static List<String> readManifest(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            parseHeader(reader.readLine());
+            List<String> hashes = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 2
+                        || !parts[0].matches("[0-9a-f]{64}")
+                        || !parts[1].matches("\\d+")) {
+                    throw new IOException("Malformed chunk manifest entry in " + file);
+                }
+                hashes.add(parts[0]);
+            }
+            return hashes;
+        }
+    }
+
+    private static long parseHeader(String line) throws IOException {
+        String[] parts = line == null ? new String[0] : line.trim().split(" ");
+        if (parts.length != 3 || !MANIFEST_HEADER.equals(parts[0])) {
+            throw new IOException("Not a chunk manifest");
+        }
+        try {
+            if (Integer.parseInt(parts[1]) != MANIFEST_VERSION) {
+                throw new IOException("Unsupported chunk manifest version " + parts[1]);
+            }
+            return Long.parseLong(parts[2]);
+        } catch (NumberFormatException nfe) {
+            throw new IOException("Malformed chunk manifest header", nfe);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implementation is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Chunk {
+        final String hash;
+        final long size;
+        final Path tempFile;
+
+        Chunk(String hash, long size, Path tempFile) {
+            this.hash = hash;
+            this.size = size;
+            this.tempFile = tempFile;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The encoding of archived recording files. Archived recordings are compressed as they are written
+ * if compression is enabled, but always keep their {@code .jfr} file name, so that enabling or
+ * disabling compression does not change how recordings are named or listed. The encoding of an
+ * existing file is detected from its leading bytes rather than from the current setting, so
+ * recordings archived before the setting was changed remain readable.
+ */
+public enum ArchiveCompression {
+    NONE("none", null),
+    GZIP("gzip", "gzip"),
+    ;
+
+    private static final int GZIP_MAGIC_0 = 0x1f;
+    private static final int GZIP_MAGIC_1 = 0x8b;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final String contentEncoding;
+
+    ArchiveCompression(String name, String contentEncoding) {
+        this.name = name;
+        this.contentEncoding = contentEncoding;
+    }
+
+    public static ArchiveCompression fromName(String name) {
+        String n = name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+        if (n.isEmpty()) {
+            return NONE;
+        }
+        for (ArchiveCompression compression : values()) {
+            if (compression.name.equals(n)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown archive compression " + name);
+    }
+
+    /** @return the HTTP Content-Encoding of files in this encoding, or null if uncompressed */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return whether a client sending the given HTTP Accept-Encoding header can be sent files in
+     *     this encoding as-is
+     */
+    public boolean isAcceptedBy(String acceptEncoding) {
+        if (contentEncoding == null) {
+            return true;
+        }
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double explicitQ = null;
+        Double wildcardQ = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            boolean explicit = coding.equalsIgnoreCase(contentEncoding);
+            if (!explicit && !coding.equals("*")) {
+                continue;
+            }
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException nfe) {
+                        q = 0;
+                    }
+                }
+            }
+            if (explicit) {
+                explicitQ = q;
+            } else {
+                wildcardQ = q;
+            }
+        }
+        // an explicitly listed coding takes precedence over the wildcard
+        Double q = explicitQ != null ? explicitQ : wildcardQ;
+        return q != null && q > 0;
+    }
+
+    /** Wrap a stream so that what is written to it is stored in this encoding. */
+    public OutputStream compress(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Write the contents of the stream into a new file at the destination, in this encoding. The
+     * destination must not already exist.
+     */
+    public void write(InputStream in, Path destination) throws IOException {
+        try (OutputStream out =
+                compress(
+                        Files.newOutputStream(
+                                destination,
+                                StandardOpenOption.CREATE_NEW,
+                                StandardOpenOption.WRITE))) {
+            in.transferTo(out);
+        }
+    }
+
+    /** @return the encoding of the file, judging by its leading bytes */
+    public static ArchiveCompression detect(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return detect(in);
+        }
+    }
+
+    /** @return the encoding of a stored file, judging by the leading bytes read from the stream */
+    public static ArchiveCompression detect(InputStream in) throws IOException {
+        return in.read() == GZIP_MAGIC_0 && in.read() == GZIP_MAGIC_1 ? GZIP : NONE;
+    }
+
+    /**
+     * Wrap a stream of an archived recording file, in any encoding, so that reading from it yields
+     * the uncompressed recording.
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        boolean gzip = buffered.read() == GZIP_MAGIC_0 && buffered.read() == GZIP_MAGIC_1;
+        buffered.reset();
+        return gzip ? new GZIPInputStream(buffered, BUFFER_SIZE) : buffered;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.Clock;
+import io.cryostat.messaging.notifications.NotificationFactory;
+import io.cryostat.net.web.http.HttpMimeType;
+
+/**
+ * Keeps the archive within the configured quotas by periodically evicting archived recordings,
+ * oldest first according to the {@link ArchiveCatalog}. Recordings older than the maximum age are
+ * evicted first, then the oldest recordings of each target exceeding the per-target size or count
+ * quota, and finally the oldest recordings in the archive while it exceeds the global size or count
+ * quota. This applies to every archived recording, including those saved or uploaded manually,
+ * independently of the preserved archive count of each automated rule.
+ *
+ * <p>Evictions are spaced out so that a large backlog does not saturate the archive volume or
+ * object store, and clients are notified of evicted recordings in batches. The chunk store of a
+ * deduplicated archive is also compacted periodically, to reclaim chunks left behind by manifests
+ * deleted out-of-band.
+ */
+public class ArchiveRetention {
+
+    // a separate category from RecordingDeleted, whose clients expect a single recording name
+    static final String EVICTION_NOTIFICATION_CATEGORY = "ArchivedRecordingsEvicted";
+    static final int NOTIFICATION_BATCH_SIZE = 100;
+    static final long COMPACTION_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final Comparator<ArchiveCatalog.Entry> OLDEST_FIRST =
+            Comparator.comparingLong(ArchiveCatalog.Entry::getArchivedTime)
+                    .thenComparing(ArchiveCatalog.Entry::getName);
+
+    private final ArchiveCatalog catalog;
+    private final RecordingArchiveHelper archiveHelper;
+    private final ArchiveChunkStore chunkStore;
+    private final NotificationFactory notificationFactory;
+    private final Quota globalQuota;
+    private final Quota targetQuota;
+    private final long intervalMs;
+    private final long evictionDelayMs;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final Logger logger;
+
+    ArchiveRetention(
+            ArchiveCatalog catalog,
+            RecordingArchiveHelper archiveHelper,
+            ArchiveChunkStore chunkStore,
+            NotificationFactory notificationFactory,
+            Quota globalQuota,
+            Quota targetQuota,
+            long intervalMs,
+            long evictionDelayMs,
+            Clock clock,
+            ScheduledExecutorService executor,
+            Logger logger) {
+        this.catalog = catalog;
+        this.archiveHelper = archiveHelper;
+        this.chunkStore = chunkStore;
+        this.notificationFactory = notificationFactory;
+        this.globalQuota = globalQuota;
+        this.targetQuota = targetQuota;
+        this.intervalMs = intervalMs;
+        this.evictionDelayMs = evictionDelayMs;
+        this.clock = clock;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    public void start() {
+        if (globalQuota.isLimited() || targetQuota.isLimited()) {
+            executor.scheduleWithFixedDelay(
+                    this::enforce, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+        executor.scheduleWithFixedDelay(
+                this::compact,
+                COMPACTION_INTERVAL_MS,
+                COMPACTION_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    void enforce() {
+        List<ArchiveCatalog.Entry> evictions;
+        try {
+            evictions = selectEvictions(catalog.list(), clock.getWallTime());
+        } catch (IOException e) {
+            logger.warn(e);
+            return;
+        }
+        if (evictions.isEmpty()) {
+            return;
+        }
+        logger.info(
+                "Evicting {} archived recordings to enforce the archive retention policy",
+                evictions.size());
+
+        List<String> evicted = new ArrayList<>();
+        try {
+            for (ArchiveCatalog.Entry entry : evictions) {
+                try {
+                    archiveHelper.deleteArchivedRecording(entry.getName());
+                    evicted.add(entry.getName());
+                } catch (Exception e) {
+                    logger.warn("Could not evict archived recording {}", entry.getName());
+                    logger.warn(e);
+                }
+                if (evicted.size() >= NOTIFICATION_BATCH_SIZE) {
+                    notifyEvicted(evicted);
+                    evicted.clear();
+                }
+                if (evictionDelayMs > 0) {
+                    Thread.sleep(evictionDelayMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            notifyEvicted(evicted);
+        }
+    }
+
+    void compact() {
+        try {
+            chunkStore.compact();
+        } catch (IOException e) {
+            logger.warn(e);
+        }
+    }
+
+    /** @return the entries to evict to bring the archive within its quotas, oldest first */
+    List<ArchiveCatalog.Entry> selectEvictions(List<ArchiveCatalog.Entry> entries, long now) {
+        List<ArchiveCatalog.Entry> oldestFirst = new ArrayList<>(entries);
+        oldestFirst.sort(OLDEST_FIRST);
+        Set<ArchiveCatalog.Entry> evicted = new LinkedHashSet<>();
+
+        for (ArchiveCatalog.Entry entry : oldestFirst) {
+            if (globalQuota.isExpired(entry, now) || targetQuota.isExpired(entry, now)) {
+                evicted.add(entry);
+            }
+        }
+
+        if (targetQuota.isLimited()) {
+            Map<String, List<ArchiveCatalog.Entry>> byTarget =
+                    oldestFirst.stream()
+                            .collect(
+                                    Collectors.groupingBy(
+                                            ArchiveCatalog.Entry::getSubdirectory,
+                                            LinkedHashMap::new,
+                                            Collectors.toList()));
+            for (List<ArchiveCatalog.Entry> targetEntries : byTarget.values()) {
+                evictOverQuota(targetEntries, targetQuota, evicted);
+            }
+        }
+        evictOverQuota(oldestFirst, globalQuota, evicted);
+
+        List<ArchiveCatalog.Entry> result = new ArrayList<>(evicted);
+        result.sort(OLDEST_FIRST);
+        return result;
+    }
+
+    private static void evictOverQuota(
+            List<ArchiveCatalog.Entry> oldestFirst,
+            Quota quota,
+            Set<ArchiveCatalog.Entry> evicted) {
+        long count = 0;
+        long bytes = 0;
+        for (ArchiveCatalog.Entry entry : oldestFirst) {
+            if (!evicted.contains(entry)) {
+                count++;
+                bytes += entry.getSize();
+            }
+        }
+        for (ArchiveCatalog.Entry entry : oldestFirst) {
+            if (!quota.isExceeded(count, bytes)) {
+                return;
+            }
+            if (evicted.add(entry)) {
+                count--;
+                bytes -= entry.getSize();
+            }
+        }
+    }
+
+    private void notifyEvicted(List<String> recordingNames) {
+        if (recordingNames.isEmpty()) {
+            return;
+        }
+        notificationFactory
+                .createBuilder()
+                .metaCategory(EVICTION_NOTIFICATION_CATEGORY)
+                .metaType(HttpMimeType.JSON)
+                .message(Map.of("recordings", List.copyOf(recordingNames)))
+                .build()
+                .send();
+    }
+
+    /**
+     * Limits on the archived recordings of the whole archive, or of each target. A limit of zero or
+     * less is unlimited. Sizes are those recorded in the catalog, which for deduplicated recordings
+     * is the size of the reassembled recording rather than the space it uses in the archive.
+     */
+    public static class Quota {
+        static final Quota UNLIMITED = new Quota(0, 0, 0);
+
+        private final long maxBytes;
+        private final long maxAgeMs;
+        private final long maxCount;
+
+        public Quota(long maxBytes, long maxAgeMs, long maxCount) {
+            this.maxBytes = maxBytes;
+            this.maxAgeMs = maxAgeMs;
+            this.maxCount = maxCount;
+        }
+
+        public boolean isLimited() {
+            return maxBytes > 0 || maxAgeMs > 0 || maxCount > 0;
+        }
+
+        boolean isExpired(ArchiveCatalog.Entry entry, long now) {
+            return maxAgeMs > 0 && now - entry.getArchivedTime() > maxAgeMs;
+        }
+
+        boolean isExceeded(long count, long bytes) {
+            return (maxCount > 0 && count > maxCount) || (maxBytes > 0 && bytes > maxBytes);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs archive saves on a bounded worker pool. At most one save per target runs at a time, so
+ * repeated saves of the same target are serialized rather than competing for its JMX connection,
+ * and queued saves are dispatched in priority order, so that interactive saves do not wait behind a
+ * backlog of rule-driven ones. Saves submitted while the queue is full fail with a {@link
+ * RejectedExecutionException}.
+ */
+public class ArchiveSaveQueue implements ArchiveSaveQueueMXBean {
+
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND,
+    }
+
+    private final Executor workers;
+    private final int maxActiveSaves;
+    private final int capacity;
+    private final Map<Priority, LinkedList<Task<?>>> pending = new EnumMap<>(Priority.class);
+    private final Set<String> busyTargets = new HashSet<>();
+    private int queueDepth;
+    private int activeSaves;
+
+    ArchiveSaveQueue(Executor workers, int maxActiveSaves, int capacity) {
+        this.workers = workers;
+        this.maxActiveSaves = Math.max(1, maxActiveSaves);
+        this.capacity = Math.max(0, capacity);
+        for (Priority priority : Priority.values()) {
+            pending.put(priority, new LinkedList<>());
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(String targetId, Priority priority, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        List<Task<?>> ready;
+        synchronized (this) {
+            if (queueDepth >= capacity) {
+                future.completeExceptionally(
+                        new RejectedExecutionException(
+                                String.format(
+                                        "Archive save queue is full (%d saves pending)",
+                                        queueDepth)));
+                return future;
+            }
+            pending.get(priority).add(new Task<>(targetId, task, future));
+            queueDepth++;
+            ready = takeReady();
+        }
+        ready.forEach(this::dispatch);
+        return future;
+    }
+
+    @Override
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public synchronized int getActiveSaves() {
+        return activeSaves;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // must be called while holding this object's lock
+    private List<Task<?>> takeReady() {
+        List<Task<?>> ready = new ArrayList<>();
+        for (Priority priority : Priority.values()) {
+            Iterator<Task<?>> it = pending.get(priority).iterator();
+            while (activeSaves < maxActiveSaves && it.hasNext()) {
+                Task<?> task = it.next();
+                if (busyTargets.add(task.targetId)) {
+                    it.remove();
+                    queueDepth--;
+                    activeSaves++;
+                    ready.add(task);
+                }
+            }
+        }
+        return ready;
+    }
+
+    private void dispatch(Task<?> task) {
+        try {
+            workers.execute(
+                    () -> {
+                        try {
+                            task.run();
+                        } finally {
+                            complete(task);
+                        }
+                    });
+        } catch (RejectedExecutionException ree) {
+            task.future.completeExceptionally(ree);
+            complete(task);
+        }
+    }
+
+    private void complete(Task<?> task) {
+        List<Task<?>> ready;
+        synchronized (this) {
+            busyTargets.remove(task.targetId);
+            activeSaves--;
+            ready = takeReady();
+        }
+        ready.forEach(this::dispatch);
+    }
+
+    private static class Task<T> {
+        private final String targetId;
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future;
+
+        private Task(String targetId, Callable<T> callable, CompletableFuture<T> future) {
+            this.targetId = targetId;
+            this.callable = callable;
+            this.future = future;
+        }
+
+        private void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
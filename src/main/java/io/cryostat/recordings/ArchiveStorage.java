@@ -0,0 +1,130 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import io.cryostat.rules.ArchivePathException;
+
+/**
+ * The backend archived recording files are persisted in. Files are addressed by the archive
+ * subdirectory, which is the encoded service URI of the target, and the file name within it. Files
+ * are stored in the archive's {@link ArchiveCompression} and read back as stored, so callers which
+ * need the recording itself should decompress what they read.
+ */
+public interface ArchiveStorage {
+
+    /**
+     * @return the local directory the archive is kept in, or empty if the archive is kept in a
+     *     remote store and its files cannot be accessed as local files
+     */
+    Optional<Path> getLocalPath();
+
+    /** Check that the archive can currently be used. */
+    void validate() throws ArchivePathException;
+
+    List<String> listSubdirectories() throws IOException;
+
+    /** @return the files within the subdirectory, or an empty list if there is no such directory */
+    List<StoredFile> list(String subdirectory) throws IOException;
+
+    Optional<StoredFile> stat(String subdirectory, String name) throws IOException;
+
+    default boolean exists(String subdirectory, String name) throws IOException {
+        return stat(subdirectory, name).isPresent();
+    }
+
+    /**
+     * Write the contents of the stream into a new file in the archive. If writing fails, no partial
+     * file is left behind.
+     *
+     * @throws java.nio.file.FileAlreadyExistsException if the file already exists
+     */
+    void write(String subdirectory, String name, InputStream content) throws IOException;
+
+    /**
+     * As {@link #write(String, String, InputStream)}, but taking the contents from a local file,
+     * which is consumed.
+     */
+    default void store(String subdirectory, String name, Path source) throws IOException {
+        try (InputStream content = Files.newInputStream(source)) {
+            write(subdirectory, name, content);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    /** @return a stream of the file's contents as stored */
+    InputStream read(String subdirectory, String name) throws IOException;
+
+    /** @return a stream of at most length bytes of the file's contents as stored, from offset */
+    InputStream read(String subdirectory, String name, long offset, long length) throws IOException;
+
+    /** @return whether the file existed */
+    boolean delete(String subdirectory, String name) throws IOException;
+
+    public static class StoredFile {
+        private final String name;
+        private final long size;
+        private final long lastModified;
+
+        public StoredFile(String name, long size, long lastModified) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** @return the stored size of the file, which may be compressed */
+        public long getSize() {
+            return size;
+        }
+
+        /** @return the last modification time of the file, in epoch milliseconds */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Joins a previously archived copy of an active recording with a ranged stream of the same
+ * recording starting at the end of the archived copy, yielding the same JFR chunks as a full
+ * transfer of the recording would. Archived chunks which the active recording has since discarded
+ * due to its maximum age or size are dropped, and chunks of the ranged stream which were already
+ * present in the archived copy are skipped. JFR chunks are self-contained, so the result is a valid
+ * JFR file.
+ */
+class IncrementalRecordingStream extends InputStream {
+
+    private final InputStream archived;
+    private final InputStream newer;
+    private final long retainFromNanos;
+
+    private InputStream current;
+    private long lastArchivedChunkStart = Long.MIN_VALUE;
+    private byte[] header = new byte[0];
+    private int headerPosition;
+    private long remaining;
+
+    /**
+     * @param archived the uncompressed contents of the previously archived copy of the recording
+     * @param newer the recording's chunks overlapping the time since the archived copy ended
+     * @param retainFromNanos the start of the data still held by the active recording, in epoch
+     *     nanoseconds. Archived chunks ending before this are dropped.
+     */
+    IncrementalRecordingStream(InputStream archived, InputStream newer, long retainFromNanos) {
+        this.archived = archived;
+        this.newer = newer;
+        this.retainFromNanos = retainFromNanos;
+        this.current = archived;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (headerPosition < header.length) {
+                int n = Math.min(len, header.length - headerPosition);
+                System.arraycopy(header, headerPosition, b, off, n);
+                headerPosition += n;
+                return n;
+            }
+            if (remaining > 0) {
+                int n = current.read(b, off, (int) Math.min(len, remaining));
+                if (n < 0) {
+                    throw new IOException("Truncated JFR chunk");
+                }
+                remaining -= n;
+                return n;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+        }
+    }
+
+    private boolean nextChunk() throws IOException {
+        while (true) {
+            byte[] next = current.readNBytes(JfrChunkHeader.LENGTH);
+            if (next.length == 0) {
+                if (current == archived) {
+                    current = newer;
+                    continue;
+                }
+                return false;
+            }
+            if (next.length < JfrChunkHeader.LENGTH || !JfrChunkHeader.hasMagic(next)) {
+                throw new IOException("Recording is not a JFR file");
+            }
+            long size = JfrChunkHeader.getSize(next);
+            if (size < JfrChunkHeader.LENGTH) {
+                throw new IOException("Invalid JFR chunk size " + size);
+            }
+            long start = JfrChunkHeader.getStartNanos(next);
+            boolean keep;
+            if (current == archived) {
+                lastArchivedChunkStart = Math.max(lastArchivedChunkStart, start);
+                keep = start + JfrChunkHeader.getDurationNanos(next) >= retainFromNanos;
+            } else {
+                keep = start > lastArchivedChunkStart;
+            }
+            if (keep) {
+                header = next;
+                headerPosition = 0;
+                remaining = size - JfrChunkHeader.LENGTH;
+                return true;
+            }
+            skipFully(size - JfrChunkHeader.LENGTH);
+        }
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = current.skip(n);
+            if (skipped <= 0) {
+                if (current.read() < 0) {
+                    throw new IOException("Truncated JFR chunk");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            archived.close();
+        } finally {
+            newer.close();
+        }
+    }
+}
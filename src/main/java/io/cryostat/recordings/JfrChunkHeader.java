@@ -0,0 +1,87 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Layout of the header at the start of each JFR chunk: the magic bytes, major and minor version,
+ * chunk size including the header, constant pool offset, metadata offset, start time and duration
+ * in nanoseconds, and further fields which are not read here. Readers read only as much of the
+ * header as they need into a byte array and decode it with the accessors below.
+ */
+final class JfrChunkHeader {
+
+    /** The length of the header up to and including the chunk size. */
+    static final int SIZE_PREFIX_LENGTH = 16;
+
+    /** The length of the header up to and including the chunk duration. */
+    static final int LENGTH = 48;
+
+    private static final byte[] MAGIC = {'F', 'L', 'R', 0};
+    private static final int MAJOR_VERSION_OFFSET = 4;
+    private static final int SIZE_OFFSET = 8;
+    private static final int START_NANOS_OFFSET = 32;
+    private static final int DURATION_NANOS_OFFSET = 40;
+
+    private JfrChunkHeader() {}
+
+    /** @return true if the header starts with the JFR magic bytes */
+    static boolean hasMagic(byte[] header) {
+        return header.length >= MAGIC.length
+                && Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    static short getMajorVersion(byte[] header) {
+        return ByteBuffer.wrap(header).getShort(MAJOR_VERSION_OFFSET);
+    }
+
+    /** @return the size of the chunk in bytes, including the header */
+    static long getSize(byte[] header) {
+        return ByteBuffer.wrap(header).getLong(SIZE_OFFSET);
+    }
+
+    static long getStartNanos(byte[] header) {
+        return ByteBuffer.wrap(header).getLong(START_NANOS_OFFSET);
+    }
+
+    static long getDurationNanos(byte[] header) {
+        return ByteBuffer.wrap(header).getLong(DURATION_NANOS_OFFSET);
+    }
+}
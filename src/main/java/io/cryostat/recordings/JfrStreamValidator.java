@@ -0,0 +1,121 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+/**
+ * Checks that a stream of bytes is a sequence of complete JFR chunks as the bytes arrive, without
+ * buffering the stream. Only the chunk headers are inspected, so this rejects files which are not
+ * JFR recordings at all or which have been truncated, but not recordings with corrupt chunk
+ * contents.
+ */
+public class JfrStreamValidator {
+
+    private static final int MIN_MAJOR_VERSION = 1;
+    private static final int MAX_MAJOR_VERSION = 2;
+
+    private final byte[] header = new byte[JfrChunkHeader.SIZE_PREFIX_LENGTH];
+    private int headerLength;
+    private long remainingInChunk;
+    private long position;
+    private int chunks;
+
+    public void update(byte[] bytes, int offset, int length) throws InvalidJfrStreamException {
+        int end = offset + length;
+        while (offset < end) {
+            if (remainingInChunk > 0) {
+                int skip = (int) Math.min(remainingInChunk, end - offset);
+                remainingInChunk -= skip;
+                position += skip;
+                offset += skip;
+                if (remainingInChunk == 0) {
+                    chunks++;
+                }
+                continue;
+            }
+            int n = Math.min(header.length - headerLength, end - offset);
+            System.arraycopy(bytes, offset, header, headerLength, n);
+            headerLength += n;
+            position += n;
+            offset += n;
+            if (headerLength == header.length) {
+                remainingInChunk = checkHeader() - header.length;
+                headerLength = 0;
+            }
+        }
+    }
+
+    /** Check that the stream ended on a chunk boundary after at least one chunk. */
+    public void finish() throws InvalidJfrStreamException {
+        if (chunks < 1 || headerLength > 0 || remainingInChunk > 0) {
+            throw new InvalidJfrStreamException(
+                    String.format("Recording ends within a chunk at offset %d", position));
+        }
+    }
+
+    /** @return the number of complete chunks seen so far */
+    public int getChunkCount() {
+        return chunks;
+    }
+
+    private long checkHeader() throws InvalidJfrStreamException {
+        long chunkStart = position - header.length;
+        if (!JfrChunkHeader.hasMagic(header)) {
+            throw new InvalidJfrStreamException(
+                    String.format("No JFR chunk header at offset %d", chunkStart));
+        }
+        short major = JfrChunkHeader.getMajorVersion(header);
+        if (major < MIN_MAJOR_VERSION || major > MAX_MAJOR_VERSION) {
+            throw new InvalidJfrStreamException(
+                    String.format(
+                            "Unsupported JFR version %d in chunk at offset %d", major, chunkStart));
+        }
+        long size = JfrChunkHeader.getSize(header);
+        if (size <= header.length) {
+            // a size of zero is left by a JVM which stopped before the chunk was finished
+            throw new InvalidJfrStreamException(
+                    String.format("Invalid chunk size %d at offset %d", size, chunkStart));
+        }
+        return size;
+    }
+
+    public static class InvalidJfrStreamException extends Exception {
+        InvalidJfrStreamException(String message) {
+            super(message);
+        }
+    }
+}
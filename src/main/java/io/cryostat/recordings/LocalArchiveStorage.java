@@ -0,0 +1,224 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import io.cryostat.core.sys.FileSystem;
+import io.cryostat.rules.ArchivePathException;
+
+import org.apache.commons.io.input.BoundedInputStream;
+
+/** Keeps the archive in a directory on the local filesystem, or a mounted volume. */
+public class LocalArchiveStorage implements ArchiveStorage {
+
+    // files are written under a hidden in-progress name in their destination directory and moved
+    // into place once complete, so that partial recordings never appear under their final names
+    private static final String IN_PROGRESS_PREFIX = ".";
+    private static final String IN_PROGRESS_SUFFIX = ".part";
+
+    private final FileSystem fs;
+    private final Path archivePath;
+    private final ArchiveCompression compression;
+
+    public LocalArchiveStorage(FileSystem fs, Path archivePath, ArchiveCompression compression) {
+        this.fs = fs;
+        this.archivePath = archivePath;
+        this.compression = compression;
+    }
+
+    @Override
+    public Optional<Path> getLocalPath() {
+        return Optional.of(archivePath);
+    }
+
+    @Override
+    public void validate() throws ArchivePathException {
+        if (!fs.exists(archivePath)) {
+            throw new ArchivePathException(archivePath.toString(), "does not exist");
+        }
+        if (!fs.isReadable(archivePath)) {
+            throw new ArchivePathException(archivePath.toString(), "is not readable");
+        }
+        if (!fs.isDirectory(archivePath)) {
+            throw new ArchivePathException(archivePath.toString(), "is not a directory");
+        }
+    }
+
+    @Override
+    public List<String> listSubdirectories() throws IOException {
+        return fs.listDirectoryChildren(archivePath);
+    }
+
+    @Override
+    public List<StoredFile> list(String subdirectory) throws IOException {
+        List<String> names;
+        try {
+            names = fs.listDirectoryChildren(archivePath.resolve(subdirectory));
+        } catch (NotDirectoryException | NoSuchFileException e) {
+            return List.of();
+        }
+        List<StoredFile> files = new ArrayList<>(names.size());
+        for (String name : names) {
+            // skip anything removed again before we got to it
+            stat(subdirectory, name).ifPresent(files::add);
+        }
+        return files;
+    }
+
+    @Override
+    public Optional<StoredFile> stat(String subdirectory, String name) throws IOException {
+        if (isInProgress(name)) {
+            return Optional.empty();
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(resolve(subdirectory, name), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        if (!attrs.isRegularFile()) {
+            return Optional.empty();
+        }
+        return Optional.of(new StoredFile(name, attrs.size(), attrs.lastModifiedTime().toMillis()));
+    }
+
+    @Override
+    public boolean exists(String subdirectory, String name) throws IOException {
+        return fs.exists(resolve(subdirectory, name));
+    }
+
+    @Override
+    public void write(String subdirectory, String name, InputStream content) throws IOException {
+        Path destination = prepareDestination(subdirectory, name);
+        // checked up front so that callers can retry under another name before any content is read
+        if (fs.exists(destination)) {
+            throw new FileAlreadyExistsException(destination.toString());
+        }
+        Path inProgress =
+                destination.resolveSibling(
+                        IN_PROGRESS_PREFIX + name + "." + UUID.randomUUID() + IN_PROGRESS_SUFFIX);
+        try {
+            if (compression == ArchiveCompression.NONE) {
+                fs.copy(content, inProgress);
+            } else {
+                compression.write(content, inProgress);
+            }
+            if (fs.exists(destination)) {
+                throw new FileAlreadyExistsException(destination.toString());
+            }
+            move(inProgress, destination, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // don't leave a partial recording behind in the archive
+            fs.deleteIfExists(inProgress);
+        }
+    }
+
+    @Override
+    public void store(String subdirectory, String name, Path source) throws IOException {
+        if (compression != ArchiveCompression.NONE) {
+            ArchiveStorage.super.store(subdirectory, name, source);
+            return;
+        }
+        move(source, prepareDestination(subdirectory, name));
+    }
+
+    @Override
+    public InputStream read(String subdirectory, String name) throws IOException {
+        return fs.newInputStream(resolve(subdirectory, name));
+    }
+
+    @Override
+    public InputStream read(String subdirectory, String name, long offset, long length)
+            throws IOException {
+        SeekableByteChannel channel =
+                Files.newByteChannel(resolve(subdirectory, name), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public boolean delete(String subdirectory, String name) throws IOException {
+        return fs.deleteIfExists(resolve(subdirectory, name));
+    }
+
+    /**
+     * Move a file within the archive's filesystem. The injected {@link FileSystem} has no move
+     * operation, so moves are kept to this one method, which tests may stub in place of it.
+     */
+    void move(Path source, Path destination, CopyOption... options) throws IOException {
+        Files.move(source, destination, options);
+    }
+
+    static boolean isInProgress(String name) {
+        return name.startsWith(IN_PROGRESS_PREFIX) && name.endsWith(IN_PROGRESS_SUFFIX);
+    }
+
+    private Path resolve(String subdirectory, String name) {
+        return archivePath.resolve(subdirectory).resolve(name);
+    }
+
+    private Path prepareDestination(String subdirectory, String name) throws IOException {
+        Path directory = archivePath.resolve(subdirectory);
+        if (!fs.exists(directory)) {
+            Files.createDirectories(directory);
+        }
+        return directory.resolve(name);
+    }
+}
@@ -39,16 +39,19 @@ package io.cryostat.recordings;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -56,11 +59,18 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.inject.Named;
 import javax.inject.Provider;
+import javax.management.remote.JMXServiceURL;
 
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.QuantityConversionException;
+import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor;
 
 import io.cryostat.MainModule;
@@ -72,15 +82,16 @@ import io.cryostat.core.sys.FileSystem;
 import io.cryostat.messaging.notifications.NotificationFactory;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.TargetConnectionManager;
-import io.cryostat.net.web.WebModule;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.HttpMimeType;
-import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.rules.ArchivePathException;
 import io.cryostat.rules.ArchivedRecordingInfo;
 import io.cryostat.util.URIUtil;
 
 import org.apache.commons.codec.binary.Base32;
+import org.apache.commons.io.input.ProxyInputStream;
 
 public class RecordingArchiveHelper {
 
@@ -89,78 +100,176 @@ public class RecordingArchiveHelper {
     private final Provider<WebServer> webServerProvider;
     private final Logger logger;
     private final Path archivedRecordingsPath;
-    private final Path archivedRecordingsReportPath;
     private final Clock clock;
-    private final PlatformClient platformClient;
+    private final ServiceRefRegistry serviceRefRegistry;
     private final NotificationFactory notificationFactory;
     private final Base32 base32;
+    private final SegmentedRecordingTransfer recordingTransfer;
+    private final ArchiveCatalog archiveCatalog;
+    private final ArchiveStorage storage;
+    private final ArchiveChunkStore chunkStore;
+    private final ArchiveSaveQueue saveQueue;
 
     private static final String SAVE_NOTIFICATION_CATEGORY = "RecordingArchived";
     private static final String DELETE_NOTIFICATION_CATEGORY = "RecordingDeleted";
+    private static final String SAVE_PROGRESS_NOTIFICATION_CATEGORY = "RecordingArchiveProgress";
+    static final long SAVE_PROGRESS_INTERVAL_MS = 1_000;
 
     RecordingArchiveHelper(
             FileSystem fs,
             Provider<WebServer> webServerProvider,
             Logger logger,
             @Named(MainModule.RECORDINGS_PATH) Path archivedRecordingsPath,
-            @Named(WebModule.WEBSERVER_TEMP_DIR_PATH) Path webServerTempPath,
             TargetConnectionManager targetConnectionManager,
             Clock clock,
-            PlatformClient platformClient,
+            ServiceRefRegistry serviceRefRegistry,
             NotificationFactory notificationFactory,
-            Base32 base32) {
+            Base32 base32,
+            SegmentedRecordingTransfer recordingTransfer,
+            ArchiveCatalog archiveCatalog,
+            ArchiveStorage storage,
+            ArchiveChunkStore chunkStore,
+            ArchiveSaveQueue saveQueue) {
         this.fs = fs;
         this.webServerProvider = webServerProvider;
         this.logger = logger;
         this.archivedRecordingsPath = archivedRecordingsPath;
-        this.archivedRecordingsReportPath = webServerTempPath;
         this.targetConnectionManager = targetConnectionManager;
         this.clock = clock;
-        this.platformClient = platformClient;
+        this.serviceRefRegistry = serviceRefRegistry;
         this.notificationFactory = notificationFactory;
         this.base32 = base32;
+        this.recordingTransfer = recordingTransfer;
+        this.archiveCatalog = archiveCatalog;
+        this.storage = storage;
+        this.chunkStore = chunkStore;
+        this.saveQueue = saveQueue;
     }
 
-    public Future<String> saveRecording(
+    public CompletableFuture<String> saveRecording(
             ConnectionDescriptor connectionDescriptor, String recordingName) {
+        return saveRecording(
+                connectionDescriptor, recordingName, ArchiveSaveQueue.Priority.INTERACTIVE);
+    }
 
-        CompletableFuture<String> future = new CompletableFuture<>();
+    /**
+     * As {@link #saveRecording(ConnectionDescriptor, String)}, but queueing the save at the given
+     * priority. Saves made on behalf of automated rules should use {@link
+     * ArchiveSaveQueue.Priority#BACKGROUND} so that they do not delay saves requested by users.
+     */
+    public CompletableFuture<String> saveRecording(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            ArchiveSaveQueue.Priority priority) {
+        return saveRecording(
+                connectionDescriptor, recordingName, RecordingTimeRange.UNBOUNDED, null, priority);
+    }
 
-        try {
-            String saveName =
-                    targetConnectionManager.executeConnectedTask(
-                            connectionDescriptor,
-                            connection -> {
-                                Optional<IRecordingDescriptor> descriptor =
-                                        this.getDescriptorByName(connection, recordingName);
-
-                                if (descriptor.isPresent()) {
-                                    return writeRecordingToDestination(
-                                            connection, descriptor.get());
-                                } else {
-                                    throw new RecordingNotFoundException(
-                                            "active recordings", recordingName);
-                                }
-                            },
-                            false);
-            future.complete(saveName);
-            notificationFactory
-                    .createBuilder()
-                    .metaCategory(SAVE_NOTIFICATION_CATEGORY)
-                    .metaType(HttpMimeType.JSON)
-                    .message(
-                            Map.of(
-                                    "recording",
-                                    saveName,
-                                    "target",
-                                    connectionDescriptor.getTargetId()))
-                    .build()
-                    .send();
-        } catch (Exception e) {
-            future.completeExceptionally(e);
-        }
+    /**
+     * As {@link #saveRecording(ConnectionDescriptor, String)}, but only archiving the portion of
+     * the recording within the given time range.
+     */
+    public CompletableFuture<String> saveRecording(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range) {
+        return saveRecording(
+                connectionDescriptor,
+                recordingName,
+                range,
+                null,
+                ArchiveSaveQueue.Priority.INTERACTIVE);
+    }
 
-        return future;
+    /**
+     * As {@link #saveRecording(ConnectionDescriptor, String)}, but only transferring the data the
+     * recording has gained since it was archived as baseArchive. The new archived recording is
+     * still complete, consisting of the chunks of baseArchive which the recording still retains,
+     * followed by the newer chunks. If baseArchive is not a usable earlier copy of the recording,
+     * the recording is transferred in full. Incremental saves are queued at {@link
+     * ArchiveSaveQueue.Priority#BACKGROUND} priority.
+     */
+    public CompletableFuture<String> saveRecordingIncrementally(
+            ConnectionDescriptor connectionDescriptor, String recordingName, String baseArchive) {
+        return saveRecording(
+                connectionDescriptor,
+                recordingName,
+                RecordingTimeRange.UNBOUNDED,
+                baseArchive,
+                ArchiveSaveQueue.Priority.BACKGROUND);
+    }
+
+    private CompletableFuture<String> saveRecording(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range,
+            String baseArchive,
+            ArchiveSaveQueue.Priority priority) {
+        String targetId = connectionDescriptor.getTargetId();
+        return saveQueue
+                .submit(
+                        targetId,
+                        priority,
+                        () -> archive(connectionDescriptor, recordingName, range, baseArchive))
+                .thenApply(
+                        saveName -> {
+                            notificationFactory
+                                    .createBuilder()
+                                    .metaCategory(SAVE_NOTIFICATION_CATEGORY)
+                                    .metaType(HttpMimeType.JSON)
+                                    .message(Map.of("recording", saveName, "target", targetId))
+                                    .build()
+                                    .send();
+                            return saveName;
+                        });
+    }
+
+    private String archive(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range,
+            String baseArchive)
+            throws Exception {
+        return targetConnectionManager.executeConnectedTask(
+                connectionDescriptor,
+                connection -> {
+                    Optional<IRecordingDescriptor> descriptor =
+                            this.getDescriptorByName(connection, recordingName);
+                    if (descriptor.isEmpty()) {
+                        throw new RecordingNotFoundException("active recordings", recordingName);
+                    }
+                    LongConsumer progress =
+                            new SaveProgressNotifier(
+                                    connectionDescriptor.getTargetId(), recordingName);
+                    Optional<ArchiveCatalog.Entry> base =
+                            getIncrementalBase(connection, descriptor.get(), baseArchive);
+                    if (base.isPresent()) {
+                        try {
+                            return writeRecordingToDestination(
+                                    connectionDescriptor,
+                                    connection,
+                                    descriptor.get(),
+                                    range,
+                                    base,
+                                    progress);
+                        } catch (Exception e) {
+                            logger.warn(
+                                    "Incremental archival of {} from {} failed,"
+                                            + " archiving it in full",
+                                    recordingName,
+                                    baseArchive);
+                            logger.warn(e);
+                        }
+                    }
+                    return writeRecordingToDestination(
+                            connectionDescriptor,
+                            connection,
+                            descriptor.get(),
+                            range,
+                            Optional.empty(),
+                            progress);
+                },
+                false);
     }
 
     public Future<Path> deleteRecording(String recordingName) {
@@ -168,8 +277,7 @@ public class RecordingArchiveHelper {
         CompletableFuture<Path> future = new CompletableFuture<>();
 
         try {
-            Path archivedRecording = getRecordingPath(recordingName).get();
-            fs.deleteIfExists(archivedRecording);
+            Path archivedRecording = deleteArchivedRecording(recordingName);
             notificationFactory
                     .createBuilder()
                     .metaCategory(DELETE_NOTIFICATION_CATEGORY)
@@ -180,26 +288,27 @@ public class RecordingArchiveHelper {
             future.complete(archivedRecording);
         } catch (IOException | InterruptedException | ExecutionException e) {
             future.completeExceptionally(e);
-        } finally {
-            deleteReport(recordingName);
         }
 
         return future;
     }
 
-    public boolean deleteReport(String recordingName) {
-        try {
-            logger.trace("Invalidating archived report cache for {}", recordingName);
-            return fs.deleteIfExists(getCachedReportPath(recordingName));
-        } catch (IOException ioe) {
-            logger.warn(ioe);
-            return false;
+    /**
+     * Delete the archived recording and remove it from the catalog without sending a notification,
+     * for callers which notify clients of deletions themselves. Cached reports are keyed by
+     * recording content rather than name and may be shared with other recordings, so they are not
+     * deleted here but left to the report store's eviction.
+     */
+    Path deleteArchivedRecording(String recordingName)
+            throws IOException, InterruptedException, ExecutionException {
+        Path archivedRecording = getRecordingPath(recordingName).get();
+        if (isDeduplicated(archivedRecording)) {
+            chunkStore.delete(archivedRecording);
+        } else {
+            storage.delete(getSubdirectory(archivedRecording), getName(archivedRecording));
         }
-    }
-
-    public Path getCachedReportPath(String recordingName) {
-        String fileName = recordingName + ".report.html";
-        return archivedRecordingsReportPath.resolve(fileName).toAbsolutePath();
+        archiveCatalog.remove(recordingName);
+        return archivedRecording;
     }
 
     public Future<List<ArchivedRecordingInfo>> getRecordings() {
@@ -207,44 +316,28 @@ public class RecordingArchiveHelper {
         CompletableFuture<List<ArchivedRecordingInfo>> future = new CompletableFuture<>();
 
         try {
-            if (!fs.exists(archivedRecordingsPath)) {
-                throw new ArchivePathException(archivedRecordingsPath.toString(), "does not exist");
-            }
-            if (!fs.isReadable(archivedRecordingsPath)) {
-                throw new ArchivePathException(
-                        archivedRecordingsPath.toString(), "is not readable");
-            }
-            if (!fs.isDirectory(archivedRecordingsPath)) {
-                throw new ArchivePathException(
-                        archivedRecordingsPath.toString(), "is not a directory");
-            }
+            storage.validate();
             WebServer webServer = webServerProvider.get();
-            List<String> subdirectories = this.fs.listDirectoryChildren(archivedRecordingsPath);
-            List<ArchivedRecordingInfo> archivedRecordings = new ArrayList<>();
-            for (String subdirectory : subdirectories) {
-                List<String> files =
-                        this.fs.listDirectoryChildren(archivedRecordingsPath.resolve(subdirectory));
-                List<ArchivedRecordingInfo> temp =
-                        files.stream()
-                                .map(
-                                        file -> {
-                                            try {
-                                                return new ArchivedRecordingInfo(
-                                                        subdirectory,
-                                                        webServer.getArchivedDownloadURL(file),
-                                                        file,
-                                                        webServer.getArchivedReportURL(file));
-                                            } catch (SocketException
-                                                    | UnknownHostException
-                                                    | URISyntaxException e) {
-                                                logger.warn(e);
-                                                return null;
-                                            }
-                                        })
-                                .filter(Objects::nonNull)
-                                .collect(Collectors.toList());
-                archivedRecordings.addAll(temp);
-            }
+            List<ArchivedRecordingInfo> archivedRecordings =
+                    archiveCatalog.list().stream()
+                            .map(
+                                    entry -> {
+                                        String file = entry.getName();
+                                        try {
+                                            return new ArchivedRecordingInfo(
+                                                    entry.getSubdirectory(),
+                                                    webServer.getArchivedDownloadURL(file),
+                                                    file,
+                                                    webServer.getArchivedReportURL(file));
+                                        } catch (SocketException
+                                                | UnknownHostException
+                                                | URISyntaxException e) {
+                                            logger.warn(e);
+                                            return null;
+                                        }
+                                    })
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList());
             future.complete(archivedRecordings);
         } catch (ArchivePathException | IOException e) {
             future.completeExceptionally(e);
@@ -253,26 +346,48 @@ public class RecordingArchiveHelper {
         return future;
     }
 
+    /**
+     * Query the archive catalog for at most limit archived recordings matching the filter, ordered
+     * by the given comparator, or by name if the comparator is null.
+     */
+    public Future<List<ArchiveCatalog.Entry>> getRecordings(
+            Predicate<ArchiveCatalog.Entry> filter,
+            Comparator<ArchiveCatalog.Entry> order,
+            int limit) {
+        CompletableFuture<List<ArchiveCatalog.Entry>> future = new CompletableFuture<>();
+
+        try {
+            storage.validate();
+            future.complete(archiveCatalog.list(filter, order, limit));
+        } catch (ArchivePathException | IOException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * @return the location of the archived recording within the archive. This is only a local file
+     *     if {@link #isStoredAsFile(Path)}, and otherwise should only be accessed through this
+     *     helper.
+     */
     public Future<Path> getRecordingPath(String recordingName) {
         CompletableFuture<Path> future = new CompletableFuture<>();
 
         try {
-            List<String> subdirectories = this.fs.listDirectoryChildren(archivedRecordingsPath);
-            Path archivedRecording =
-                    searchSubdirectories(subdirectories, archivedRecordingsPath, recordingName);
-            if (archivedRecording == null) {
-                throw new RecordingNotFoundException("archives", recordingName);
-            }
-            if (!fs.exists(archivedRecording)) {
+            ArchiveCatalog.Entry entry =
+                    archiveCatalog
+                            .get(recordingName)
+                            .orElseThrow(
+                                    () ->
+                                            new RecordingNotFoundException(
+                                                    "archives", recordingName));
+            Path archivedRecording = entry.getPath(archivedRecordingsPath);
+            if (!storage.exists(entry.getSubdirectory(), entry.getName())) {
+                // removed out-of-band, and the catalog has not caught up yet
+                archiveCatalog.remove(recordingName);
                 throw new ArchivePathException(archivedRecording.toString(), "does not exist");
             }
-            if (!fs.isRegularFile(archivedRecording)) {
-                throw new ArchivePathException(
-                        archivedRecording.toString(), "is not a regular file");
-            }
-            if (!fs.isReadable(archivedRecording)) {
-                throw new ArchivePathException(archivedRecording.toString(), "is not readable");
-            }
             future.complete(archivedRecording);
         } catch (RecordingNotFoundException | IOException | ArchivePathException e) {
             future.completeExceptionally(e);
@@ -281,48 +396,148 @@ public class RecordingArchiveHelper {
         return future;
     }
 
-    private Path searchSubdirectories(
-            List<String> subdirectories, Path parent, String recordingName) throws IOException {
-        for (String subdirectory : subdirectories) {
-            List<String> files = this.fs.listDirectoryChildren(parent.resolve(subdirectory));
+    /**
+     * @return the encoding the archived recording file is stored in. Deduplicated recordings are
+     *     reassembled uncompressed.
+     */
+    public ArchiveCompression getCompression(Path archivedRecording) throws IOException {
+        if (isDeduplicated(archivedRecording)) {
+            return ArchiveCompression.NONE;
+        }
+        try (InputStream head =
+                storage.read(
+                        getSubdirectory(archivedRecording), getName(archivedRecording), 0, 2)) {
+            return ArchiveCompression.detect(head);
+        }
+    }
 
-            for (String file : files) {
-                if (recordingName.equals(file)) {
-                    return parent.resolve(subdirectory).resolve(file).normalize().toAbsolutePath();
-                }
-            }
+    /**
+     * @return whether the archived recording file is a manifest of chunks in the {@link
+     *     ArchiveChunkStore}, rather than the recording itself
+     */
+    public boolean isDeduplicated(Path archivedRecording) throws IOException {
+        return storage.getLocalPath().isPresent() && chunkStore.isManifest(archivedRecording);
+    }
+
+    /**
+     * @return whether the archived recording is stored whole as a local file, which can be read or
+     *     served directly, in its stored encoding
+     */
+    public boolean isStoredAsFile(Path archivedRecording) throws IOException {
+        return storage.getLocalPath().isPresent() && !isDeduplicated(archivedRecording);
+    }
+
+    /** @return a stream of the uncompressed contents of the archived recording */
+    public InputStream openRecording(Path archivedRecording) throws IOException {
+        if (isDeduplicated(archivedRecording)) {
+            return chunkStore.open(archivedRecording);
         }
-        return null;
+        return ArchiveCompression.decompress(
+                storage.read(getSubdirectory(archivedRecording), getName(archivedRecording)));
+    }
+
+    /**
+     * @return the archived recording file itself if it is stored whole, uncompressed and locally,
+     *     or otherwise a temporary uncompressed copy of it, which the caller is responsible for
+     *     deleting
+     */
+    public Path decompressIfNeeded(Path archivedRecording) throws IOException {
+        if (isStoredAsFile(archivedRecording)
+                && getCompression(archivedRecording) == ArchiveCompression.NONE) {
+            return archivedRecording;
+        }
+        Path tempFile = fs.createTempFile(null, ".jfr");
+        try (InputStream stream = openRecording(archivedRecording)) {
+            fs.copy(stream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            fs.deleteIfExists(tempFile);
+            throw ioe;
+        }
+        return tempFile;
     }
 
     public String writeRecordingToDestination(
             JFRConnection connection, IRecordingDescriptor descriptor)
             throws IOException, URISyntaxException, FlightRecorderException, Exception {
-        URI serviceUri = URIUtil.convert(connection.getJMXURL());
-        String encodedServiceUri =
-                base32.encodeAsString(serviceUri.toString().getBytes(StandardCharsets.UTF_8));
-        Path specificRecordingsPath = archivedRecordingsPath.resolve(encodedServiceUri);
+        return writeRecordingToDestination(connection, descriptor, RecordingTimeRange.UNBOUNDED);
+    }
 
-        if (!fs.exists(specificRecordingsPath)) {
-            Files.createDirectory(specificRecordingsPath);
+    public String writeRecordingToDestination(
+            JFRConnection connection, IRecordingDescriptor descriptor, RecordingTimeRange range)
+            throws IOException, URISyntaxException, FlightRecorderException, Exception {
+        return writeRecordingToDestination(
+                null, connection, descriptor, range, Optional.empty(), bytes -> {});
+    }
+
+    /**
+     * @return the catalog entry of baseArchive if it is an archived copy of the same target's
+     *     recording which the recording has retained data from since, and so can be extended with
+     *     only the recording's newer data
+     */
+    private Optional<ArchiveCatalog.Entry> getIncrementalBase(
+            JFRConnection connection, IRecordingDescriptor descriptor, String baseArchive)
+            throws Exception {
+        if (baseArchive == null) {
+            return Optional.empty();
+        }
+        Optional<ArchiveCatalog.Entry> base = archiveCatalog.get(baseArchive);
+        if (base.isEmpty()
+                || base.get().getDataEndTime() == null
+                || !base.get().getSubdirectory().equals(encodeServiceUri(connection))
+                || !storage.exists(base.get().getSubdirectory(), base.get().getName())) {
+            logger.trace("{} cannot be extended incrementally", baseArchive);
+            return Optional.empty();
+        }
+        Long dataStartTime = toEpochMs(descriptor.getDataStartTime());
+        if (dataStartTime == null || dataStartTime > base.get().getDataEndTime()) {
+            // the recording was restarted, or has discarded data newer than the base archive
+            logger.trace("{} does not overlap recording {}", baseArchive, descriptor.getName());
+            return Optional.empty();
         }
+        return base;
+    }
+
+    private String encodeServiceUri(JFRConnection connection) throws Exception {
+        return encodeServiceUri(connection.getJMXURL());
+    }
+
+    private String encodeServiceUri(JMXServiceURL serviceUrl) throws URISyntaxException {
+        URI serviceUri = URIUtil.convert(serviceUrl);
+        return base32.encodeAsString(serviceUri.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the name of the archive subdirectory which recordings saved from the target with the
+     *     given ID are stored in. The target ID may be a JMX service URL or a host:port pair, and
+     *     is normalized to the service URL that connections to the target use.
+     * @throws MalformedURLException if the target ID is neither a JMX service URL nor a host:port
+     *     pair
+     */
+    public String getSubdirectoryName(String targetId)
+            throws MalformedURLException, URISyntaxException {
+        return encodeServiceUri(targetConnectionManager.getServiceURL(targetId));
+    }
+
+    private String writeRecordingToDestination(
+            ConnectionDescriptor connectionDescriptor,
+            JFRConnection connection,
+            IRecordingDescriptor descriptor,
+            RecordingTimeRange range,
+            Optional<ArchiveCatalog.Entry> base,
+            LongConsumer progress)
+            throws IOException, URISyntaxException, FlightRecorderException, Exception {
+        URI serviceUri = URIUtil.convert(connection.getJMXURL());
+        String encodedServiceUri = encodeServiceUri(connection);
 
         String recordingName = descriptor.getName();
         if (recordingName.endsWith(".jfr")) {
             recordingName = recordingName.substring(0, recordingName.length() - 4);
         }
 
-        // TODO: To avoid having to perform this lookup each time, we should implement
-        // something like a map from targetIds to corresponding ServiceRefs
         String targetName =
-                platformClient.listDiscoverableServices().stream()
-                        .filter(
-                                serviceRef -> {
-                                    return serviceRef.getServiceUri().equals(serviceUri)
-                                            && serviceRef.getAlias().isPresent();
-                                })
-                        .map(s -> s.getAlias().get())
-                        .findFirst()
+                serviceRefRegistry
+                        .get(serviceUri)
+                        .flatMap(ServiceRef::getAlias)
                         .orElse(connection.getHost())
                         .replaceAll("[\\._]+", "-");
 
@@ -337,7 +552,7 @@ public class RecordingArchiveHelper {
         // TODO byte-sized rename limit is arbitrary. Probably plenty since recordings are also
         // differentiated by second-resolution timestamp
         byte count = 1;
-        while (fs.exists(specificRecordingsPath.resolve(destination + ".jfr"))) {
+        while (storage.exists(encodedServiceUri, destination + ".jfr")) {
             destination =
                     String.format("%s_%s_%s.%d", targetName, recordingName, timestamp, count++);
             if (count == Byte.MAX_VALUE) {
@@ -347,7 +562,11 @@ public class RecordingArchiveHelper {
         }
         destination += ".jfr";
         try (BufferedInputStream bufferedStream =
-                new BufferedInputStream(connection.getService().openStream(descriptor, false))) {
+                new BufferedInputStream(
+                        new ProgressInputStream(
+                                openStream(
+                                        connectionDescriptor, connection, descriptor, range, base),
+                                progress))) {
 
             // Check if recording stream is non-empty
             int readLimit = 1; // arbitrary number greater than 0
@@ -355,7 +574,6 @@ public class RecordingArchiveHelper {
 
             try {
                 if (bufferedStream.read() == -1) {
-                    fs.deleteIfExists(specificRecordingsPath.resolve(destination));
                     throw new EmptyRecordingException();
                 }
             } catch (IOException e) {
@@ -364,11 +582,81 @@ public class RecordingArchiveHelper {
 
             bufferedStream.reset();
 
-            fs.copy(bufferedStream, specificRecordingsPath.resolve(destination));
+            if (chunkStore.isEnabled()) {
+                chunkStore.write(
+                        bufferedStream,
+                        archivedRecordingsPath.resolve(encodedServiceUri).resolve(destination));
+            } else {
+                storage.write(encodedServiceUri, destination, bufferedStream);
+            }
+        }
+        Long dataStartTime = toEpochMs(descriptor.getDataStartTime());
+        Long dataEndTime = toEpochMs(descriptor.getDataEndTime());
+        if (!range.isUnbounded()) {
+            Optional<Long> since = range.getSince(clock.getWallTime());
+            if (since.isPresent()) {
+                dataStartTime =
+                        dataStartTime == null ? since.get() : Math.max(dataStartTime, since.get());
+            }
+            Optional<Long> until = range.getUntil();
+            if (until.isPresent()) {
+                dataEndTime =
+                        dataEndTime == null ? until.get() : Math.min(dataEndTime, until.get());
+            }
         }
+        archiveCatalog.add(encodedServiceUri, destination, dataStartTime, dataEndTime);
         return destination;
     }
 
+    private InputStream openStream(
+            ConnectionDescriptor connectionDescriptor,
+            JFRConnection connection,
+            IRecordingDescriptor descriptor,
+            RecordingTimeRange range,
+            Optional<ArchiveCatalog.Entry> base)
+            throws Exception {
+        if (base.isEmpty()) {
+            return recordingTransfer.openStream(
+                    connectionDescriptor, connection, descriptor, range);
+        }
+        InputStream archived = openRecording(base.get().getPath(archivedRecordingsPath));
+        try {
+            RecordingTimeRange newer =
+                    RecordingTimeRange.of(Instant.ofEpochMilli(base.get().getDataEndTime()), null);
+            Long dataStartTime = toEpochMs(descriptor.getDataStartTime());
+            return new IncrementalRecordingStream(
+                    archived,
+                    recordingTransfer.openStream(
+                            connectionDescriptor, connection, descriptor, newer),
+                    dataStartTime == null
+                            ? Long.MIN_VALUE
+                            : TimeUnit.MILLISECONDS.toNanos(dataStartTime));
+        } catch (Exception e) {
+            archived.close();
+            throw e;
+        }
+    }
+
+    private static String getSubdirectory(Path archivedRecording) {
+        return archivedRecording.getParent().getFileName().toString();
+    }
+
+    private static String getName(Path archivedRecording) {
+        return archivedRecording.getFileName().toString();
+    }
+
+    private Long toEpochMs(IQuantity quantity) {
+        if (quantity == null) {
+            return null;
+        }
+        try {
+            return quantity.longValueIn(UnitLookup.EPOCH_MS);
+        } catch (QuantityConversionException e) {
+            logger.warn(e);
+            return null;
+        }
+    }
+
     private Optional<IRecordingDescriptor> getDescriptorByName(
             JFRConnection connection, String recordingName)
             throws FlightRecorderException, Exception {
@@ -376,4 +664,54 @@ public class RecordingArchiveHelper {
                 .filter(recording -> recording.getName().equals(recordingName))
                 .findFirst();
     }
+
+    /**
+     * Announces the number of bytes transferred so far by a save in progress, at most once per
+     * {@link #SAVE_PROGRESS_INTERVAL_MS}.
+     */
+    private class SaveProgressNotifier implements LongConsumer {
+        private final String targetId;
+        private final String recordingName;
+        private long lastNotification;
+
+        private SaveProgressNotifier(String targetId, String recordingName) {
+            this.targetId = targetId;
+            this.recordingName = recordingName;
+            this.lastNotification = clock.getMonotonicTime();
+        }
+
+        @Override
+        public void accept(long bytes) {
+            long now = clock.getMonotonicTime();
+            if (TimeUnit.NANOSECONDS.toMillis(now - lastNotification) < SAVE_PROGRESS_INTERVAL_MS) {
+                return;
+            }
+            lastNotification = now;
+            notificationFactory
+                    .createBuilder()
+                    .metaCategory(SAVE_PROGRESS_NOTIFICATION_CATEGORY)
+                    .metaType(HttpMimeType.JSON)
+                    .message(Map.of("recording", recordingName, "target", targetId, "bytes", bytes))
+                    .build()
+                    .send();
+        }
+    }
+
+    private static class ProgressInputStream extends ProxyInputStream {
+        private final LongConsumer progress;
+        private long bytesRead;
+
+        private ProgressInputStream(InputStream in, LongConsumer progress) {
+            super(in);
+            this.progress = progress;
+        }
+
+        @Override
+        protected void afterRead(int n) {
+            if (n > 0) {
+                bytesRead += n;
+                progress.accept(bytesRead);
+            }
+        }
+    }
 }
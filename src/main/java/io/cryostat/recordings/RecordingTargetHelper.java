@@ -81,6 +81,7 @@ public class RecordingTargetHelper {
     private final NotificationFactory notificationFactory;
     private final RecordingOptionsBuilderFactory recordingOptionsBuilderFactory;
     private final ReportService reportService;
+    private final SegmentedRecordingTransfer recordingTransfer;
     private final Logger logger;
 
     RecordingTargetHelper(
@@ -90,6 +91,7 @@ public class RecordingTargetHelper {
             NotificationFactory notificationFactory,
             RecordingOptionsBuilderFactory recordingOptionsBuilderFactory,
             ReportService reportService,
+            SegmentedRecordingTransfer recordingTransfer,
             Logger logger) {
         this.targetConnectionManager = targetConnectionManager;
         this.webServer = webServer;
@@ -97,6 +99,7 @@ public class RecordingTargetHelper {
         this.notificationFactory = notificationFactory;
         this.recordingOptionsBuilderFactory = recordingOptionsBuilderFactory;
         this.reportService = reportService;
+        this.recordingTransfer = recordingTransfer;
         this.logger = logger;
     }
 
@@ -165,6 +168,17 @@ public class RecordingTargetHelper {
      */
     public Future<Optional<InputStream>> getRecording(
             ConnectionDescriptor connectionDescriptor, String recordingName) {
+        return getRecording(connectionDescriptor, recordingName, RecordingTimeRange.UNBOUNDED);
+    }
+
+    /**
+     * As {@link #getRecording(ConnectionDescriptor, String)}, but only retrieving the portion of
+     * the recording within the given time range.
+     */
+    public Future<Optional<InputStream>> getRecording(
+            ConnectionDescriptor connectionDescriptor,
+            String recordingName,
+            RecordingTimeRange range) {
         CompletableFuture<Optional<InputStream>> future = new CompletableFuture<>();
         try {
             Optional<InputStream> recording =
@@ -176,8 +190,11 @@ public class RecordingTargetHelper {
                                             .map(
                                                     desc -> {
                                                         try {
-                                                            return conn.getService()
-                                                                    .openStream(desc, false);
+                                                            return recordingTransfer.openStream(
+                                                                    connectionDescriptor,
+                                                                    conn,
+                                                                    desc,
+                                                                    range);
                                                         } catch (Exception e) {
                                                             logger.error(e);
                                                             return null;
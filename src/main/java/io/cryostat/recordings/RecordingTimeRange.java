@@ -0,0 +1,203 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+import io.vertx.core.MultiMap;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A time range, in epoch milliseconds, of the data to retrieve from an active recording. Either end
+ * of the range may be left open, in which case retrieval starts from the beginning of the
+ * recording's data or continues through to its end. A range may also be relative, covering only a
+ * trailing duration up to the time the retrieval is performed. Since recording data is retrieved in
+ * whole JFR chunks, the retrieved data may extend somewhat beyond either end of the range.
+ */
+public final class RecordingTimeRange {
+
+    public static final RecordingTimeRange UNBOUNDED = new RecordingTimeRange(null, null, null);
+
+    public static final String SINCE_PARAM = "since";
+    public static final String UNTIL_PARAM = "until";
+    public static final String LAST_SECONDS_PARAM = "lastSeconds";
+
+    private final Long since;
+    private final Long until;
+    private final Long lastMs;
+
+    private RecordingTimeRange(Long since, Long until, Long lastMs) {
+        if (since != null && until != null && since > until) {
+            throw new IllegalArgumentException(
+                    String.format("Range start %d is after range end %d", since, until));
+        }
+        this.since = since;
+        this.until = until;
+        this.lastMs = lastMs;
+    }
+
+    public static RecordingTimeRange of(Instant since, Instant until) {
+        if (since == null && until == null) {
+            return UNBOUNDED;
+        }
+        return new RecordingTimeRange(
+                since == null ? null : since.toEpochMilli(),
+                until == null ? null : until.toEpochMilli(),
+                null);
+    }
+
+    public static RecordingTimeRange last(Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        return new RecordingTimeRange(null, null, duration.toMillis());
+    }
+
+    /**
+     * Parse a range from the {@code since}, {@code until} and {@code lastSeconds} request query
+     * parameters. {@code since} and {@code until} may each be an ISO-8601 instant or a number of
+     * milliseconds since the epoch. {@code lastSeconds} selects the specified number of seconds up
+     * to the time of retrieval, and cannot be combined with {@code since} or {@code until}.
+     *
+     * @throws IllegalArgumentException if any of the parameters are malformed or they are combined
+     *     incorrectly
+     */
+    public static RecordingTimeRange fromQueryParams(MultiMap params) {
+        if (params == null) {
+            return UNBOUNDED;
+        }
+        String since = params.get(SINCE_PARAM);
+        String until = params.get(UNTIL_PARAM);
+        String lastSeconds = params.get(LAST_SECONDS_PARAM);
+        if (StringUtils.isNotBlank(lastSeconds)) {
+            if (StringUtils.isNotBlank(since) || StringUtils.isNotBlank(until)) {
+                throw new IllegalArgumentException(
+                        String.format(
+                                "\"%s\" cannot be combined with \"%s\" or \"%s\"",
+                                LAST_SECONDS_PARAM, SINCE_PARAM, UNTIL_PARAM));
+            }
+            long seconds;
+            try {
+                seconds = Long.parseLong(lastSeconds.strip());
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid \"%s\": %s", LAST_SECONDS_PARAM, lastSeconds), nfe);
+            }
+            if (seconds <= 0) {
+                throw new IllegalArgumentException(
+                        String.format("\"%s\" must be positive", LAST_SECONDS_PARAM));
+            }
+            return last(Duration.ofSeconds(seconds));
+        }
+        Long sinceMs = parseTimestamp(SINCE_PARAM, since);
+        Long untilMs = parseTimestamp(UNTIL_PARAM, until);
+        if (sinceMs == null && untilMs == null) {
+            return UNBOUNDED;
+        }
+        return new RecordingTimeRange(sinceMs, untilMs, null);
+    }
+
+    private static Long parseTimestamp(String name, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        String v = value.strip();
+        try {
+            if (StringUtils.isNumeric(v)) {
+                return Long.parseLong(v);
+            }
+            return Instant.parse(v).toEpochMilli();
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new IllegalArgumentException(String.format("Invalid \"%s\": %s", name, value), e);
+        }
+    }
+
+    public boolean isUnbounded() {
+        return since == null && until == null && lastMs == null;
+    }
+
+    /**
+     * @param nowMs the time of retrieval, against which a relative range is resolved
+     * @return the start of the range in epoch milliseconds, if bounded
+     */
+    public Optional<Long> getSince(long nowMs) {
+        if (lastMs != null) {
+            return Optional.of(nowMs - lastMs);
+        }
+        return Optional.ofNullable(since);
+    }
+
+    /** @return the end of the range in epoch milliseconds, if bounded */
+    public Optional<Long> getUntil() {
+        return Optional.ofNullable(until);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof RecordingTimeRange)) {
+            return false;
+        }
+        RecordingTimeRange o = (RecordingTimeRange) other;
+        return Objects.equals(since, o.since)
+                && Objects.equals(until, o.until)
+                && Objects.equals(lastMs, o.lastMs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(since, until, lastMs);
+    }
+
+    @Override
+    public String toString() {
+        if (lastMs != null) {
+            return String.format("[last %s]", Duration.ofMillis(lastMs));
+        }
+        return String.format(
+                "[%s, %s]",
+                since == null ? "*" : Instant.ofEpochMilli(since),
+                until == null ? "*" : Instant.ofEpochMilli(until));
+    }
+}
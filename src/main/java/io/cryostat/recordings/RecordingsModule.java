@@ -37,27 +37,41 @@
  */
 package io.cryostat.recordings;
 
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.openjdk.jmc.flightrecorder.configuration.recording.RecordingOptionsBuilder;
 
 import io.cryostat.MainModule;
+import io.cryostat.configuration.Variables;
 import io.cryostat.core.RecordingOptionsCustomizer;
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.sys.Clock;
+import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.core.tui.ClientWriter;
 import io.cryostat.messaging.notifications.NotificationFactory;
 import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.reports.ReportService;
-import io.cryostat.net.web.WebModule;
 import io.cryostat.net.web.WebServer;
-import io.cryostat.platform.PlatformClient;
+import io.cryostat.net.web.http.HttpModule;
+import io.cryostat.platform.ServiceRefRegistry;
+import io.cryostat.util.DaemonExecutors;
 
+import com.google.gson.Gson;
 import dagger.Lazy;
 import dagger.Module;
 import dagger.Provides;
@@ -75,6 +89,7 @@ public abstract class RecordingsModule {
             NotificationFactory notificationFactory,
             RecordingOptionsBuilderFactory recordingOptionsBuilderFactory,
             ReportService reportService,
+            SegmentedRecordingTransfer recordingTransfer,
             Logger logger) {
         return new RecordingTargetHelper(
                 targetConnectionManager,
@@ -83,6 +98,7 @@ public abstract class RecordingsModule {
                 notificationFactory,
                 recordingOptionsBuilderFactory,
                 reportService,
+                recordingTransfer,
                 logger);
     }
 
@@ -93,23 +109,188 @@ public abstract class RecordingsModule {
             Provider<WebServer> webServerProvider,
             Logger logger,
             @Named(MainModule.RECORDINGS_PATH) Path archivedRecordingsPath,
-            @Named(WebModule.WEBSERVER_TEMP_DIR_PATH) Path archivedRecordingsReportPath,
             TargetConnectionManager targetConnectionManager,
             Clock clock,
-            PlatformClient platformClient,
+            ServiceRefRegistry serviceRefRegistry,
             NotificationFactory notificationFactory,
-            Base32 base32) {
+            Base32 base32,
+            SegmentedRecordingTransfer recordingTransfer,
+            ArchiveCatalog archiveCatalog,
+            ArchiveStorage storage,
+            ArchiveChunkStore chunkStore,
+            ArchiveSaveQueue saveQueue) {
         return new RecordingArchiveHelper(
                 fs,
                 webServerProvider,
                 logger,
                 archivedRecordingsPath,
-                archivedRecordingsReportPath,
                 targetConnectionManager,
                 clock,
-                platformClient,
+                serviceRefRegistry,
                 notificationFactory,
-                base32);
+                base32,
+                recordingTransfer,
+                archiveCatalog,
+                storage,
+                chunkStore,
+                saveQueue);
+    }
+
+    @Provides
+    @Singleton
+    static ArchiveSaveQueue provideArchiveSaveQueue(Environment env, Logger logger) {
+        int threads = Integer.parseInt(env.getEnv(Variables.ARCHIVE_SAVE_THREADS, "2"));
+        int capacity = Integer.parseInt(env.getEnv(Variables.ARCHIVE_SAVE_QUEUE_SIZE, "64"));
+        ExecutorService workers = DaemonExecutors.newFixedThreadPool(threads);
+        ArchiveSaveQueue saveQueue = new ArchiveSaveQueue(workers, threads, capacity);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(saveQueue, new ObjectName("io.cryostat:type=ArchiveSaveQueue"));
+        } catch (JMException e) {
+            logger.warn(e);
+        }
+        return saveQueue;
+    }
+
+    @Provides
+    @Singleton
+    static ArchiveCompression provideArchiveCompression(Environment env) {
+        return ArchiveCompression.fromName(env.getEnv(Variables.ARCHIVE_COMPRESSION, "none"));
+    }
+
+    @Provides
+    @Singleton
+    static ArchiveStorage provideArchiveStorage(
+            FileSystem fs,
+            @Named(MainModule.RECORDINGS_PATH) Path archivedRecordingsPath,
+            ArchiveCompression compression,
+            Environment env,
+            Clock clock,
+            Logger logger) {
+        if (!env.hasEnv(Variables.ARCHIVE_S3_ENDPOINT)) {
+            return new LocalArchiveStorage(fs, archivedRecordingsPath, compression);
+        }
+        URI endpoint = URI.create(env.getEnv(Variables.ARCHIVE_S3_ENDPOINT));
+        String bucket = env.getEnv(Variables.ARCHIVE_S3_BUCKET, "cryostat");
+        logger.info("Archiving recordings to S3 bucket {} at {}", bucket, endpoint);
+        return new S3ArchiveStorage(
+                HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build(),
+                endpoint,
+                bucket,
+                new S3RequestSigner(
+                        env.getEnv(Variables.ARCHIVE_S3_REGION, "us-east-1"),
+                        env.getEnv(Variables.ARCHIVE_S3_ACCESS_KEY, ""),
+                        env.getEnv(Variables.ARCHIVE_S3_SECRET_KEY, "")),
+                compression,
+                S3ArchiveStorage.DEFAULT_PART_SIZE,
+                clock,
+                logger);
+    }
+
+    @Provides
+    @Singleton
+    static ArchiveChunkStore provideArchiveChunkStore(
+            @Named(MainModule.RECORDINGS_PATH) Path archivedRecordingsPath,
+            ArchiveCompression compression,
+            ArchiveStorage storage,
+            Environment env,
+            Logger logger) {
+        boolean deduplicate = env.hasEnv(Variables.ARCHIVE_DEDUPLICATION);
+        if (deduplicate && storage.getLocalPath().isEmpty()) {
+            logger.warn("Archive deduplication is only supported for local archives, disabling");
+            deduplicate = false;
+        }
+        return new ArchiveChunkStore(archivedRecordingsPath, compression, deduplicate, logger);
+    }
+
+    @Provides
+    @Singleton
+    static ArchiveCatalog provideArchiveCatalog(
+            FileSystem fs, ArchiveStorage storage, Gson gson, Logger logger) {
+        ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(DaemonExecutors.threadFactory());
+        ArchiveCatalog catalog = new ArchiveCatalog(fs, storage, gson, executor, logger);
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(
+                                () -> {
+                                    catalog.stop();
+                                    executor.shutdownNow();
+                                }));
+        return catalog;
+    }
+
+    @Provides
+    @Singleton
+    static ArchiveRetention provideArchiveRetention(
+            ArchiveCatalog catalog,
+            RecordingArchiveHelper archiveHelper,
+            ArchiveChunkStore chunkStore,
+            NotificationFactory notificationFactory,
+            Environment env,
+            Clock clock,
+            Logger logger) {
+        ArchiveRetention.Quota globalQuota =
+                new ArchiveRetention.Quota(
+                        Long.parseLong(env.getEnv(Variables.ARCHIVE_MAX_SIZE, "0")) * 1024 * 1024,
+                        TimeUnit.SECONDS.toMillis(
+                                Long.parseLong(env.getEnv(Variables.ARCHIVE_MAX_AGE, "0"))),
+                        Long.parseLong(env.getEnv(Variables.ARCHIVE_MAX_COUNT, "0")));
+        ArchiveRetention.Quota targetQuota =
+                new ArchiveRetention.Quota(
+                        Long.parseLong(env.getEnv(Variables.ARCHIVE_TARGET_MAX_SIZE, "0"))
+                                * 1024
+                                * 1024,
+                        TimeUnit.SECONDS.toMillis(
+                                Long.parseLong(env.getEnv(Variables.ARCHIVE_TARGET_MAX_AGE, "0"))),
+                        Long.parseLong(env.getEnv(Variables.ARCHIVE_TARGET_MAX_COUNT, "0")));
+        long intervalMs =
+                TimeUnit.SECONDS.toMillis(
+                        Long.parseLong(env.getEnv(Variables.ARCHIVE_RETENTION_INTERVAL, "60")));
+        int evictionRate =
+                Integer.parseInt(env.getEnv(Variables.ARCHIVE_RETENTION_EVICTION_RATE, "10"));
+        long evictionDelayMs = evictionRate > 0 ? 1000 / evictionRate : 0;
+        ScheduledExecutorService executor = DaemonExecutors.newSingleThreadScheduledExecutor();
+        return new ArchiveRetention(
+                catalog,
+                archiveHelper,
+                chunkStore,
+                notificationFactory,
+                globalQuota,
+                targetQuota,
+                Math.max(1, intervalMs),
+                evictionDelayMs,
+                clock,
+                executor,
+                logger);
+    }
+
+    @Provides
+    @Named(Variables.RECORDING_TRANSFER_PARALLELISM)
+    static int provideRecordingTransferParallelism(Environment env) {
+        return Integer.parseInt(env.getEnv(Variables.RECORDING_TRANSFER_PARALLELISM, "1"));
+    }
+
+    @Provides
+    @Singleton
+    static SegmentedRecordingTransfer provideSegmentedRecordingTransfer(
+            FileSystem fs,
+            Clock clock,
+            TargetConnectionManager targetConnectionManager,
+            @Named(Variables.RECORDING_TRANSFER_PARALLELISM) int parallelism,
+            @Named(HttpModule.HTTP_REQUEST_TIMEOUT_SECONDS) long httpTimeoutSeconds,
+            Logger logger) {
+        // not a fixed pool, so that concurrent transfers do not queue behind each other's segments.
+        // Each transfer only fetches up to parallelism segments at once
+        ExecutorService executor = DaemonExecutors.newCachedThreadPool();
+        return new SegmentedRecordingTransfer(
+                fs,
+                clock,
+                targetConnectionManager,
+                executor,
+                parallelism,
+                Duration.ofSeconds(httpTimeoutSeconds),
+                logger);
     }
 
     @Provides
@@ -0,0 +1,498 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.Clock;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Keeps the archive in a bucket of an S3-compatible object store, such as AWS S3 or MinIO, so that
+ * the archive can be shared by several Cryostat replicas without a shared volume. Each archived
+ * file is an object keyed by its subdirectory and name. Files are uploaded as they are streamed in,
+ * in parts of a fixed size, using a multipart upload if they do not fit in a single part, and
+ * partial reads are served with ranged GETs. Buckets are addressed path-style, which all
+ * S3-compatible stores support.
+ */
+public class S3ArchiveStorage implements ArchiveStorage {
+
+    static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(5);
+
+    private final HttpClient http;
+    private final String bucketUri;
+    private final S3RequestSigner signer;
+    private final ArchiveCompression compression;
+    private final int partSize;
+    private final Clock clock;
+    private final Logger logger;
+
+    S3ArchiveStorage(
+            HttpClient http,
+            URI endpoint,
+            String bucket,
+            S3RequestSigner signer,
+            ArchiveCompression compression,
+            int partSize,
+            Clock clock,
+            Logger logger) {
+        this.http = http;
+        this.bucketUri =
+                endpoint.toString().replaceAll("/+$", "")
+                        + "/"
+                        + S3RequestSigner.encode(bucket, false);
+        this.signer = signer;
+        this.compression = compression;
+        this.partSize = partSize;
+        this.clock = clock;
+        this.logger = logger;
+    }
+
+    @Override
+    public Optional<Path> getLocalPath() {
+        return Optional.empty();
+    }
+
+    @Override
+    public void validate() {
+        // there is no directory to check, and connectivity problems surface when the bucket is used
+    }
+
+    @Override
+    public List<String> listSubdirectories() throws IOException {
+        List<String> subdirectories = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            Element result = listObjects("", continuationToken);
+            for (Element prefix : children(result, "CommonPrefixes")) {
+                String p = text(prefix, "Prefix");
+                if (p != null && p.length() > 1) {
+                    subdirectories.add(p.substring(0, p.length() - 1));
+                }
+            }
+            continuationToken = nextContinuationToken(result);
+        } while (continuationToken != null);
+        return subdirectories;
+    }
+
+    @Override
+    public List<StoredFile> list(String subdirectory) throws IOException {
+        String prefix = subdirectory + "/";
+        List<StoredFile> files = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            Element result = listObjects(prefix, continuationToken);
+            for (Element contents : children(result, "Contents")) {
+                String key = text(contents, "Key");
+                if (key == null || key.length() <= prefix.length()) {
+                    continue;
+                }
+                files.add(
+                        new StoredFile(
+                                key.substring(prefix.length()),
+                                Long.parseLong(text(contents, "Size")),
+                                Instant.parse(text(contents, "LastModified")).toEpochMilli()));
+            }
+            continuationToken = nextContinuationToken(result);
+        } while (continuationToken != null);
+        return files;
+    }
+
+    @Override
+    public Optional<StoredFile> stat(String subdirectory, String name) throws IOException {
+        String key = key(subdirectory, name);
+        HttpResponse<byte[]> response = send("HEAD", key, null, Map.of(), null, 0);
+        if (response.statusCode() == 404) {
+            return Optional.empty();
+        }
+        checkStatus("HEAD", key, response);
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        long lastModified =
+                response.headers()
+                        .firstValue("Last-Modified")
+                        .map(
+                                s ->
+                                        ZonedDateTime.parse(s, DateTimeFormatter.RFC_1123_DATE_TIME)
+                                                .toInstant()
+                                                .toEpochMilli())
+                        .orElse(0L);
+        return Optional.of(new StoredFile(name, size, lastModified));
+    }
+
+    @Override
+    public void write(String subdirectory, String name, InputStream content) throws IOException {
+        String key = key(subdirectory, name);
+        if (exists(subdirectory, name)) {
+            throw new FileAlreadyExistsException(key);
+        }
+        Upload upload = new Upload(key);
+        try {
+            try (OutputStream out = compression.compress(upload)) {
+                content.transferTo(out);
+            }
+            upload.complete();
+        } catch (IOException | RuntimeException e) {
+            upload.abort();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream read(String subdirectory, String name) throws IOException {
+        return get(key(subdirectory, name), Map.of());
+    }
+
+    @Override
+    public InputStream read(String subdirectory, String name, long offset, long length)
+            throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        return get(
+                key(subdirectory, name),
+                Map.of("Range", String.format("bytes=%d-%d", offset, offset + length - 1)));
+    }
+
+    @Override
+    public boolean delete(String subdirectory, String name) throws IOException {
+        if (!exists(subdirectory, name)) {
+            return false;
+        }
+        String key = key(subdirectory, name);
+        checkStatus("DELETE", key, send("DELETE", key, null, Map.of(), null, 0));
+        return true;
+    }
+
+    private InputStream get(String key, Map<String, String> headers) throws IOException {
+        HttpResponse<InputStream> response =
+                send("GET", key, null, headers, null, 0, HttpResponse.BodyHandlers.ofInputStream());
+        int status = response.statusCode();
+        if (status == 200 || status == 206) {
+            return response.body();
+        }
+        byte[] body;
+        try (InputStream in = response.body()) {
+            body = in.readAllBytes();
+        }
+        if (status == 404) {
+            throw new NoSuchFileException(key);
+        }
+        if (status == 416) {
+            // the range starts beyond the end of the object
+            return InputStream.nullInputStream();
+        }
+        throw failure("GET", key, status, body);
+    }
+
+    private Element listObjects(String prefix, String continuationToken) throws IOException {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("list-type", "2");
+        query.put("delimiter", "/");
+        query.put("prefix", prefix);
+        if (continuationToken != null) {
+            query.put("continuation-token", continuationToken);
+        }
+        HttpResponse<byte[]> response = send("GET", "", query, Map.of(), null, 0);
+        checkStatus("GET", bucketUri, response);
+        return parseXml(response.body());
+    }
+
+    private String nextContinuationToken(Element listResult) {
+        if (!"true".equals(text(listResult, "IsTruncated"))) {
+            return null;
+        }
+        return text(listResult, "NextContinuationToken");
+    }
+
+    private String key(String subdirectory, String name) {
+        return subdirectory + "/" + name;
+    }
+
+    private HttpResponse<byte[]> send(
+            String method,
+            String key,
+            Map<String, String> query,
+            Map<String, String> headers,
+            byte[] body,
+            int length)
+            throws IOException {
+        return send(
+                method, key, query, headers, body, length, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private <T> HttpResponse<T> send(
+            String method,
+            String key,
+            Map<String, String> query,
+            Map<String, String> headers,
+            byte[] body,
+            int length,
+            HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException {
+        StringBuilder uri = new StringBuilder(bucketUri).append('/');
+        uri.append(S3RequestSigner.encode(key, true));
+        if (query != null && !query.isEmpty()) {
+            char separator = '?';
+            for (Map.Entry<String, String> param : query.entrySet()) {
+                uri.append(separator).append(S3RequestSigner.encode(param.getKey(), false));
+                uri.append('=').append(S3RequestSigner.encode(param.getValue(), false));
+                separator = '&';
+            }
+        }
+        URI requestUri = URI.create(uri.toString());
+        String payloadSha256 =
+                body == null
+                        ? S3RequestSigner.EMPTY_PAYLOAD_SHA256
+                        : S3RequestSigner.sha256Hex(body, 0, length);
+        HttpRequest.Builder request =
+                HttpRequest.newBuilder(requestUri)
+                        .timeout(REQUEST_TIMEOUT)
+                        .method(
+                                method,
+                                body == null
+                                        ? HttpRequest.BodyPublishers.noBody()
+                                        : HttpRequest.BodyPublishers.ofByteArray(body, 0, length));
+        headers.forEach(request::header);
+        signer.sign(method, requestUri, headers, payloadSha256, clock.now())
+                .forEach(request::header);
+        try {
+            return http.send(request.build(), bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(method + " " + requestUri + " interrupted");
+        }
+    }
+
+    private void checkStatus(String method, String key, HttpResponse<byte[]> response)
+            throws IOException {
+        int status = response.statusCode();
+        if (status < 200 || status >= 300) {
+            throw failure(method, key, status, response.body());
+        }
+    }
+
+    private IOException failure(String method, String key, int status, byte[] body) {
+        String reason = "";
+        if (body != null && body.length > 0) {
+            try {
+                Element error = parseXml(body);
+                reason = String.format(": %s %s", text(error, "Code"), text(error, "Message"));
+            } catch (IOException e) {
+                reason = ": " + new String(body, StandardCharsets.UTF_8);
+            }
+        }
+        return new IOException(
+                String.format("S3 %s %s failed with status %d%s", method, key, status, reason));
+    }
+
+    private static Element parseXml(byte[] body) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(body));
+            return document.getDocumentElement();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static List<Element> children(Element parent, String tag) {
+        List<Element> children = new ArrayList<>();
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof Element && tag.equals(((Element) node).getTagName())) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    private static String text(Element parent, String tag) {
+        List<Element> children = children(parent, tag);
+        return children.isEmpty() ? null : children.get(0).getTextContent();
+    }
+
+    /**
+     * Buffers what is written to it into parts, uploading each part as it fills. Nothing is visible
+     * in the bucket until the upload is completed, and closing the stream does not complete it, so
+     * that a failed write can be aborted instead.
+     */
+    private class Upload extends OutputStream {
+        private final String key;
+        private final byte[] buffer = new byte[partSize];
+        private final List<String> etags = new ArrayList<>();
+        private int count;
+        private String uploadId;
+
+        Upload(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer[count++] = (byte) b;
+            if (count == buffer.length) {
+                uploadPart();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == buffer.length) {
+                    uploadPart();
+                }
+            }
+        }
+
+        void complete() throws IOException {
+            if (uploadId == null) {
+                // small enough to upload in one request
+                HttpResponse<byte[]> response =
+                        send("PUT", key, null, Map.of("If-None-Match", "*"), buffer, count);
+                checkCreated("PUT", response);
+                return;
+            }
+            if (count > 0) {
+                uploadPart();
+            }
+            StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                xml.append(
+                        String.format(
+                                "<Part><PartNumber>%d</PartNumber><ETag>%s</ETag></Part>",
+                                i + 1, etags.get(i).replace("&", "&amp;")));
+            }
+            xml.append("</CompleteMultipartUpload>");
+            byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+            HttpResponse<byte[]> response =
+                    send(
+                            "POST",
+                            key,
+                            Map.of("uploadId", uploadId),
+                            Map.of("If-None-Match", "*"),
+                            body,
+                            body.length);
+            checkCreated("POST", response);
+            // completion can fail after the response status has already been sent
+            if ("Error".equals(parseXml(response.body()).getTagName())) {
+                throw failure("POST", key, response.statusCode(), response.body());
+            }
+        }
+
+        void abort() {
+            if (uploadId == null) {
+                return;
+            }
+            try {
+                send("DELETE", key, Map.of("uploadId", uploadId), Map.of(), null, 0);
+            } catch (IOException e) {
+                logger.warn("Failed to abort upload of {}", key);
+                logger.warn(e);
+            }
+        }
+
+        private void uploadPart() throws IOException {
+            if (uploadId == null) {
+                HttpResponse<byte[]> response =
+                        send("POST", key, Map.of("uploads", ""), Map.of(), null, 0);
+                checkStatus("POST", key, response);
+                uploadId = text(parseXml(response.body()), "UploadId");
+                if (uploadId == null) {
+                    throw failure("POST", key, response.statusCode(), response.body());
+                }
+            }
+            Map<String, String> query = new LinkedHashMap<>();
+            query.put("partNumber", Integer.toString(etags.size() + 1));
+            query.put("uploadId", uploadId);
+            HttpResponse<byte[]> response = send("PUT", key, query, Map.of(), buffer, count);
+            checkStatus("PUT", key, response);
+            etags.add(
+                    response.headers()
+                            .firstValue("ETag")
+                            .orElseThrow(() -> failure("PUT", key, response.statusCode(), null)));
+            count = 0;
+        }
+
+        private void checkCreated(String method, HttpResponse<byte[]> response) throws IOException {
+            if (response.statusCode() == 412) {
+                throw new FileAlreadyExistsException(key);
+            }
+            checkStatus(method, key, response);
+        }
+    }
+}
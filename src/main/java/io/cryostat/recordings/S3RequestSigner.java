@@ -0,0 +1,235 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Signs requests to an S3-compatible object store with AWS Signature Version 4, as described at
+ * https://docs.aws.amazon.com/AmazonS3/latest/API/sig-v4-header-based-auth.html
+ */
+class S3RequestSigner {
+
+    static final String EMPTY_PAYLOAD_SHA256 =
+            "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String SERVICE = "s3";
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+
+    S3RequestSigner(String region, String accessKey, String secretKey) {
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    /**
+     * @param headers additional headers to be sent and signed, besides the host
+     * @param payloadSha256 the hex-encoded SHA-256 hash of the request body
+     * @return the headers to add to the request, including the authorization header
+     */
+    Map<String, String> sign(
+            String method,
+            URI uri,
+            Map<String, String> headers,
+            String payloadSha256,
+            Instant now) {
+        String timestamp = TIMESTAMP_FORMAT.format(now);
+        String scope =
+                String.format("%s/%s/%s/aws4_request", DATE_FORMAT.format(now), region, SERVICE);
+
+        Map<String, String> signed = new TreeMap<>();
+        headers.forEach((k, v) -> signed.put(k.toLowerCase(Locale.ROOT), v.trim()));
+        signed.put("host", getHost(uri));
+        signed.put("x-amz-content-sha256", payloadSha256);
+        signed.put("x-amz-date", timestamp);
+        String signedHeaders = String.join(";", signed.keySet());
+
+        StringBuilder canonicalRequest = new StringBuilder();
+        canonicalRequest.append(method).append('\n');
+        canonicalRequest.append(encodePath(uri.getRawPath())).append('\n');
+        canonicalRequest.append(canonicalQuery(uri.getRawQuery())).append('\n');
+        signed.forEach((k, v) -> canonicalRequest.append(k).append(':').append(v).append('\n'));
+        canonicalRequest.append('\n').append(signedHeaders).append('\n');
+        canonicalRequest.append(payloadSha256);
+
+        String stringToSign =
+                String.join(
+                        "\n", ALGORITHM, timestamp, scope, sha256Hex(canonicalRequest.toString()));
+
+        byte[] key =
+                hmac(
+                        ("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8),
+                        DATE_FORMAT.format(now));
+        key = hmac(key, region);
+        key = hmac(key, SERVICE);
+        key = hmac(key, "aws4_request");
+        String signature = Hex.encodeHexString(hmac(key, stringToSign));
+
+        Map<String, String> result = new HashMap<>();
+        result.put("x-amz-content-sha256", payloadSha256);
+        result.put("x-amz-date", timestamp);
+        result.put(
+                "Authorization",
+                String.format(
+                        "%s Credential=%s/%s, SignedHeaders=%s, Signature=%s",
+                        ALGORITHM, accessKey, scope, signedHeaders, signature));
+        return result;
+    }
+
+    /** URI-encode a string as S3 expects, leaving only unreserved characters as they are. */
+    static String encode(String s, boolean keepSlashes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z')
+                    || (c >= 'a' && c <= 'z')
+                    || (c >= '0' && c <= '9')
+                    || c == '-'
+                    || c == '_'
+                    || c == '.'
+                    || c == '~'
+                    || (keepSlashes && c == '/')) {
+                sb.append(c);
+            } else {
+                sb.append(String.format("%%%02X", b & 0xff));
+            }
+        }
+        return sb.toString();
+    }
+
+    static String sha256Hex(byte[] bytes, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bytes, offset, length);
+            return Hex.encodeHexString(digest.digest());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256Hex(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return sha256Hex(bytes, 0, bytes.length);
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getHost(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort =
+                port == -1
+                        || ("http".equals(uri.getScheme()) && port == 80)
+                        || ("https".equals(uri.getScheme()) && port == 443);
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    private static String encodePath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        // the request path is already encoded by the caller, so normalize rather than re-encode it
+        return encode(decode(rawPath), true);
+    }
+
+    private static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String[]> params = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            int eq = param.indexOf('=');
+            String k = eq < 0 ? param : param.substring(0, eq);
+            String v = eq < 0 ? "" : param.substring(eq + 1);
+            params.add(new String[] {encode(decode(k), false), encode(decode(v), false)});
+        }
+        return params.stream()
+                .sorted((a, b) -> a[0].equals(b[0]) ? a[1].compareTo(b[1]) : a[0].compareTo(b[0]))
+                .map(p -> p[0] + "=" + p[1])
+                .collect(Collectors.joining("&"));
+    }
+
+    private static String decode(String s) {
+        // not URLDecoder, which would also turn '+' into a space
+        byte[] out = new byte[s.length()];
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '%' && i + 2 < s.length()) {
+                out[n++] = (byte) Integer.parseInt(s.substring(i + 1, i + 3), 16);
+                i += 2;
+            } else {
+                out[n++] = (byte) c;
+            }
+        }
+        return new String(out, 0, n, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,574 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.rjmx.services.jfr.IFlightRecorderService;
+import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor;
+import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor.RecordingState;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.sys.Clock;
+import io.cryostat.core.sys.FileSystem;
+import io.cryostat.net.ConnectionDescriptor;
+import io.cryostat.net.TargetConnectionManager;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Opens streams over the contents of active recordings. With a parallelism of 1 this is the same as
+ * {@link IFlightRecorderService#openStream(IRecordingDescriptor, boolean)}. With a higher
+ * parallelism the recording's time span is split into that many ranges, which are fetched
+ * concurrently with ranged {@link IFlightRecorderService#openStream(IRecordingDescriptor,
+ * IQuantity, IQuantity, boolean)} calls and spooled to temporary files. The returned stream reads
+ * the spooled segments back in order as they complete. A ranged stream contains every JFR chunk
+ * overlapping its range, so a chunk spanning a range boundary is fetched twice; such duplicate
+ * chunks are recognized by their chunk header start time and skipped, so the reassembled stream is
+ * a valid JFR file. Recordings spanning less than {@link #MIN_SEGMENT_DURATION_MS} per segment are
+ * fetched with fewer segments, since they likely consist of only a few chunks.
+ *
+ * <p>Each transfer fetches at most parallelism segments at once, independently of any other
+ * transfers in progress. Given the target's {@link ConnectionDescriptor}, the first segment is read
+ * over the caller's connection and the others over connections leased from the target's connection
+ * pool, falling back to the caller's connection when the pool has none available. Otherwise every
+ * segment is read over the caller's connection.
+ */
+public class SegmentedRecordingTransfer {
+
+    static final long MIN_SEGMENT_DURATION_MS = TimeUnit.SECONDS.toMillis(30);
+    static final int READ_BUFFER_SIZE = 64 * 1024; // 64 KB
+
+    private final FileSystem fs;
+    private final Clock clock;
+    private final TargetConnectionManager targetConnectionManager;
+    private final Executor executor;
+    private final int parallelism;
+    private final Duration segmentTimeout;
+    private final Logger logger;
+
+    /**
+     * @param segmentTimeout the maximum time a reader waits for the next segment to finish being
+     *     fetched before the transfer fails
+     */
+    SegmentedRecordingTransfer(
+            FileSystem fs,
+            Clock clock,
+            TargetConnectionManager targetConnectionManager,
+            Executor executor,
+            int parallelism,
+            Duration segmentTimeout,
+            Logger logger) {
+        this.fs = fs;
+        this.clock = clock;
+        this.targetConnectionManager = targetConnectionManager;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.segmentTimeout = segmentTimeout;
+        this.logger = logger;
+    }
+
+    /**
+     * Open a stream over the full contents of the specified recording. The stream must be closed by
+     * the caller, and the connection must remain open until the stream has been fully read or
+     * closed.
+     */
+    public InputStream openStream(JFRConnection connection, IRecordingDescriptor descriptor)
+            throws Exception {
+        return openStream(connection, descriptor, RecordingTimeRange.UNBOUNDED);
+    }
+
+    public InputStream openStream(
+            JFRConnection connection, IRecordingDescriptor descriptor, RecordingTimeRange range)
+            throws Exception {
+        return openStream(null, connection, descriptor, range);
+    }
+
+    public InputStream openStream(
+            ConnectionDescriptor connectionDescriptor,
+            JFRConnection connection,
+            IRecordingDescriptor descriptor)
+            throws Exception {
+        return openStream(
+                connectionDescriptor, connection, descriptor, RecordingTimeRange.UNBOUNDED);
+    }
+
+    /**
+     * Open a stream over the contents of the specified recording within the given time range. A
+     * bounded range is always retrieved with ranged {@link
+     * IFlightRecorderService#openStream(IRecordingDescriptor, IQuantity, IQuantity, boolean)}
+     * calls, so only the JFR chunks overlapping the range are transferred from the target.
+     *
+     * @param connectionDescriptor the target to lease further connections to for fetching segments,
+     *     or null to fetch every segment over the given connection
+     */
+    public InputStream openStream(
+            ConnectionDescriptor connectionDescriptor,
+            JFRConnection connection,
+            IRecordingDescriptor descriptor,
+            RecordingTimeRange range)
+            throws Exception {
+        RecordingTransferred evt =
+                new RecordingTransferred(
+                        String.valueOf(connection.getJMXURL()), descriptor.getName());
+        evt.begin();
+        List<long[]> ranges = split(descriptor, range);
+        if (ranges.isEmpty()) {
+            evt.segments = 1;
+            return new MeteredInputStream(
+                    connection.getService().openStream(descriptor, false), evt);
+        }
+        if (ranges.size() == 1) {
+            evt.segments = 1;
+            return new MeteredInputStream(
+                    connection
+                            .getService()
+                            .openStream(
+                                    descriptor,
+                                    UnitLookup.EPOCH_MS.quantity(ranges.get(0)[0]),
+                                    UnitLookup.EPOCH_MS.quantity(ranges.get(0)[1]),
+                                    false),
+                    evt);
+        }
+        evt.segments = ranges.size();
+        List<CompletableFuture<Path>> segments = new ArrayList<>(ranges.size());
+        SegmentedInputStream stream = new SegmentedInputStream(segments, evt);
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] segment = ranges.get(i);
+            boolean pooled = connectionDescriptor != null && i > 0;
+            CompletableFuture<Path> future = new CompletableFuture<>();
+            segments.add(future);
+            executor.execute(
+                    () -> {
+                        try {
+                            Path path =
+                                    fetchSegment(
+                                            connectionDescriptor,
+                                            connection,
+                                            descriptor,
+                                            segment,
+                                            stream,
+                                            pooled);
+                            if (!future.complete(path)) {
+                                // the reader cancelled this segment while it was being fetched
+                                deleteQuietly(path);
+                            }
+                        } catch (Exception e) {
+                            future.completeExceptionally(e);
+                        }
+                    });
+        }
+        return stream;
+    }
+
+    List<long[]> split(IRecordingDescriptor descriptor) throws Exception {
+        return split(descriptor, RecordingTimeRange.UNBOUNDED);
+    }
+
+    /**
+     * @return the ranges to fetch concurrently, or an empty list if the full recording should be
+     *     fetched with a single unranged stream. A bounded range always yields at least one range.
+     */
+    List<long[]> split(IRecordingDescriptor descriptor, RecordingTimeRange range) throws Exception {
+        if (parallelism <= 1 && range.isUnbounded()) {
+            return List.of();
+        }
+        IQuantity dataStart = descriptor.getDataStartTime();
+        IQuantity dataEnd = descriptor.getDataEndTime();
+        if (range.isUnbounded() && (dataStart == null || dataEnd == null)) {
+            return List.of();
+        }
+        long now = clock.getWallTime();
+        long start =
+                range.getSince(now)
+                        .orElse(
+                                dataStart == null
+                                        ? 0L
+                                        : dataStart.longValueIn(UnitLookup.EPOCH_MS));
+        long end;
+        if (range.getUntil().isPresent()) {
+            end = range.getUntil().get();
+        } else {
+            end = dataEnd == null ? now : dataEnd.longValueIn(UnitLookup.EPOCH_MS);
+            if (RecordingState.RUNNING.equals(descriptor.getState())) {
+                // data keeps being written while the transfer is in progress, so make sure the
+                // final segment includes everything up to the point the transfer was started
+                end = Math.max(end, now);
+            }
+        }
+        if (dataStart != null) {
+            start = Math.max(start, dataStart.longValueIn(UnitLookup.EPOCH_MS));
+        }
+        end = Math.max(start, end);
+        int count = (int) Math.min(parallelism, (end - start) / MIN_SEGMENT_DURATION_MS);
+        if (count <= 1) {
+            return range.isUnbounded() ? List.of() : List.of(new long[] {start, end});
+        }
+        List<long[]> ranges = new ArrayList<>(count);
+        long span = end - start;
+        for (int i = 0; i < count; i++) {
+            ranges.add(new long[] {start + span * i / count, start + span * (i + 1) / count});
+        }
+        return ranges;
+    }
+
+    private Path fetchSegment(
+            ConnectionDescriptor connectionDescriptor,
+            JFRConnection connection,
+            IRecordingDescriptor descriptor,
+            long[] range,
+            SegmentedInputStream consumer,
+            boolean pooled) {
+        try {
+            if (pooled) {
+                Optional<Path> segment =
+                        targetConnectionManager.tryExecutePooledTask(
+                                connectionDescriptor,
+                                conn -> fetchSegment(conn, descriptor, range, consumer));
+                if (segment.isPresent()) {
+                    return segment.get();
+                }
+            }
+            return fetchSegment(connection, descriptor, range, consumer);
+        } catch (Exception e) {
+            throw new SegmentTransferException(e);
+        }
+    }
+
+    private Path fetchSegment(
+            JFRConnection connection,
+            IRecordingDescriptor descriptor,
+            long[] range,
+            SegmentedInputStream consumer)
+            throws Exception {
+        Path segment = null;
+        try {
+            segment = fs.createTempFile(null, null);
+            try (InputStream in =
+                            connection
+                                    .getService()
+                                    .openStream(
+                                            descriptor,
+                                            UnitLookup.EPOCH_MS.quantity(range[0]),
+                                            UnitLookup.EPOCH_MS.quantity(range[1]),
+                                            false);
+                    OutputStream out = new FileOutputStream(segment.toFile())) {
+                byte[] buff = new byte[READ_BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buff)) != -1) {
+                    if (consumer.isClosed()) {
+                        throw new IOException("Recording transfer was cancelled");
+                    }
+                    out.write(buff, 0, n);
+                }
+            }
+            return segment;
+        } catch (Exception e) {
+            deleteQuietly(segment);
+            throw e;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            fs.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn(e);
+        }
+    }
+
+    /**
+     * Scan the JFR chunk headers of a spooled segment and return the [offset, length] ranges of the
+     * chunks which start after lastChunkStart, ie. which have not already been read from a previous
+     * segment.
+     */
+    static Deque<long[]> scanChunks(FileChannel channel, long lastChunkStart) throws IOException {
+        Deque<long[]> chunks = new ArrayDeque<>();
+        ByteBuffer header = ByteBuffer.allocate(JfrChunkHeader.LENGTH);
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, position + header.position()) < 0) {
+                    throw new IOException("Truncated JFR chunk header");
+                }
+            }
+            if (!JfrChunkHeader.hasMagic(header.array())) {
+                throw new IOException("Recording segment is not a JFR file");
+            }
+            long chunkSize = JfrChunkHeader.getSize(header.array());
+            if (chunkSize < JfrChunkHeader.LENGTH || position + chunkSize > size) {
+                throw new IOException("Invalid JFR chunk size " + chunkSize);
+            }
+            long chunkStart = JfrChunkHeader.getStartNanos(header.array());
+            if (chunkStart > lastChunkStart) {
+                chunks.add(new long[] {position, chunkSize, chunkStart});
+                lastChunkStart = chunkStart;
+            }
+            position += chunkSize;
+        }
+        return chunks;
+    }
+
+    static class SegmentTransferException extends RuntimeException {
+        SegmentTransferException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private class SegmentedInputStream extends InputStream {
+        private final List<CompletableFuture<Path>> segments;
+        private final RecordingTransferred evt;
+        private int next;
+        private Path currentPath;
+        private FileChannel current;
+        private Deque<long[]> chunks = new ArrayDeque<>();
+        private long position;
+        private long remaining;
+        private long lastChunkStart = Long.MIN_VALUE;
+        private volatile boolean closed;
+
+        SegmentedInputStream(List<CompletableFuture<Path>> segments, RecordingTransferred evt) {
+            this.segments = segments;
+            this.evt = evt;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : (b[0] & 0xFF);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (!chunks.isEmpty()) {
+                    long[] chunk = chunks.poll();
+                    position = chunk[0];
+                    remaining = chunk[1];
+                    lastChunkStart = chunk[2];
+                } else if (!advance()) {
+                    return -1;
+                }
+            }
+            int n = current.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (n < 0) {
+                throw new IOException("Recording segment ended unexpectedly");
+            }
+            position += n;
+            remaining -= n;
+            evt.bytes += n;
+            return n;
+        }
+
+        private boolean advance() throws IOException {
+            releaseCurrent();
+            if (next >= segments.size()) {
+                evt.finish();
+                return false;
+            }
+            try {
+                currentPath =
+                        segments.get(next++).get(segmentTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                for (int i = next - 1; i < segments.size(); i++) {
+                    segments.get(i).cancel(false);
+                }
+                close();
+                throw new IOException(
+                        String.format(
+                                "Timed out after %ds waiting for recording segment %d of %d",
+                                segmentTimeout.toSeconds(), next, segments.size()),
+                        e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SegmentTransferException) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+            current = FileChannel.open(currentPath, StandardOpenOption.READ);
+            chunks = scanChunks(current, lastChunkStart);
+            return true;
+        }
+
+        private void releaseCurrent() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            deleteQuietly(currentPath);
+            currentPath = null;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            evt.finish();
+            for (int i = next; i < segments.size(); i++) {
+                segments.get(i).thenAccept(SegmentedRecordingTransfer.this::deleteQuietly);
+            }
+            releaseCurrent();
+        }
+    }
+
+    private static class MeteredInputStream extends FilterInputStream {
+        private final RecordingTransferred evt;
+
+        MeteredInputStream(InputStream in, RecordingTransferred evt) {
+            super(in);
+            this.evt = evt;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                evt.finish();
+            } else {
+                evt.bytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                evt.finish();
+            } else {
+                evt.bytes += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            evt.finish();
+            super.close();
+        }
+    }
+
+    @Name("io.cryostat.recordings.SegmentedRecordingTransfer.RecordingTransferred")
+    @Label("Recording Transferred")
+    @Category("Cryostat")
+    @SuppressFBWarnings(
+            value = "URF_UNREAD_FIELD",
+            justification = "The event fields are recorded with JFR instead of accessed directly")
+    public static class RecordingTransferred extends Event {
+        String serviceUri;
+        String recordingName;
+        int segments;
+        long bytes;
+        double bytesPerSecond;
+
+        private final transient long startNanos;
+        private transient boolean finished;
+
+        RecordingTransferred(String serviceUri, String recordingName) {
+            this.serviceUri = serviceUri;
+            this.recordingName = recordingName;
+            this.startNanos = System.nanoTime();
+        }
+
+        /** Record the transfer once the stream is exhausted or closed, whichever comes first. */
+        synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            end();
+            long nanos = System.nanoTime() - startNanos;
+            this.bytesPerSecond =
+                    nanos > 0 ? (double) bytes * TimeUnit.SECONDS.toNanos(1) / nanos : 0;
+            if (shouldCommit()) {
+                commit();
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ package io.cryostat.rules;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ExecutionException;
@@ -52,6 +53,7 @@ import io.cryostat.configuration.CredentialsManager;
 import io.cryostat.core.log.Logger;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.platform.ServiceRef;
+import io.cryostat.recordings.ArchiveSaveQueue;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingNotFoundException;
 
@@ -72,8 +74,9 @@ class PeriodicArchiver implements Runnable {
     private final Function<Pair<ServiceRef, Rule>, Void> failureNotifier;
     private final Logger logger;
     private final Base32 base32;
+    private final boolean incremental;
 
-    private final Queue<String> previousRecordings;
+    private final Deque<String> previousRecordings;
 
     PeriodicArchiver(
             ServiceRef serviceRef,
@@ -82,7 +85,8 @@ class PeriodicArchiver implements Runnable {
             RecordingArchiveHelper recordingArchiveHelper,
             Function<Pair<ServiceRef, Rule>, Void> failureNotifier,
             Logger logger,
-            Base32 base32) {
+            Base32 base32,
+            boolean incremental) {
         this.serviceRef = serviceRef;
         this.credentialsManager = credentialsManager;
         this.recordingArchiveHelper = recordingArchiveHelper;
@@ -90,6 +94,7 @@ class PeriodicArchiver implements Runnable {
         this.failureNotifier = failureNotifier;
         this.logger = logger;
         this.base32 = base32;
+        this.incremental = incremental;
 
         this.previousRecordings = new ArrayDeque<>(this.rule.getPreservedArchives());
     }
@@ -125,11 +130,20 @@ class PeriodicArchiver implements Runnable {
                 }
             }
 
-            while (previousRecordings.size() > rule.getPreservedArchives() - 1) {
-                pruneArchive(previousRecordings.remove());
-            }
+            if (incremental) {
+                // the newest archive is the base for the next one, so only prune once the next
+                // one has been saved
+                performArchival();
+                while (previousRecordings.size() > rule.getPreservedArchives()) {
+                    pruneArchive(previousRecordings.remove());
+                }
+            } else {
+                while (previousRecordings.size() > rule.getPreservedArchives() - 1) {
+                    pruneArchive(previousRecordings.remove());
+                }
 
-            performArchival();
+                performArchival();
+            }
         } catch (Exception e) {
             logger.error(e);
 
@@ -150,13 +164,34 @@ class PeriodicArchiver implements Runnable {
         ConnectionDescriptor connectionDescriptor =
                 new ConnectionDescriptor(serviceRef, credentialsManager.getCredentials(serviceRef));
 
-        String saveName =
-                recordingArchiveHelper.saveRecording(connectionDescriptor, recordingName).get();
+        String base = previousRecordings.peekLast();
+        String saveName;
+        if (incremental && base != null) {
+            saveName =
+                    recordingArchiveHelper
+                            .saveRecordingIncrementally(connectionDescriptor, recordingName, base)
+                            .get();
+        } else {
+            saveName =
+                    recordingArchiveHelper
+                            .saveRecording(
+                                    connectionDescriptor,
+                                    recordingName,
+                                    ArchiveSaveQueue.Priority.BACKGROUND)
+                            .get();
+        }
         previousRecordings.add(saveName);
     }
 
     private void pruneArchive(String recordingName) throws Exception {
-        recordingArchiveHelper.deleteRecording(recordingName).get();
+        try {
+            recordingArchiveHelper.deleteRecording(recordingName).get();
+        } catch (ExecutionException e) {
+            // the archive retention policy may already have evicted it
+            if (!(e.getCause() instanceof RecordingNotFoundException)) {
+                throw e;
+            }
+        }
         previousRecordings.remove(recordingName);
     }
 
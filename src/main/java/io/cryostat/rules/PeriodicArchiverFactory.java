@@ -49,9 +49,11 @@ import org.apache.commons.lang3.tuple.Pair;
 
 class PeriodicArchiverFactory {
 
+    private final boolean incremental;
     private final Logger logger;
 
-    PeriodicArchiverFactory(Logger logger) {
+    PeriodicArchiverFactory(boolean incremental, Logger logger) {
+        this.incremental = incremental;
         this.logger = logger;
     }
 
@@ -69,6 +71,7 @@ class PeriodicArchiverFactory {
                 recordingArchiveHelper,
                 failureNotifier,
                 logger,
-                base32);
+                base32,
+                incremental);
     }
 }
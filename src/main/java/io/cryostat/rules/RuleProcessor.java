@@ -57,7 +57,9 @@ import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.platform.PlatformClient;
 import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.platform.TargetDiscoveryEvent;
+import io.cryostat.recordings.ArchiveSaveQueue;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingOptionsBuilderFactory;
 import io.cryostat.recordings.RecordingTargetHelper;
@@ -72,6 +74,7 @@ public class RuleProcessor
         implements Consumer<TargetDiscoveryEvent>, EventListener<RuleRegistry.RuleEvent, Rule> {
 
     private final PlatformClient platformClient;
+    private final ServiceRefRegistry serviceRefRegistry;
     private final RuleRegistry registry;
     private final ScheduledExecutorService scheduler;
     private final CredentialsManager credentialsManager;
@@ -87,6 +90,7 @@ public class RuleProcessor
 
     RuleProcessor(
             PlatformClient platformClient,
+            ServiceRefRegistry serviceRefRegistry,
             RuleRegistry registry,
             ScheduledExecutorService scheduler,
             CredentialsManager credentialsManager,
@@ -98,6 +102,7 @@ public class RuleProcessor
             Logger logger,
             Base32 base32) {
         this.platformClient = platformClient;
+        this.serviceRefRegistry = serviceRefRegistry;
         this.registry = registry;
         this.scheduler = scheduler;
         this.credentialsManager = credentialsManager;
@@ -127,7 +132,7 @@ public class RuleProcessor
     public synchronized void onEvent(Event<RuleEvent, Rule> event) {
         switch (event.getEventType()) {
             case ADDED:
-                platformClient.listDiscoverableServices().stream()
+                serviceRefRegistry.list().stream()
                         .filter(serviceRef -> registry.applies(event.getPayload(), serviceRef))
                         .forEach(serviceRef -> activate(event.getPayload(), serviceRef));
                 break;
@@ -229,22 +234,30 @@ public class RuleProcessor
 
     private void archiveRuleRecording(ConnectionDescriptor connectionDescriptor, Rule rule)
             throws Exception {
-        targetConnectionManager.executeConnectedTask(
-                connectionDescriptor,
-                connection -> {
-                    IRecordingDescriptor descriptor =
-                            connection.getService().getSnapshotRecording();
-                    try {
-                        recordingArchiveHelper
-                                .saveRecording(connectionDescriptor, descriptor.getName())
-                                .get();
-                    } finally {
+        // the save runs on an archive save queue worker, which takes its own connection lease, so
+        // no lease may be held here while waiting for it or the two would compete for the
+        // target's connections
+        IRecordingDescriptor descriptor =
+                targetConnectionManager.executeConnectedTask(
+                        connectionDescriptor,
+                        connection -> connection.getService().getSnapshotRecording(),
+                        false);
+        try {
+            recordingArchiveHelper
+                    .saveRecording(
+                            connectionDescriptor,
+                            descriptor.getName(),
+                            ArchiveSaveQueue.Priority.BACKGROUND)
+                    .get();
+        } finally {
+            targetConnectionManager.executeConnectedTask(
+                    connectionDescriptor,
+                    connection -> {
                         connection.getService().close(descriptor);
-                    }
-
-                    return null;
-                },
-                false);
+                        return null;
+                    },
+                    false);
+        }
     }
 
     private void startRuleRecording(ConnectionDescriptor connectionDescriptor, Rule rule)
@@ -50,14 +50,17 @@ import javax.inject.Singleton;
 
 import io.cryostat.configuration.ConfigurationModule;
 import io.cryostat.configuration.CredentialsManager;
+import io.cryostat.configuration.Variables;
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.net.Credentials;
+import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.HttpServer;
 import io.cryostat.net.NetworkConfiguration;
 import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.web.http.AbstractAuthenticatedRequestHandler;
 import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingOptionsBuilderFactory;
 import io.cryostat.recordings.RecordingTargetHelper;
@@ -108,6 +111,7 @@ public abstract class RulesModule {
     @Singleton
     static RuleProcessor provideRuleProcessor(
             PlatformClient platformClient,
+            ServiceRefRegistry serviceRefRegistry,
             RuleRegistry registry,
             @Named(RULE_SCHEDULER) ScheduledExecutorService scheduler,
             CredentialsManager credentialsManager,
@@ -120,6 +124,7 @@ public abstract class RulesModule {
             Base32 base32) {
         return new RuleProcessor(
                 platformClient,
+                serviceRefRegistry,
                 registry,
                 scheduler,
                 credentialsManager,
@@ -152,8 +157,9 @@ public abstract class RulesModule {
     @Singleton
     static PeriodicArchiverFactory providePeriodicArchivedFactory(
             @Named(RULES_HEADERS_FACTORY) Function<Credentials, MultiMap> headersFactory,
+            Environment env,
             Logger logger) {
-        return new PeriodicArchiverFactory(logger);
+        return new PeriodicArchiverFactory(env.hasEnv(Variables.ARCHIVE_INCREMENTAL), logger);
     }
 
     @Provides
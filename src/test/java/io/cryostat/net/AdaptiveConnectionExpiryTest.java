@@ -0,0 +1,170 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.time.Duration;
+
+import io.cryostat.core.net.JFRConnection;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveConnectionExpiryTest {
+
+    static final Duration BASE_TTL = Duration.ofSeconds(10);
+    static final Duration MAX_TTL = Duration.ofSeconds(60);
+
+    AdaptiveConnectionExpiry expiry;
+    @Mock JFRConnection connection;
+    ConnectionDescriptor descriptor = new ConnectionDescriptor("foo");
+
+    @BeforeEach
+    void setup() {
+        this.expiry = new AdaptiveConnectionExpiry(BASE_TTL, MAX_TTL, 0);
+    }
+
+    static long seconds(long s) {
+        return Duration.ofSeconds(s).toNanos();
+    }
+
+    @Test
+    void shouldUseBaseTtlForNewConnections() {
+        MatcherAssert.assertThat(
+                expiry.expireAfterCreate(descriptor, connection, seconds(100)),
+                Matchers.equalTo(BASE_TTL.toNanos()));
+        MatcherAssert.assertThat(expiry.getEffectiveTtl(descriptor), Matchers.equalTo(BASE_TTL));
+    }
+
+    @Test
+    void shouldExtendTtlForRegularlyAccessedTargets() {
+        expiry.expireAfterCreate(descriptor, connection, seconds(100));
+        long ttl = expiry.expireAfterRead(descriptor, connection, seconds(115), 0);
+        MatcherAssert.assertThat(ttl, Matchers.equalTo(seconds(30)));
+        MatcherAssert.assertThat(
+                expiry.getEffectiveTtl(descriptor), Matchers.equalTo(Duration.ofSeconds(30)));
+    }
+
+    @Test
+    void shouldIgnoreBurstsOfAccesses() {
+        expiry.expireAfterCreate(descriptor, connection, seconds(100));
+        expiry.expireAfterRead(descriptor, connection, seconds(115), 0);
+        long ttl =
+                expiry.expireAfterRead(
+                        descriptor, connection, seconds(115) + Duration.ofMillis(5).toNanos(), 0);
+        MatcherAssert.assertThat(ttl, Matchers.equalTo(seconds(30)));
+    }
+
+    @Test
+    void shouldNotExceedMaxTtl() {
+        expiry.expireAfterCreate(descriptor, connection, seconds(100));
+        long ttl = expiry.expireAfterRead(descriptor, connection, seconds(150), 0);
+        MatcherAssert.assertThat(ttl, Matchers.equalTo(MAX_TTL.toNanos()));
+    }
+
+    @Test
+    void shouldUseBaseTtlForInfrequentlyAccessedTargets() {
+        expiry.expireAfterCreate(descriptor, connection, seconds(100));
+        long ttl = expiry.expireAfterRead(descriptor, connection, seconds(400), 0);
+        MatcherAssert.assertThat(ttl, Matchers.equalTo(BASE_TTL.toNanos()));
+    }
+
+    @Test
+    void shouldSmoothAccessIntervals() {
+        expiry.expireAfterCreate(descriptor, connection, seconds(0));
+        expiry.expireAfterRead(descriptor, connection, seconds(10), 0);
+        long ttl = expiry.expireAfterRead(descriptor, connection, seconds(30), 0);
+        // smoothed interval is 0.7 * 10s + 0.3 * 20s = 13s
+        MatcherAssert.assertThat(ttl, Matchers.equalTo(seconds(26)));
+    }
+
+    @Test
+    void shouldAddWeightedConnectionCost() {
+        expiry = new AdaptiveConnectionExpiry(BASE_TTL, MAX_TTL, 2);
+        expiry.recordConnectionCost(descriptor, Duration.ofSeconds(3));
+        MatcherAssert.assertThat(
+                expiry.expireAfterCreate(descriptor, connection, seconds(100)),
+                Matchers.equalTo(seconds(16)));
+    }
+
+    @Test
+    void shouldIgnoreConnectionCostWhenUnweighted() {
+        expiry.recordConnectionCost(descriptor, Duration.ofSeconds(3));
+        MatcherAssert.assertThat(
+                expiry.expireAfterCreate(descriptor, connection, seconds(100)),
+                Matchers.equalTo(BASE_TTL.toNanos()));
+    }
+
+    @Test
+    void shouldNeverUseLessThanBaseTtl() {
+        expiry = new AdaptiveConnectionExpiry(BASE_TTL, Duration.ofSeconds(1), 0);
+        expiry.expireAfterCreate(descriptor, connection, seconds(100));
+        MatcherAssert.assertThat(
+                expiry.expireAfterRead(descriptor, connection, seconds(200), 0),
+                Matchers.equalTo(BASE_TTL.toNanos()));
+    }
+
+    @Test
+    void shouldHoldWarmedUpConnectionsForMaxTtlUntilFirstUse() {
+        expiry.beginWarmUp(descriptor);
+        MatcherAssert.assertThat(
+                expiry.expireAfterCreate(descriptor, connection, seconds(100)),
+                Matchers.equalTo(MAX_TTL.toNanos()));
+        expiry.endWarmUp(descriptor);
+
+        MatcherAssert.assertThat(
+                expiry.expireAfterRead(descriptor, connection, seconds(130), 0),
+                Matchers.equalTo(BASE_TTL.toNanos()));
+        MatcherAssert.assertThat(
+                expiry.expireAfterRead(descriptor, connection, seconds(145), 0),
+                Matchers.equalTo(seconds(30)));
+    }
+
+    @Test
+    void shouldForgetHistoryForEvictedTargets() {
+        expiry.expireAfterCreate(descriptor, connection, seconds(100));
+        expiry.expireAfterRead(descriptor, connection, seconds(115), 0);
+        expiry.evict("foo");
+        MatcherAssert.assertThat(expiry.getEffectiveTtl(descriptor), Matchers.equalTo(BASE_TTL));
+    }
+}
@@ -37,24 +37,39 @@
  */
 package io.cryostat.net;
 
+import java.net.MalformedURLException;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.remote.JMXServiceURL;
 
+import org.openjdk.jmc.rjmx.ConnectionException;
+
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.net.JFRConnection;
 import io.cryostat.core.net.JFRConnectionToolkit;
+import io.cryostat.core.sys.Clock;
 import io.cryostat.platform.PlatformClient;
 
 import com.github.benmanes.caffeine.cache.Scheduler;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -69,10 +84,14 @@ class TargetConnectionManagerTest {
     @Mock Logger logger;
     @Mock JFRConnectionToolkit jfrConnectionToolkit;
     @Mock PlatformClient platformClient;
+    @Mock Clock clock;
+    UnreachableTargetCache unreachableTargets;
     Duration TTL = Duration.ofMillis(250);
 
     @BeforeEach
     void setup() {
+        this.unreachableTargets =
+                new UnreachableTargetCache(clock, Duration.ofSeconds(2), Duration.ofSeconds(60));
         this.mgr =
                 new TargetConnectionManager(
                         () -> jfrConnectionToolkit,
@@ -80,7 +99,14 @@ class TargetConnectionManagerTest {
                         ForkJoinPool.commonPool(),
                         Scheduler.systemScheduler(),
                         TTL,
+                        TTL,
+                        0,
                         1,
+                        0,
+                        2,
+                        Duration.ofSeconds(1),
+                        new TargetTaskExecutor(new DirectExecutor(), 1),
+                        unreachableTargets,
                         logger);
     }
 
@@ -154,6 +180,43 @@ class TargetConnectionManagerTest {
         MatcherAssert.assertThat(conn1, Matchers.sameInstance(conn2));
     }
 
+    @Test
+    void shouldReuseWarmedUpConnection() throws Exception {
+        Mockito.when(jfrConnectionToolkit.createServiceURL(Mockito.anyString(), Mockito.anyInt()))
+                .thenAnswer(
+                        new Answer<JMXServiceURL>() {
+                            @Override
+                            public JMXServiceURL answer(InvocationOnMock args) throws Throwable {
+                                String host = args.getArgument(0);
+                                int port = args.getArgument(1);
+                                return new JMXServiceURL(
+                                        "rmi",
+                                        "",
+                                        0,
+                                        String.format("/jndi/rmi://%s:%d/jmxrmi", host, port));
+                            }
+                        });
+        Mockito.when(jfrConnectionToolkit.connect(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(
+                        new Answer<JFRConnection>() {
+                            @Override
+                            public JFRConnection answer(InvocationOnMock invocation)
+                                    throws Throwable {
+                                return Mockito.mock(JFRConnection.class);
+                            }
+                        });
+        ConnectionDescriptor desc = new ConnectionDescriptor("foo");
+        List<JFRConnection> warmed = new ArrayList<>();
+        mgr.warmUpConnection(desc, warmed::add);
+        mgr.warmUpConnection(desc, warmed::add);
+
+        MatcherAssert.assertThat(warmed, Matchers.hasSize(1));
+        MatcherAssert.assertThat(
+                mgr.executeConnectedTask(desc, a -> a), Matchers.sameInstance(warmed.get(0)));
+        Mockito.verify(jfrConnectionToolkit, Mockito.times(1))
+                .connect(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
     @Test
     void shouldCreateNewConnectionIfPreviousExplicitlyClosed() throws Exception {
         Mockito.when(jfrConnectionToolkit.createServiceURL(Mockito.anyString(), Mockito.anyInt()))
@@ -198,7 +261,14 @@ class TargetConnectionManagerTest {
                         ForkJoinPool.commonPool(),
                         Scheduler.systemScheduler(),
                         Duration.ofNanos(1),
+                        Duration.ofNanos(1),
+                        0,
                         1,
+                        0,
+                        2,
+                        Duration.ofSeconds(1),
+                        new TargetTaskExecutor(new DirectExecutor(), 1),
+                        unreachableTargets,
                         logger);
         Mockito.when(jfrConnectionToolkit.createServiceURL(Mockito.anyString(), Mockito.anyInt()))
                 .thenAnswer(
@@ -239,7 +309,14 @@ class TargetConnectionManagerTest {
                         new DirectExecutor(),
                         Scheduler.disabledScheduler(),
                         Duration.ofSeconds(1),
+                        Duration.ofSeconds(1),
+                        0,
+                        0,
                         0,
+                        2,
+                        Duration.ofSeconds(1),
+                        new TargetTaskExecutor(new DirectExecutor(), 1),
+                        unreachableTargets,
                         logger);
         Mockito.when(jfrConnectionToolkit.createServiceURL(Mockito.anyString(), Mockito.anyInt()))
                 .thenAnswer(
@@ -279,7 +356,14 @@ class TargetConnectionManagerTest {
                         new DirectExecutor(),
                         Scheduler.disabledScheduler(),
                         Duration.ofNanos(1),
+                        Duration.ofNanos(1),
+                        0,
                         -1,
+                        0,
+                        2,
+                        Duration.ofSeconds(1),
+                        new TargetTaskExecutor(new DirectExecutor(), 1),
+                        unreachableTargets,
                         logger);
         Mockito.when(jfrConnectionToolkit.createServiceURL(Mockito.anyString(), Mockito.anyInt()))
                 .thenAnswer(
@@ -311,6 +395,220 @@ class TargetConnectionManagerTest {
         MatcherAssert.assertThat(conn1, Matchers.not(Matchers.sameInstance(conn2)));
     }
 
+    @Test
+    void shouldReturnUncachedConnectionsToPoolForReuse() throws Exception {
+        TargetConnectionManager mgr =
+                new TargetConnectionManager(
+                        () -> jfrConnectionToolkit,
+                        platformClient,
+                        new DirectExecutor(),
+                        Scheduler.disabledScheduler(),
+                        Duration.ofSeconds(1),
+                        Duration.ofSeconds(1),
+                        0,
+                        0,
+                        0,
+                        2,
+                        Duration.ofSeconds(1),
+                        new TargetTaskExecutor(new DirectExecutor(), 1),
+                        unreachableTargets,
+                        logger);
+        Mockito.when(jfrConnectionToolkit.createServiceURL(Mockito.anyString(), Mockito.anyInt()))
+                .thenAnswer(
+                        new Answer<JMXServiceURL>() {
+                            @Override
+                            public JMXServiceURL answer(InvocationOnMock args) throws Throwable {
+                                String host = args.getArgument(0);
+                                int port = args.getArgument(1);
+                                return new JMXServiceURL(
+                                        "rmi",
+                                        "",
+                                        0,
+                                        String.format("/jndi/rmi://%s:%d/jmxrmi", host, port));
+                            }
+                        });
+        Mockito.when(jfrConnectionToolkit.connect(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(
+                        new Answer<JFRConnection>() {
+                            @Override
+                            public JFRConnection answer(InvocationOnMock invocation)
+                                    throws Throwable {
+                                return Mockito.mock(JFRConnection.class);
+                            }
+                        });
+        ConnectionDescriptor desc = new ConnectionDescriptor("foo");
+        JFRConnection conn1 = mgr.executeConnectedTask(desc, a -> a, false);
+        JFRConnection conn2 = mgr.executeConnectedTask(desc, a -> a, false);
+        MatcherAssert.assertThat(conn1, Matchers.sameInstance(conn2));
+        Mockito.verify(conn1, Mockito.never()).close();
+        MatcherAssert.assertThat(mgr.getPoolStatistics().getMisses(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(mgr.getPoolStatistics().getHits(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    void shouldExecuteAsyncTaskOnTaskExecutor() throws Exception {
+        Mockito.when(jfrConnectionToolkit.createServiceURL(Mockito.anyString(), Mockito.anyInt()))
+                .thenAnswer(
+                        new Answer<JMXServiceURL>() {
+                            @Override
+                            public JMXServiceURL answer(InvocationOnMock args) throws Throwable {
+                                String host = args.getArgument(0);
+                                int port = args.getArgument(1);
+                                return new JMXServiceURL(
+                                        "rmi",
+                                        "",
+                                        0,
+                                        String.format("/jndi/rmi://%s:%d/jmxrmi", host, port));
+                            }
+                        });
+        Mockito.when(jfrConnectionToolkit.connect(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(
+                        new Answer<JFRConnection>() {
+                            @Override
+                            public JFRConnection answer(InvocationOnMock invocation)
+                                    throws Throwable {
+                                return Mockito.mock(JFRConnection.class);
+                            }
+                        });
+        ConnectionDescriptor desc = new ConnectionDescriptor("foo");
+        JFRConnection conn1 =
+                mgr.executeConnectedTaskAsync(desc, a -> a).toCompletableFuture().get();
+        JFRConnection conn2 = mgr.executeConnectedTask(desc, a -> a);
+        MatcherAssert.assertThat(conn1, Matchers.sameInstance(conn2));
+    }
+
+    @Test
+    void shouldFailFastForRecentlyUnreachableTarget() throws Exception {
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(1000));
+        ConnectionException failure = new ConnectionException("refused");
+        failure.initCause(new java.net.ConnectException("Connection refused"));
+        Mockito.when(jfrConnectionToolkit.connect(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenThrow(failure);
+        ConnectionDescriptor desc =
+                new ConnectionDescriptor("service:jmx:rmi:///jndi/rmi://foo/jmxrmi");
+
+        ConnectionException first =
+                Assertions.assertThrows(
+                        ConnectionException.class,
+                        () -> mgr.executeConnectedTask(desc, a -> a, false));
+        MatcherAssert.assertThat(first, Matchers.sameInstance(failure));
+
+        ConnectionException second =
+                Assertions.assertThrows(
+                        ConnectionException.class,
+                        () -> mgr.executeConnectedTask(desc, a -> a, false));
+        MatcherAssert.assertThat(second.getCause(), Matchers.sameInstance(failure));
+        Mockito.verify(jfrConnectionToolkit, Mockito.times(1))
+                .connect(Mockito.any(), Mockito.any(), Mockito.any());
+        MatcherAssert.assertThat(
+                unreachableTargets.get(desc.getTargetId()).get().getConsecutiveFailures(),
+                Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldNotBackOffFromTargetsFailingForOtherReasons() throws Exception {
+        Mockito.when(jfrConnectionToolkit.connect(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenThrow(new ConnectionException("bad credentials"));
+        ConnectionDescriptor desc =
+                new ConnectionDescriptor("service:jmx:rmi:///jndi/rmi://foo/jmxrmi");
+
+        Assertions.assertThrows(
+                ConnectionException.class, () -> mgr.executeConnectedTask(desc, a -> a, false));
+        Assertions.assertThrows(
+                ConnectionException.class, () -> mgr.executeConnectedTask(desc, a -> a, false));
+
+        Mockito.verify(jfrConnectionToolkit, Mockito.times(2))
+                .connect(Mockito.any(), Mockito.any(), Mockito.any());
+        MatcherAssert.assertThat(
+                unreachableTargets.get(desc.getTargetId()).isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldLetWaitingCallersConnectConcurrentlyAfterSuccessfulAttempt() throws Exception {
+        TargetConnectionManager mgr =
+                new TargetConnectionManager(
+                        () -> jfrConnectionToolkit,
+                        platformClient,
+                        new DirectExecutor(),
+                        Scheduler.disabledScheduler(),
+                        Duration.ofSeconds(1),
+                        Duration.ofSeconds(1),
+                        0,
+                        0,
+                        0,
+                        3,
+                        Duration.ofSeconds(5),
+                        new TargetTaskExecutor(new DirectExecutor(), 1),
+                        unreachableTargets,
+                        logger);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch leaderConnecting = new CountDownLatch(1);
+        CountDownLatch leaderRelease = new CountDownLatch(1);
+        CountDownLatch followersConnecting = new CountDownLatch(2);
+        Mockito.when(jfrConnectionToolkit.connect(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(
+                        invocation -> {
+                            if (attempts.incrementAndGet() == 1) {
+                                leaderConnecting.countDown();
+                                leaderRelease.await();
+                            } else {
+                                // both waiting callers must be connecting at the same time
+                                followersConnecting.countDown();
+                                if (!followersConnecting.await(5, TimeUnit.SECONDS)) {
+                                    throw new ConnectionException("connects were serialized");
+                                }
+                            }
+                            return Mockito.mock(JFRConnection.class);
+                        });
+        ConnectionDescriptor desc =
+                new ConnectionDescriptor("service:jmx:rmi:///jndi/rmi://foo/jmxrmi");
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            Future<JFRConnection> leader =
+                    callers.submit(() -> mgr.executeConnectedTask(desc, a -> a, false));
+            Assertions.assertTrue(leaderConnecting.await(5, TimeUnit.SECONDS));
+            Future<JFRConnection> follower1 =
+                    callers.submit(() -> mgr.executeConnectedTask(desc, a -> a, false));
+            Future<JFRConnection> follower2 =
+                    callers.submit(() -> mgr.executeConnectedTask(desc, a -> a, false));
+            Thread.sleep(200);
+            leaderRelease.countDown();
+
+            JFRConnection conn1 = follower1.get(10, TimeUnit.SECONDS);
+            JFRConnection conn2 = follower2.get(10, TimeUnit.SECONDS);
+            MatcherAssert.assertThat(conn1, Matchers.not(Matchers.sameInstance(conn2)));
+            MatcherAssert.assertThat(
+                    leader.get(10, TimeUnit.SECONDS), Matchers.not(Matchers.oneOf(conn1, conn2)));
+            MatcherAssert.assertThat(attempts.get(), Matchers.equalTo(3));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldUseJmxServiceUrlTargetIdAsServiceUrl() throws Exception {
+        JMXServiceURL url = mgr.getServiceURL("service:jmx:rmi:///jndi/rmi://foo:9091/jmxrmi");
+
+        MatcherAssert.assertThat(
+                url.toString(), Matchers.equalTo("service:jmx:rmi:///jndi/rmi://foo:9091/jmxrmi"));
+        Mockito.verifyNoInteractions(jfrConnectionToolkit);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"foo:1234, 1234", "foo, 9091"})
+    void shouldResolveHostPortTargetIdToServiceUrl(String targetId, int port) throws Exception {
+        JMXServiceURL url = new JMXServiceURL("rmi", "", 0, "/jndi/rmi://foo:" + port + "/jmxrmi");
+        Mockito.when(jfrConnectionToolkit.createServiceURL("foo", port)).thenReturn(url);
+
+        MatcherAssert.assertThat(mgr.getServiceURL(targetId), Matchers.sameInstance(url));
+    }
+
+    @Test
+    void shouldThrowForInvalidTargetId() {
+        Assertions.assertThrows(
+                MalformedURLException.class, () -> mgr.getServiceURL("foo:bar:baz"));
+    }
+
     static class DirectExecutor implements Executor {
         @Override
         public void execute(Runnable r) {
@@ -0,0 +1,178 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.net.JFRConnection;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TargetConnectionPoolTest {
+
+    TargetConnectionPool pool;
+    @Mock Logger logger;
+    List<Runnable> closeListeners;
+    ConnectionDescriptor descriptor = new ConnectionDescriptor("foo");
+
+    @BeforeEach
+    void setup() {
+        this.closeListeners = new ArrayList<>();
+        this.pool =
+                new TargetConnectionPool(
+                        (cd, closeListener) -> {
+                            closeListeners.add(closeListener);
+                            return Mockito.mock(JFRConnection.class);
+                        },
+                        Runnable::run,
+                        Scheduler.disabledScheduler(),
+                        Duration.ofSeconds(1),
+                        0,
+                        1,
+                        Duration.ofMillis(10),
+                        logger);
+    }
+
+    @Test
+    void shouldReuseReturnedConnection() throws Exception {
+        JFRConnection conn1;
+        try (TargetConnectionPool.Lease lease = pool.lease(descriptor)) {
+            conn1 = lease.getConnection();
+        }
+        JFRConnection conn2;
+        try (TargetConnectionPool.Lease lease = pool.lease(descriptor)) {
+            conn2 = lease.getConnection();
+        }
+        MatcherAssert.assertThat(conn1, Matchers.sameInstance(conn2));
+        Mockito.verify(conn1, Mockito.never()).close();
+
+        MatcherAssert.assertThat(pool.getMisses(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(pool.getHits(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(pool.getActiveConnections(), Matchers.equalTo(0));
+        MatcherAssert.assertThat(pool.getIdleConnections(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldReuseLeaseForNestedAccessOnSameThread() throws Exception {
+        try (TargetConnectionPool.Lease outer = pool.lease(descriptor)) {
+            try (TargetConnectionPool.Lease inner = pool.lease(descriptor)) {
+                MatcherAssert.assertThat(
+                        inner.getConnection(), Matchers.sameInstance(outer.getConnection()));
+            }
+            MatcherAssert.assertThat(pool.getActiveConnections(), Matchers.equalTo(1));
+        }
+        MatcherAssert.assertThat(pool.getActiveConnections(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldTimeOutWhenMaxActiveExceeded() throws Exception {
+        try (TargetConnectionPool.Lease lease = pool.lease(descriptor)) {
+            Thread other =
+                    new Thread(
+                            () ->
+                                    Assertions.assertThrows(
+                                            TimeoutException.class, () -> pool.lease(descriptor)));
+            other.start();
+            other.join();
+        }
+        MatcherAssert.assertThat(pool.getTimeouts(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    void shouldCreateSeparateConnectionsPerTarget() throws Exception {
+        JFRConnection conn1;
+        try (TargetConnectionPool.Lease lease = pool.lease(descriptor)) {
+            conn1 = lease.getConnection();
+        }
+        JFRConnection conn2;
+        try (TargetConnectionPool.Lease lease = pool.lease(new ConnectionDescriptor("bar"))) {
+            conn2 = lease.getConnection();
+        }
+        MatcherAssert.assertThat(conn1, Matchers.not(Matchers.sameInstance(conn2)));
+    }
+
+    @Test
+    void shouldDiscardClosedConnections() throws Exception {
+        JFRConnection conn1;
+        try (TargetConnectionPool.Lease lease = pool.lease(descriptor)) {
+            conn1 = lease.getConnection();
+        }
+        closeListeners.forEach(Runnable::run);
+        JFRConnection conn2;
+        try (TargetConnectionPool.Lease lease = pool.lease(descriptor)) {
+            conn2 = lease.getConnection();
+        }
+        MatcherAssert.assertThat(conn1, Matchers.not(Matchers.sameInstance(conn2)));
+    }
+
+    @Test
+    void shouldCloseIdleConnectionsOnEviction() throws Exception {
+        JFRConnection conn;
+        try (TargetConnectionPool.Lease lease = pool.lease(descriptor)) {
+            conn = lease.getConnection();
+        }
+        pool.evict("foo");
+        Mockito.verify(conn).close();
+        MatcherAssert.assertThat(pool.getIdleConnections(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldCloseLeasedConnectionReturnedAfterEviction() throws Exception {
+        JFRConnection conn;
+        try (TargetConnectionPool.Lease lease = pool.lease(descriptor)) {
+            conn = lease.getConnection();
+            pool.evict("foo");
+            Mockito.verify(conn, Mockito.never()).close();
+        }
+        Mockito.verify(conn).close();
+    }
+}
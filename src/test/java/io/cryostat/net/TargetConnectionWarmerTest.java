@@ -0,0 +1,218 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.rjmx.services.jfr.IFlightRecorderService;
+
+import io.cryostat.configuration.CredentialsManager;
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.net.Credentials;
+import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.net.discovery.JvmDiscoveryClient.EventKind;
+import io.cryostat.core.templates.TemplateService;
+import io.cryostat.net.TargetConnectionManager.ConnectedTask;
+import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.TargetDiscoveryEvent;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TargetConnectionWarmerTest {
+
+    TargetConnectionWarmer warmer;
+    @Mock PlatformClient platformClient;
+    @Mock TargetConnectionManager targetConnectionManager;
+    @Mock CredentialsManager credentialsManager;
+    @Mock Logger logger;
+    ServiceRef serviceRef;
+
+    @BeforeEach
+    void setup() throws Exception {
+        serviceRef =
+                new ServiceRef(new URI("service:jmx:rmi:///jndi/rmi://foo:9091/jmxrmi"), "foo");
+        serviceRef.setLabels(Map.of("app", "foo", "env", "prod"));
+    }
+
+    TargetConnectionWarmer createWarmer(String selector) {
+        return new TargetConnectionWarmer(
+                platformClient,
+                targetConnectionManager,
+                credentialsManager,
+                Runnable::run,
+                selector,
+                logger);
+    }
+
+    @Test
+    void shouldNotListenForDiscoveryEventsWithoutSelector() {
+        createWarmer("").enable();
+        Mockito.verifyNoInteractions(platformClient);
+    }
+
+    @Test
+    void shouldListenForDiscoveryEventsWithSelector() {
+        warmer = createWarmer("app=foo");
+        warmer.enable();
+        Mockito.verify(platformClient).addTargetDiscoveryListener(warmer);
+    }
+
+    @Test
+    void shouldWarmUpMatchingFoundTargets() throws Exception {
+        Credentials credentials = new Credentials("user", "pass");
+        Mockito.when(credentialsManager.getCredentials(serviceRef)).thenReturn(credentials);
+        JFRConnection connection = Mockito.mock(JFRConnection.class);
+        IFlightRecorderService service = Mockito.mock(IFlightRecorderService.class);
+        TemplateService templateService = Mockito.mock(TemplateService.class);
+        Mockito.when(connection.getService()).thenReturn(service);
+        Mockito.when(connection.getTemplateService()).thenReturn(templateService);
+        Mockito.doAnswer(
+                        invocation ->
+                                ((ConnectedTask<?>) invocation.getArgument(1)).execute(connection))
+                .when(targetConnectionManager)
+                .warmUpConnection(Mockito.any(), Mockito.any());
+
+        createWarmer("app=foo").accept(new TargetDiscoveryEvent(EventKind.FOUND, serviceRef));
+
+        ArgumentCaptor<ConnectionDescriptor> descriptorCaptor =
+                ArgumentCaptor.forClass(ConnectionDescriptor.class);
+        Mockito.verify(targetConnectionManager)
+                .warmUpConnection(descriptorCaptor.capture(), Mockito.any());
+        MatcherAssert.assertThat(
+                descriptorCaptor.getValue(),
+                Matchers.equalTo(new ConnectionDescriptor(serviceRef, credentials)));
+        Mockito.verify(service).getAvailableEventTypes();
+        Mockito.verify(service).getAvailableRecordings();
+        Mockito.verify(templateService).getTemplates();
+    }
+
+    @Test
+    void shouldNotWarmUpNonMatchingTargets() throws Exception {
+        createWarmer("app=bar").accept(new TargetDiscoveryEvent(EventKind.FOUND, serviceRef));
+        Mockito.verifyNoInteractions(targetConnectionManager);
+    }
+
+    @Test
+    void shouldNotWarmUpLostTargets() throws Exception {
+        createWarmer("app=foo").accept(new TargetDiscoveryEvent(EventKind.LOST, serviceRef));
+        Mockito.verifyNoInteractions(targetConnectionManager);
+    }
+
+    @Test
+    void shouldLogWarmUpFailures() throws Exception {
+        Exception e = new RuntimeException("failed");
+        Mockito.doThrow(e)
+                .when(targetConnectionManager)
+                .warmUpConnection(Mockito.any(), Mockito.any());
+
+        createWarmer("*").accept(new TargetDiscoveryEvent(EventKind.FOUND, serviceRef));
+
+        Mockito.verify(logger).warn(e);
+    }
+
+    @Nested
+    class SelectorParsing {
+
+        Map<String, String> labels = Map.of("app", "foo", "env", "prod");
+
+        @Test
+        void shouldBeDisabledByBlankSelector() {
+            MatcherAssert.assertThat(
+                    TargetConnectionWarmer.parseSelector(" "), Matchers.nullValue());
+            MatcherAssert.assertThat(
+                    TargetConnectionWarmer.parseSelector(null), Matchers.nullValue());
+        }
+
+        @Test
+        void shouldMatchEverythingWithWildcard() {
+            MatcherAssert.assertThat(
+                    TargetConnectionWarmer.parseSelector("*").test(Map.of()), Matchers.is(true));
+        }
+
+        @Test
+        void shouldMatchEquality() {
+            Predicate<Map<String, String>> p = TargetConnectionWarmer.parseSelector("app=foo");
+            MatcherAssert.assertThat(p.test(labels), Matchers.is(true));
+            p = TargetConnectionWarmer.parseSelector("app==foo");
+            MatcherAssert.assertThat(p.test(labels), Matchers.is(true));
+            p = TargetConnectionWarmer.parseSelector("app=bar");
+            MatcherAssert.assertThat(p.test(labels), Matchers.is(false));
+        }
+
+        @Test
+        void shouldMatchInequality() {
+            Predicate<Map<String, String>> p = TargetConnectionWarmer.parseSelector("env!=test");
+            MatcherAssert.assertThat(p.test(labels), Matchers.is(true));
+            p = TargetConnectionWarmer.parseSelector("env!=prod");
+            MatcherAssert.assertThat(p.test(labels), Matchers.is(false));
+        }
+
+        @Test
+        void shouldMatchExistence() {
+            MatcherAssert.assertThat(
+                    TargetConnectionWarmer.parseSelector("app").test(labels), Matchers.is(true));
+            MatcherAssert.assertThat(
+                    TargetConnectionWarmer.parseSelector("!app").test(labels), Matchers.is(false));
+            MatcherAssert.assertThat(
+                    TargetConnectionWarmer.parseSelector("!other").test(labels), Matchers.is(true));
+        }
+
+        @Test
+        void shouldRequireAllRequirements() {
+            MatcherAssert.assertThat(
+                    TargetConnectionWarmer.parseSelector("app=foo, env!=test").test(labels),
+                    Matchers.is(true));
+            MatcherAssert.assertThat(
+                    TargetConnectionWarmer.parseSelector("app=foo,env=test").test(labels),
+                    Matchers.is(false));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TargetTaskExecutorTest {
+
+    ExecutorService workers;
+    TargetTaskExecutor executor;
+
+    @BeforeEach
+    void setup() {
+        this.workers = Executors.newFixedThreadPool(2);
+        this.executor = new TargetTaskExecutor(workers, 1);
+    }
+
+    @AfterEach
+    void teardown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    void shouldCompleteWithTaskResult() throws Exception {
+        CompletableFuture<String> future = executor.submit("foo", () -> "bar");
+        MatcherAssert.assertThat(future.get(1, TimeUnit.SECONDS), Matchers.equalTo("bar"));
+    }
+
+    @Test
+    void shouldCompleteExceptionallyWithTaskFailure() throws Exception {
+        CompletableFuture<String> future =
+                executor.submit(
+                        "foo",
+                        () -> {
+                            throw new IllegalStateException("dummy");
+                        });
+        ExecutionException ee =
+                Assertions.assertThrows(
+                        ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    void shouldLimitConcurrentTasksPerTarget() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[4];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] =
+                    executor.submit(
+                            "foo",
+                            () -> {
+                                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                                release.await();
+                                running.decrementAndGet();
+                                return null;
+                            });
+        }
+        release.countDown();
+        CompletableFuture.allOf(futures).get(1, TimeUnit.SECONDS);
+        MatcherAssert.assertThat(maxRunning.get(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldNotBlockOtherTargetsBehindBusyTarget() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<?> slow1 =
+                executor.submit(
+                        "slow",
+                        () -> {
+                            release.await();
+                            return null;
+                        });
+        CompletableFuture<?> slow2 =
+                executor.submit(
+                        "slow",
+                        () -> {
+                            release.await();
+                            return null;
+                        });
+        CompletableFuture<String> fast = executor.submit("fast", () -> "done");
+        MatcherAssert.assertThat(fast.get(1, TimeUnit.SECONDS), Matchers.equalTo("done"));
+        MatcherAssert.assertThat(slow1.isDone(), Matchers.is(false));
+        MatcherAssert.assertThat(slow2.isDone(), Matchers.is(false));
+        release.countDown();
+        CompletableFuture.allOf(slow1, slow2).get(1, TimeUnit.SECONDS);
+    }
+}
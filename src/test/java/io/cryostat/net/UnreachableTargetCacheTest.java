@@ -0,0 +1,179 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.rmi.ConnectIOException;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.openjdk.jmc.rjmx.ConnectionException;
+
+import io.cryostat.core.sys.Clock;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class UnreachableTargetCacheTest {
+
+    UnreachableTargetCache cache;
+    @Mock Clock clock;
+
+    @BeforeEach
+    void setup() {
+        this.cache =
+                new UnreachableTargetCache(clock, Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+
+    @Test
+    void shouldBeReachableByDefault() throws Exception {
+        MatcherAssert.assertThat(cache.get("foo").isPresent(), Matchers.is(false));
+        Assertions.assertDoesNotThrow(() -> cache.checkReachable("foo"));
+    }
+
+    @Test
+    void shouldBackOffExponentiallyUpToMax() throws Exception {
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(0));
+        Exception failure = new ConnectionException("failed");
+        failure.initCause(new UnknownHostException("foo"));
+
+        cache.onFailure("foo", failure);
+        MatcherAssert.assertThat(cache.get("foo").get().getRetryAfter(), Matchers.equalTo(2000L));
+        cache.onFailure("foo", failure);
+        MatcherAssert.assertThat(cache.get("foo").get().getRetryAfter(), Matchers.equalTo(4000L));
+        cache.onFailure("foo", failure);
+        MatcherAssert.assertThat(cache.get("foo").get().getRetryAfter(), Matchers.equalTo(5000L));
+        MatcherAssert.assertThat(
+                cache.get("foo").get().getConsecutiveFailures(), Matchers.equalTo(3));
+        MatcherAssert.assertThat(
+                cache.get("foo").get().getReason(), Matchers.containsString("foo"));
+    }
+
+    @Test
+    void shouldThrowWithOriginalCauseWhileBackingOff() throws Exception {
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(0));
+        Exception failure = new ConnectionException("failed");
+        failure.initCause(new ConnectIOException("refused", new ConnectException("refused")));
+        cache.onFailure("foo", failure);
+
+        TargetUnreachableException ex =
+                Assertions.assertThrows(
+                        TargetUnreachableException.class, () -> cache.checkReachable("foo"));
+        MatcherAssert.assertThat(ex.getCause(), Matchers.sameInstance(failure));
+        MatcherAssert.assertThat(ex.getRetryAfter(), Matchers.equalTo(2000L));
+        MatcherAssert.assertThat(ex.getRetryAfterSeconds(), Matchers.equalTo(2L));
+    }
+
+    @Test
+    void shouldAllowRetryAfterBackoffElapses() throws Exception {
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(0), Instant.ofEpochMilli(2000));
+        cache.onFailure("foo", new ConnectException("refused"));
+
+        MatcherAssert.assertThat(cache.get("foo").isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldNotHaveUnreachableTargetsAfterBackoffElapses() throws Exception {
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(0), Instant.ofEpochMilli(1999));
+        cache.onFailure("foo", new ConnectException("refused"));
+        MatcherAssert.assertThat(cache.hasUnreachableTargets(), Matchers.is(true));
+
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(2000));
+        MatcherAssert.assertThat(cache.hasUnreachableTargets(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldContinueBackingOffIfRetryFailsSoonAfterBackoffElapses() throws Exception {
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(0));
+        cache.onFailure("foo", new ConnectException("refused"));
+
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(2000));
+        Assertions.assertDoesNotThrow(() -> cache.checkReachable("foo"));
+        cache.onFailure("foo", new ConnectException("refused"));
+
+        MatcherAssert.assertThat(
+                cache.get("foo").get().getConsecutiveFailures(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(cache.get("foo").get().getRetryAfter(), Matchers.equalTo(6000L));
+    }
+
+    @Test
+    void shouldForgetTargetsLongAfterBackoffElapses() throws Exception {
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(0));
+        cache.onFailure("foo", new ConnectException("refused"));
+
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(7000));
+        cache.onFailure("foo", new ConnectException("refused"));
+
+        MatcherAssert.assertThat(
+                cache.get("foo").get().getConsecutiveFailures(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(cache.get("foo").get().getRetryAfter(), Matchers.equalTo(9000L));
+    }
+
+    @Test
+    void shouldResetOnSuccess() throws Exception {
+        Mockito.when(clock.now()).thenReturn(Instant.ofEpochMilli(0));
+        cache.onFailure("foo", new ConnectException("refused"));
+        cache.reset("foo");
+
+        MatcherAssert.assertThat(cache.get("foo").isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldIgnoreFailuresOtherThanUnreachable() throws Exception {
+        cache.onFailure("foo", new SecurityException("bad credentials"));
+
+        MatcherAssert.assertThat(cache.get("foo").isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldIgnoreFailuresWhenDisabled() throws Exception {
+        cache = new UnreachableTargetCache(clock, Duration.ofSeconds(2), Duration.ZERO);
+        cache.onFailure("foo", new ConnectException("refused"));
+
+        MatcherAssert.assertThat(cache.get("foo").isPresent(), Matchers.is(false));
+    }
+}
@@ -46,6 +46,7 @@ import java.util.concurrent.Future;
 import javax.inject.Provider;
 
 import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.Clock;
 import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.ConnectionDescriptor;
@@ -71,6 +72,7 @@ class ActiveRecordingReportCacheTest {
     @Mock Environment env;
     @Mock FileSystem fs;
     @Mock TargetConnectionManager targetConnectionManager;
+    @Mock Clock clock;
     @Mock Logger logger;
     @Mock CompletableFuture<Path> pathFuture;
     @Mock Path destinationFile;
@@ -82,7 +84,12 @@ class ActiveRecordingReportCacheTest {
     void setup() {
         this.cache =
                 new ActiveRecordingReportCache(
-                        () -> subprocessReportGenerator, fs, targetConnectionManager, 30, logger);
+                        () -> subprocessReportGenerator,
+                        fs,
+                        targetConnectionManager,
+                        new ReportScheduler(Runnable::run, 1, 0, 0, clock),
+                        30,
+                        logger);
     }
 
     @Test
@@ -37,14 +37,23 @@
  */
 package io.cryostat.net.reports;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.Clock;
 import io.cryostat.core.sys.FileSystem;
+import io.cryostat.recordings.ArchiveCatalog;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingNotFoundException;
 
@@ -62,102 +71,305 @@ import org.mockito.junit.jupiter.MockitoExtension;
 class ArchivedRecordingReportCacheTest {
 
     ArchivedRecordingReportCache cache;
+    ReportScheduler scheduler;
     @Mock CompletableFuture<Path> pathFuture;
     @Mock Path destinationFile;
     @Mock FileSystem fs;
     @Mock SubprocessReportGenerator subprocessReportGenerator;
+    @Mock Clock clock;
     @Mock Logger logger;
     @Mock RecordingArchiveHelper recordingArchiveHelper;
+    @Mock ArchiveCatalog archiveCatalog;
+    @Mock ArchiveCatalog.Entry entry;
+    @Mock ArchivedReportStore reportStore;
+    @Mock ArchivedReport report;
+
+    static final String HASH = "abc123";
 
     @BeforeEach
     void setup() {
+        this.scheduler = new ReportScheduler(Executors.newSingleThreadExecutor(), 1, 0, 0, clock);
         this.cache =
                 new ArchivedRecordingReportCache(
-                        fs, () -> subprocessReportGenerator, recordingArchiveHelper, 30, logger);
+                        fs,
+                        () -> subprocessReportGenerator,
+                        recordingArchiveHelper,
+                        archiveCatalog,
+                        reportStore,
+                        scheduler,
+                        30,
+                        logger);
     }
 
     @Test
-    void getShouldThrowIfNoCacheAndNoRecording() throws Exception {
-        String recordingName = "foo";
+    void getShouldFailIfRecordingNotInCatalog() throws Exception {
+        Mockito.when(archiveCatalog.get("foo")).thenReturn(Optional.empty());
 
-        Mockito.when(recordingArchiveHelper.getCachedReportPath(recordingName))
-                .thenReturn(destinationFile);
-        Mockito.when(fs.isReadable(Mockito.any())).thenReturn(false);
-        CompletableFuture<Path> future = Mockito.mock(CompletableFuture.class);
-        Mockito.when(recordingArchiveHelper.getRecordingPath(recordingName)).thenReturn(future);
-        Mockito.when(future.get())
-                .thenThrow(
-                        new ExecutionException(
+        ExecutionException ex =
+                Assertions.assertThrows(ExecutionException.class, () -> cache.get("foo").get());
+
+        MatcherAssert.assertThat(
+                ex.getCause(), Matchers.instanceOf(RecordingNotFoundException.class));
+        Mockito.verifyNoInteractions(reportStore);
+    }
+
+    @Test
+    void getShouldThrowIfRecordingPathNotFound() throws Exception {
+        String recordingName = "foo";
+        Mockito.when(archiveCatalog.get(recordingName)).thenReturn(Optional.of(entry));
+        Mockito.when(reportStore.getKnownHash(entry)).thenReturn(Optional.empty());
+        Mockito.when(recordingArchiveHelper.getRecordingPath(recordingName))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
                                 new RecordingNotFoundException("archives", recordingName)));
 
         Assertions.assertThrows(ExecutionException.class, () -> cache.get(recordingName).get());
 
-        Mockito.verify(fs, Mockito.atLeastOnce()).isReadable(destinationFile);
+        Mockito.verify(reportStore, Mockito.never()).getHash(Mockito.any(), Mockito.any());
+        Mockito.verify(reportStore, Mockito.never()).pin(Mockito.any());
     }
 
     @Test
-    void getShouldGenerateAndCacheReport() throws Exception {
+    void getShouldReturnStoredReportOfKnownHashWithoutScheduling() throws Exception {
         String recordingName = "foo";
-        Mockito.when(recordingArchiveHelper.getCachedReportPath(recordingName))
-                .thenReturn(destinationFile);
-        Mockito.when(fs.isReadable(Mockito.any())).thenReturn(false);
+        Mockito.when(archiveCatalog.get(recordingName)).thenReturn(Optional.of(entry));
+        Mockito.when(reportStore.getKnownHash(entry)).thenReturn(Optional.of(HASH));
+        Mockito.when(reportStore.pin(HASH)).thenReturn(Optional.of(report));
+
+        Future<ArchivedReport> res = cache.get(recordingName);
 
-        CompletableFuture<Path> future = Mockito.mock(CompletableFuture.class);
+        MatcherAssert.assertThat(res.isDone(), Matchers.is(true));
+        MatcherAssert.assertThat(res.get(), Matchers.sameInstance(report));
+        Mockito.verify(reportStore, Mockito.never()).getHash(Mockito.any(), Mockito.any());
+        Mockito.verifyNoInteractions(recordingArchiveHelper);
+        Mockito.verifyNoInteractions(subprocessReportGenerator);
+    }
+
+    @Test
+    void getShouldHashRecordingContentsInJob() throws Exception {
+        String recordingName = "foo";
         Path recording = Mockito.mock(Path.class);
-        Mockito.when(recordingArchiveHelper.getRecordingPath(Mockito.anyString()))
-                .thenReturn(future);
-        Mockito.when(future.get()).thenReturn(recording);
+        InputStream stream = new ByteArrayInputStream(new byte[0]);
+        Thread caller = Thread.currentThread();
+        Mockito.when(archiveCatalog.get(recordingName)).thenReturn(Optional.of(entry));
+        Mockito.when(reportStore.getKnownHash(entry)).thenReturn(Optional.empty());
+        Mockito.when(recordingArchiveHelper.getRecordingPath(recordingName))
+                .thenReturn(CompletableFuture.completedFuture(recording));
+        Mockito.when(recordingArchiveHelper.openRecording(recording)).thenReturn(stream);
+        Mockito.when(reportStore.getHash(Mockito.eq(entry), Mockito.any()))
+                .thenAnswer(
+                        invocation -> {
+                            MatcherAssert.assertThat(
+                                    Thread.currentThread(), Matchers.not(Matchers.is(caller)));
+                            ArchivedReportStore.RecordingOpener opener = invocation.getArgument(1);
+                            MatcherAssert.assertThat(opener.open(), Matchers.sameInstance(stream));
+                            return HASH;
+                        });
+        Mockito.when(reportStore.contains(HASH)).thenReturn(true);
+        Mockito.when(reportStore.pin(HASH)).thenReturn(Optional.of(report));
 
-        Mockito.when(pathFuture.get(Mockito.anyLong(), Mockito.any())).thenReturn(destinationFile);
-        Mockito.when(
-                        subprocessReportGenerator.exec(
-                                Mockito.any(Path.class), Mockito.any(Path.class)))
-                .thenReturn(pathFuture);
+        MatcherAssert.assertThat(cache.get(recordingName).get(), Matchers.sameInstance(report));
+        Mockito.verifyNoInteractions(subprocessReportGenerator);
+    }
+
+    @Test
+    void getShouldGenerateAndStoreReport() throws Exception {
+        String recordingName = "foo";
+        Path recording = Mockito.mock(Path.class);
+        Path tmp = Mockito.mock(Path.class);
+        mockUncachedRecording(recordingName, recording);
+        Mockito.when(reportStore.createTempFile()).thenReturn(tmp);
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recording)).thenReturn(recording);
+        Mockito.when(pathFuture.get(Mockito.anyLong(), Mockito.any())).thenReturn(tmp);
+        Mockito.when(subprocessReportGenerator.exec(recording, tmp)).thenReturn(pathFuture);
+        Mockito.when(reportStore.put(HASH, tmp)).thenReturn(destinationFile);
+        Mockito.when(reportStore.pin(HASH)).thenReturn(Optional.of(report));
+
+        Future<ArchivedReport> res = cache.get(recordingName);
+
+        MatcherAssert.assertThat(res.get(), Matchers.sameInstance(report));
+        Mockito.verify(reportStore).put(HASH, tmp);
+        Mockito.verify(fs, Mockito.never()).deleteIfExists(Mockito.any());
+    }
+
+    @Test
+    void getShouldGenerateReportFromDecompressedCopyAndDeleteIt() throws Exception {
+        String recordingName = "foo";
+        Path recording = Mockito.mock(Path.class);
+        Path decompressed = Mockito.mock(Path.class);
+        Path tmp = Mockito.mock(Path.class);
+        mockUncachedRecording(recordingName, recording);
+        Mockito.when(reportStore.createTempFile()).thenReturn(tmp);
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recording)).thenReturn(decompressed);
+        Mockito.when(pathFuture.get(Mockito.anyLong(), Mockito.any())).thenReturn(tmp);
+        Mockito.when(subprocessReportGenerator.exec(decompressed, tmp)).thenReturn(pathFuture);
+        Mockito.when(reportStore.put(HASH, tmp)).thenReturn(destinationFile);
+        Mockito.when(reportStore.pin(HASH)).thenReturn(Optional.of(report));
+
+        Future<ArchivedReport> res = cache.get(recordingName);
 
-        Future<Path> res = cache.get(recordingName);
+        MatcherAssert.assertThat(res.get(), Matchers.sameInstance(report));
+        Mockito.verify(fs).deleteIfExists(decompressed);
+        Mockito.verify(fs, Mockito.never()).deleteIfExists(recording);
+    }
+
+    @Test
+    void getShouldShareJobForSameRecording() throws Exception {
+        Path recording = Mockito.mock(Path.class);
+        Mockito.when(archiveCatalog.get("bar")).thenReturn(Optional.of(entry));
+        Mockito.when(reportStore.getKnownHash(entry)).thenReturn(Optional.empty());
+        Mockito.when(recordingArchiveHelper.getRecordingPath("bar"))
+                .thenReturn(CompletableFuture.completedFuture(recording));
+        Mockito.when(reportStore.pin(HASH)).thenReturn(Optional.of(report));
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        scheduler.submit("bar", "archives", 0, () -> pending.get());
+
+        Future<ArchivedReport> second = cache.get("bar");
 
-        MatcherAssert.assertThat(res.get(), Matchers.sameInstance(destinationFile));
-        Mockito.verify(fs, Mockito.atLeastOnce()).isReadable(destinationFile);
+        MatcherAssert.assertThat(second.isDone(), Matchers.is(false));
+        pending.complete(HASH);
+        MatcherAssert.assertThat(second.get(), Matchers.sameInstance(report));
+        Mockito.verify(reportStore, Mockito.never()).getHash(Mockito.any(), Mockito.any());
+        Mockito.verifyNoInteractions(subprocessReportGenerator);
     }
 
     @Test
-    void getShouldReturnCachedFileIfAvailable() throws Exception {
+    void getShouldFailIfReportEvictedBeforeItIsPinned() throws Exception {
         String recordingName = "foo";
-        Mockito.when(recordingArchiveHelper.getCachedReportPath(recordingName))
-                .thenReturn(destinationFile);
-        Mockito.when(fs.isReadable(Mockito.any())).thenReturn(true);
-        Mockito.when(fs.isRegularFile(Mockito.any())).thenReturn(true);
+        Path recording = Mockito.mock(Path.class);
+        Mockito.when(archiveCatalog.get(recordingName)).thenReturn(Optional.of(entry));
+        Mockito.when(reportStore.getKnownHash(entry)).thenReturn(Optional.empty());
+        Mockito.when(recordingArchiveHelper.getRecordingPath(recordingName))
+                .thenReturn(CompletableFuture.completedFuture(recording));
+        Mockito.when(reportStore.getHash(Mockito.eq(entry), Mockito.any())).thenReturn(HASH);
+        Mockito.when(reportStore.contains(HASH)).thenReturn(true);
+        Mockito.when(reportStore.pin(HASH)).thenReturn(Optional.empty());
 
-        Future<Path> res = cache.get(recordingName);
+        ExecutionException ex =
+                Assertions.assertThrows(
+                        ExecutionException.class, () -> cache.get(recordingName).get());
 
-        MatcherAssert.assertThat(res.get(), Matchers.sameInstance(destinationFile));
-        Mockito.verify(fs).isReadable(destinationFile);
-        Mockito.verify(fs).isRegularFile(destinationFile);
+        MatcherAssert.assertThat(
+                ex.getCause(), Matchers.instanceOf(ReportGenerationException.class));
     }
 
     @Test
     void shouldThrowErrorIfReportGenerationFails() throws Exception {
         String recordingName = "foo";
-        Mockito.when(recordingArchiveHelper.getCachedReportPath(recordingName))
-                .thenReturn(destinationFile);
-        Mockito.when(fs.isReadable(Mockito.any())).thenReturn(false);
+        Path recording = Mockito.mock(Path.class);
+        Path tmp = Mockito.mock(Path.class);
+        mockUncachedRecording(recordingName, recording);
+        Mockito.when(reportStore.createTempFile()).thenReturn(tmp);
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recording)).thenReturn(recording);
+        Mockito.when(subprocessReportGenerator.exec(recording, tmp))
+                .thenThrow(
+                        new CompletionException(
+                                new SubprocessReportGenerator.SubprocessReportGenerationException(
+                                        SubprocessReportGenerator.ExitStatus.OUT_OF_MEMORY)));
+
+        Assertions.assertThrows(ExecutionException.class, () -> cache.get(recordingName).get());
+
+        Mockito.verify(fs).deleteIfExists(tmp);
+        Mockito.verify(reportStore, Mockito.never()).put(Mockito.any(), Mockito.any());
+        Mockito.verify(reportStore, Mockito.never()).pin(Mockito.any());
+    }
+
+    @Test
+    void getShouldDeleteGeneratedReportIfStoringFails() throws Exception {
+        String recordingName = "foo";
+        Path recording = Mockito.mock(Path.class);
+        Path tmp = Mockito.mock(Path.class);
+        mockUncachedRecording(recordingName, recording);
+        Mockito.when(reportStore.createTempFile()).thenReturn(tmp);
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recording)).thenReturn(recording);
+        Mockito.when(pathFuture.get(Mockito.anyLong(), Mockito.any())).thenReturn(tmp);
+        Mockito.when(subprocessReportGenerator.exec(recording, tmp)).thenReturn(pathFuture);
+        Mockito.when(reportStore.put(HASH, tmp)).thenThrow(IOException.class);
+
+        Assertions.assertThrows(ExecutionException.class, () -> cache.get(recordingName).get());
+
+        Mockito.verify(fs).deleteIfExists(tmp);
+    }
+
+    @Test
+    void deleteShouldForgetRecordingHash() {
+        Mockito.when(reportStore.forget("foo")).thenReturn(true);
+
+        MatcherAssert.assertThat(cache.delete("foo"), Matchers.equalTo(true));
+    }
 
-        CompletableFuture<Path> future = Mockito.mock(CompletableFuture.class);
+    @Test
+    void getRuleResultsShouldFailIfRecordingNotInCatalog() throws Exception {
+        Mockito.when(archiveCatalog.get("foo")).thenReturn(Optional.empty());
+
+        ExecutionException ex =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () -> cache.getRuleResults("foo", Set.of(), r -> {}).get());
+
+        MatcherAssert.assertThat(
+                ex.getCause(), Matchers.instanceOf(RecordingNotFoundException.class));
+        Mockito.verifyNoInteractions(subprocessReportGenerator);
+    }
+
+    @Test
+    void getRuleResultsShouldEvaluateRulesAgainstDecompressedCopy() throws Exception {
+        String recordingName = "foo";
         Path recording = Mockito.mock(Path.class);
-        Mockito.when(recordingArchiveHelper.getRecordingPath(Mockito.anyString()))
-                .thenReturn(future);
-        Mockito.when(future.get()).thenReturn(recording);
+        Path decompressed = Mockito.mock(Path.class);
+        Consumer<String> onResult = r -> {};
+        Mockito.when(recordingArchiveHelper.getRecordingPath(recordingName))
+                .thenReturn(CompletableFuture.completedFuture(recording));
+        Mockito.when(archiveCatalog.get(recordingName)).thenReturn(Optional.of(entry));
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recording)).thenReturn(decompressed);
+        Mockito.when(
+                        subprocessReportGenerator.execRules(
+                                decompressed, Set.of("GcPauseRatio"), onResult))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        cache.getRuleResults(recordingName, Set.of("GcPauseRatio"), onResult).get();
 
+        Mockito.verify(subprocessReportGenerator)
+                .execRules(decompressed, Set.of("GcPauseRatio"), onResult);
+        Mockito.verify(fs).deleteIfExists(decompressed);
+        Mockito.verify(fs, Mockito.never()).createTempFile(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void getRuleResultsShouldDeleteDecompressedCopyOnFailure() throws Exception {
+        String recordingName = "foo";
+        Path recording = Mockito.mock(Path.class);
+        Path decompressed = Mockito.mock(Path.class);
+        Mockito.when(recordingArchiveHelper.getRecordingPath(recordingName))
+                .thenReturn(CompletableFuture.completedFuture(recording));
+        Mockito.when(archiveCatalog.get(recordingName)).thenReturn(Optional.of(entry));
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recording)).thenReturn(decompressed);
         Mockito.when(
-                        subprocessReportGenerator.exec(
-                                Mockito.any(Path.class), Mockito.any(Path.class)))
-                .thenThrow(
-                        new CompletionException(
+                        subprocessReportGenerator.execRules(
+                                Mockito.same(decompressed), Mockito.eq(Set.of()), Mockito.any()))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
                                 new SubprocessReportGenerator.SubprocessReportGenerationException(
                                         SubprocessReportGenerator.ExitStatus.OUT_OF_MEMORY)));
 
-        Assertions.assertThrows(ExecutionException.class, () -> cache.get("foo").get());
+        ExecutionException ex =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () -> cache.getRuleResults(recordingName, Set.of(), r -> {}).get());
+
+        MatcherAssert.assertThat(
+                ex.getCause(),
+                Matchers.instanceOf(
+                        SubprocessReportGenerator.SubprocessReportGenerationException.class));
+        Mockito.verify(fs).deleteIfExists(decompressed);
+    }
 
-        Mockito.verify(fs, Mockito.atLeastOnce()).isReadable(destinationFile);
+    private void mockUncachedRecording(String recordingName, Path recording) throws Exception {
+        Mockito.when(archiveCatalog.get(recordingName)).thenReturn(Optional.of(entry));
+        Mockito.when(reportStore.getKnownHash(entry)).thenReturn(Optional.empty());
+        Mockito.when(recordingArchiveHelper.getRecordingPath(recordingName))
+                .thenReturn(CompletableFuture.completedFuture(recording));
+        Mockito.when(reportStore.getHash(Mockito.eq(entry), Mockito.any())).thenReturn(HASH);
+        Mockito.when(reportStore.contains(HASH)).thenReturn(false);
     }
 }
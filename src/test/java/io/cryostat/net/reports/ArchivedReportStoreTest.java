@@ -0,0 +1,309 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.reports;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.recordings.ArchiveCatalog;
+import io.cryostat.recordings.ArchiveCompression;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ArchivedReportStoreTest {
+
+    static final String HASH_A = DigestUtils.sha256Hex("a");
+    static final String HASH_B = DigestUtils.sha256Hex("b");
+    static final String HASH_C = DigestUtils.sha256Hex("c");
+
+    ArchivedReportStore store;
+    @Mock Logger logger;
+    @Mock ArchiveCatalog.Entry entry;
+    Gson gson = new GsonBuilder().create();
+
+    @TempDir Path directory;
+
+    @BeforeEach
+    void setup() throws Exception {
+        this.store = newStore(100, ArchiveCompression.NONE);
+    }
+
+    @Test
+    void shouldStoreAndReturnReport() throws Exception {
+        Path report = store.put(HASH_A, generate("<html>a</html>"));
+
+        MatcherAssert.assertThat(report, Matchers.equalTo(directory.resolve(HASH_A + ".html")));
+        MatcherAssert.assertThat(Files.readString(report), Matchers.equalTo("<html>a</html>"));
+        MatcherAssert.assertThat(stored(store, HASH_A), Matchers.equalTo(Optional.of(report)));
+        MatcherAssert.assertThat(stored(store, HASH_B), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(store.getTotalBytes(), Matchers.equalTo(14L));
+        MatcherAssert.assertThat(
+                ArchivedReportStore.getCompression(report),
+                Matchers.equalTo(ArchiveCompression.NONE));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedReportsOverSizeBound() throws Exception {
+        Path a = store.put(HASH_A, generate("x".repeat(40)));
+        Path b = store.put(HASH_B, generate("x".repeat(40)));
+        stored(store, HASH_A);
+
+        Path c = store.put(HASH_C, generate("x".repeat(40)));
+
+        MatcherAssert.assertThat(stored(store, HASH_B), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(Files.exists(b), Matchers.is(false));
+        MatcherAssert.assertThat(stored(store, HASH_A), Matchers.equalTo(Optional.of(a)));
+        MatcherAssert.assertThat(stored(store, HASH_C), Matchers.equalTo(Optional.of(c)));
+        MatcherAssert.assertThat(store.getTotalBytes(), Matchers.equalTo(80L));
+    }
+
+    @Test
+    void shouldKeepNewestReportEvenIfOverSizeBound() throws Exception {
+        store.put(HASH_A, generate("x".repeat(40)));
+
+        Path b = store.put(HASH_B, generate("x".repeat(200)));
+
+        MatcherAssert.assertThat(stored(store, HASH_A), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(stored(store, HASH_B), Matchers.equalTo(Optional.of(b)));
+    }
+
+    @Test
+    void shouldReloadIndexOnRestart() throws Exception {
+        Path a = store.put(HASH_A, generate("x".repeat(40)));
+        Path b = store.put(HASH_B, generate("x".repeat(40)));
+        stored(store, HASH_A);
+        store.persist();
+
+        ArchivedReportStore restarted = newStore(100, ArchiveCompression.NONE);
+        MatcherAssert.assertThat(stored(restarted, HASH_A), Matchers.equalTo(Optional.of(a)));
+        MatcherAssert.assertThat(stored(restarted, HASH_B), Matchers.equalTo(Optional.of(b)));
+        MatcherAssert.assertThat(restarted.getTotalBytes(), Matchers.equalTo(80L));
+
+        // B was restored as least recently used, so is evicted first
+        stored(restarted, HASH_A);
+        restarted.put(HASH_C, generate("x".repeat(40)));
+        MatcherAssert.assertThat(stored(restarted, HASH_B), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(stored(restarted, HASH_A), Matchers.equalTo(Optional.of(a)));
+    }
+
+    @Test
+    void shouldRemoveTemporaryFilesAndEvictOnStart() throws Exception {
+        store.put(HASH_A, generate("x".repeat(40)));
+        store.put(HASH_B, generate("x".repeat(40)));
+        Path tmp = store.createTempFile();
+
+        ArchivedReportStore restarted = newStore(50, ArchiveCompression.NONE);
+
+        MatcherAssert.assertThat(Files.exists(tmp), Matchers.is(false));
+        MatcherAssert.assertThat(stored(restarted, HASH_A), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(stored(restarted, HASH_B).isPresent(), Matchers.is(true));
+        MatcherAssert.assertThat(restarted.getTotalBytes(), Matchers.equalTo(40L));
+    }
+
+    @Test
+    void shouldIgnoreCorruptIndex() throws Exception {
+        Path a = store.put(HASH_A, generate("x".repeat(40)));
+        Files.writeString(directory.resolve(ArchivedReportStore.INDEX_FILE_NAME), "{not json");
+
+        ArchivedReportStore restarted = newStore(100, ArchiveCompression.NONE);
+
+        MatcherAssert.assertThat(stored(restarted, HASH_A), Matchers.equalTo(Optional.of(a)));
+    }
+
+    @Test
+    void shouldStoreCompressedReports() throws Exception {
+        ArchivedReportStore compressed = newStore(1000, ArchiveCompression.GZIP);
+        String html = "<html>" + "report ".repeat(50) + "</html>";
+        Path generated = generate(html);
+
+        Path report = compressed.put(HASH_A, generated);
+
+        MatcherAssert.assertThat(report, Matchers.equalTo(directory.resolve(HASH_A + ".html.gz")));
+        MatcherAssert.assertThat(Files.exists(generated), Matchers.is(false));
+        MatcherAssert.assertThat(
+                ArchivedReportStore.getCompression(report),
+                Matchers.equalTo(ArchiveCompression.GZIP));
+        MatcherAssert.assertThat(Files.size(report), Matchers.lessThan((long) html.length()));
+        try (InputStream in = ArchiveCompression.decompress(Files.newInputStream(report))) {
+            MatcherAssert.assertThat(
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8), Matchers.equalTo(html));
+        }
+    }
+
+    @Test
+    void shouldHashRecordingOnlyOnceWhileUnchanged() throws Exception {
+        Mockito.when(entry.getName()).thenReturn("foo.jfr");
+        Mockito.when(entry.getSize()).thenReturn(3L);
+        Mockito.when(entry.getArchivedTime()).thenReturn(10L);
+        AtomicInteger opened = new AtomicInteger();
+        ArchivedReportStore.RecordingOpener opener =
+                () -> {
+                    opened.incrementAndGet();
+                    return new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8));
+                };
+
+        String hash = store.getHash(entry, opener);
+        MatcherAssert.assertThat(hash, Matchers.equalTo(DigestUtils.sha256Hex("abc")));
+        MatcherAssert.assertThat(store.getHash(entry, opener), Matchers.equalTo(hash));
+        MatcherAssert.assertThat(opened.get(), Matchers.equalTo(1));
+
+        Mockito.when(entry.getArchivedTime()).thenReturn(11L);
+        MatcherAssert.assertThat(store.getHash(entry, opener), Matchers.equalTo(hash));
+        MatcherAssert.assertThat(opened.get(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void shouldRememberRecordingHashesAcrossRestartsWhileReportIsStored() throws Exception {
+        Mockito.when(entry.getName()).thenReturn("foo.jfr");
+        Mockito.when(entry.getSize()).thenReturn(3L);
+        Mockito.when(entry.getArchivedTime()).thenReturn(10L);
+        String hash = store.getHash(entry, () -> stream("abc"));
+        store.put(hash, generate("report"));
+
+        ArchivedReportStore restarted = newStore(100, ArchiveCompression.NONE);
+
+        MatcherAssert.assertThat(
+                restarted.getHash(
+                        entry,
+                        () -> {
+                            throw new IOException("should not be read");
+                        }),
+                Matchers.equalTo(hash));
+    }
+
+    @Test
+    void shouldForgetRecordingHash() throws Exception {
+        Mockito.when(entry.getName()).thenReturn("foo.jfr");
+        Mockito.when(entry.getSize()).thenReturn(3L);
+        Mockito.when(entry.getArchivedTime()).thenReturn(10L);
+        String hash = store.getHash(entry, () -> stream("abc"));
+        Path report = store.put(hash, generate("report"));
+
+        MatcherAssert.assertThat(store.forget("foo.jfr"), Matchers.is(true));
+        MatcherAssert.assertThat(store.forget("foo.jfr"), Matchers.is(false));
+        MatcherAssert.assertThat(stored(store, hash), Matchers.equalTo(Optional.of(report)));
+    }
+
+    @Test
+    void shouldNotEvictPinnedReports() throws Exception {
+        Path a = store.put(HASH_A, generate("x".repeat(40)));
+        store.put(HASH_B, generate("x".repeat(40)));
+        ArchivedReport pinned = store.pin(HASH_A).get();
+        stored(store, HASH_B);
+
+        store.put(HASH_C, generate("x".repeat(40)));
+
+        MatcherAssert.assertThat(pinned.getFile(), Matchers.equalTo(a));
+        MatcherAssert.assertThat(Files.exists(a), Matchers.is(true));
+        MatcherAssert.assertThat(stored(store, HASH_B), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(store.getTotalBytes(), Matchers.equalTo(80L));
+    }
+
+    @Test
+    void shouldEvictReportsPassedOverWhilePinnedOnceReleased() throws Exception {
+        Path a = store.put(HASH_A, generate("x".repeat(40)));
+        ArchivedReport pinned = store.pin(HASH_A).get();
+        ArchivedReport pinnedAgain = store.pin(HASH_A).get();
+        store.put(HASH_B, generate("x".repeat(70)));
+        MatcherAssert.assertThat(store.getTotalBytes(), Matchers.equalTo(110L));
+
+        pinned.close();
+        pinned.close();
+        MatcherAssert.assertThat(Files.exists(a), Matchers.is(true));
+
+        pinnedAgain.close();
+        MatcherAssert.assertThat(Files.exists(a), Matchers.is(false));
+        MatcherAssert.assertThat(store.contains(HASH_A), Matchers.is(false));
+        MatcherAssert.assertThat(store.getTotalBytes(), Matchers.equalTo(70L));
+    }
+
+    @Test
+    void shouldOnlyKnowHashesOfRecordingsAlreadyHashed() throws Exception {
+        Mockito.when(entry.getName()).thenReturn("foo.jfr");
+        Mockito.when(entry.getSize()).thenReturn(3L);
+        Mockito.when(entry.getArchivedTime()).thenReturn(10L);
+        MatcherAssert.assertThat(store.getKnownHash(entry), Matchers.equalTo(Optional.empty()));
+
+        String hash = store.getHash(entry, () -> stream("abc"));
+
+        MatcherAssert.assertThat(store.getKnownHash(entry), Matchers.equalTo(Optional.of(hash)));
+    }
+
+    private static Optional<Path> stored(ArchivedReportStore store, String hash) {
+        Optional<ArchivedReport> report = store.pin(hash);
+        report.ifPresent(ArchivedReport::close);
+        return report.map(ArchivedReport::getFile);
+    }
+
+    private ArchivedReportStore newStore(long maxBytes, ArchiveCompression compression)
+            throws IOException {
+        ArchivedReportStore store =
+                new ArchivedReportStore(directory, maxBytes, compression, gson, logger);
+        store.start();
+        return store;
+    }
+
+    private Path generate(String html) throws IOException {
+        Path tmp = store.createTempFile();
+        Files.writeString(tmp, html);
+        return tmp;
+    }
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
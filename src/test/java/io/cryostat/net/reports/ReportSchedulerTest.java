@@ -0,0 +1,266 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.reports;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.cryostat.core.sys.Clock;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ReportSchedulerTest {
+
+    static final long MIB = 1024 * 1024;
+
+    @Mock Clock clock;
+    Queue<Runnable> workers;
+
+    @BeforeEach
+    void setup() {
+        workers = new LinkedList<>();
+    }
+
+    @Test
+    void shouldRunJobAndCompleteFuture() throws Exception {
+        ReportScheduler scheduler = new ReportScheduler(workers::add, 1, 0, 0, clock);
+
+        CompletableFuture<String> f = scheduler.submit("key", "owner", 0, () -> "report");
+        MatcherAssert.assertThat(scheduler.getActiveReports(), Matchers.equalTo(1));
+        workers.remove().run();
+
+        MatcherAssert.assertThat(f.get(), Matchers.equalTo("report"));
+        MatcherAssert.assertThat(scheduler.getActiveReports(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldCompleteExceptionallyWhenJobFails() {
+        ReportScheduler scheduler = new ReportScheduler(workers::add, 1, 0, 0, clock);
+
+        CompletableFuture<String> f =
+                scheduler.submit(
+                        "key",
+                        "owner",
+                        0,
+                        () -> {
+                            throw new IllegalStateException("boom");
+                        });
+        workers.remove().run();
+
+        ExecutionException ee = Assertions.assertThrows(ExecutionException.class, f::get);
+        MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    void shouldShareResultOfDuplicateRequests() throws Exception {
+        ReportScheduler scheduler = new ReportScheduler(workers::add, 1, 0, 0, clock);
+
+        CompletableFuture<String> f1 = scheduler.submit("key", "a", 0, () -> "first");
+        CompletableFuture<String> f2 = scheduler.submit("key", "b", 0, () -> "second");
+
+        MatcherAssert.assertThat(f2, Matchers.sameInstance(f1));
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(scheduler.getQueueDepth(), Matchers.equalTo(0));
+        workers.remove().run();
+        MatcherAssert.assertThat(f2.get(), Matchers.equalTo("first"));
+
+        CompletableFuture<String> f3 = scheduler.submit("key", "a", 0, () -> "third");
+        MatcherAssert.assertThat(f3, Matchers.not(Matchers.sameInstance(f1)));
+    }
+
+    @Test
+    void shouldSkipJobCancelledWhileQueued() {
+        ReportScheduler scheduler = new ReportScheduler(workers::add, 1, 0, 0, clock);
+        AtomicBoolean ran = new AtomicBoolean();
+
+        scheduler.submit("a", "owner", 0, () -> "a");
+        CompletableFuture<String> f =
+                scheduler.submit(
+                        "b",
+                        "owner",
+                        0,
+                        () -> {
+                            ran.set(true);
+                            return "b";
+                        });
+        f.cancel(true);
+        workers.remove().run();
+        workers.remove().run();
+
+        MatcherAssert.assertThat(ran.get(), Matchers.is(false));
+        MatcherAssert.assertThat(scheduler.getActiveReports(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldLimitConcurrentReports() {
+        ReportScheduler scheduler = new ReportScheduler(workers::add, 2, 0, 0, clock);
+
+        scheduler.submit("a", "owner", 0, () -> "a");
+        scheduler.submit("b", "owner", 0, () -> "b");
+        scheduler.submit("c", "owner", 0, () -> "c");
+
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(scheduler.getActiveReports(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(scheduler.getQueueDepth(), Matchers.equalTo(1));
+
+        workers.remove().run();
+
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(scheduler.getQueueDepth(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldAlternateBetweenOwners() {
+        ReportScheduler scheduler = new ReportScheduler(workers::add, 1, 0, 0, clock);
+        List<String> order = new ArrayList<>();
+
+        scheduler.submit("a1", "a", 0, () -> order.add("a1"));
+        scheduler.submit("a2", "a", 0, () -> order.add("a2"));
+        scheduler.submit("a3", "a", 0, () -> order.add("a3"));
+        scheduler.submit("b1", "b", 0, () -> order.add("b1"));
+        scheduler.submit("b2", "b", 0, () -> order.add("b2"));
+        while (!workers.isEmpty()) {
+            workers.remove().run();
+        }
+
+        MatcherAssert.assertThat(order, Matchers.equalTo(List.of("a1", "a2", "b1", "a3", "b2")));
+    }
+
+    @Test
+    void shouldHoldBackReportsExceedingMemoryBudget() {
+        // 100MiB per report, but only 150MiB for all 4 concurrent reports together
+        ReportScheduler scheduler =
+                new ReportScheduler(workers::add, 4, 100 * MIB, 150 * MIB, clock);
+
+        scheduler.submit("big", "a", ReportScheduler.UNKNOWN_SIZE, () -> "big");
+        scheduler.submit("large", "b", 20 * MIB, () -> "large");
+
+        // the unknown-size report reserves a full 100MiB, and the large one is estimated at
+        // another 80MiB, which would exceed the budget even though there are free slots
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(scheduler.getActiveReports(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(scheduler.getQueueDepth(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(scheduler.getReservedMemoryBytes(), Matchers.equalTo(100 * MIB));
+
+        workers.remove().run();
+
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(scheduler.getQueueDepth(), Matchers.equalTo(0));
+        MatcherAssert.assertThat(scheduler.getReservedMemoryBytes(), Matchers.equalTo(80 * MIB));
+    }
+
+    @Test
+    void shouldAdmitReportsWithinMemoryBudgetUpToConcurrency() {
+        ReportScheduler scheduler =
+                new ReportScheduler(workers::add, 2, 100 * MIB, 1024 * MIB, clock);
+
+        scheduler.submit("a", "a", ReportScheduler.UNKNOWN_SIZE, () -> "a");
+        scheduler.submit("b", "b", ReportScheduler.UNKNOWN_SIZE, () -> "b");
+        scheduler.submit("c", "c", MIB, () -> "c");
+
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(scheduler.getQueueDepth(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(scheduler.getReservedMemoryBytes(), Matchers.equalTo(200 * MIB));
+    }
+
+    @Test
+    void shouldNotOvertakeReportWaitingForMemory() {
+        ReportScheduler scheduler =
+                new ReportScheduler(workers::add, 4, 100 * MIB, 180 * MIB, clock);
+
+        scheduler.submit("first", "a", 20 * MIB, () -> "first");
+        scheduler.submit("second", "b", 20 * MIB, () -> "second");
+        scheduler.submit("big", "c", ReportScheduler.UNKNOWN_SIZE, () -> "big");
+        scheduler.submit("small", "d", MIB, () -> "small");
+
+        // 80 + 80 = 160MiB reserved, and the big report would take this to 260MiB of the 180MiB
+        // budget, so it waits, and the small one waits behind it even though it would fit
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(scheduler.getQueueDepth(), Matchers.equalTo(2));
+
+        workers.remove().run();
+
+        // 80 + 100 = 180MiB, leaving no room for the small report's 4MiB
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(scheduler.getQueueDepth(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(scheduler.getReservedMemoryBytes(), Matchers.equalTo(180 * MIB));
+    }
+
+    @Test
+    void shouldAlwaysAdmitReportWhenNoneAreRunning() {
+        ReportScheduler scheduler = new ReportScheduler(workers::add, 2, 10 * MIB, 10 * MIB, clock);
+
+        scheduler.submit("huge", "a", 1024 * MIB, () -> "huge");
+
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(scheduler.getReservedMemoryBytes(), Matchers.equalTo(10 * MIB));
+    }
+
+    @Test
+    void shouldRecordWaitTimes() {
+        Mockito.when(clock.getMonotonicTime())
+                .thenReturn(0L)
+                .thenReturn(0L)
+                .thenReturn(TimeUnit.SECONDS.toNanos(1))
+                .thenReturn(TimeUnit.SECONDS.toNanos(1))
+                .thenReturn(TimeUnit.SECONDS.toNanos(4));
+        ReportScheduler scheduler = new ReportScheduler(workers::add, 1, 0, 0, clock);
+
+        scheduler.submit("a", "owner", 0, () -> "a");
+        scheduler.submit("b", "owner", 0, () -> "b");
+        workers.remove().run();
+
+        MatcherAssert.assertThat(scheduler.getMaxWaitMillis(), Matchers.equalTo(3000L));
+        MatcherAssert.assertThat(scheduler.getAverageWaitMillis(), Matchers.equalTo(1500L));
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.reports;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.net.reports.SubprocessReportGenerator.ExitStatus;
+import io.cryostat.net.reports.SubprocessReportGenerator.SubprocessReportGenerationException;
+import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.util.JavaProcess;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ReportWorkerPoolTest {
+
+    @Mock JavaProcess.Builder javaProcessBuilder;
+    @Mock Logger logger;
+    ExecutorService executor;
+    AtomicInteger spawned;
+    Function<String, ExitStatus> jobHandler;
+    List<String> jobs;
+    List<String> ruleResults;
+    ReportWorkerPool pool;
+
+    Path recording = Paths.get("/tmp/recording.jfr");
+    Path saveFile = Paths.get("/tmp/report.html");
+
+    @BeforeEach
+    void setup() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        spawned = new AtomicInteger();
+        jobHandler = recording -> ExitStatus.OK;
+        jobs = new CopyOnWriteArrayList<>();
+        ruleResults = List.of();
+
+        ArgumentCaptor<Map<String, String>> envCaptor = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<List<String>> argsCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.lenient()
+                .when(javaProcessBuilder.klazz(Mockito.any(Class.class)))
+                .thenReturn(javaProcessBuilder);
+        Mockito.lenient()
+                .when(javaProcessBuilder.env(envCaptor.capture()))
+                .thenReturn(javaProcessBuilder);
+        Mockito.lenient()
+                .when(javaProcessBuilder.jvmArgs(Mockito.anyList()))
+                .thenReturn(javaProcessBuilder);
+        Mockito.lenient()
+                .when(javaProcessBuilder.processArgs(argsCaptor.capture()))
+                .thenReturn(javaProcessBuilder);
+        Mockito.lenient()
+                .when(javaProcessBuilder.exec())
+                .thenAnswer(
+                        invocation ->
+                                startFakeWorker(
+                                        envCaptor.getValue().get(ReportWorkerPool.WORKER_TOKEN_ENV),
+                                        Integer.parseInt(argsCaptor.getValue().get(0))));
+
+        pool = new ReportWorkerPool(() -> javaProcessBuilder, 200, 2, executor, logger);
+    }
+
+    @AfterEach
+    void teardown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void shouldForkSelfWithJvmArgs() throws Exception {
+        pool.submit(recording, saveFile, 30).get();
+
+        Mockito.verify(javaProcessBuilder).klazz(SubprocessReportGenerator.class);
+        ArgumentCaptor<List<String>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(javaProcessBuilder).jvmArgs(captor.capture());
+        MatcherAssert.assertThat(
+                captor.getValue(),
+                Matchers.equalTo(
+                        List.of(
+                                "-Xms200M",
+                                "-Xmx200M",
+                                "-XX:+ExitOnOutOfMemoryError",
+                                "-XX:+UseSerialGC")));
+    }
+
+    @Test
+    void shouldOmitHeapArgsWithoutMaxHeap() {
+        MatcherAssert.assertThat(
+                ReportWorkerPool.createJvmArgs(0),
+                Matchers.equalTo(List.of("-XX:+ExitOnOutOfMemoryError", "-XX:+UseSerialGC")));
+    }
+
+    @Test
+    void shouldReturnSaveFileOnOkStatus() throws Exception {
+        MatcherAssert.assertThat(
+                pool.submit(recording, saveFile, 30).get(), Matchers.sameInstance(saveFile));
+    }
+
+    @Test
+    void shouldSendHtmlJob() throws Exception {
+        pool.submit(recording, saveFile, 30).get();
+
+        MatcherAssert.assertThat(jobs, Matchers.contains(ReportWorkerPool.HTML_JOB));
+    }
+
+    @Test
+    void shouldSendRulesJobWithRuleIds() throws Exception {
+        Set<String> ruleIds = new LinkedHashSet<>(List.of("GcPauseRatio", "HeapDump"));
+
+        pool.submitRules(recording, ruleIds, r -> {}, 30).get();
+
+        MatcherAssert.assertThat(jobs, Matchers.contains("rules GcPauseRatio HeapDump"));
+    }
+
+    @Test
+    void shouldSendRulesJobWithoutRuleIds() throws Exception {
+        pool.submitRules(recording, Set.of(), r -> {}, 30).get();
+
+        MatcherAssert.assertThat(jobs, Matchers.contains(ReportWorkerPool.RULES_JOB));
+    }
+
+    @Test
+    void shouldPassOnRuleResultsAsTheyArrive() throws Exception {
+        ruleResults = List.of("{\"id\":\"A\"}", "{\"id\":\"B\"}");
+        List<String> results = new CopyOnWriteArrayList<>();
+
+        pool.submitRules(recording, Set.of(), results::add, 30).get();
+
+        MatcherAssert.assertThat(results, Matchers.equalTo(ruleResults));
+    }
+
+    @Test
+    void shouldKeepReadingRuleResultsIfConsumerFails() throws Exception {
+        ruleResults = List.of("{\"id\":\"A\"}", "{\"id\":\"B\"}");
+        List<String> results = new CopyOnWriteArrayList<>();
+
+        pool.submitRules(
+                        recording,
+                        Set.of(),
+                        r -> {
+                            results.add(r);
+                            throw new IllegalStateException();
+                        },
+                        30)
+                .get();
+
+        MatcherAssert.assertThat(results, Matchers.equalTo(ruleResults));
+        pool.submit(recording, saveFile, 30).get();
+        MatcherAssert.assertThat(spawned.get(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldReuseWorkerForSubsequentJobs() throws Exception {
+        pool.submit(recording, saveFile, 30).get();
+        pool.submit(recording, saveFile, 30).get();
+
+        MatcherAssert.assertThat(spawned.get(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldReplaceWorkerAfterMaxJobs() throws Exception {
+        pool.submit(recording, saveFile, 30).get();
+        pool.submit(recording, saveFile, 30).get();
+        pool.submit(recording, saveFile, 30).get();
+
+        MatcherAssert.assertThat(spawned.get(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void shouldThrowRecordingNotFoundOnNoSuchRecordingStatus() throws Exception {
+        jobHandler = recording -> ExitStatus.NO_SUCH_RECORDING;
+
+        ExecutionException ex =
+                Assertions.assertThrows(
+                        ExecutionException.class, () -> pool.submit(recording, saveFile, 30).get());
+        MatcherAssert.assertThat(
+                ex.getCause(), Matchers.instanceOf(RecordingNotFoundException.class));
+        pool.submit(recording, saveFile, 30).exceptionally(t -> null).get();
+        MatcherAssert.assertThat(spawned.get(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldReplaceWorkerAfterFailedJob() throws Exception {
+        jobHandler = recording -> ExitStatus.OTHER;
+
+        ExecutionException ex =
+                Assertions.assertThrows(
+                        ExecutionException.class, () -> pool.submit(recording, saveFile, 30).get());
+        MatcherAssert.assertThat(
+                ex.getCause(), Matchers.instanceOf(SubprocessReportGenerationException.class));
+        MatcherAssert.assertThat(
+                ((SubprocessReportGenerationException) ex.getCause()).getStatus(),
+                Matchers.equalTo(ExitStatus.OTHER));
+
+        jobHandler = recording -> ExitStatus.OK;
+        pool.submit(recording, saveFile, 30).get();
+        MatcherAssert.assertThat(spawned.get(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void shouldTimeOutUnresponsiveWorker() throws Exception {
+        jobHandler =
+                recording -> {
+                    try {
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(5));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return ExitStatus.OK;
+                };
+
+        ExecutionException ex =
+                Assertions.assertThrows(
+                        ExecutionException.class, () -> pool.submit(recording, saveFile, 2).get());
+        MatcherAssert.assertThat(
+                ((SubprocessReportGenerationException) ex.getCause()).getStatus(),
+                Matchers.equalTo(ExitStatus.TIMED_OUT));
+    }
+
+    private Process startFakeWorker(String token, int port) {
+        spawned.incrementAndGet();
+        AtomicBoolean alive = new AtomicBoolean(true);
+        Thread worker =
+                new Thread(
+                        () -> {
+                            try (Socket socket =
+                                            new Socket(InetAddress.getLoopbackAddress(), port);
+                                    BufferedReader in =
+                                            new BufferedReader(
+                                                    new InputStreamReader(
+                                                            socket.getInputStream(),
+                                                            StandardCharsets.UTF_8));
+                                    PrintWriter out =
+                                            new PrintWriter(
+                                                    new OutputStreamWriter(
+                                                            socket.getOutputStream(),
+                                                            StandardCharsets.UTF_8),
+                                                    true)) {
+                                out.println(token);
+                                String recording;
+                                String job;
+                                while ((recording = in.readLine()) != null
+                                        && in.readLine() != null
+                                        && (job = in.readLine()) != null) {
+                                    jobs.add(job);
+                                    ExitStatus status = jobHandler.apply(recording);
+                                    if (job.startsWith(ReportWorkerPool.RULES_JOB)) {
+                                        ruleResults.forEach(out::println);
+                                    }
+                                    out.println(status.code);
+                                }
+                            } catch (Exception e) {
+                                // connection closed by the pool
+                            } finally {
+                                alive.set(false);
+                            }
+                        });
+        worker.setDaemon(true);
+        worker.start();
+
+        Process proc = Mockito.mock(Process.class);
+        Mockito.lenient().when(proc.isAlive()).thenAnswer(invocation -> alive.get());
+        Mockito.lenient()
+                .when(proc.destroyForcibly())
+                .thenAnswer(
+                        invocation -> {
+                            worker.interrupt();
+                            return proc;
+                        });
+        return proc;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.reports;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.FileSystem;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RuleResultCacheTest {
+
+    static final String RESULT_A = "{\"id\":\"A\",\"score\":0.0}";
+    static final String RESULT_B = "{\"id\":\"B\",\"score\":50.0}";
+
+    RuleResultCache cache;
+    @Mock FileSystem fs;
+    @Mock Logger logger;
+    @Mock Path recording;
+
+    List<Set<String>> evaluations;
+    List<String> evaluationOutput;
+    List<String> results;
+    String recordingContent;
+
+    @BeforeEach
+    void setup() throws Exception {
+        Map<String, String> ruleVersions = new LinkedHashMap<>();
+        ruleVersions.put("A", "RuleA:1.0");
+        ruleVersions.put("B", "RuleB:1.0");
+        this.cache = new RuleResultCache(fs, ruleVersions, 1024 * 1024, logger);
+        this.evaluations = new ArrayList<>();
+        this.evaluationOutput = List.of();
+        this.results = new ArrayList<>();
+        this.recordingContent = "recording";
+
+        Mockito.lenient()
+                .when(fs.newInputStream(recording))
+                .thenAnswer(
+                        invocation ->
+                                new ByteArrayInputStream(
+                                        recordingContent.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void shouldEvaluateAllRulesWhenNoneAreCached() throws Exception {
+        evaluationOutput = List.of(RESULT_B, RESULT_A);
+
+        cache.get(recording, Set.of(), results::add, this::evaluate).get();
+
+        MatcherAssert.assertThat(evaluations, Matchers.contains(Set.of("A", "B")));
+        MatcherAssert.assertThat(results, Matchers.contains(RESULT_B, RESULT_A));
+    }
+
+    @Test
+    void shouldReuseCachedResultsForSameContent() throws Exception {
+        evaluationOutput = List.of(RESULT_A, RESULT_B);
+        cache.get(recording, Set.of(), r -> {}, this::evaluate).get();
+
+        CompletableFuture<Void> f = cache.get(recording, Set.of("B"), results::add, this::evaluate);
+
+        MatcherAssert.assertThat(f.isDone(), Matchers.is(true));
+        MatcherAssert.assertThat(evaluations, Matchers.hasSize(1));
+        MatcherAssert.assertThat(results, Matchers.contains(RESULT_B));
+    }
+
+    @Test
+    void shouldPassOnCachedResultsBeforeEvaluatingOthers() throws Exception {
+        evaluationOutput = List.of(RESULT_B);
+        cache.get(recording, Set.of("B"), r -> {}, this::evaluate).get();
+
+        evaluationOutput = List.of(RESULT_A);
+        cache.get(recording, Set.of("A", "B"), results::add, this::evaluate).get();
+
+        MatcherAssert.assertThat(evaluations, Matchers.contains(Set.of("B"), Set.of("A")));
+        MatcherAssert.assertThat(results, Matchers.contains(RESULT_B, RESULT_A));
+    }
+
+    @Test
+    void shouldNotReuseResultsForDifferentContent() throws Exception {
+        evaluationOutput = List.of(RESULT_A);
+        cache.get(recording, Set.of("A"), results::add, this::evaluate).get();
+
+        recordingContent = "modified recording";
+        cache.get(recording, Set.of("A"), results::add, this::evaluate).get();
+
+        MatcherAssert.assertThat(evaluations, Matchers.contains(Set.of("A"), Set.of("A")));
+    }
+
+    @Test
+    void shouldIgnoreUnknownRuleIds() throws Exception {
+        cache.get(recording, Set.of("Z"), results::add, this::evaluate).get();
+
+        MatcherAssert.assertThat(evaluations, Matchers.empty());
+        MatcherAssert.assertThat(results, Matchers.empty());
+    }
+
+    @Test
+    void shouldPassOnUnparseableResultsWithoutCaching() throws Exception {
+        evaluationOutput = List.of("not json");
+        cache.get(recording, Set.of("A"), results::add, this::evaluate).get();
+        cache.get(recording, Set.of("A"), results::add, this::evaluate).get();
+
+        MatcherAssert.assertThat(results, Matchers.contains("not json", "not json"));
+        MatcherAssert.assertThat(evaluations, Matchers.contains(Set.of("A"), Set.of("A")));
+    }
+
+    @Test
+    void shouldNotCacheFailedEvaluations() throws Exception {
+        ExecutionException ex =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () ->
+                                cache.get(
+                                                recording,
+                                                Set.of("A"),
+                                                results::add,
+                                                (r, ids, sink) -> {
+                                                    evaluations.add(ids);
+                                                    return CompletableFuture.failedFuture(
+                                                            new ReportGenerationException(
+                                                                    "failed"));
+                                                })
+                                        .get());
+        MatcherAssert.assertThat(
+                ex.getCause(), Matchers.instanceOf(ReportGenerationException.class));
+
+        evaluationOutput = List.of(RESULT_A);
+        cache.get(recording, Set.of("A"), results::add, this::evaluate).get();
+
+        MatcherAssert.assertThat(evaluations, Matchers.contains(Set.of("A"), Set.of("A")));
+        MatcherAssert.assertThat(results, Matchers.contains(RESULT_A));
+    }
+
+    private CompletableFuture<Void> evaluate(
+            Path recording, Set<String> ruleIds, Consumer<String> onResult) {
+        evaluations.add(ruleIds);
+        evaluationOutput.forEach(onResult);
+        return CompletableFuture.completedFuture(null);
+    }
+}
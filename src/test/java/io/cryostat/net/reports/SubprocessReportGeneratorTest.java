@@ -40,20 +40,20 @@ package io.cryostat.net.reports;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.Duration;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.net.Credentials;
 import io.cryostat.core.reports.ReportTransformer;
-import io.cryostat.core.sys.Environment;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.TargetConnectionManager;
-import io.cryostat.util.JavaProcess;
+import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
 
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
@@ -71,12 +71,12 @@ import org.mockito.stubbing.Answer;
 @ExtendWith(MockitoExtension.class)
 class SubprocessReportGeneratorTest {
 
-    @Mock Environment env;
     @Mock FileSystem fs;
     @Mock TargetConnectionManager targetConnectionManager;
-    @Mock JavaProcess.Builder javaProcessBuilder;
+    @Mock SegmentedRecordingTransfer recordingTransfer;
+    @Mock ReportWorkerPool workerPool;
+    @Mock RuleResultCache ruleResultCache;
     @Mock Logger logger;
-    @Mock Process proc;
     ConnectionDescriptor connectionDescriptor;
     RecordingDescriptor recordingDescriptor;
     @Mock Path recordingFile;
@@ -101,32 +101,14 @@ class SubprocessReportGeneratorTest {
         Mockito.lenient().when(recordingFile.toAbsolutePath()).thenReturn(recordingFile);
         Mockito.lenient().when(recordingFile.toString()).thenReturn("/dest/recording.tmp");
 
-        Mockito.lenient()
-                .when(javaProcessBuilder.env(Mockito.anyMap()))
-                .thenReturn(javaProcessBuilder);
-        Mockito.lenient()
-                .when(javaProcessBuilder.jvmArgs(Mockito.anyList()))
-                .thenReturn(javaProcessBuilder);
-        Mockito.lenient()
-                .when(javaProcessBuilder.klazz(Mockito.any(Class.class)))
-                .thenReturn(javaProcessBuilder);
-        Mockito.lenient()
-                .when(javaProcessBuilder.processArgs(Mockito.anyList()))
-                .thenReturn(javaProcessBuilder);
-        Mockito.lenient().when(javaProcessBuilder.exec()).thenReturn(proc);
-        Mockito.lenient()
-                .when(
-                        env.getEnv(
-                                Mockito.eq("CRYOSTAT_REPORT_GENERATION_MAX_HEAP"),
-                                Mockito.anyString()))
-                .thenReturn("200");
         this.generator =
                 new SubprocessReportGenerator(
-                        env,
                         fs,
                         targetConnectionManager,
+                        recordingTransfer,
                         Set.of(new TestReportTransformer()),
-                        () -> javaProcessBuilder,
+                        workerPool,
+                        ruleResultCache,
                         30,
                         logger);
     }
@@ -147,8 +129,6 @@ class SubprocessReportGeneratorTest {
     @Test
     void shouldWriteSerializedTransformersToFile() throws Exception {
         Path dest = Mockito.mock(Path.class);
-        Mockito.when(dest.toAbsolutePath()).thenReturn(dest);
-        Mockito.when(dest.toString()).thenReturn("/dest/somefile.tmp");
 
         generator.exec(recordingFile, dest);
 
@@ -166,74 +146,11 @@ class SubprocessReportGeneratorTest {
                 serialized, Matchers.equalTo(TestReportTransformer.class.getCanonicalName()));
     }
 
-    @Test
-    void shouldUseSelfAsForkedProcess() throws Exception {
-        Path dest = Mockito.mock(Path.class);
-        Mockito.when(dest.toAbsolutePath()).thenReturn(dest);
-        Mockito.when(dest.toString()).thenReturn("/dest/somefile.tmp");
-
-        generator.exec(recordingFile, dest);
-
-        Mockito.verify(javaProcessBuilder).klazz(SubprocessReportGenerator.class);
-    }
-
-    @Test
-    void shouldSetJvmArgs() throws Exception {
-        Path dest = Mockito.mock(Path.class);
-        Mockito.when(dest.toAbsolutePath()).thenReturn(dest);
-        Mockito.when(dest.toString()).thenReturn("/dest/somefile.tmp");
-
-        generator.exec(recordingFile, dest);
-
-        ArgumentCaptor<List<String>> captor = ArgumentCaptor.forClass(List.class);
-        Mockito.verify(javaProcessBuilder).jvmArgs(captor.capture());
-
-        List<String> expected =
-                List.of("-Xms200M", "-Xmx200M", "-XX:+ExitOnOutOfMemoryError", "-XX:+UseSerialGC");
-        MatcherAssert.assertThat(captor.getValue(), Matchers.equalTo(expected));
-    }
-
-    @Test
-    void shouldSetJvmArgsWithoutReportMaxHeapEnvVar() throws Exception {
-        Path dest = Mockito.mock(Path.class);
-        Mockito.when(dest.toAbsolutePath()).thenReturn(dest);
-        Mockito.when(dest.toString()).thenReturn("/dest/somefile.tmp");
-        Mockito.when(
-                        env.getEnv(
-                                Mockito.eq("CRYOSTAT_REPORT_GENERATION_MAX_HEAP"),
-                                Mockito.anyString()))
-                .thenReturn("0");
-
-        generator.exec(recordingFile, dest);
-
-        ArgumentCaptor<List<String>> captor = ArgumentCaptor.forClass(List.class);
-        Mockito.verify(javaProcessBuilder).jvmArgs(captor.capture());
-
-        List<String> expected = List.of("-XX:+ExitOnOutOfMemoryError", "-XX:+UseSerialGC");
-        MatcherAssert.assertThat(captor.getValue(), Matchers.equalTo(expected));
-    }
-
-    @Test
-    void shouldSetProcessArgs() throws Exception {
-        Path dest = Mockito.mock(Path.class);
-        Mockito.when(dest.toAbsolutePath()).thenReturn(dest);
-        Mockito.when(dest.toString()).thenReturn("/dest/somefile.tmp");
-
-        generator.exec(recordingFile, dest);
-
-        ArgumentCaptor<List<String>> captor = ArgumentCaptor.forClass(List.class);
-        Mockito.verify(javaProcessBuilder).processArgs(captor.capture());
-
-        List<String> expected = List.of("/dest/recording.tmp", "/dest/somefile.tmp");
-        MatcherAssert.assertThat(captor.getValue(), Matchers.equalTo(expected));
-    }
-
     @Test
     void shouldExecuteProcessAndReturnPathOnOkExit() throws Exception {
         Path dest = Mockito.mock(Path.class);
-        Mockito.when(dest.toAbsolutePath()).thenReturn(dest);
-        Mockito.when(dest.toString()).thenReturn("/dest/somefile.tmp");
-        Mockito.when(proc.waitFor(29, TimeUnit.SECONDS)).thenReturn(true);
+        Mockito.when(workerPool.submit(recordingFile, dest, 30))
+                .thenReturn(CompletableFuture.completedFuture(dest));
 
         Assertions.assertTimeoutPreemptively(
                 Duration.ofSeconds(2),
@@ -243,14 +160,42 @@ class SubprocessReportGeneratorTest {
                 });
     }
 
+    @Test
+    void shouldThrowIfRulesRecordingPathIsNull() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> generator.execRules((Path) null, Set.of(), r -> {}));
+    }
+
+    @Test
+    void shouldEvaluateUncachedRulesInWorker() throws Exception {
+        Consumer<String> onResult = r -> {};
+        Mockito.when(
+                        ruleResultCache.get(
+                                Mockito.same(recordingFile),
+                                Mockito.eq(Set.of("A", "B")),
+                                Mockito.same(onResult),
+                                Mockito.any()))
+                .thenAnswer(
+                        invocation ->
+                                invocation
+                                        .getArgument(3, RuleResultCache.RuleEvaluator.class)
+                                        .evaluate(recordingFile, Set.of("B"), onResult));
+        Mockito.when(workerPool.submitRules(recordingFile, Set.of("B"), onResult, 30))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        generator.execRules(recordingFile, Set.of("A", "B"), onResult).get();
+
+        Mockito.verify(workerPool).submitRules(recordingFile, Set.of("B"), onResult, 30);
+    }
+
     @Test
     void shouldExecuteProcessAndThrowExceptionOnNonOkExit() throws Exception {
         Path dest = Mockito.mock(Path.class);
-        Mockito.when(dest.toAbsolutePath()).thenReturn(dest);
-        Mockito.when(dest.toString()).thenReturn("/dest/somefile.tmp");
-        Mockito.when(proc.waitFor(29, TimeUnit.SECONDS)).thenReturn(false);
-        Mockito.when(proc.exitValue())
-                .thenReturn(SubprocessReportGenerator.ExitStatus.NO_SUCH_RECORDING.code);
+        Mockito.when(workerPool.submit(recordingFile, dest, 30))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
+                                new RecordingNotFoundException("archives", "/dest/recording.tmp")));
 
         Assertions.assertTimeoutPreemptively(
                 Duration.ofSeconds(2),
@@ -268,8 +213,8 @@ class SubprocessReportGeneratorTest {
 
     @Test
     void shouldExecuteProcessAndDeleteRecordingOnCompletion() throws Exception {
-        Mockito.when(proc.waitFor(29, TimeUnit.SECONDS)).thenReturn(true);
-        Mockito.when(proc.exitValue()).thenReturn(SubprocessReportGenerator.ExitStatus.OK.code);
+        Mockito.when(workerPool.submit(tempFile1, tempFile2, 30))
+                .thenReturn(CompletableFuture.completedFuture(tempFile2));
 
         Mockito.when(targetConnectionManager.executeConnectedTask(Mockito.any(), Mockito.any()))
                 .then(
@@ -288,9 +233,11 @@ class SubprocessReportGeneratorTest {
 
     @Test
     void shouldExecuteProcessAndDeleteRecordingOnFailure() throws Exception {
-        Mockito.when(proc.waitFor(29, TimeUnit.SECONDS)).thenReturn(true);
-        Mockito.when(proc.exitValue())
-                .thenReturn(SubprocessReportGenerator.ExitStatus.NO_SUCH_RECORDING.code);
+        Mockito.when(workerPool.submit(tempFile1, tempFile2, 30))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
+                                new SubprocessReportGenerator.SubprocessReportGenerationException(
+                                        SubprocessReportGenerator.ExitStatus.NO_SUCH_RECORDING)));
 
         Mockito.when(targetConnectionManager.executeConnectedTask(Mockito.any(), Mockito.any()))
                 .then(
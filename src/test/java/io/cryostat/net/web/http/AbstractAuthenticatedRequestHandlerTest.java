@@ -39,10 +39,14 @@ package io.cryostat.net.web.http;
 
 import static org.mockito.Mockito.when;
 
+import java.net.ConnectException;
 import java.net.UnknownHostException;
 import java.rmi.ConnectIOException;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 
 import org.openjdk.jmc.rjmx.ConnectionException;
@@ -50,11 +54,15 @@ import org.openjdk.jmc.rjmx.ConnectionException;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.OpenShiftAuthManager.PermissionDeniedException;
+import io.cryostat.net.TargetUnreachableException;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.api.ApiVersion;
 
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
@@ -70,6 +78,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -251,6 +260,21 @@ class AbstractAuthenticatedRequestHandlerTest {
             MatcherAssert.assertThat(ex.getPayload(), Matchers.equalTo("Target Not Found"));
         }
 
+        @Test
+        void shouldThrow503WithRetryAfterIfTargetRecentlyUnreachable() {
+            Exception cause = new ConnectionException("");
+            cause.initCause(new ConnectException("Connection refused"));
+            Exception expectedException =
+                    new TargetUnreachableException("foo", 1000L, 3500L, cause);
+            handler = new ThrowingAuthenticatedHandler(auth, expectedException);
+
+            HttpStatusException ex =
+                    Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(503));
+            MatcherAssert.assertThat(ex.getPayload(), Matchers.equalTo("Target Unreachable"));
+            Mockito.verify(resp).putHeader(HttpHeaders.RETRY_AFTER, "3");
+        }
+
         @Test
         void shouldThrow500IfHandlerThrowsUnexpectedly() {
             Exception expectedException = new NullPointerException();
@@ -262,6 +286,63 @@ class AbstractAuthenticatedRequestHandlerTest {
         }
     }
 
+    @Nested
+    class WithAsyncFailure {
+
+        AuthenticatedHandler handler;
+        @Mock Vertx vertx;
+        @Mock Context context;
+        List<Handler<Void>> scheduled = new CopyOnWriteArrayList<>();
+
+        @BeforeEach
+        void setup4() {
+            handler = new AuthenticatedHandler(auth);
+            Mockito.when(ctx.vertx()).thenReturn(vertx);
+            Mockito.when(vertx.getOrCreateContext()).thenReturn(context);
+            Mockito.doAnswer(invocation -> scheduled.add(invocation.getArgument(0)))
+                    .when(context)
+                    .runOnContext(Mockito.any());
+        }
+
+        @Test
+        void shouldFailOnRequestContextWhenFailedFromAnotherThread() throws Exception {
+            Thread failer =
+                    new Thread(
+                            () ->
+                                    handler.failAsync(
+                                            ctx,
+                                            new CompletionException(new HttpStatusException(404))));
+            failer.start();
+            failer.join();
+
+            Mockito.verify(ctx, Mockito.never()).fail(Mockito.any(Throwable.class));
+            MatcherAssert.assertThat(scheduled, Matchers.hasSize(1));
+
+            scheduled.get(0).handle(null);
+
+            ArgumentCaptor<HttpStatusException> exceptionCaptor =
+                    ArgumentCaptor.forClass(HttpStatusException.class);
+            Mockito.verify(ctx).fail(exceptionCaptor.capture());
+            MatcherAssert.assertThat(
+                    exceptionCaptor.getValue().getStatusCode(), Matchers.equalTo(404));
+        }
+
+        @Test
+        void shouldMapAsyncConnectionFailures() {
+            Exception connectionException = new ConnectionException("");
+            connectionException.initCause(new UnknownHostException("localhostt"));
+
+            handler.failAsync(ctx, new CompletionException(connectionException));
+            scheduled.get(0).handle(null);
+
+            ArgumentCaptor<HttpStatusException> exceptionCaptor =
+                    ArgumentCaptor.forClass(HttpStatusException.class);
+            Mockito.verify(ctx).fail(exceptionCaptor.capture());
+            MatcherAssert.assertThat(
+                    exceptionCaptor.getValue().getStatusCode(), Matchers.equalTo(404));
+        }
+    }
+
     @Nested
     class WithTargetAuth {
 
@@ -0,0 +1,198 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class InputStreamReadStreamTest {
+
+    @Mock Context context;
+    List<Buffer> chunks;
+    List<Throwable> failures;
+    boolean ended;
+
+    @BeforeEach
+    void setup() {
+        Mockito.lenient()
+                .doAnswer(
+                        invocation -> {
+                            Handler<Promise<Buffer>> blocking = invocation.getArgument(0);
+                            Handler<AsyncResult<Buffer>> result = invocation.getArgument(2);
+                            Promise<Buffer> promise = Promise.promise();
+                            blocking.handle(promise);
+                            result.handle(promise.future());
+                            return null;
+                        })
+                .when(context)
+                .executeBlocking(Mockito.any(), Mockito.anyBoolean(), Mockito.any());
+        this.chunks = new ArrayList<>();
+        this.failures = new ArrayList<>();
+        this.ended = false;
+    }
+
+    InputStreamReadStream createStream(InputStream source, int chunkSize) {
+        return new InputStreamReadStream(context, source, chunkSize)
+                .exceptionHandler(failures::add)
+                .endHandler(v -> ended = true);
+    }
+
+    @Test
+    void shouldRejectNonPositiveChunkSize() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new InputStreamReadStream(context, InputStream.nullInputStream(), 0));
+    }
+
+    @Test
+    void shouldNotReadUntilHandlerIsSet() {
+        createStream(InputStream.nullInputStream(), 16);
+
+        Mockito.verifyNoInteractions(context);
+    }
+
+    @Test
+    void shouldEmitSourceContentsInChunks() throws Exception {
+        byte[] src = new byte[1000];
+        new Random(123456).nextBytes(src);
+        InputStream source = Mockito.spy(new ByteArrayInputStream(src));
+
+        createStream(source, 256).handler(chunks::add);
+
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(4));
+        Buffer dst = Buffer.buffer();
+        chunks.forEach(dst::appendBuffer);
+        Assertions.assertArrayEquals(src, dst.getBytes());
+        Assertions.assertTrue(ended);
+        MatcherAssert.assertThat(failures, Matchers.empty());
+        Mockito.verify(source).close();
+    }
+
+    @Test
+    void shouldOnlyReadWhileThereIsDemand() {
+        byte[] src = new byte[1000];
+        InputStreamReadStream stream = createStream(new ByteArrayInputStream(src), 256);
+
+        stream.pause();
+        stream.handler(chunks::add);
+        MatcherAssert.assertThat(chunks, Matchers.empty());
+
+        stream.fetch(1);
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(1));
+
+        stream.fetch(2);
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(3));
+        Assertions.assertFalse(ended);
+
+        stream.resume();
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(4));
+        Assertions.assertTrue(ended);
+    }
+
+    @Test
+    void shouldReportReadFailuresAndCloseSource() throws Exception {
+        IOException failure = new IOException("read failed");
+        InputStream source = Mockito.mock(InputStream.class);
+        Mockito.when(source.read(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt()))
+                .thenThrow(failure);
+
+        createStream(source, 256).handler(chunks::add);
+
+        MatcherAssert.assertThat(chunks, Matchers.empty());
+        MatcherAssert.assertThat(failures, Matchers.contains(failure));
+        Assertions.assertFalse(ended);
+        Mockito.verify(source).close();
+    }
+
+    @Test
+    void shouldStopReadingWhenClosed() throws Exception {
+        InputStream source = Mockito.spy(new ByteArrayInputStream(new byte[1000]));
+        InputStreamReadStream stream = createStream(source, 256);
+
+        stream.pause();
+        stream.handler(chunks::add);
+        stream.close();
+        stream.resume();
+
+        MatcherAssert.assertThat(chunks, Matchers.empty());
+        Assertions.assertFalse(ended);
+        Mockito.verify(source).close();
+        Mockito.verifyNoInteractions(context);
+    }
+
+    @Test
+    void shouldDiscardChunkReadAfterClose() {
+        Handler<AsyncResult<Buffer>>[] pending = new Handler[1];
+        Mockito.doAnswer(
+                        invocation -> {
+                            pending[0] = invocation.getArgument(2);
+                            return null;
+                        })
+                .when(context)
+                .executeBlocking(Mockito.any(), Mockito.anyBoolean(), Mockito.any());
+        InputStreamReadStream stream = createStream(new ByteArrayInputStream(new byte[1000]), 256);
+
+        stream.handler(chunks::add);
+        stream.close();
+        pending[0].handle(Future.succeededFuture(Buffer.buffer("late")));
+
+        MatcherAssert.assertThat(chunks, Matchers.empty());
+        Assertions.assertFalse(ended);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.beta;
+
+import java.net.URI;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import io.cryostat.MainModule;
+import io.cryostat.core.log.Logger;
+import io.cryostat.net.AuthManager;
+import io.cryostat.net.UnreachableTargetCache;
+import io.cryostat.net.security.ResourceAction;
+import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.net.web.http.api.v2.IntermediateResponse;
+import io.cryostat.net.web.http.api.v2.RequestParameters;
+import io.cryostat.platform.PlatformClient;
+import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.discovery.AbstractNode;
+import io.cryostat.platform.discovery.BaseNodeType;
+import io.cryostat.platform.discovery.EnvironmentNode;
+import io.cryostat.platform.discovery.TargetNode;
+import io.cryostat.platform.discovery.UnreachableTarget;
+import io.cryostat.platform.internal.CustomTargetPlatformClient;
+
+import com.google.gson.Gson;
+import io.vertx.core.http.HttpMethod;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class DiscoveryGetHandlerTest {
+
+    DiscoveryGetHandler handler;
+    @Mock AuthManager auth;
+    @Mock PlatformClient platformClient;
+    @Mock UnreachableTargetCache unreachableTargets;
+    @Mock Logger logger;
+    Gson gson = MainModule.provideGson(logger);
+
+    @BeforeEach
+    void setup() {
+        this.handler = new DiscoveryGetHandler(auth, platformClient, unreachableTargets, gson);
+    }
+
+    @Nested
+    class BasicHandlerDefinition {
+        @Test
+        void shouldBeGETHandler() {
+            MatcherAssert.assertThat(handler.httpMethod(), Matchers.equalTo(HttpMethod.GET));
+        }
+
+        @Test
+        void shouldBeBetaAPI() {
+            MatcherAssert.assertThat(handler.apiVersion(), Matchers.equalTo(ApiVersion.BETA));
+        }
+
+        @Test
+        void shouldHaveExpectedPath() {
+            MatcherAssert.assertThat(handler.path(), Matchers.equalTo("/api/beta/discovery"));
+        }
+
+        @Test
+        void shouldHaveExpectedRequiredPermissions() {
+            MatcherAssert.assertThat(
+                    handler.resourceActions(),
+                    Matchers.equalTo(EnumSet.of(ResourceAction.READ_TARGET)));
+        }
+
+        @Test
+        void shouldReturnJSONMimeType() {
+            MatcherAssert.assertThat(handler.mimeType(), Matchers.equalTo(HttpMimeType.JSON));
+        }
+
+        @Test
+        void shouldRequireAuthentication() {
+            MatcherAssert.assertThat(handler.requiresAuthentication(), Matchers.equalTo(true));
+        }
+    }
+
+    @Nested
+    class RequestHandling {
+
+        @Mock RequestParameters params;
+        EnvironmentNode universe;
+        ServiceRef serviceA;
+        ServiceRef serviceB;
+
+        @BeforeEach
+        void setup() throws Exception {
+            serviceA = new ServiceRef(new URI("service:jmx:rmi:///jndi/rmi://a:9091/jmxrmi"), "a");
+            serviceB = new ServiceRef(new URI("service:jmx:rmi:///jndi/rmi://b:9091/jmxrmi"), "b");
+            EnvironmentNode realm = new EnvironmentNode("Custom Targets", BaseNodeType.REALM);
+            realm.addChildNode(new TargetNode(CustomTargetPlatformClient.NODE_TYPE, serviceA));
+            realm.addChildNode(new TargetNode(CustomTargetPlatformClient.NODE_TYPE, serviceB));
+            universe = new EnvironmentNode("Universe", BaseNodeType.UNIVERSE);
+            universe.addChildNode(realm);
+            Mockito.when(platformClient.getDiscoveryTree()).thenReturn(universe);
+        }
+
+        @Test
+        void shouldReturnDiscoveryTreeAsIsWhenAllTargetsReachable() throws Exception {
+            Mockito.when(unreachableTargets.hasUnreachableTargets()).thenReturn(false);
+
+            IntermediateResponse<EnvironmentNode> response = handler.handle(params);
+
+            MatcherAssert.assertThat(response.getBody(), Matchers.sameInstance(universe));
+        }
+
+        @Test
+        void shouldMarkUnreachableTargets() throws Exception {
+            UnreachableTarget unreachable = new UnreachableTarget("refused", 1, 2000);
+            Mockito.when(unreachableTargets.hasUnreachableTargets()).thenReturn(true);
+            Mockito.when(unreachableTargets.get(Mockito.anyString()))
+                    .thenAnswer(
+                            invocation ->
+                                    serviceA.getServiceUri()
+                                                    .toString()
+                                                    .equals(invocation.getArgument(0))
+                                            ? Optional.of(unreachable)
+                                            : Optional.empty());
+
+            IntermediateResponse<EnvironmentNode> response = handler.handle(params);
+
+            EnvironmentNode realm = (EnvironmentNode) response.getBody().getChildren().first();
+            MatcherAssert.assertThat(realm.getName(), Matchers.equalTo("Custom Targets"));
+            MatcherAssert.assertThat(realm.getChildren(), Matchers.hasSize(2));
+            for (AbstractNode child : realm.getChildren()) {
+                TargetNode target = (TargetNode) child;
+                if (target.getTarget().equals(serviceA)) {
+                    MatcherAssert.assertThat(
+                            target.getUnreachable(), Matchers.sameInstance(unreachable));
+                } else {
+                    MatcherAssert.assertThat(target.getUnreachable(), Matchers.nullValue());
+                }
+            }
+        }
+    }
+}
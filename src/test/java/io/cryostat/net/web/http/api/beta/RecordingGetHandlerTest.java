@@ -49,12 +49,14 @@ import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.security.jwt.AssetJwtHelper;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.ArchiveCompression;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingNotFoundException;
 
 import com.nimbusds.jwt.JWT;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
@@ -112,13 +114,13 @@ class RecordingGetHandlerTest {
         }
 
         @Test
-        void shouldBeAsync() {
-            Assertions.assertTrue(handler.isAsync());
+        void shouldNotBeAsync() {
+            Assertions.assertFalse(handler.isAsync());
         }
 
         @Test
-        void shouldBeOrdered() {
-            Assertions.assertTrue(handler.isOrdered());
+        void shouldNotBeOrdered() {
+            Assertions.assertFalse(handler.isOrdered());
         }
     }
 
@@ -155,6 +157,9 @@ class RecordingGetHandlerTest {
             Mockito.when(file.length()).thenReturn(1234L);
             Future<Path> future = CompletableFuture.completedFuture(path);
             Mockito.when(archive.getRecordingPath(Mockito.anyString())).thenReturn(future);
+            Mockito.when(archive.getCompression(path)).thenReturn(ArchiveCompression.NONE);
+            Mockito.when(archive.isStoredAsFile(path)).thenReturn(true);
+            Mockito.when(ctx.request()).thenReturn(Mockito.mock(HttpServerRequest.class));
 
             handler.handleWithValidJwt(ctx, token);
 
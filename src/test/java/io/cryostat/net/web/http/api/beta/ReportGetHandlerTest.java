@@ -45,16 +45,21 @@ import java.util.concurrent.Future;
 
 import io.cryostat.core.log.Logger;
 import io.cryostat.net.AuthManager;
+import io.cryostat.net.reports.ArchivedReport;
 import io.cryostat.net.reports.ReportService;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.security.jwt.AssetJwtHelper;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.ArchiveCompression;
 import io.cryostat.recordings.RecordingNotFoundException;
 
 import com.nimbusds.jwt.JWT;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
@@ -65,6 +70,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -130,12 +136,13 @@ class ReportGetHandlerTest {
     class Behaviour {
 
         @Mock RoutingContext ctx;
+        @Mock HttpServerRequest req;
         @Mock JWT token;
 
         @Test
         void shouldRespond404IfNotFound() throws Exception {
             Mockito.when(ctx.pathParam("recordingName")).thenReturn("myrecording");
-            Future<Path> future =
+            Future<ArchivedReport> future =
                     CompletableFuture.failedFuture(
                             new RecordingNotFoundException("archive", "myrecording"));
             Mockito.when(reports.get(Mockito.anyString())).thenReturn(future);
@@ -157,15 +164,59 @@ class ReportGetHandlerTest {
             File file = Mockito.mock(File.class);
             Mockito.when(path.toFile()).thenReturn(file);
             Mockito.when(file.length()).thenReturn(1234L);
-            Future<Path> future = CompletableFuture.completedFuture(path);
+            ArchivedReport report = Mockito.mock(ArchivedReport.class);
+            Mockito.when(report.getFile()).thenReturn(path);
+            Mockito.when(report.getCompression()).thenReturn(ArchiveCompression.NONE);
+            Future<ArchivedReport> future = CompletableFuture.completedFuture(report);
             Mockito.when(reports.get(Mockito.anyString())).thenReturn(future);
+            Mockito.when(ctx.request()).thenReturn(req);
 
             handler.handleWithValidJwt(ctx, token);
 
             InOrder inOrder = Mockito.inOrder(resp);
             inOrder.verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, "text/html");
             inOrder.verify(resp).putHeader(HttpHeaders.CONTENT_LENGTH, "1234");
-            inOrder.verify(resp).sendFile("foo.jfr");
+            ArgumentCaptor<Handler<AsyncResult<Void>>> sent =
+                    ArgumentCaptor.forClass(Handler.class);
+            inOrder.verify(resp).sendFile(Mockito.eq("foo.jfr"), sent.capture());
+            Mockito.verify(report, Mockito.never()).close();
+            sent.getValue().handle(Mockito.mock(AsyncResult.class));
+            Mockito.verify(report).close();
+            Mockito.verify(resp, Mockito.never())
+                    .putHeader(Mockito.eq(HttpHeaders.CONTENT_ENCODING), Mockito.anyString());
+        }
+
+        @Test
+        void shouldSendCompressedFileIfEncodingAccepted() throws Exception {
+            HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
+            Mockito.when(ctx.response()).thenReturn(resp);
+            Mockito.when(ctx.pathParam("recordingName")).thenReturn("myrecording");
+            Path path = Mockito.mock(Path.class);
+            Mockito.when(path.toAbsolutePath()).thenReturn(path);
+            Mockito.when(path.toString()).thenReturn("foo.html.gz");
+            File file = Mockito.mock(File.class);
+            Mockito.when(path.toFile()).thenReturn(file);
+            Mockito.when(file.length()).thenReturn(123L);
+            ArchivedReport report = Mockito.mock(ArchivedReport.class);
+            Mockito.when(report.getFile()).thenReturn(path);
+            Mockito.when(report.getCompression()).thenReturn(ArchiveCompression.GZIP);
+            Future<ArchivedReport> future = CompletableFuture.completedFuture(report);
+            Mockito.when(reports.get(Mockito.anyString())).thenReturn(future);
+            Mockito.when(ctx.request()).thenReturn(req);
+            Mockito.when(req.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, deflate");
+
+            handler.handleWithValidJwt(ctx, token);
+
+            InOrder inOrder = Mockito.inOrder(resp);
+            inOrder.verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, "text/html");
+            inOrder.verify(resp).putHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            inOrder.verify(resp).putHeader(HttpHeaders.CONTENT_LENGTH, "123");
+            ArgumentCaptor<Handler<AsyncResult<Void>>> sent =
+                    ArgumentCaptor.forClass(Handler.class);
+            inOrder.verify(resp).sendFile(Mockito.eq("foo.html.gz"), sent.capture());
+            Mockito.verify(report, Mockito.never()).close();
+            sent.getValue().handle(Mockito.mock(AsyncResult.class));
+            Mockito.verify(report).close();
         }
     }
 }
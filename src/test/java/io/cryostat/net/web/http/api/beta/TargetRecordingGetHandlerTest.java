@@ -56,9 +56,16 @@ import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.security.jwt.AssetJwtHelper;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.RecordingTimeRange;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
 
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
@@ -88,13 +95,19 @@ class TargetRecordingGetHandlerTest {
     @Mock AssetJwtHelper jwt;
     @Mock WebServer webServer;
     @Mock TargetConnectionManager targetConnectionManager;
+    @Mock SegmentedRecordingTransfer recordingTransfer;
     @Mock Logger logger;
 
     @BeforeEach
     void setup() {
         this.handler =
                 new TargetRecordingGetHandler(
-                        auth, jwt, () -> webServer, targetConnectionManager, logger);
+                        auth,
+                        jwt,
+                        () -> webServer,
+                        targetConnectionManager,
+                        recordingTransfer,
+                        logger);
     }
 
     @Nested
@@ -197,7 +210,12 @@ class TargetRecordingGetHandlerTest {
             IRecordingDescriptor desc = Mockito.mock(IRecordingDescriptor.class);
             Mockito.when(desc.getName()).thenReturn("myrecording");
             Mockito.when(svc.getAvailableRecordings()).thenReturn(List.of(desc));
-            Mockito.when(svc.openStream(Mockito.any(), Mockito.eq(false)))
+            Mockito.when(
+                            recordingTransfer.openStream(
+                                    Mockito.any(),
+                                    Mockito.eq(conn),
+                                    Mockito.eq(desc),
+                                    Mockito.eq(RecordingTimeRange.UNBOUNDED)))
                     .thenThrow(new FlightRecorderException(""));
             HttpStatusException ex =
                     Assertions.assertThrows(
@@ -210,6 +228,21 @@ class TargetRecordingGetHandlerTest {
         void shouldSendFileIfFound() throws Exception {
             HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
             Mockito.when(ctx.response()).thenReturn(resp);
+            Vertx vertx = Mockito.mock(Vertx.class);
+            Context context = Mockito.mock(Context.class);
+            Mockito.when(ctx.vertx()).thenReturn(vertx);
+            Mockito.when(vertx.getOrCreateContext()).thenReturn(context);
+            Mockito.doAnswer(
+                            invocation -> {
+                                Handler<Promise<Buffer>> blocking = invocation.getArgument(0);
+                                Handler<AsyncResult<Buffer>> result = invocation.getArgument(2);
+                                Promise<Buffer> promise = Promise.promise();
+                                blocking.handle(promise);
+                                result.handle(promise.future());
+                                return null;
+                            })
+                    .when(context)
+                    .executeBlocking(Mockito.any(), Mockito.anyBoolean(), Mockito.any());
             Mockito.when(ctx.pathParam("recordingName")).thenReturn("myrecording");
             JWTClaimsSet claims = Mockito.mock(JWTClaimsSet.class);
             Mockito.when(claims.getStringClaim(Mockito.anyString())).thenReturn(null);
@@ -233,7 +266,13 @@ class TargetRecordingGetHandlerTest {
             Mockito.when(desc.getName()).thenReturn("myrecording");
             Mockito.when(svc.getAvailableRecordings()).thenReturn(List.of(desc));
             InputStream stream = new ByteArrayInputStream("datastream".getBytes());
-            Mockito.when(svc.openStream(Mockito.any(), Mockito.eq(false))).thenReturn(stream);
+            Mockito.when(
+                            recordingTransfer.openStream(
+                                    Mockito.any(),
+                                    Mockito.eq(conn),
+                                    Mockito.eq(desc),
+                                    Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                    .thenReturn(stream);
             Mockito.when(targetConnectionManager.markConnectionInUse(Mockito.any()))
                     .thenReturn(true);
 
@@ -242,8 +281,8 @@ class TargetRecordingGetHandlerTest {
             InOrder inOrder = Mockito.inOrder(resp);
             inOrder.verify(resp).setChunked(true);
             inOrder.verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, "application/octet-stream");
-            inOrder.verify(resp, Mockito.times(1)).write(Mockito.any(Buffer.class));
-            inOrder.verify(resp).end();
+            inOrder.verify(resp, Mockito.times(1)).write(Mockito.any(Buffer.class), Mockito.any());
+            inOrder.verify(resp).end(Mockito.<Handler<AsyncResult<Void>>>any());
         }
     }
 }
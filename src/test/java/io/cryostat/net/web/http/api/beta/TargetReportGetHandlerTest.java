@@ -37,6 +37,7 @@
  */
 package io.cryostat.net.web.http.api.beta;
 
+import java.time.Instant;
 import java.util.EnumSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
@@ -49,9 +50,11 @@ import io.cryostat.net.security.jwt.AssetJwtHelper;
 import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.api.ApiVersion;
 import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
 
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
+import io.vertx.core.MultiMap;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerResponse;
@@ -121,8 +124,8 @@ class TargetReportGetHandlerTest {
         }
 
         @Test
-        void shouldBeOrdered() {
-            Assertions.assertTrue(handler.isOrdered());
+        void shouldNotBeOrdered() {
+            Assertions.assertFalse(handler.isOrdered());
         }
     }
 
@@ -143,7 +146,12 @@ class TargetReportGetHandlerTest {
             Future<String> future =
                     CompletableFuture.failedFuture(
                             new RecordingNotFoundException("target", "myrecording"));
-            Mockito.when(reports.get(Mockito.any(), Mockito.anyString())).thenReturn(future);
+            Mockito.when(
+                            reports.get(
+                                    Mockito.any(),
+                                    Mockito.anyString(),
+                                    Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                    .thenReturn(future);
             HttpStatusException ex =
                     Assertions.assertThrows(
                             HttpStatusException.class,
@@ -160,12 +168,57 @@ class TargetReportGetHandlerTest {
             Mockito.when(claims.getStringClaim(Mockito.anyString())).thenReturn(null);
             Mockito.when(token.getJWTClaimsSet()).thenReturn(claims);
             Future<String> future = CompletableFuture.completedFuture("report text");
-            Mockito.when(reports.get(Mockito.any(), Mockito.anyString())).thenReturn(future);
+            Mockito.when(
+                            reports.get(
+                                    Mockito.any(),
+                                    Mockito.anyString(),
+                                    Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                    .thenReturn(future);
 
             handler.handleWithValidJwt(ctx, token);
 
             Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, "text/html");
             Mockito.verify(resp).end("report text");
         }
+
+        @Test
+        void shouldPassTimeRangeToReportService() throws Exception {
+            HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
+            Mockito.when(ctx.response()).thenReturn(resp);
+            Mockito.when(ctx.pathParam("recordingName")).thenReturn("myrecording");
+            Mockito.when(ctx.queryParams())
+                    .thenReturn(
+                            MultiMap.caseInsensitiveMultiMap()
+                                    .add("since", "2021-06-01T12:00:00Z")
+                                    .add("until", "1622552400000"));
+            JWTClaimsSet claims = Mockito.mock(JWTClaimsSet.class);
+            Mockito.when(claims.getStringClaim(Mockito.anyString())).thenReturn(null);
+            Mockito.when(token.getJWTClaimsSet()).thenReturn(claims);
+            RecordingTimeRange range =
+                    RecordingTimeRange.of(
+                            Instant.parse("2021-06-01T12:00:00Z"),
+                            Instant.parse("2021-06-01T13:00:00Z"));
+            Future<String> future = CompletableFuture.completedFuture("report text");
+            Mockito.when(reports.get(Mockito.any(), Mockito.anyString(), Mockito.eq(range)))
+                    .thenReturn(future);
+
+            handler.handleWithValidJwt(ctx, token);
+
+            Mockito.verify(resp).end("report text");
+        }
+
+        @Test
+        void shouldRespond400IfTimeRangeInvalid() throws Exception {
+            Mockito.when(ctx.pathParam("recordingName")).thenReturn("myrecording");
+            Mockito.when(ctx.queryParams())
+                    .thenReturn(MultiMap.caseInsensitiveMultiMap().add("lastSeconds", "-5"));
+
+            HttpStatusException ex =
+                    Assertions.assertThrows(
+                            HttpStatusException.class,
+                            () -> handler.handleWithValidJwt(ctx, token));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+            Mockito.verifyNoInteractions(reports);
+        }
     }
 }
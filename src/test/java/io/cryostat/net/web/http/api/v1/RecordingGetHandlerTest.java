@@ -46,11 +46,13 @@ import java.util.concurrent.ExecutionException;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.recordings.ArchiveCompression;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingNotFoundException;
 
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
@@ -72,6 +74,7 @@ class RecordingGetHandlerTest {
     @Mock RecordingArchiveHelper recordingArchiveHelper;
 
     @Mock RoutingContext ctx;
+    @Mock HttpServerRequest req;
     @Mock HttpServerResponse resp;
 
     @BeforeEach
@@ -96,6 +99,16 @@ class RecordingGetHandlerTest {
                 handler.resourceActions(), Matchers.equalTo(Set.of(ResourceAction.READ_RECORDING)));
     }
 
+    @Test
+    void shouldNotBeAsync() {
+        Assertions.assertFalse(handler.isAsync());
+    }
+
+    @Test
+    void shouldNotBeOrdered() {
+        Assertions.assertFalse(handler.isOrdered());
+    }
+
     @Test
     void shouldThrow404IfNoMatchingRecordingFound() throws Exception {
         Mockito.when(authManager.validateHttpHeader(Mockito.any(), Mockito.any()))
@@ -143,11 +156,50 @@ class RecordingGetHandlerTest {
         File file = Mockito.mock(File.class);
         Mockito.when(archivedRecording.toFile()).thenReturn(file);
         Mockito.when(file.length()).thenReturn(12345L);
+        Mockito.when(recordingArchiveHelper.getCompression(archivedRecording))
+                .thenReturn(ArchiveCompression.NONE);
+        Mockito.when(recordingArchiveHelper.isStoredAsFile(archivedRecording)).thenReturn(true);
+        Mockito.when(ctx.request()).thenReturn(req);
 
         handler.handle(ctx);
 
         Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime());
         Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_LENGTH, "12345");
         Mockito.verify(resp).sendFile(archivedRecording.toString());
+        Mockito.verify(resp, Mockito.never())
+                .putHeader(Mockito.eq(HttpHeaders.CONTENT_ENCODING), Mockito.anyString());
+    }
+
+    @Test
+    void shouldSendCompressedFileIfClientAcceptsEncoding() throws Exception {
+        Mockito.when(authManager.validateHttpHeader(Mockito.any(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        Mockito.when(ctx.response()).thenReturn(resp);
+        Mockito.when(
+                        resp.putHeader(
+                                Mockito.any(CharSequence.class), Mockito.any(CharSequence.class)))
+                .thenReturn(resp);
+
+        String recordingName = "foo";
+        Mockito.when(ctx.pathParam("recordingName")).thenReturn(recordingName);
+
+        Path archivedRecording = Mockito.mock(Path.class);
+        Mockito.when(recordingArchiveHelper.getRecordingPath(recordingName))
+                .thenReturn(CompletableFuture.completedFuture(archivedRecording));
+        Mockito.when(archivedRecording.toString()).thenReturn("/path/to/recording.jfr");
+        File file = Mockito.mock(File.class);
+        Mockito.when(archivedRecording.toFile()).thenReturn(file);
+        Mockito.when(file.length()).thenReturn(1234L);
+        Mockito.when(recordingArchiveHelper.getCompression(archivedRecording))
+                .thenReturn(ArchiveCompression.GZIP);
+        Mockito.when(recordingArchiveHelper.isStoredAsFile(archivedRecording)).thenReturn(true);
+        Mockito.when(ctx.request()).thenReturn(req);
+        Mockito.when(req.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, deflate");
+
+        handler.handle(ctx);
+
+        Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_LENGTH, "1234");
+        Mockito.verify(resp).sendFile("/path/to/recording.jfr");
     }
 }
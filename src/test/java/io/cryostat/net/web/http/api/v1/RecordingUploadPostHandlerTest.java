@@ -43,6 +43,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import io.cryostat.core.sys.Environment;
+import io.cryostat.core.sys.FileSystem;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.recordings.RecordingArchiveHelper;
@@ -82,6 +83,7 @@ class RecordingUploadPostHandlerTest {
     @Mock Environment env;
     @Mock WebClient webClient;
     @Mock RecordingArchiveHelper recordingArchiveHelper;
+    @Mock FileSystem fs;
 
     @Mock RoutingContext ctx;
 
@@ -90,7 +92,8 @@ class RecordingUploadPostHandlerTest {
     @BeforeEach
     void setup() {
         this.handler =
-                new RecordingUploadPostHandler(auth, env, 30, webClient, recordingArchiveHelper);
+                new RecordingUploadPostHandler(
+                        auth, env, 30, webClient, recordingArchiveHelper, fs);
     }
 
     @Test
@@ -180,6 +183,8 @@ class RecordingUploadPostHandlerTest {
         Path recordingPath = Mockito.mock(Path.class);
         Mockito.when(future.get()).thenReturn(recordingPath);
         Mockito.when(recordingPath.toString()).thenReturn("/recordings/foo");
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recordingPath))
+                .thenReturn(recordingPath);
 
         HttpRequest<Buffer> httpReq = Mockito.mock(HttpRequest.class);
         HttpResponse<Buffer> httpResp = Mockito.mock(HttpResponse.class);
@@ -222,6 +227,56 @@ class RecordingUploadPostHandlerTest {
                 urlCaptor.getValue(), Matchers.equalTo(DATASOURCE_URL.concat("/load")));
     }
 
+    @Test
+    void shouldUploadAndDeleteUncompressedCopy() throws Exception {
+        Mockito.when(auth.validateHttpHeader(Mockito.any(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        Mockito.when(env.getEnv("GRAFANA_DATASOURCE_URL")).thenReturn(DATASOURCE_URL);
+
+        Mockito.when(ctx.pathParam("recordingName")).thenReturn("foo");
+
+        CompletableFuture<Path> future = Mockito.mock(CompletableFuture.class);
+        Mockito.when(recordingArchiveHelper.getRecordingPath(Mockito.anyString()))
+                .thenReturn(future);
+        Path recordingPath = Mockito.mock(Path.class);
+        Mockito.when(future.get()).thenReturn(recordingPath);
+        Path uncompressedPath = Mockito.mock(Path.class);
+        Mockito.when(uncompressedPath.toString()).thenReturn("/tmp/foo.jfr");
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recordingPath))
+                .thenReturn(uncompressedPath);
+
+        HttpRequest<Buffer> httpReq = Mockito.mock(HttpRequest.class);
+        HttpResponse<Buffer> httpResp = Mockito.mock(HttpResponse.class);
+        Mockito.when(webClient.postAbs(Mockito.anyString())).thenReturn(httpReq);
+        Mockito.when(httpReq.timeout(Mockito.anyLong())).thenReturn(httpReq);
+        Mockito.doAnswer(
+                        new Answer<Void>() {
+                            @Override
+                            public Void answer(InvocationOnMock args) throws Throwable {
+                                AsyncResult<HttpResponse<Buffer>> asyncResult =
+                                        Mockito.mock(AsyncResult.class);
+                                Mockito.when(asyncResult.result()).thenReturn(httpResp);
+                                Mockito.when(httpResp.statusCode()).thenReturn(200);
+                                Mockito.when(httpResp.statusMessage()).thenReturn("OK");
+                                Mockito.when(httpResp.bodyAsString()).thenReturn("HELLO");
+                                ((Handler<AsyncResult<HttpResponse<Buffer>>>) args.getArgument(1))
+                                        .handle(asyncResult);
+                                return null;
+                            }
+                        })
+                .when(httpReq)
+                .sendMultipartForm(Mockito.any(), Mockito.any());
+
+        HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
+        Mockito.when(ctx.response()).thenReturn(resp);
+
+        handler.handle(ctx);
+
+        Mockito.verify(resp).end("HELLO");
+        Mockito.verify(fs).deleteIfExists(uncompressedPath);
+        Mockito.verify(fs, Mockito.never()).deleteIfExists(recordingPath);
+    }
+
     @Test
     void shouldHandleInvalidResponseStatusCode() throws Exception {
         Mockito.when(auth.validateHttpHeader(Mockito.any(), Mockito.any()))
@@ -236,6 +291,8 @@ class RecordingUploadPostHandlerTest {
         Path recordingPath = Mockito.mock(Path.class);
         Mockito.when(future.get()).thenReturn(recordingPath);
         Mockito.when(recordingPath.toString()).thenReturn("/recordings/foo");
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recordingPath))
+                .thenReturn(recordingPath);
 
         HttpRequest<Buffer> httpReq = Mockito.mock(HttpRequest.class);
         HttpResponse<Buffer> httpResp = Mockito.mock(HttpResponse.class);
@@ -301,6 +358,8 @@ class RecordingUploadPostHandlerTest {
         Path recordingPath = Mockito.mock(Path.class);
         Mockito.when(future.get()).thenReturn(recordingPath);
         Mockito.when(recordingPath.toString()).thenReturn("/recordings/foo");
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recordingPath))
+                .thenReturn(recordingPath);
 
         HttpRequest<Buffer> httpReq = Mockito.mock(HttpRequest.class);
         HttpResponse<Buffer> httpResp = Mockito.mock(HttpResponse.class);
@@ -359,6 +418,8 @@ class RecordingUploadPostHandlerTest {
         Path recordingPath = Mockito.mock(Path.class);
         Mockito.when(future.get()).thenReturn(recordingPath);
         Mockito.when(recordingPath.toString()).thenReturn("/recordings/foo");
+        Mockito.when(recordingArchiveHelper.decompressIfNeeded(recordingPath))
+                .thenReturn(recordingPath);
 
         HttpRequest<Buffer> httpReq = Mockito.mock(HttpRequest.class);
         HttpResponse<Buffer> httpResp = Mockito.mock(HttpResponse.class);
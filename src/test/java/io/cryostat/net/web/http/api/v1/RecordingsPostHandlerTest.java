@@ -44,15 +44,14 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.nio.file.Path;
-import java.util.HashSet;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import io.cryostat.MainModule;
 import io.cryostat.core.log.Logger;
-import io.cryostat.core.sys.FileSystem;
 import io.cryostat.messaging.notifications.Notification;
 import io.cryostat.messaging.notifications.NotificationFactory;
 import io.cryostat.net.AuthManager;
@@ -60,14 +59,20 @@ import io.cryostat.net.HttpServer;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.RequestHandler;
+import io.cryostat.recordings.ArchiveCatalog;
+import io.cryostat.recordings.ArchiveStorage;
+import io.cryostat.rules.ArchivePathException;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerFileUpload;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
-import io.vertx.ext.web.FileUpload;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
 import org.hamcrest.MatcherAssert;
@@ -76,6 +81,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -84,16 +90,22 @@ import org.mockito.junit.jupiter.MockitoExtension;
 @ExtendWith(MockitoExtension.class)
 class RecordingsPostHandlerTest {
 
+    static final long MAX_UPLOAD_SIZE = 1024;
+
     RecordingsPostHandler handler;
     @Mock AuthManager authManager;
     @Mock HttpServer httpServer;
     @Mock Vertx vertx;
-    @Mock FileSystem cryoFs;
-    @Mock Path recordingsPath;
+    @Mock Context context;
     @Mock Logger logger;
     @Mock NotificationFactory notificationFactory;
+    @Mock ArchiveCatalog archiveCatalog;
+    @Mock ArchiveStorage storage;
     @Mock Notification notification;
     @Mock Notification.Builder notificationBuilder;
+    @Mock RoutingContext ctx;
+    @Mock HttpServerRequest req;
+    @Mock HttpServerResponse rep;
 
     @BeforeEach
     void setup() {
@@ -109,16 +121,33 @@ class RecordingsPostHandlerTest {
                 .thenReturn(notificationBuilder);
         lenient().when(notificationBuilder.message(Mockito.any())).thenReturn(notificationBuilder);
         lenient().when(notificationBuilder.build()).thenReturn(notification);
+        lenient()
+                .doAnswer(
+                        invocation -> {
+                            Handler<Void> action = invocation.getArgument(0);
+                            action.handle(null);
+                            return null;
+                        })
+                .when(context)
+                .runOnContext(any());
+        lenient().when(vertx.getOrCreateContext()).thenReturn(context);
+        lenient().when(ctx.vertx()).thenReturn(vertx);
+        lenient().when(ctx.request()).thenReturn(req);
+        lenient().when(ctx.response()).thenReturn(rep);
+        lenient()
+                .when(rep.putHeader(Mockito.any(CharSequence.class), Mockito.anyString()))
+                .thenReturn(rep);
         when(httpServer.getVertx()).thenReturn(vertx);
         this.handler =
                 new RecordingsPostHandler(
                         authManager,
                         httpServer,
-                        cryoFs,
-                        recordingsPath,
+                        MAX_UPLOAD_SIZE,
                         MainModule.provideGson(logger),
                         logger,
-                        notificationFactory);
+                        notificationFactory,
+                        archiveCatalog,
+                        storage);
     }
 
     @Test
@@ -138,136 +167,40 @@ class RecordingsPostHandlerTest {
     void shouldHandleRecordingUploadRequest() throws Exception {
         String basename = "localhost_test_20191219T213834Z";
         String filename = basename + ".jfr";
-        String savePath = "/some/path/";
-
-        RoutingContext ctx = mock(RoutingContext.class);
-
-        when(authManager.validateHttpHeader(any(), any()))
-                .thenReturn(CompletableFuture.completedFuture(true));
-        HttpServerRequest req = mock(HttpServerRequest.class);
-        when(ctx.request()).thenReturn(req);
-
-        when(cryoFs.isDirectory(recordingsPath)).thenReturn(true);
-
-        Set<FileUpload> uploads = new HashSet<>();
-        FileUpload upload = mock(FileUpload.class);
-        uploads.add(upload);
-        when(ctx.fileUploads()).thenReturn(uploads);
-        when(upload.name()).thenReturn("recording");
-        when(upload.fileName()).thenReturn(filename);
-        when(upload.uploadedFileName()).thenReturn("foo");
-
-        Path filePath = mock(Path.class);
-        when(filePath.toString()).thenReturn(savePath + filename);
-        Path specificRecordingsPath = mock(Path.class);
-        when(recordingsPath.resolve(Mockito.anyString())).thenReturn(specificRecordingsPath);
-        when(specificRecordingsPath.resolve(filename)).thenReturn(filePath);
-
-        io.vertx.core.file.FileSystem vertxFs = mock(io.vertx.core.file.FileSystem.class);
-        when(vertx.fileSystem()).thenReturn(vertxFs);
+        Buffer recording = jfrChunk(64).appendBuffer(jfrChunk(32));
 
+        when(storage.exists("unlabelled", filename)).thenReturn(false);
+        ByteBuffer stored = ByteBuffer.allocate(recording.length());
         doAnswer(
                         invocation -> {
-                            Handler<AsyncResult<Boolean>> handler = invocation.getArgument(1);
-                            handler.handle(
-                                    new AsyncResult<>() {
-                                        @Override
-                                        public Boolean result() {
-                                            return false;
-                                        }
-
-                                        @Override
-                                        public Throwable cause() {
-                                            return null;
-                                        }
-
-                                        @Override
-                                        public boolean succeeded() {
-                                            return true;
-                                        }
-
-                                        @Override
-                                        public boolean failed() {
-                                            return false;
-                                        }
-                                    });
-
+                            InputStream content = invocation.getArgument(2);
+                            stored.put(content.readAllBytes());
                             return null;
                         })
-                .when(vertx)
-                .executeBlocking(any(Handler.class), any(Handler.class));
-
-        when(cryoFs.exists(specificRecordingsPath)).thenReturn(true);
-
-        when(vertxFs.exists(Mockito.eq(savePath + filename), any(Handler.class)))
-                .thenAnswer(
-                        invocation -> {
-                            Handler<AsyncResult<Boolean>> handler = invocation.getArgument(1);
-                            handler.handle(
-                                    new AsyncResult<>() {
-                                        @Override
-                                        public Boolean result() {
-                                            return false;
-                                        }
-
-                                        @Override
-                                        public Throwable cause() {
-                                            return null;
-                                        }
-
-                                        @Override
-                                        public boolean succeeded() {
-                                            return true;
-                                        }
-
-                                        @Override
-                                        public boolean failed() {
-                                            return false;
-                                        }
-                                    });
-
-                            return null;
-                        });
-
-        when(vertxFs.move(Mockito.eq("foo"), Mockito.eq(savePath + filename), any(Handler.class)))
-                .thenAnswer(
-                        invocation -> {
-                            Handler<AsyncResult<Boolean>> handler = invocation.getArgument(2);
-                            handler.handle(
-                                    new AsyncResult<>() {
-                                        @Override
-                                        public Boolean result() {
-                                            return true;
-                                        }
-
-                                        @Override
-                                        public Throwable cause() {
-                                            return null;
-                                        }
-
-                                        @Override
-                                        public boolean succeeded() {
-                                            return true;
-                                        }
-
-                                        @Override
-                                        public boolean failed() {
-                                            return false;
-                                        }
-                                    });
-
-                            return null;
-                        });
-
-        HttpServerResponse rep = mock(HttpServerResponse.class);
-        when(ctx.response()).thenReturn(rep);
-        when(rep.putHeader(Mockito.any(CharSequence.class), Mockito.anyString())).thenReturn(rep);
-
-        handler.handle(ctx);
-
+                .when(storage)
+                .write(Mockito.eq("unlabelled"), Mockito.eq(filename), Mockito.any());
+
+        HttpServerFileUpload upload = startUpload("recording", filename);
+        ArgumentCaptor<Handler<Promise<String>>> blockingCaptor =
+                ArgumentCaptor.forClass(Handler.class);
+        ArgumentCaptor<Handler<AsyncResult<String>>> resultCaptor =
+                ArgumentCaptor.forClass(Handler.class);
+        verify(vertx)
+                .executeBlocking(
+                        blockingCaptor.capture(), Mockito.eq(false), resultCaptor.capture());
+
+        // split the upload across a chunk header
+        sendData(upload, recording.getBuffer(0, 70));
+        sendData(upload, recording.getBuffer(70, recording.length()));
+        endUpload(upload);
+        completeBlocking(blockingCaptor.getValue(), resultCaptor.getValue());
+
+        MatcherAssert.assertThat(stored.array(), Matchers.equalTo(recording.getBytes()));
         InOrder inOrder = Mockito.inOrder(rep);
         inOrder.verify(rep).putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.JSON.mime());
         inOrder.verify(rep).end("{\"name\":\"" + filename + "\"}");
+        Mockito.verify(archiveCatalog).add("unlabelled", filename, null, null);
+        Mockito.verify(ctx, Mockito.never()).fail(Mockito.any(Throwable.class));
 
         Mockito.verify(notificationFactory).createBuilder();
         Mockito.verify(notificationBuilder).metaCategory("RecordingSaved");
@@ -278,138 +211,248 @@ class RecordingsPostHandlerTest {
     }
 
     @Test
-    void shouldHandleNoRecordingSubmission() throws Exception {
-        RoutingContext ctx = mock(RoutingContext.class);
+    void shouldSaveUnderNextFreeName() throws Exception {
+        String basename = "localhost_test_20191219T213834Z";
 
-        when(authManager.validateHttpHeader(any(), any()))
-                .thenReturn(CompletableFuture.completedFuture(true));
-        HttpServerRequest req = mock(HttpServerRequest.class);
-        when(ctx.request()).thenReturn(req);
-        HttpServerResponse rep = mock(HttpServerResponse.class);
-        when(ctx.response()).thenReturn(rep);
-        when(rep.putHeader(Mockito.any(CharSequence.class), Mockito.anyString())).thenReturn(rep);
+        when(storage.exists("unlabelled", basename + ".jfr")).thenReturn(true);
+        when(storage.exists("unlabelled", basename + ".2.jfr")).thenReturn(false);
+        doAnswer(
+                        invocation -> {
+                            InputStream content = invocation.getArgument(2);
+                            content.readAllBytes();
+                            return null;
+                        })
+                .when(storage)
+                .write(Mockito.eq("unlabelled"), Mockito.eq(basename + ".2.jfr"), Mockito.any());
+
+        HttpServerFileUpload upload = startUpload("recording", basename + ".jfr");
+        ArgumentCaptor<Handler<Promise<String>>> blockingCaptor =
+                ArgumentCaptor.forClass(Handler.class);
+        ArgumentCaptor<Handler<AsyncResult<String>>> resultCaptor =
+                ArgumentCaptor.forClass(Handler.class);
+        verify(vertx)
+                .executeBlocking(
+                        blockingCaptor.capture(), Mockito.eq(false), resultCaptor.capture());
+
+        sendData(upload, jfrChunk(64));
+        endUpload(upload);
+        completeBlocking(blockingCaptor.getValue(), resultCaptor.getValue());
+
+        verify(rep).end("{\"name\":\"" + basename + ".2.jfr\"}");
+        Mockito.verify(archiveCatalog).add("unlabelled", basename + ".2.jfr", null, null);
+    }
 
-        when(cryoFs.isDirectory(recordingsPath)).thenReturn(true);
+    @Test
+    void shouldRejectInvalidRecordingAsItArrives() throws Exception {
+        String filename = "localhost_test_20191219T213834Z.jfr";
 
-        when(ctx.fileUploads()).thenReturn(new HashSet<FileUpload>());
+        when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
+        doAnswer(
+                        invocation -> {
+                            InputStream content = invocation.getArgument(2);
+                            content.readAllBytes();
+                            return null;
+                        })
+                .when(storage)
+                .write(Mockito.anyString(), Mockito.anyString(), Mockito.any());
 
-        HttpStatusException ex =
-                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+        HttpServerFileUpload upload = startUpload("recording", filename);
+        ArgumentCaptor<Handler<Promise<String>>> blockingCaptor =
+                ArgumentCaptor.forClass(Handler.class);
+        ArgumentCaptor<Handler<AsyncResult<String>>> resultCaptor =
+                ArgumentCaptor.forClass(Handler.class);
+        verify(vertx)
+                .executeBlocking(
+                        blockingCaptor.capture(), Mockito.eq(false), resultCaptor.capture());
+
+        sendData(upload, Buffer.buffer("this is not a JFR file at all"));
+
+        HttpStatusException ex = verifyFailed();
         MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
-        MatcherAssert.assertThat(ex.getPayload(), Matchers.equalTo("No recording submission"));
+        MatcherAssert.assertThat(
+                ex.getPayload(), Matchers.equalTo("Not a valid JFR recording file"));
+        verify(rep).putHeader(HttpHeaders.CONNECTION, "close");
+
+        // the storage write sees the upload aborted rather than ended
+        completeBlocking(blockingCaptor.getValue(), resultCaptor.getValue());
+        Mockito.verify(archiveCatalog, Mockito.never())
+                .add(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(ctx, Mockito.times(1)).fail(Mockito.any(Throwable.class));
+        Mockito.verify(rep, Mockito.never()).end(Mockito.anyString());
     }
 
     @Test
-    void shouldHandleIncorrectFormField() throws Exception {
-        String savePath = "/some/path/";
+    void shouldRejectTruncatedRecording() throws Exception {
+        String filename = "localhost_test_20191219T213834Z.jfr";
 
-        RoutingContext ctx = mock(RoutingContext.class);
+        HttpServerFileUpload upload = startUpload("recording", filename);
 
-        when(authManager.validateHttpHeader(any(), any()))
-                .thenReturn(CompletableFuture.completedFuture(true));
-        HttpServerRequest req = mock(HttpServerRequest.class);
-        when(ctx.request()).thenReturn(req);
-        HttpServerResponse rep = mock(HttpServerResponse.class);
-        when(ctx.response()).thenReturn(rep);
-        when(rep.putHeader(Mockito.any(CharSequence.class), Mockito.anyString())).thenReturn(rep);
+        sendData(upload, jfrChunk(64).getBuffer(0, 40));
+        endUpload(upload);
+
+        HttpStatusException ex = verifyFailed();
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        MatcherAssert.assertThat(
+                ex.getPayload(), Matchers.equalTo("Not a valid JFR recording file"));
+    }
+
+    @Test
+    void shouldRejectUploadExceedingMaxSize() throws Exception {
+        String filename = "localhost_test_20191219T213834Z.jfr";
 
-        when(cryoFs.isDirectory(recordingsPath)).thenReturn(true);
+        HttpServerFileUpload upload = startUpload("recording", filename);
 
-        Set<FileUpload> uploads = new HashSet<>();
-        FileUpload upload = mock(FileUpload.class);
-        uploads.add(upload);
-        when(ctx.fileUploads()).thenReturn(uploads);
-        when(upload.name()).thenReturn("incorrect_field_name");
-        when(upload.uploadedFileName()).thenReturn("foo");
+        sendData(upload, jfrChunk((int) MAX_UPLOAD_SIZE));
+        sendData(upload, jfrChunk(32));
 
-        when(recordingsPath.resolve("file-uploads")).thenReturn(Path.of(savePath, "file-uploads"));
+        HttpStatusException ex = verifyFailed();
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(413));
+        verify(rep).putHeader(HttpHeaders.CONNECTION, "close");
+    }
 
-        io.vertx.core.file.FileSystem vertxFs = mock(io.vertx.core.file.FileSystem.class);
-        when(vertx.fileSystem()).thenReturn(vertxFs);
+    @Test
+    void shouldRejectUploadWithContentLengthExceedingMaxSize() throws Exception {
+        when(authManager.validateHttpHeader(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(req.getHeader(HttpHeaders.CONTENT_LENGTH))
+                .thenReturn(String.valueOf(MAX_UPLOAD_SIZE + 1));
 
         HttpStatusException ex =
                 Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
-        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
-        MatcherAssert.assertThat(ex.getPayload(), Matchers.equalTo("No recording submission"));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(413));
+        verify(req, Mockito.never()).resume();
+    }
+
+    @Test
+    void shouldRespondUnavailableIfArchiveMissing() throws Exception {
+        when(authManager.validateHttpHeader(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        Mockito.doThrow(new ArchivePathException("/flightrecordings", "does not exist"))
+                .when(storage)
+                .validate();
 
-        verify(vertxFs).deleteBlocking(Path.of(savePath, "file-uploads", "foo").toString());
+        HttpStatusException ex =
+                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(503));
+        verify(req, Mockito.never()).resume();
     }
 
     @Test
-    void shouldHandleEmptyRecordingName() throws Exception {
-        String savePath = "/some/path/";
+    void shouldHandleNoRecordingSubmission() throws Exception {
+        Handler<Void> endHandler = startRequest();
 
-        RoutingContext ctx = mock(RoutingContext.class);
+        endHandler.handle(null);
 
-        when(authManager.validateHttpHeader(any(), any()))
-                .thenReturn(CompletableFuture.completedFuture(true));
-        HttpServerRequest req = mock(HttpServerRequest.class);
-        when(ctx.request()).thenReturn(req);
-        HttpServerResponse rep = mock(HttpServerResponse.class);
-        when(ctx.response()).thenReturn(rep);
-        when(rep.putHeader(Mockito.any(CharSequence.class), Mockito.anyString())).thenReturn(rep);
+        HttpStatusException ex = verifyFailed();
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        MatcherAssert.assertThat(ex.getPayload(), Matchers.equalTo("No recording submission"));
+    }
+
+    @Test
+    void shouldHandleIncorrectFormField() throws Exception {
+        Handler<Void> endHandler = startRequest();
+        HttpServerFileUpload upload = sendFileUpload("incorrect_field_name", "foo.jfr");
 
-        when(cryoFs.isDirectory(recordingsPath)).thenReturn(true);
+        verify(upload).handler(Mockito.any());
+        verify(vertx, Mockito.never())
+                .executeBlocking(Mockito.any(), Mockito.anyBoolean(), Mockito.any());
 
-        Set<FileUpload> uploads = new HashSet<>();
-        FileUpload upload = mock(FileUpload.class);
-        uploads.add(upload);
-        when(ctx.fileUploads()).thenReturn(uploads);
-        when(upload.name()).thenReturn("recording");
-        when(upload.fileName()).thenReturn("");
-        when(upload.uploadedFileName()).thenReturn("foo");
+        endHandler.handle(null);
 
-        when(recordingsPath.resolve("file-uploads")).thenReturn(Path.of(savePath, "file-uploads"));
+        HttpStatusException ex = verifyFailed();
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        MatcherAssert.assertThat(ex.getPayload(), Matchers.equalTo("No recording submission"));
+    }
 
-        io.vertx.core.file.FileSystem vertxFs = mock(io.vertx.core.file.FileSystem.class);
-        when(vertx.fileSystem()).thenReturn(vertxFs);
+    @Test
+    void shouldHandleEmptyRecordingName() throws Exception {
+        startRequest();
+        sendFileUpload("recording", "");
 
-        HttpStatusException ex =
-                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+        HttpStatusException ex = verifyFailed();
         MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
         MatcherAssert.assertThat(
                 ex.getPayload(), Matchers.equalTo("Recording name must not be empty"));
-
-        verify(vertxFs).deleteBlocking(Path.of(savePath, "file-uploads", "foo").toString());
+        verify(vertx, Mockito.never())
+                .executeBlocking(Mockito.any(), Mockito.anyBoolean(), Mockito.any());
     }
 
     @Test
-    void shouldHandleIncorectFileNamePattern() {
-        String basename = "incorrect_file_name";
-        String filename = basename + ".jfr";
-        String savePath = "/some/path/";
+    void shouldHandleIncorectFileNamePattern() throws Exception {
+        startRequest();
+        sendFileUpload("recording", "incorrect_file_name.jfr");
 
-        RoutingContext ctx = mock(RoutingContext.class);
+        HttpStatusException ex = verifyFailed();
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        MatcherAssert.assertThat(
+                ex.getPayload(), Matchers.equalTo("Incorrect recording file name pattern"));
+        verify(vertx, Mockito.never())
+                .executeBlocking(Mockito.any(), Mockito.anyBoolean(), Mockito.any());
+    }
 
+    private Handler<Void> startRequest() throws Exception {
         when(authManager.validateHttpHeader(any(), any()))
                 .thenReturn(CompletableFuture.completedFuture(true));
-        HttpServerRequest req = mock(HttpServerRequest.class);
-        when(ctx.request()).thenReturn(req);
-        HttpServerResponse rep = mock(HttpServerResponse.class);
-        when(ctx.response()).thenReturn(rep);
-        when(rep.putHeader(Mockito.any(CharSequence.class), Mockito.anyString())).thenReturn(rep);
 
-        when(cryoFs.isDirectory(recordingsPath)).thenReturn(true);
+        handler.handle(ctx);
 
-        Set<FileUpload> uploads = new HashSet<>();
-        FileUpload upload = mock(FileUpload.class);
-        uploads.add(upload);
-        when(ctx.fileUploads()).thenReturn(uploads);
-        when(upload.name()).thenReturn("recording");
-        when(upload.fileName()).thenReturn(filename);
-        when(upload.uploadedFileName()).thenReturn("foo");
+        InOrder inOrder = Mockito.inOrder(req);
+        inOrder.verify(req).setExpectMultipart(true);
+        inOrder.verify(req).resume();
+        ArgumentCaptor<Handler<Void>> endCaptor = ArgumentCaptor.forClass(Handler.class);
+        verify(req).endHandler(endCaptor.capture());
+        return endCaptor.getValue();
+    }
 
-        when(recordingsPath.resolve("file-uploads")).thenReturn(Path.of(savePath, "file-uploads"));
+    private HttpServerFileUpload sendFileUpload(String field, String filename) {
+        ArgumentCaptor<Handler<HttpServerFileUpload>> uploadCaptor =
+                ArgumentCaptor.forClass(Handler.class);
+        verify(req).uploadHandler(uploadCaptor.capture());
+        HttpServerFileUpload upload = mock(HttpServerFileUpload.class);
+        when(upload.name()).thenReturn(field);
+        lenient().when(upload.filename()).thenReturn(filename);
+        uploadCaptor.getValue().handle(upload);
+        return upload;
+    }
 
-        io.vertx.core.file.FileSystem vertxFs = mock(io.vertx.core.file.FileSystem.class);
-        when(vertx.fileSystem()).thenReturn(vertxFs);
+    private HttpServerFileUpload startUpload(String field, String filename) throws Exception {
+        startRequest();
+        return sendFileUpload(field, filename);
+    }
 
-        HttpStatusException ex =
-                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
-        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+    private void sendData(HttpServerFileUpload upload, Buffer data) {
+        ArgumentCaptor<Handler<Buffer>> dataCaptor = ArgumentCaptor.forClass(Handler.class);
+        verify(upload).handler(dataCaptor.capture());
+        dataCaptor.getValue().handle(data);
+    }
+
+    private void endUpload(HttpServerFileUpload upload) {
+        ArgumentCaptor<Handler<Void>> endCaptor = ArgumentCaptor.forClass(Handler.class);
+        verify(upload).endHandler(endCaptor.capture());
+        endCaptor.getValue().handle(null);
+    }
+
+    private void completeBlocking(
+            Handler<Promise<String>> blocking, Handler<AsyncResult<String>> result) {
+        Promise<String> promise = Promise.promise();
+        blocking.handle(promise);
+        result.handle(promise.future());
+    }
+
+    private HttpStatusException verifyFailed() {
+        ArgumentCaptor<Throwable> failureCaptor = ArgumentCaptor.forClass(Throwable.class);
+        verify(ctx).fail(failureCaptor.capture());
         MatcherAssert.assertThat(
-                ex.getPayload(), Matchers.equalTo("Incorrect recording file name pattern"));
+                failureCaptor.getValue(), Matchers.instanceOf(HttpStatusException.class));
+        return (HttpStatusException) failureCaptor.getValue();
+    }
 
-        verify(vertxFs).deleteBlocking(Path.of(savePath, "file-uploads", "foo").toString());
+    static Buffer jfrChunk(int size) {
+        ByteBuffer chunk = ByteBuffer.allocate(size);
+        chunk.put(new byte[] {'F', 'L', 'R', 0});
+        chunk.putShort((short) 2);
+        chunk.putShort((short) 0);
+        chunk.putLong(size);
+        return Buffer.buffer(chunk.array());
     }
 }
@@ -47,10 +47,15 @@ import java.util.concurrent.CompletableFuture;
 
 import io.cryostat.core.log.Logger;
 import io.cryostat.net.AuthManager;
+import io.cryostat.net.reports.ArchivedReport;
 import io.cryostat.net.reports.ReportService;
 import io.cryostat.net.security.ResourceAction;
+import io.cryostat.recordings.ArchiveCompression;
 import io.cryostat.recordings.RecordingNotFoundException;
 
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
@@ -63,6 +68,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -133,15 +139,63 @@ class ReportGetHandlerTest {
         Mockito.when(file.length()).thenReturn(12345L);
 
         when(ctx.pathParam("recordingName")).thenReturn("someRecording");
+        ArchivedReport report = Mockito.mock(ArchivedReport.class);
+        Mockito.when(report.getFile()).thenReturn(fakePath);
+        Mockito.when(report.getCompression()).thenReturn(ArchiveCompression.NONE);
         when(reportService.get(Mockito.anyString()))
-                .thenReturn(CompletableFuture.completedFuture(fakePath));
+                .thenReturn(CompletableFuture.completedFuture(report));
 
         handler.handle(ctx);
 
         Mockito.verify(reportService).get("someRecording");
-        Mockito.verify(resp).sendFile(fakePath.toString());
+        ArgumentCaptor<Handler<AsyncResult<Void>>> sent = ArgumentCaptor.forClass(Handler.class);
+        Mockito.verify(resp).sendFile(Mockito.eq(fakePath.toString()), sent.capture());
+        Mockito.verify(report, Mockito.never()).close();
+        sent.getValue().handle(Future.succeededFuture());
+        Mockito.verify(report).close();
         Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, "text/html");
         Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_LENGTH, "12345");
+        Mockito.verify(resp, Mockito.never())
+                .putHeader(Mockito.eq(HttpHeaders.CONTENT_ENCODING), Mockito.anyString());
+    }
+
+    @Test
+    void shouldSendCompressedReportIfEncodingAccepted() throws Exception {
+        when(authManager.validateHttpHeader(Mockito.any(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        RoutingContext ctx = mock(RoutingContext.class);
+        HttpServerRequest req = mock(HttpServerRequest.class);
+        HttpServerResponse resp = mock(HttpServerResponse.class);
+        when(ctx.request()).thenReturn(req);
+        when(ctx.response()).thenReturn(resp);
+        when(req.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        when(resp.putHeader(Mockito.any(CharSequence.class), Mockito.any(CharSequence.class)))
+                .thenReturn(resp);
+
+        Path fakePath = Mockito.mock(Path.class);
+        Mockito.when(fakePath.toAbsolutePath()).thenReturn(fakePath);
+        Mockito.when(fakePath.toString()).thenReturn("/some/fake/path.html.gz");
+        File file = Mockito.mock(File.class);
+        Mockito.when(fakePath.toFile()).thenReturn(file);
+        Mockito.when(file.length()).thenReturn(123L);
+
+        when(ctx.pathParam("recordingName")).thenReturn("someRecording");
+        ArchivedReport report = Mockito.mock(ArchivedReport.class);
+        Mockito.when(report.getFile()).thenReturn(fakePath);
+        Mockito.when(report.getCompression()).thenReturn(ArchiveCompression.GZIP);
+        when(reportService.get(Mockito.anyString()))
+                .thenReturn(CompletableFuture.completedFuture(report));
+
+        handler.handle(ctx);
+
+        ArgumentCaptor<Handler<AsyncResult<Void>>> sent = ArgumentCaptor.forClass(Handler.class);
+        Mockito.verify(resp).sendFile(Mockito.eq(fakePath.toString()), sent.capture());
+        Mockito.verify(report, Mockito.never()).close();
+        sent.getValue().handle(Future.succeededFuture());
+        Mockito.verify(report).close();
+        Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_LENGTH, "123");
     }
 
     @Test
@@ -58,8 +58,14 @@ import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.recordings.RecordingTargetHelper;
+import io.cryostat.recordings.RecordingTimeRange;
 
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
@@ -142,7 +148,10 @@ class TargetRecordingGetHandlerTest {
         when(ctx.pathParam("recordingName")).thenReturn(recordingName);
 
         CompletableFuture<Optional<InputStream>> future = Mockito.mock(CompletableFuture.class);
-        when(recordingTargetHelper.getRecording(Mockito.any(), Mockito.eq(recordingName)))
+        when(recordingTargetHelper.getRecording(
+                        Mockito.any(),
+                        Mockito.eq(recordingName),
+                        Mockito.eq(RecordingTimeRange.UNBOUNDED)))
                 .thenReturn(future);
         when(future.get()).thenReturn(stream);
         when(stream.isEmpty()).thenReturn(true);
@@ -152,6 +161,32 @@ class TargetRecordingGetHandlerTest {
         MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(404));
     }
 
+    @Test
+    void shouldRespond400IfTimeRangeInvalid() throws Exception {
+        when(authManager.validateHttpHeader(Mockito.any(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        RoutingContext ctx = mock(RoutingContext.class);
+        HttpServerRequest req = mock(HttpServerRequest.class);
+        when(ctx.request()).thenReturn(req);
+        when(ctx.request().headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
+        HttpServerResponse resp = mock(HttpServerResponse.class);
+        when(ctx.response()).thenReturn(resp);
+        when(ctx.queryParams())
+                .thenReturn(
+                        MultiMap.caseInsensitiveMultiMap()
+                                .add("since", "2021-01-01T00:00:00Z")
+                                .add("lastSeconds", "30"));
+
+        when(ctx.pathParam("targetId")).thenReturn("fooHost:0");
+        when(ctx.pathParam("recordingName")).thenReturn("someRecording");
+
+        HttpStatusException ex =
+                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        Mockito.verifyNoInteractions(recordingTargetHelper);
+    }
+
     @Test
     void shouldRespond500IfUnexpectedExceptionThrown() throws Exception {
         String recordingName = "someRecording";
@@ -172,7 +207,10 @@ class TargetRecordingGetHandlerTest {
         when(ctx.pathParam("recordingName")).thenReturn(recordingName);
 
         CompletableFuture<Optional<InputStream>> future = Mockito.mock(CompletableFuture.class);
-        when(recordingTargetHelper.getRecording(Mockito.any(), Mockito.eq(recordingName)))
+        when(recordingTargetHelper.getRecording(
+                        Mockito.any(),
+                        Mockito.eq(recordingName),
+                        Mockito.eq(RecordingTimeRange.UNBOUNDED)))
                 .thenReturn(future);
         when(future.get())
                 .thenThrow(
@@ -210,15 +248,34 @@ class TargetRecordingGetHandlerTest {
         when(ctx.pathParam("targetId")).thenReturn("fooHost:0");
         when(ctx.pathParam("recordingName")).thenReturn(recordingName);
 
+        Vertx vertx = mock(Vertx.class);
+        Context context = mock(Context.class);
+        when(ctx.vertx()).thenReturn(vertx);
+        when(vertx.getOrCreateContext()).thenReturn(context);
+        Mockito.doAnswer(
+                        invocation -> {
+                            Handler<Promise<Buffer>> blocking = invocation.getArgument(0);
+                            Handler<AsyncResult<Buffer>> result = invocation.getArgument(2);
+                            Promise<Buffer> promise = Promise.promise();
+                            blocking.handle(promise);
+                            result.handle(promise.future());
+                            return null;
+                        })
+                .when(context)
+                .executeBlocking(Mockito.any(), Mockito.anyBoolean(), Mockito.any());
+
         byte[] src = new byte[1024 * 1024];
         new Random(123456).nextBytes(src);
         CompletableFuture<Optional<InputStream>> future = Mockito.mock(CompletableFuture.class);
-        when(recordingTargetHelper.getRecording(Mockito.any(), Mockito.eq("someRecording")))
+        when(recordingTargetHelper.getRecording(
+                        Mockito.any(),
+                        Mockito.eq("someRecording"),
+                        Mockito.eq(RecordingTimeRange.UNBOUNDED)))
                 .thenReturn(future);
         when(future.get()).thenReturn(Optional.of(new ByteArrayInputStream(src)));
 
         Buffer dst = Buffer.buffer(1024 * 1024);
-        when(resp.write(Mockito.any(Buffer.class)))
+        when(resp.write(Mockito.any(Buffer.class), Mockito.any()))
                 .thenAnswer(
                         invocation -> {
                             Buffer chunk = invocation.getArgument(0);
@@ -233,6 +290,6 @@ class TargetRecordingGetHandlerTest {
         Assertions.assertArrayEquals(src, dst.getBytes());
         verify(resp).setChunked(true);
         verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime());
-        verify(resp).end();
+        verify(resp).end(Mockito.<Handler<AsyncResult<Void>>>any());
     }
 }
@@ -39,6 +39,7 @@ package io.cryostat.net.web.http.api.v1;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.openjdk.jmc.common.unit.IConstrainedMap;
 import org.openjdk.jmc.flightrecorder.configuration.recording.RecordingOptionsBuilder;
@@ -54,15 +55,18 @@ import io.cryostat.net.security.ResourceAction;
 import io.cryostat.recordings.RecordingOptionsBuilderFactory;
 
 import com.google.gson.Gson;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
-import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -78,6 +82,8 @@ class TargetRecordingOptionsGetHandlerTest {
 
     TargetRecordingOptionsGetHandler handler;
     @Mock AuthManager auth;
+    @Mock Vertx vertx;
+    @Mock Context context;
     @Mock TargetConnectionManager targetConnectionManager;
     @Mock RecordingOptionsBuilderFactory recordingOptionsBuilderFactory;
     @Mock RecordingOptionsBuilder builder;
@@ -88,6 +94,16 @@ class TargetRecordingOptionsGetHandlerTest {
 
     @BeforeEach
     void setup() {
+        Mockito.lenient().when(vertx.getOrCreateContext()).thenReturn(context);
+        Mockito.lenient()
+                .doAnswer(
+                        invocation -> {
+                            Handler<Void> action = invocation.getArgument(0);
+                            action.handle(null);
+                            return null;
+                        })
+                .when(context)
+                .runOnContext(Mockito.any());
         this.handler =
                 new TargetRecordingOptionsGetHandler(
                         auth, targetConnectionManager, recordingOptionsBuilderFactory, gson);
@@ -113,17 +129,23 @@ class TargetRecordingOptionsGetHandlerTest {
     @Test
     void shouldRespondWithErrorIfExceptionThrown() throws Exception {
         Mockito.when(
-                        targetConnectionManager.executeConnectedTask(
+                        targetConnectionManager.executeConnectedTaskAsync(
                                 Mockito.any(ConnectionDescriptor.class), Mockito.any()))
-                .thenThrow(new Exception("dummy exception"));
+                .thenReturn(CompletableFuture.failedFuture(new Exception("dummy exception")));
 
         RoutingContext ctx = Mockito.mock(RoutingContext.class);
+        Mockito.when(ctx.vertx()).thenReturn(vertx);
         Mockito.when(ctx.pathParam("targetId")).thenReturn("foo:9091");
         HttpServerRequest req = Mockito.mock(HttpServerRequest.class);
         Mockito.when(ctx.request()).thenReturn(req);
         Mockito.when(req.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
 
-        Assertions.assertThrows(Exception.class, () -> handler.handleAuthenticated(ctx));
+        handler.handleAuthenticated(ctx);
+
+        ArgumentCaptor<HttpStatusException> exceptionCaptor =
+                ArgumentCaptor.forClass(HttpStatusException.class);
+        Mockito.verify(ctx).fail(exceptionCaptor.capture());
+        MatcherAssert.assertThat(exceptionCaptor.getValue().getStatusCode(), Matchers.equalTo(500));
     }
 
     @Test
@@ -143,19 +165,21 @@ class TargetRecordingOptionsGetHandlerTest {
         Mockito.when(recordingOptions.get("maxSize")).thenReturn(optionValues.get("maxSize"));
 
         Mockito.when(
-                        targetConnectionManager.executeConnectedTask(
+                        targetConnectionManager.executeConnectedTaskAsync(
                                 Mockito.any(ConnectionDescriptor.class), Mockito.any()))
                 .thenAnswer(
                         new Answer<>() {
                             @Override
-                            public Map answer(InvocationOnMock args) throws Throwable {
+                            public CompletableFuture answer(InvocationOnMock args)
+                                    throws Throwable {
                                 TargetConnectionManager.ConnectedTask ct =
                                         (TargetConnectionManager.ConnectedTask)
                                                 args.getArguments()[1];
-                                return (Map) ct.execute(jfrConnection);
+                                return CompletableFuture.completedFuture(ct.execute(jfrConnection));
                             }
                         });
         RoutingContext ctx = Mockito.mock(RoutingContext.class);
+        Mockito.when(ctx.vertx()).thenReturn(vertx);
         Mockito.when(ctx.pathParam("targetId")).thenReturn("foo:9091");
         HttpServerRequest req = Mockito.mock(HttpServerRequest.class);
         Mockito.when(ctx.request()).thenReturn(req);
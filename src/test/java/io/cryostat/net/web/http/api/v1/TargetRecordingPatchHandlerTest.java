@@ -39,12 +39,14 @@ package io.cryostat.net.web.http.api.v1;
 
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.security.ResourceAction;
 
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
@@ -74,6 +76,7 @@ class TargetRecordingPatchHandlerTest {
     @Mock HttpServerRequest req;
     @Mock HttpServerResponse resp;
     @Mock ConnectionDescriptor connectionDescriptor;
+    @Mock Vertx vertx;
 
     @BeforeEach
     void setup() {
@@ -104,9 +107,9 @@ class TargetRecordingPatchHandlerTest {
     }
 
     @Test
-    void shouldNotBeAsync() {
-        // recording saving is a blocking operation, so the handler should be marked as such
-        Assertions.assertFalse(handler.isAsync());
+    void shouldBeAsync() {
+        // saves are queued and stops run on the target task executor
+        Assertions.assertTrue(handler.isAsync());
     }
 
     @Test
@@ -146,22 +149,35 @@ class TargetRecordingPatchHandlerTest {
         Mockito.when(ctx.request()).thenReturn(req);
         Mockito.when(req.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
         Mockito.when(ctx.getBodyAsString()).thenReturn(mtd);
+        Mockito.when(ctx.vertx()).thenReturn(vertx);
         Mockito.when(ctx.response()).thenReturn(resp);
         Mockito.when(
                         resp.putHeader(
                                 Mockito.any(CharSequence.class), Mockito.any(CharSequence.class)))
                 .thenReturn(resp);
+        Mockito.lenient()
+                .when(patchSave.handle(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        Mockito.lenient()
+                .when(patchStop.handle(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
         handler.handle(ctx);
 
         switch (mtd) {
             case "save":
                 Mockito.verify(patchSave)
-                        .handle(Mockito.eq(ctx), Mockito.any(ConnectionDescriptor.class));
+                        .handle(
+                                Mockito.eq(ctx),
+                                Mockito.any(ConnectionDescriptor.class),
+                                Mockito.any(Executor.class));
                 break;
             case "stop":
                 Mockito.verify(patchStop)
-                        .handle(Mockito.eq(ctx), Mockito.any(ConnectionDescriptor.class));
+                        .handle(
+                                Mockito.eq(ctx),
+                                Mockito.any(ConnectionDescriptor.class),
+                                Mockito.any(Executor.class));
                 break;
             default:
                 throw new IllegalArgumentException(mtd);
@@ -38,10 +38,14 @@
 package io.cryostat.net.web.http.api.v1;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.openjdk.jmc.rjmx.services.jfr.IFlightRecorderService;
 
@@ -53,9 +57,15 @@ import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.platform.PlatformClient;
 import io.cryostat.recordings.EmptyRecordingException;
 import io.cryostat.recordings.RecordingArchiveHelper;
+import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
 
+import io.vertx.core.MultiMap;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -99,35 +109,156 @@ class TargetRecordingPatchSaveTest {
 
         CompletableFuture<String> future = new CompletableFuture<>();
         future.complete("some-Alias-2_someRecording_" + timestamp + ".jfr");
-        Mockito.when(recordingArchiveHelper.saveRecording(Mockito.any(), Mockito.any()))
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
                 .thenReturn(future);
 
-        patchSave.handle(ctx, new ConnectionDescriptor(targetId));
+        patchSave.handle(ctx, new ConnectionDescriptor(targetId), Runnable::run);
 
         InOrder inOrder = Mockito.inOrder(resp);
         inOrder.verify(resp).end("some-Alias-2_someRecording_" + timestamp + ".jfr");
     }
 
+    @Test
+    void shouldRespondOnRequestContextWhenSavedOnAnotherThread() throws Exception {
+        Mockito.when(ctx.pathParam("recordingName")).thenReturn(recordingName);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(future);
+        List<Runnable> scheduled = new CopyOnWriteArrayList<>();
+
+        patchSave.handle(ctx, new ConnectionDescriptor(targetId), scheduled::add);
+
+        Thread saver = new Thread(() -> future.complete("someRecording.jfr"));
+        saver.start();
+        saver.join();
+
+        Mockito.verifyNoInteractions(resp);
+        MatcherAssert.assertThat(scheduled, Matchers.hasSize(1));
+
+        Mockito.when(ctx.response()).thenReturn(resp);
+        scheduled.get(0).run();
+
+        Mockito.verify(resp).end("someRecording.jfr");
+    }
+
+    @Test
+    void shouldSaveRecordingTimeRange() throws Exception {
+        Mockito.when(ctx.pathParam("recordingName")).thenReturn(recordingName);
+        Mockito.when(ctx.queryParams())
+                .thenReturn(MultiMap.caseInsensitiveMultiMap().add("lastSeconds", "60"));
+        Mockito.when(ctx.response()).thenReturn(resp);
+
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.eq(recordingName),
+                                Mockito.eq(RecordingTimeRange.last(Duration.ofSeconds(60)))))
+                .thenReturn(CompletableFuture.completedFuture("someRecording.jfr"));
+
+        patchSave.handle(ctx, new ConnectionDescriptor(targetId), Runnable::run);
+
+        Mockito.verify(resp).end("someRecording.jfr");
+    }
+
+    @Test
+    void shouldRespond400IfTimeRangeInvalid() throws Exception {
+        Mockito.when(ctx.pathParam("recordingName")).thenReturn(recordingName);
+        Mockito.when(ctx.queryParams())
+                .thenReturn(MultiMap.caseInsensitiveMultiMap().add("since", "yesterday"));
+
+        HttpStatusException ex =
+                Assertions.assertThrows(
+                        HttpStatusException.class,
+                        () ->
+                                patchSave.handle(
+                                        ctx, new ConnectionDescriptor(targetId), Runnable::run));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        Mockito.verifyNoInteractions(recordingArchiveHelper);
+    }
+
     @Test
     void shouldNotSaveEmptyRecording() throws Exception {
         Mockito.when(ctx.response()).thenReturn(resp);
 
-        Mockito.when(recordingArchiveHelper.saveRecording(Mockito.any(), Mockito.any()))
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
                 .thenReturn(CompletableFuture.failedFuture(new EmptyRecordingException()));
 
-        Assertions.assertThrows(
-                ExecutionException.class,
-                () -> {
-                    try {
-                        patchSave.handle(ctx, new ConnectionDescriptor(targetId));
-                    } catch (ExecutionException ee) {
-                        Assertions.assertTrue(ee.getCause() instanceof EmptyRecordingException);
-                        throw ee;
-                    }
-                });
+        patchSave
+                .handle(ctx, new ConnectionDescriptor(targetId), Runnable::run)
+                .toCompletableFuture()
+                .get();
 
         InOrder inOrder = Mockito.inOrder(resp);
         inOrder.verify(resp).setStatusCode(204);
         inOrder.verify(resp).end();
     }
+
+    @Test
+    void shouldFail404IfRecordingNotFound() throws Exception {
+        Mockito.when(ctx.pathParam("recordingName")).thenReturn(recordingName);
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
+                                new RecordingNotFoundException(targetId, recordingName)));
+
+        ExecutionException ee =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () ->
+                                patchSave
+                                        .handle(
+                                                ctx,
+                                                new ConnectionDescriptor(targetId),
+                                                Runnable::run)
+                                        .toCompletableFuture()
+                                        .get());
+        MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(HttpStatusException.class));
+        MatcherAssert.assertThat(
+                ((HttpStatusException) ee.getCause()).getStatusCode(), Matchers.equalTo(404));
+        Mockito.verifyNoInteractions(resp);
+    }
+
+    @Test
+    void shouldFail503IfSaveQueueFull() throws Exception {
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
+                                new RejectedExecutionException("Archive save queue is full")));
+
+        ExecutionException ee =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () ->
+                                patchSave
+                                        .handle(
+                                                ctx,
+                                                new ConnectionDescriptor(targetId),
+                                                Runnable::run)
+                                        .toCompletableFuture()
+                                        .get());
+        MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(HttpStatusException.class));
+        MatcherAssert.assertThat(
+                ((HttpStatusException) ee.getCause()).getStatusCode(), Matchers.equalTo(503));
+        Mockito.verifyNoInteractions(resp);
+    }
 }
@@ -38,6 +38,8 @@
 package io.cryostat.net.web.http.api.v1;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.openjdk.jmc.rjmx.services.jfr.IFlightRecorderService;
 import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor;
@@ -101,7 +103,9 @@ class TargetRecordingPatchStopTest {
     @Test
     void shouldThrow404IfNoMatchingRecordingFound() throws Exception {
         Mockito.when(ctx.pathParam("recordingName")).thenReturn("someRecording");
-        Mockito.when(targetConnectionManager.executeConnectedTask(Mockito.any(), Mockito.any()))
+        Mockito.when(
+                        targetConnectionManager.executeConnectedTaskAsync(
+                                Mockito.any(), Mockito.any()))
                 .thenAnswer(
                         new Answer<>() {
                             @Override
@@ -109,24 +113,40 @@ class TargetRecordingPatchStopTest {
                                 TargetConnectionManager.ConnectedTask task =
                                         (TargetConnectionManager.ConnectedTask)
                                                 invocation.getArgument(1);
-                                return task.execute(connection);
+                                try {
+                                    return CompletableFuture.completedFuture(
+                                            task.execute(connection));
+                                } catch (Exception e) {
+                                    return CompletableFuture.failedFuture(e);
+                                }
                             }
                         });
         Mockito.when(connection.getService()).thenReturn(service);
         Mockito.when(service.getAvailableRecordings()).thenReturn(List.of());
 
-        HttpStatusException ex =
+        ExecutionException ee =
                 Assertions.assertThrows(
-                        HttpStatusException.class,
-                        () -> patchStop.handle(ctx, new ConnectionDescriptor("fooTarget")));
-        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(404));
+                        ExecutionException.class,
+                        () ->
+                                patchStop
+                                        .handle(
+                                                ctx,
+                                                new ConnectionDescriptor("fooTarget"),
+                                                Runnable::run)
+                                        .toCompletableFuture()
+                                        .get());
+        MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(HttpStatusException.class));
+        MatcherAssert.assertThat(
+                ((HttpStatusException) ee.getCause()).getStatusCode(), Matchers.equalTo(404));
     }
 
     @Test
     void shouldStopRecording() throws Exception {
         Mockito.when(ctx.pathParam("recordingName")).thenReturn("someRecording");
         Mockito.when(ctx.response()).thenReturn(resp);
-        Mockito.when(targetConnectionManager.executeConnectedTask(Mockito.any(), Mockito.any()))
+        Mockito.when(
+                        targetConnectionManager.executeConnectedTaskAsync(
+                                Mockito.any(), Mockito.any()))
                 .thenAnswer(
                         new Answer<>() {
                             @Override
@@ -134,7 +154,12 @@ class TargetRecordingPatchStopTest {
                                 TargetConnectionManager.ConnectedTask task =
                                         (TargetConnectionManager.ConnectedTask)
                                                 invocation.getArgument(1);
-                                return task.execute(connection);
+                                try {
+                                    return CompletableFuture.completedFuture(
+                                            task.execute(connection));
+                                } catch (Exception e) {
+                                    return CompletableFuture.failedFuture(e);
+                                }
                             }
                         });
         Mockito.when(connection.getService()).thenReturn(service);
@@ -142,7 +167,10 @@ class TargetRecordingPatchStopTest {
         Mockito.when(descriptor.getName()).thenReturn("someRecording");
         Mockito.when(service.getAvailableRecordings()).thenReturn(List.of(descriptor));
 
-        patchStop.handle(ctx, new ConnectionDescriptor("fooTarget"));
+        patchStop
+                .handle(ctx, new ConnectionDescriptor("fooTarget"), Runnable::run)
+                .toCompletableFuture()
+                .get();
 
         Mockito.verify(service).stop(descriptor);
         InOrder inOrder = Mockito.inOrder(resp);
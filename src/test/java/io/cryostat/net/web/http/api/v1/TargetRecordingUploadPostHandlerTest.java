@@ -55,6 +55,8 @@ import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
+import io.cryostat.recordings.SegmentedRecordingTransfer;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
@@ -93,6 +95,7 @@ class TargetRecordingUploadPostHandlerTest {
     @Mock TargetConnectionManager targetConnectionManager;
     @Mock WebClient webClient;
     @Mock FileSystem fs;
+    @Mock SegmentedRecordingTransfer recordingTransfer;
 
     @Mock RoutingContext ctx;
     @Mock HttpServerRequest req;
@@ -105,7 +108,7 @@ class TargetRecordingUploadPostHandlerTest {
     void setup() {
         this.handler =
                 new TargetRecordingUploadPostHandler(
-                        auth, env, targetConnectionManager, 30, webClient, fs);
+                        auth, env, targetConnectionManager, recordingTransfer, 30, webClient, fs);
     }
 
     @Test
@@ -213,7 +216,13 @@ class TargetRecordingUploadPostHandlerTest {
         Mockito.when(conn.getService()).thenReturn(svc);
         Mockito.when(svc.getAvailableRecordings()).thenReturn(List.of(rec));
         Mockito.when(rec.getName()).thenReturn("foo");
-        Mockito.when(svc.openStream(Mockito.any(), Mockito.anyBoolean())).thenReturn(stream);
+        Mockito.when(
+                        recordingTransfer.openStream(
+                                Mockito.any(),
+                                Mockito.eq(conn),
+                                Mockito.eq(rec),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(stream);
         Mockito.when(env.getEnv("GRAFANA_DATASOURCE_URL")).thenReturn(DATASOURCE_URL);
 
         Mockito.when(ctx.pathParam("targetId")).thenReturn("fooTarget");
@@ -282,7 +291,13 @@ class TargetRecordingUploadPostHandlerTest {
         Mockito.when(conn.getService()).thenReturn(svc);
         Mockito.when(svc.getAvailableRecordings()).thenReturn(List.of(rec));
         Mockito.when(rec.getName()).thenReturn("foo");
-        Mockito.when(svc.openStream(Mockito.any(), Mockito.anyBoolean())).thenReturn(stream);
+        Mockito.when(
+                        recordingTransfer.openStream(
+                                Mockito.any(),
+                                Mockito.eq(conn),
+                                Mockito.eq(rec),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(stream);
         Mockito.when(env.getEnv("GRAFANA_DATASOURCE_URL")).thenReturn(DATASOURCE_URL);
 
         Mockito.when(ctx.pathParam("targetId")).thenReturn("fooTarget");
@@ -354,7 +369,13 @@ class TargetRecordingUploadPostHandlerTest {
         Mockito.when(conn.getService()).thenReturn(svc);
         Mockito.when(svc.getAvailableRecordings()).thenReturn(List.of(rec));
         Mockito.when(rec.getName()).thenReturn("foo");
-        Mockito.when(svc.openStream(Mockito.any(), Mockito.anyBoolean())).thenReturn(stream);
+        Mockito.when(
+                        recordingTransfer.openStream(
+                                Mockito.any(),
+                                Mockito.eq(conn),
+                                Mockito.eq(rec),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(stream);
         Mockito.when(env.getEnv("GRAFANA_DATASOURCE_URL")).thenReturn(DATASOURCE_URL);
 
         Mockito.when(ctx.pathParam("targetId")).thenReturn("fooTarget");
@@ -426,7 +447,13 @@ class TargetRecordingUploadPostHandlerTest {
         Mockito.when(conn.getService()).thenReturn(svc);
         Mockito.when(svc.getAvailableRecordings()).thenReturn(List.of(rec));
         Mockito.when(rec.getName()).thenReturn("foo");
-        Mockito.when(svc.openStream(Mockito.any(), Mockito.anyBoolean())).thenReturn(stream);
+        Mockito.when(
+                        recordingTransfer.openStream(
+                                Mockito.any(),
+                                Mockito.eq(conn),
+                                Mockito.eq(rec),
+                                Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(stream);
         Mockito.when(env.getEnv("GRAFANA_DATASOURCE_URL")).thenReturn(DATASOURCE_URL);
 
         Mockito.when(ctx.pathParam("targetId")).thenReturn("fooTarget");
@@ -40,6 +40,7 @@ package io.cryostat.net.web.http.api.v1;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.QuantityConversionException;
@@ -58,14 +59,17 @@ import io.cryostat.net.web.WebServer;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
-import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -81,6 +85,8 @@ class TargetRecordingsGetHandlerTest {
 
     TargetRecordingsGetHandler handler;
     @Mock AuthManager auth;
+    @Mock Vertx vertx;
+    @Mock Context context;
     @Mock TargetConnectionManager connectionManager;
     @Mock WebServer webServer;
     @Mock Logger logger;
@@ -88,6 +94,16 @@ class TargetRecordingsGetHandlerTest {
 
     @BeforeEach
     void setup() {
+        Mockito.lenient().when(vertx.getOrCreateContext()).thenReturn(context);
+        Mockito.lenient()
+                .doAnswer(
+                        invocation -> {
+                            Handler<Void> action = invocation.getArgument(0);
+                            action.handle(null);
+                            return null;
+                        })
+                .when(context)
+                .runOnContext(Mockito.any());
         this.handler =
                 new TargetRecordingsGetHandler(auth, connectionManager, () -> webServer, gson);
     }
@@ -114,17 +130,23 @@ class TargetRecordingsGetHandlerTest {
     @Test
     void shouldRespondWithErrorIfExceptionThrown() throws Exception {
         Mockito.when(
-                        connectionManager.executeConnectedTask(
+                        connectionManager.executeConnectedTaskAsync(
                                 Mockito.any(ConnectionDescriptor.class), Mockito.any()))
-                .thenThrow(new Exception("dummy exception"));
+                .thenReturn(CompletableFuture.failedFuture(new Exception("dummy exception")));
 
         RoutingContext ctx = Mockito.mock(RoutingContext.class);
+        Mockito.when(ctx.vertx()).thenReturn(vertx);
         Mockito.when(ctx.pathParam("targetId")).thenReturn("foo:9091");
         HttpServerRequest req = Mockito.mock(HttpServerRequest.class);
         Mockito.when(ctx.request()).thenReturn(req);
         Mockito.when(req.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
 
-        Assertions.assertThrows(Exception.class, () -> handler.handleAuthenticated(ctx));
+        handler.handleAuthenticated(ctx);
+
+        ArgumentCaptor<HttpStatusException> exceptionCaptor =
+                ArgumentCaptor.forClass(HttpStatusException.class);
+        Mockito.verify(ctx).fail(exceptionCaptor.capture());
+        MatcherAssert.assertThat(exceptionCaptor.getValue().getStatusCode(), Matchers.equalTo(500));
     }
 
     @Test
@@ -133,13 +155,14 @@ class TargetRecordingsGetHandlerTest {
         IFlightRecorderService service = Mockito.mock(IFlightRecorderService.class);
 
         Mockito.when(
-                        connectionManager.executeConnectedTask(
+                        connectionManager.executeConnectedTaskAsync(
                                 Mockito.any(ConnectionDescriptor.class), Mockito.any()))
                 .thenAnswer(
                         arg0 ->
-                                ((TargetConnectionManager.ConnectedTask<Object>)
-                                                arg0.getArgument(1))
-                                        .execute(connection));
+                                CompletableFuture.completedFuture(
+                                        ((TargetConnectionManager.ConnectedTask<Object>)
+                                                        arg0.getArgument(1))
+                                                .execute(connection)));
         Mockito.when(connection.getService()).thenReturn(service);
         Mockito.when(connection.getHost()).thenReturn("fooHost");
         Mockito.when(connection.getPort()).thenReturn(1);
@@ -174,6 +197,7 @@ class TargetRecordingsGetHandlerTest {
                         });
 
         RoutingContext ctx = Mockito.mock(RoutingContext.class);
+        Mockito.when(ctx.vertx()).thenReturn(vertx);
         HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
         Mockito.when(ctx.response()).thenReturn(resp);
         Mockito.when(ctx.pathParam("targetId")).thenReturn("foo:9091");
@@ -54,6 +54,7 @@ import io.cryostat.net.reports.SubprocessReportGenerator;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.recordings.RecordingNotFoundException;
+import io.cryostat.recordings.RecordingTimeRange;
 
 import io.vertx.core.MultiMap;
 import io.vertx.core.http.HttpHeaders;
@@ -124,7 +125,11 @@ class TargetReportGetHandlerTest {
         String targetId = "fooHost:0";
         String recordingName = "foo";
         Future<String> content = CompletableFuture.completedFuture("foobar");
-        when(reportService.get(Mockito.any(), Mockito.anyString())).thenReturn(content);
+        when(reportService.get(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(content);
 
         Mockito.when(ctx.pathParam("targetId")).thenReturn(targetId);
         Mockito.when(ctx.pathParam("recordingName")).thenReturn(recordingName);
@@ -147,7 +152,10 @@ class TargetReportGetHandlerTest {
         HttpServerResponse resp = mock(HttpServerResponse.class);
         when(ctx.response()).thenReturn(resp);
 
-        when(reportService.get(Mockito.any(), Mockito.anyString()))
+        when(reportService.get(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(RecordingTimeRange.UNBOUNDED)))
                 .thenThrow(
                         new CompletionException(
                                 new RecordingNotFoundException("fooHost:0", "someRecording")));
@@ -180,7 +188,11 @@ class TargetReportGetHandlerTest {
                                 new SubprocessReportGenerator.SubprocessReportGenerationException(
                                         SubprocessReportGenerator.ExitStatus
                                                 .TARGET_CONNECTION_FAILURE)));
-        when(reportService.get(Mockito.any(), Mockito.anyString())).thenReturn(content);
+        when(reportService.get(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(content);
 
         Mockito.when(ctx.pathParam("targetId")).thenReturn(targetId);
         Mockito.when(ctx.pathParam("recordingName")).thenReturn(recordingName);
@@ -209,7 +221,11 @@ class TargetReportGetHandlerTest {
                         new ExecutionException(
                                 new SubprocessReportGenerator.SubprocessReportGenerationException(
                                         SubprocessReportGenerator.ExitStatus.NO_SUCH_RECORDING)));
-        when(reportService.get(Mockito.any(), Mockito.anyString())).thenReturn(content);
+        when(reportService.get(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(RecordingTimeRange.UNBOUNDED)))
+                .thenReturn(content);
 
         Mockito.when(ctx.pathParam("targetId")).thenReturn(targetId);
         Mockito.when(ctx.pathParam("recordingName")).thenReturn(recordingName);
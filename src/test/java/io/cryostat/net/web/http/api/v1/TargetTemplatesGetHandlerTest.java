@@ -40,6 +40,8 @@ package io.cryostat.net.web.http.api.v1;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import io.cryostat.MainModule;
 import io.cryostat.core.log.Logger;
@@ -54,14 +56,17 @@ import io.cryostat.net.security.ResourceAction;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
-import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -75,12 +80,24 @@ class TargetTemplatesGetHandlerTest {
 
     TargetTemplatesGetHandler handler;
     @Mock AuthManager auth;
+    @Mock Vertx vertx;
+    @Mock Context context;
     @Mock TargetConnectionManager connectionManager;
     @Mock Logger logger;
     Gson gson = MainModule.provideGson(logger);
 
     @BeforeEach
     void setup() {
+        Mockito.lenient().when(vertx.getOrCreateContext()).thenReturn(context);
+        Mockito.lenient()
+                .doAnswer(
+                        invocation -> {
+                            Handler<Void> action = invocation.getArgument(0);
+                            action.handle(null);
+                            return null;
+                        })
+                .when(context)
+                .runOnContext(Mockito.any());
         this.handler = new TargetTemplatesGetHandler(auth, connectionManager, gson);
     }
 
@@ -105,17 +122,23 @@ class TargetTemplatesGetHandlerTest {
     @Test
     void shouldRespondWithErrorIfExceptionThrown() throws Exception {
         Mockito.when(
-                        connectionManager.executeConnectedTask(
+                        connectionManager.executeConnectedTaskAsync(
                                 Mockito.any(ConnectionDescriptor.class), Mockito.any()))
-                .thenThrow(new Exception("dummy exception"));
+                .thenReturn(CompletableFuture.failedFuture(new Exception("dummy exception")));
 
         RoutingContext ctx = Mockito.mock(RoutingContext.class);
+        Mockito.when(ctx.vertx()).thenReturn(vertx);
         Mockito.when(ctx.pathParam("targetId")).thenReturn("foo:9091");
         HttpServerRequest req = Mockito.mock(HttpServerRequest.class);
         Mockito.when(ctx.request()).thenReturn(req);
         Mockito.when(req.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
 
-        Assertions.assertThrows(Exception.class, () -> handler.handleAuthenticated(ctx));
+        handler.handleAuthenticated(ctx);
+
+        ArgumentCaptor<HttpStatusException> exceptionCaptor =
+                ArgumentCaptor.forClass(HttpStatusException.class);
+        Mockito.verify(ctx).fail(exceptionCaptor.capture());
+        MatcherAssert.assertThat(exceptionCaptor.getValue().getStatusCode(), Matchers.equalTo(500));
     }
 
     @Test
@@ -129,18 +152,20 @@ class TargetTemplatesGetHandlerTest {
                 new Template("BarTemplate", "Template for bar-ing", "Test 2", TemplateType.CUSTOM);
 
         Mockito.when(
-                        connectionManager.executeConnectedTask(
+                        connectionManager.executeConnectedTaskAsync(
                                 Mockito.any(ConnectionDescriptor.class), Mockito.any()))
                 .thenAnswer(
                         arg0 ->
-                                ((TargetConnectionManager.ConnectedTask<Object>)
-                                                arg0.getArgument(1))
-                                        .execute(connection));
+                                CompletableFuture.completedFuture(
+                                        ((TargetConnectionManager.ConnectedTask<Object>)
+                                                        arg0.getArgument(1))
+                                                .execute(connection)));
         Mockito.when(connection.getTemplateService()).thenReturn(templateService);
         Mockito.when(templateService.getTemplates())
                 .thenReturn(Arrays.asList(template1, template2));
 
         RoutingContext ctx = Mockito.mock(RoutingContext.class);
+        Mockito.when(ctx.vertx()).thenReturn(vertx);
         HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
         Mockito.when(ctx.response()).thenReturn(resp);
         Mockito.when(ctx.pathParam("targetId")).thenReturn("foo:9091");
@@ -164,4 +189,41 @@ class TargetTemplatesGetHandlerTest {
                                 template2,
                                 TargetTemplatesGetHandler.ALL_EVENTS_TEMPLATE)));
     }
+
+    @Test
+    void shouldRespondOnRequestContextWhenCompletedOnAnotherThread() throws Exception {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Mockito.when(
+                        connectionManager.executeConnectedTaskAsync(
+                                Mockito.any(ConnectionDescriptor.class), Mockito.any()))
+                .thenReturn(future);
+        List<Handler<Void>> scheduled = new CopyOnWriteArrayList<>();
+        Context requestContext = Mockito.mock(Context.class);
+        Mockito.doAnswer(invocation -> scheduled.add(invocation.getArgument(0)))
+                .when(requestContext)
+                .runOnContext(Mockito.any());
+        Mockito.when(vertx.getOrCreateContext()).thenReturn(requestContext);
+
+        RoutingContext ctx = Mockito.mock(RoutingContext.class);
+        Mockito.when(ctx.vertx()).thenReturn(vertx);
+        HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
+        Mockito.when(ctx.pathParam("targetId")).thenReturn("foo:9091");
+        HttpServerRequest req = Mockito.mock(HttpServerRequest.class);
+        Mockito.when(ctx.request()).thenReturn(req);
+        Mockito.when(req.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
+
+        handler.handleAuthenticated(ctx);
+
+        Thread completer = new Thread(() -> future.complete(List.of()));
+        completer.start();
+        completer.join();
+
+        Mockito.verifyNoInteractions(resp);
+        MatcherAssert.assertThat(scheduled, Matchers.hasSize(1));
+
+        Mockito.when(ctx.response()).thenReturn(resp);
+        scheduled.get(0).handle(null);
+
+        Mockito.verify(resp).end("[]");
+    }
 }
@@ -48,8 +48,8 @@ import io.cryostat.core.log.Logger;
 import io.cryostat.core.net.JFRConnectionToolkit;
 import io.cryostat.net.AuthManager;
 import io.cryostat.net.security.ResourceAction;
-import io.cryostat.platform.PlatformClient;
 import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.util.URIUtil;
 
 import com.google.gson.Gson;
@@ -75,14 +75,14 @@ class TargetsGetHandlerTest {
 
     TargetsGetHandler handler;
     @Mock AuthManager auth;
-    @Mock PlatformClient platformClient;
+    @Mock ServiceRefRegistry serviceRefRegistry;
     @Mock Logger logger;
     @Mock JFRConnectionToolkit connectionToolkit;
     Gson gson = MainModule.provideGson(logger);
 
     @BeforeEach
     void setup() {
-        this.handler = new TargetsGetHandler(auth, platformClient, gson);
+        this.handler = new TargetsGetHandler(auth, serviceRefRegistry, gson);
     }
 
     @Test
@@ -122,7 +122,7 @@ class TargetsGetHandlerTest {
                         URIUtil.convert(connectionToolkit.createServiceURL("foo", 1)), "foo");
 
         List<ServiceRef> targets = Collections.singletonList(target);
-        Mockito.when(platformClient.listDiscoverableServices()).thenReturn(targets);
+        Mockito.when(serviceRefRegistry.list()).thenReturn(targets);
 
         RoutingContext ctx = Mockito.mock(RoutingContext.class);
         HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
@@ -0,0 +1,148 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v1;
+
+import java.io.IOException;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class UploadInputStreamTest {
+
+    UploadInputStream stream;
+    @Mock Context context;
+
+    @BeforeEach
+    void setup() {
+        Mockito.lenient()
+                .doAnswer(
+                        invocation -> {
+                            Handler<Void> action = invocation.getArgument(0);
+                            action.handle(null);
+                            return null;
+                        })
+                .when(context)
+                .runOnContext(Mockito.any());
+        this.stream = new UploadInputStream(context);
+    }
+
+    @Test
+    void shouldReadWrittenBuffersInOrder() throws Exception {
+        stream.write(Buffer.buffer("hello "));
+        stream.write(Buffer.buffer("world"));
+        stream.end();
+
+        MatcherAssert.assertThat(
+                new String(stream.readAllBytes()), Matchers.equalTo("hello world"));
+        MatcherAssert.assertThat(stream.getBytesRead(), Matchers.equalTo(11L));
+        MatcherAssert.assertThat(stream.read(), Matchers.equalTo(-1));
+    }
+
+    @Test
+    void shouldCompleteEndHandlerOnceRead() throws Exception {
+        Handler<AsyncResult<Void>> endHandler = Mockito.mock(Handler.class);
+        stream.write(Buffer.buffer("data"));
+        stream.end(endHandler);
+
+        Mockito.verifyNoInteractions(endHandler);
+        stream.readAllBytes();
+
+        ArgumentCaptor<AsyncResult<Void>> resultCaptor = ArgumentCaptor.forClass(AsyncResult.class);
+        Mockito.verify(endHandler).handle(resultCaptor.capture());
+        MatcherAssert.assertThat(resultCaptor.getValue().succeeded(), Matchers.equalTo(true));
+    }
+
+    @Test
+    void shouldFailReaderWhenAborted() throws Exception {
+        stream.write(Buffer.buffer("partial"));
+        stream.abort(new RuntimeException("invalid upload"));
+
+        byte[] buf = new byte[16];
+        MatcherAssert.assertThat(stream.read(buf, 0, buf.length), Matchers.equalTo(7));
+        IOException ex = Assertions.assertThrows(IOException.class, () -> stream.read(buf));
+        MatcherAssert.assertThat(ex.getCause().getMessage(), Matchers.equalTo("invalid upload"));
+    }
+
+    @Test
+    void shouldSignalDrainOnceReaderCatchesUp() throws Exception {
+        Handler<Void> drainHandler = Mockito.mock(Handler.class);
+        stream.setWriteQueueMaxSize(8);
+        stream.write(Buffer.buffer("12345"));
+        MatcherAssert.assertThat(stream.writeQueueFull(), Matchers.equalTo(false));
+        stream.write(Buffer.buffer("67890"));
+        MatcherAssert.assertThat(stream.writeQueueFull(), Matchers.equalTo(true));
+        stream.drainHandler(drainHandler);
+
+        stream.read(new byte[5]);
+        Mockito.verifyNoInteractions(drainHandler);
+        stream.read(new byte[5]);
+        Mockito.verify(drainHandler).handle(null);
+        MatcherAssert.assertThat(stream.writeQueueFull(), Matchers.equalTo(false));
+    }
+
+    @Test
+    void shouldDiscardWritesAfterReaderCloses() throws Exception {
+        Handler<Void> drainHandler = Mockito.mock(Handler.class);
+        Handler<Throwable> exceptionHandler = Mockito.mock(Handler.class);
+        stream.setWriteQueueMaxSize(4);
+        stream.exceptionHandler(exceptionHandler);
+        stream.write(Buffer.buffer("12345"));
+        MatcherAssert.assertThat(stream.writeQueueFull(), Matchers.equalTo(true));
+        stream.drainHandler(drainHandler);
+
+        stream.close();
+
+        Mockito.verify(drainHandler).handle(null);
+        Mockito.verify(exceptionHandler).handle(Mockito.any(IOException.class));
+        stream.write(Buffer.buffer("67890"));
+        MatcherAssert.assertThat(stream.writeQueueFull(), Matchers.equalTo(false));
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v2;
+
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.inject.Provider;
+
+import io.cryostat.MainModule;
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.Clock;
+import io.cryostat.net.AuthManager;
+import io.cryostat.net.security.ResourceAction;
+import io.cryostat.net.web.WebServer;
+import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.ArchiveCatalog;
+import io.cryostat.recordings.RecordingArchiveHelper;
+import io.cryostat.rules.ArchivePathException;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.apache.commons.codec.binary.Base32;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RecordingsGetHandlerTest {
+
+    RecordingsGetHandler handler;
+    @Mock AuthManager auth;
+    @Mock RecordingArchiveHelper recordingArchiveHelper;
+    @Mock Provider<WebServer> webServerProvider;
+    @Mock WebServer webServer;
+    @Mock Clock clock;
+    @Mock Logger logger;
+    Base32 base32 = new Base32();
+    Gson gson = MainModule.provideGson(logger);
+
+    @BeforeEach
+    void setup() {
+        this.handler =
+                new RecordingsGetHandler(
+                        auth, recordingArchiveHelper, webServerProvider, clock, gson, logger);
+    }
+
+    @Nested
+    class BasicHandlerDefinition {
+        @Test
+        void shouldRequireAuthentication() {
+            Assertions.assertTrue(handler.requiresAuthentication());
+        }
+
+        @Test
+        void shouldBeV2Handler() {
+            MatcherAssert.assertThat(handler.apiVersion(), Matchers.equalTo(ApiVersion.V2));
+        }
+
+        @Test
+        void shouldBeGETHandler() {
+            MatcherAssert.assertThat(handler.httpMethod(), Matchers.equalTo(HttpMethod.GET));
+        }
+
+        @Test
+        void shouldHaveExpectedApiPath() {
+            MatcherAssert.assertThat(handler.path(), Matchers.equalTo("/api/v2/recordings"));
+        }
+
+        @Test
+        void shouldHaveExpectedRequiredPermissions() {
+            MatcherAssert.assertThat(
+                    handler.resourceActions(),
+                    Matchers.equalTo(Set.of(ResourceAction.READ_RECORDING)));
+        }
+
+        @Test
+        void shouldHaveJsonMimeType() {
+            MatcherAssert.assertThat(handler.mimeType(), Matchers.equalTo(HttpMimeType.JSON));
+        }
+    }
+
+    @Nested
+    class Requests {
+        @Mock RequestParameters params;
+        MultiMap queryParams;
+        List<ArchiveCatalog.Entry> archive;
+
+        @BeforeEach
+        void setup() {
+            queryParams = MultiMap.caseInsensitiveMultiMap();
+            Mockito.lenient().when(params.getQueryParams()).thenReturn(queryParams);
+            archive = new ArrayList<>();
+            archive.add(entry("targetA", "a.jfr", 300, 1000L, null, null, null));
+            archive.add(entry("targetA", "b.jfr", 100, 2000L, 500L, 1500L, "myRule"));
+            archive.add(entry("targetB", "c.jfr", 200, 3000L, 2500L, 2900L, "myRule"));
+            archive.add(entry("targetB", "d.jfr", 400, 4000L, 3500L, 3900L, null));
+        }
+
+        @SuppressWarnings("unchecked")
+        void emulateCatalog() {
+            // behave as the catalog would, selecting from the entries above
+            Mockito.when(
+                            recordingArchiveHelper.getRecordings(
+                                    Mockito.any(), Mockito.any(), Mockito.anyInt()))
+                    .thenAnswer(
+                            invocation -> {
+                                Predicate<ArchiveCatalog.Entry> filter = invocation.getArgument(0);
+                                Comparator<ArchiveCatalog.Entry> order = invocation.getArgument(1);
+                                int limit = invocation.getArgument(2);
+                                if (order == null) {
+                                    order = Comparator.comparing(ArchiveCatalog.Entry::getName);
+                                }
+                                return CompletableFuture.completedFuture(
+                                        archive.stream()
+                                                .filter(filter)
+                                                .sorted(order)
+                                                .limit(limit)
+                                                .collect(Collectors.toList()));
+                            });
+        }
+
+        List<String> names(IntermediateResponse<RecordingsGetHandler.Page> response) {
+            return response.getBody().entries.stream()
+                    .map(ArchiveCatalog.Entry::getName)
+                    .collect(Collectors.toList());
+        }
+
+        @Test
+        void shouldListAllInNameOrderByDefault() throws Exception {
+            emulateCatalog();
+
+            IntermediateResponse<RecordingsGetHandler.Page> response = handler.handle(params);
+
+            MatcherAssert.assertThat(response.getStatusCode(), Matchers.equalTo(200));
+            MatcherAssert.assertThat(
+                    names(response), Matchers.contains("a.jfr", "b.jfr", "c.jfr", "d.jfr"));
+            MatcherAssert.assertThat(response.getBody().nextCursor, Matchers.nullValue());
+            Mockito.verify(recordingArchiveHelper)
+                    .getRecordings(
+                            Mockito.any(),
+                            Mockito.isNull(),
+                            Mockito.eq(RecordingsGetHandler.DEFAULT_LIMIT + 1));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"service:jmx:rmi:///jndi/rmi://b:9091/jmxrmi", "b:9091"})
+        void shouldFilterByTarget(String target) throws Exception {
+            emulateCatalog();
+            String encodedServiceUri =
+                    base32.encodeAsString(
+                            "service:jmx:rmi:///jndi/rmi://b:9091/jmxrmi"
+                                    .getBytes(StandardCharsets.UTF_8));
+            Mockito.when(recordingArchiveHelper.getSubdirectoryName(target))
+                    .thenReturn(encodedServiceUri);
+            queryParams.set("target", target);
+            archive.add(entry(encodedServiceUri, "e.jfr", 1, 1L, null, null, null));
+
+            MatcherAssert.assertThat(names(handler.handle(params)), Matchers.contains("e.jfr"));
+        }
+
+        @Test
+        void shouldRespond400ForInvalidTarget() throws Exception {
+            Mockito.when(recordingArchiveHelper.getSubdirectoryName("foo:bar:baz"))
+                    .thenThrow(new MalformedURLException("foo:bar:baz"));
+            queryParams.set("target", "foo:bar:baz");
+
+            ApiException ex =
+                    Assertions.assertThrows(ApiException.class, () -> handler.handle(params));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        }
+
+        @Test
+        void shouldFilterByRuleNameAndSize() throws Exception {
+            emulateCatalog();
+            queryParams.set("rule", "myRule");
+            queryParams.set("minSize", "150");
+
+            MatcherAssert.assertThat(names(handler.handle(params)), Matchers.contains("c.jfr"));
+
+            queryParams.remove("rule");
+            queryParams.set("maxSize", "350");
+            queryParams.set("name", "A.JFR");
+
+            MatcherAssert.assertThat(names(handler.handle(params)), Matchers.contains("a.jfr"));
+        }
+
+        @Test
+        void shouldFilterByOverlappingTimeRange() throws Exception {
+            emulateCatalog();
+            queryParams.set("since", "1200");
+            queryParams.set("until", "2600");
+
+            // a.jfr has no known data range, so is placed at its archive time
+            MatcherAssert.assertThat(
+                    names(handler.handle(params)), Matchers.contains("b.jfr", "c.jfr"));
+        }
+
+        @Test
+        void shouldSortDescendingBySize() throws Exception {
+            emulateCatalog();
+            queryParams.set("sort", "size");
+            queryParams.set("order", "desc");
+
+            MatcherAssert.assertThat(
+                    names(handler.handle(params)),
+                    Matchers.contains("d.jfr", "a.jfr", "c.jfr", "b.jfr"));
+        }
+
+        @Test
+        void shouldPageWithCursor() throws Exception {
+            emulateCatalog();
+            queryParams.set("sort", "archivedTime");
+            queryParams.set("order", "desc");
+            queryParams.set("limit", "3");
+
+            IntermediateResponse<RecordingsGetHandler.Page> first = handler.handle(params);
+            MatcherAssert.assertThat(names(first), Matchers.contains("d.jfr", "c.jfr", "b.jfr"));
+            MatcherAssert.assertThat(first.getBody().nextCursor, Matchers.notNullValue());
+
+            queryParams.set("cursor", first.getBody().nextCursor);
+            IntermediateResponse<RecordingsGetHandler.Page> second = handler.handle(params);
+            MatcherAssert.assertThat(names(second), Matchers.contains("a.jfr"));
+            MatcherAssert.assertThat(second.getBody().nextCursor, Matchers.nullValue());
+        }
+
+        @Test
+        void shouldRejectCursorFromOtherSortOrder() throws Exception {
+            emulateCatalog();
+            queryParams.set("limit", "1");
+            String cursor = handler.handle(params).getBody().nextCursor;
+
+            queryParams.set("sort", "size");
+            queryParams.set("cursor", cursor);
+
+            ApiException ex =
+                    Assertions.assertThrows(ApiException.class, () -> handler.handle(params));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        }
+
+        @ParameterizedTest
+        @ValueSource(
+                strings = {
+                    "sort=unknown",
+                    "order=sideways",
+                    "limit=0",
+                    "limit=100000",
+                    "limit=abc",
+                    "minSize=-1",
+                    "cursor=bm90LWpzb24",
+                    "lastSeconds=0",
+                })
+        void shouldRespond400ForInvalidParams(String param) throws Exception {
+            String[] kv = param.split("=", 2);
+            queryParams.set(kv[0], kv[1]);
+
+            ApiException ex =
+                    Assertions.assertThrows(ApiException.class, () -> handler.handle(params));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        }
+
+        @Test
+        void shouldRespond501IfArchiveUnavailable() throws Exception {
+            CompletableFuture<List<ArchiveCatalog.Entry>> future = new CompletableFuture<>();
+            future.completeExceptionally(new ArchivePathException("/archive", "does not exist"));
+            Mockito.when(
+                            recordingArchiveHelper.getRecordings(
+                                    Mockito.any(), Mockito.any(), Mockito.anyInt()))
+                    .thenReturn(future);
+
+            ApiException ex =
+                    Assertions.assertThrows(ApiException.class, () -> handler.handle(params));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(501));
+        }
+    }
+
+    @Test
+    void shouldStreamResponse() throws Exception {
+        Mockito.when(webServerProvider.get()).thenReturn(webServer);
+        Mockito.when(webServer.getArchivedDownloadURL(Mockito.anyString()))
+                .thenAnswer(invocation -> "/download/" + invocation.getArgument(0));
+        Mockito.when(webServer.getArchivedReportURL(Mockito.anyString()))
+                .thenAnswer(invocation -> "/report/" + invocation.getArgument(0));
+        RoutingContext ctx = Mockito.mock(RoutingContext.class);
+        HttpServerResponse resp = Mockito.mock(HttpServerResponse.class);
+        Mockito.when(ctx.response()).thenReturn(resp);
+
+        ArchiveCatalog.Entry entry = entry("targetA", "a.jfr", 300, 1000L, 10L, 20L, "myRule");
+        handler.writeResponse(
+                ctx,
+                new IntermediateResponse<RecordingsGetHandler.Page>()
+                        .body(new RecordingsGetHandler.Page(List.of(entry), "next")));
+
+        Mockito.verify(resp).setChunked(true);
+        ArgumentCaptor<String> chunks = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(resp, Mockito.atLeastOnce()).write(chunks.capture());
+        Mockito.verify(resp).end();
+        JsonObject body = gson.fromJson(String.join("", chunks.getAllValues()), JsonObject.class);
+
+        MatcherAssert.assertThat(
+                body.getAsJsonObject("meta").get("status").getAsString(), Matchers.equalTo("OK"));
+        JsonObject result = body.getAsJsonObject("data").getAsJsonObject("result");
+        MatcherAssert.assertThat(result.get("nextCursor").getAsString(), Matchers.equalTo("next"));
+        JsonObject recording = result.getAsJsonArray("recordings").get(0).getAsJsonObject();
+        MatcherAssert.assertThat(
+                gson.fromJson(recording, Map.class),
+                Matchers.equalTo(
+                        Map.of(
+                                "name", "a.jfr",
+                                "encodedServiceUri", "targetA",
+                                "downloadUrl", "/download/a.jfr",
+                                "reportUrl", "/report/a.jfr",
+                                "size", 300.0,
+                                "archivedTime", 1000.0,
+                                "startTime", 10.0,
+                                "endTime", 20.0,
+                                "rule", "myRule")));
+    }
+
+    static ArchiveCatalog.Entry entry(
+            String subdirectory,
+            String name,
+            long size,
+            Long archivedTime,
+            Long start,
+            Long end,
+            String rule) {
+        ArchiveCatalog.Entry entry =
+                Mockito.mock(ArchiveCatalog.Entry.class, Mockito.withSettings().lenient());
+        Mockito.when(entry.getSubdirectory()).thenReturn(subdirectory);
+        Mockito.when(entry.getName()).thenReturn(name);
+        Mockito.when(entry.getSize()).thenReturn(size);
+        Mockito.when(entry.getArchivedTime()).thenReturn(archivedTime);
+        Mockito.when(entry.getDataStartTime()).thenReturn(start);
+        Mockito.when(entry.getDataEndTime()).thenReturn(end);
+        Mockito.when(entry.getRule()).thenReturn(rule);
+        return entry;
+    }
+}
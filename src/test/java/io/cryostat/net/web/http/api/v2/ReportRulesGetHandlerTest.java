@@ -0,0 +1,244 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v2;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import io.cryostat.net.AuthManager;
+import io.cryostat.net.reports.ReportService;
+import io.cryostat.net.reports.SubprocessReportGenerator;
+import io.cryostat.net.security.ResourceAction;
+import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.RecordingNotFoundException;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ReportRulesGetHandlerTest {
+
+    ReportRulesGetHandler handler;
+    @Mock AuthManager authManager;
+    @Mock ReportService reportService;
+
+    @Mock RoutingContext ctx;
+    @Mock HttpServerRequest req;
+    @Mock HttpServerResponse resp;
+    MultiMap queryParams;
+
+    @BeforeEach
+    void setup() {
+        this.handler = new ReportRulesGetHandler(authManager, reportService, 30);
+        this.queryParams = MultiMap.caseInsensitiveMultiMap();
+    }
+
+    @Test
+    void shouldHandleGETRequest() {
+        MatcherAssert.assertThat(handler.httpMethod(), Matchers.equalTo(HttpMethod.GET));
+    }
+
+    @Test
+    void shouldBeV2Handler() {
+        MatcherAssert.assertThat(handler.apiVersion(), Matchers.equalTo(ApiVersion.V2));
+    }
+
+    @Test
+    void shouldHandleCorrectPath() {
+        MatcherAssert.assertThat(
+                handler.path(), Matchers.equalTo("/api/v2/reports/:recordingName/rules"));
+    }
+
+    @Test
+    void shouldHaveExpectedRequiredPermissions() {
+        MatcherAssert.assertThat(
+                handler.resourceActions(),
+                Matchers.equalTo(
+                        Set.of(
+                                ResourceAction.READ_RECORDING,
+                                ResourceAction.CREATE_REPORT,
+                                ResourceAction.READ_REPORT)));
+    }
+
+    @Test
+    void shouldNotBeAsync() {
+        Assertions.assertFalse(handler.isAsync());
+    }
+
+    @Test
+    void shouldStreamRuleResults() throws Exception {
+        mockRequest();
+        when(reportService.getRuleResults(Mockito.eq("foo"), Mockito.eq(Set.of()), Mockito.any()))
+                .thenAnswer(
+                        invocation -> {
+                            Consumer<String> onResult = invocation.getArgument(2);
+                            onResult.accept("{\"id\":\"A\"}");
+                            onResult.accept("{\"id\":\"B\"}");
+                            return CompletableFuture.completedFuture(null);
+                        });
+
+        handler.handle(ctx);
+
+        InOrder inOrder = Mockito.inOrder(resp);
+        inOrder.verify(resp).setChunked(true);
+        inOrder.verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.NDJSON.mime());
+        inOrder.verify(resp).write("{\"id\":\"A\"}\n");
+        inOrder.verify(resp).write("{\"id\":\"B\"}\n");
+        inOrder.verify(resp).end();
+    }
+
+    @Test
+    void shouldPassRequestedRuleIds() throws Exception {
+        mockRequest();
+        queryParams.add("rules", "GcPauseRatio,HeapDump");
+        queryParams.add("rules", " Exceptions ");
+        when(reportService.getRuleResults(
+                        Mockito.eq("foo"),
+                        Mockito.eq(Set.of("GcPauseRatio", "HeapDump", "Exceptions")),
+                        Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        handler.handle(ctx);
+
+        verify(resp).end();
+    }
+
+    @Test
+    void shouldResetResponseIfEvaluationFailsAfterFirstResult() throws Exception {
+        mockRequest();
+        when(reportService.getRuleResults(Mockito.anyString(), Mockito.any(), Mockito.any()))
+                .thenAnswer(
+                        invocation -> {
+                            Consumer<String> onResult = invocation.getArgument(2);
+                            onResult.accept("{\"id\":\"A\"}");
+                            return CompletableFuture.failedFuture(
+                                    new SubprocessReportGenerator
+                                            .SubprocessReportGenerationException(
+                                            SubprocessReportGenerator.ExitStatus.TIMED_OUT));
+                        });
+
+        handler.handle(ctx);
+
+        verify(resp).reset();
+        verify(resp, Mockito.never()).end();
+    }
+
+    @Test
+    void shouldRespond404IfRecordingNotFound() throws Exception {
+        mockRequest();
+        mockResults(
+                CompletableFuture.failedFuture(new RecordingNotFoundException("archives", "foo")));
+
+        HttpStatusException ex =
+                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(404));
+    }
+
+    @Test
+    void shouldRespond501IfGeneratorDoesNotSupportRules() throws Exception {
+        mockRequest();
+        mockResults(
+                CompletableFuture.failedFuture(
+                        new UnsupportedOperationException("rule results unsupported")));
+
+        HttpStatusException ex =
+                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(501));
+    }
+
+    @Test
+    void shouldRespond404IfRecordingNotFoundByGenerator() throws Exception {
+        mockRequest();
+        mockResults(
+                CompletableFuture.failedFuture(
+                        new SubprocessReportGenerator.SubprocessReportGenerationException(
+                                SubprocessReportGenerator.ExitStatus.NO_SUCH_RECORDING)));
+
+        HttpStatusException ex =
+                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(404));
+    }
+
+    @Test
+    void shouldRespond500OnOtherFailures() throws Exception {
+        mockRequest();
+        mockResults(
+                CompletableFuture.failedFuture(
+                        new SubprocessReportGenerator.SubprocessReportGenerationException(
+                                SubprocessReportGenerator.ExitStatus.OUT_OF_MEMORY)));
+
+        HttpStatusException ex =
+                Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(500));
+    }
+
+    private void mockRequest() {
+        when(authManager.validateHttpHeader(Mockito.any(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(ctx.request()).thenReturn(req);
+        when(ctx.response()).thenReturn(resp);
+        when(ctx.queryParams()).thenReturn(queryParams);
+        when(ctx.pathParam("recordingName")).thenReturn("foo");
+    }
+
+    private void mockResults(Future<Void> results) {
+        when(reportService.getRuleResults(Mockito.anyString(), Mockito.any(), Mockito.any()))
+                .thenReturn(results);
+    }
+}
@@ -56,8 +56,8 @@ import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.api.ApiVersion;
-import io.cryostat.platform.PlatformClient;
 import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.rules.Rule;
 import io.cryostat.rules.RuleRegistry;
 
@@ -82,7 +82,7 @@ class RuleDeleteHandlerTest {
     @Mock AuthManager auth;
     @Mock RuleRegistry registry;
     @Mock TargetConnectionManager targetConnectionManager;
-    @Mock PlatformClient platformClient;
+    @Mock ServiceRefRegistry serviceRefRegistry;
     @Mock CredentialsManager credentialsManager;
     @Mock Logger logger;
     Gson gson = MainModule.provideGson(logger);
@@ -94,7 +94,7 @@ class RuleDeleteHandlerTest {
                         auth,
                         registry,
                         targetConnectionManager,
-                        platformClient,
+                        serviceRefRegistry,
                         credentialsManager,
                         gson,
                         logger);
@@ -198,7 +198,7 @@ class RuleDeleteHandlerTest {
                     new ServiceRef(
                             new URI("service:jmx:rmi:///jndi/rmi://cryostat:9091/jmxrmi"),
                             "io.cryostat.Cryostat");
-            Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of(serviceRef));
+            Mockito.when(serviceRefRegistry.list()).thenReturn(List.of(serviceRef));
 
             FlightRecorderException exception =
                     new FlightRecorderException(new Exception("test message"));
@@ -240,7 +240,7 @@ class RuleDeleteHandlerTest {
                     new ServiceRef(
                             new URI("service:jmx:rmi:///jndi/rmi://cryostat:9091/jmxrmi"),
                             "io.cryostat.Cryostat");
-            Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of(serviceRef));
+            Mockito.when(serviceRefRegistry.list()).thenReturn(List.of(serviceRef));
 
             JFRConnection connection = Mockito.mock(JFRConnection.class);
             Mockito.when(targetConnectionManager.executeConnectedTask(Mockito.any(), Mockito.any()))
@@ -281,7 +281,7 @@ class RuleDeleteHandlerTest {
                     new ServiceRef(
                             new URI("service:jmx:rmi:///jndi/rmi://cryostat:9091/jmxrmi"),
                             "io.cryostat.Cryostat");
-            Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of(serviceRef));
+            Mockito.when(serviceRefRegistry.list()).thenReturn(List.of(serviceRef));
 
             JFRConnection connection = Mockito.mock(JFRConnection.class);
             Mockito.when(targetConnectionManager.executeConnectedTask(Mockito.any(), Mockito.any()))
@@ -327,7 +327,7 @@ class RuleDeleteHandlerTest {
                     new ServiceRef(
                             new URI("service:jmx:rmi:///jndi/rmi://cryostat:9091/jmxrmi"),
                             "io.cryostat.Cryostat");
-            Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of(serviceRef));
+            Mockito.when(serviceRefRegistry.list()).thenReturn(List.of(serviceRef));
 
             JFRConnection connection = Mockito.mock(JFRConnection.class);
             Mockito.when(targetConnectionManager.executeConnectedTask(Mockito.any(), Mockito.any()))
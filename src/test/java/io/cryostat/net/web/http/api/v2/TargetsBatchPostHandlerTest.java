@@ -0,0 +1,345 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.net.web.http.api.v2;
+
+import java.net.UnknownHostException;
+import java.rmi.ConnectIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.inject.Provider;
+
+import org.openjdk.jmc.rjmx.ConnectionException;
+
+import io.cryostat.MainModule;
+import io.cryostat.configuration.CredentialsManager;
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.templates.Template;
+import io.cryostat.core.templates.TemplateService;
+import io.cryostat.net.AuthManager;
+import io.cryostat.net.ConnectionDescriptor;
+import io.cryostat.net.TargetConnectionManager;
+import io.cryostat.net.TargetTaskExecutor;
+import io.cryostat.net.security.ResourceAction;
+import io.cryostat.net.web.WebServer;
+import io.cryostat.net.web.http.HttpMimeType;
+import io.cryostat.net.web.http.api.ApiVersion;
+import io.cryostat.recordings.RecordingOptionsBuilderFactory;
+import io.cryostat.recordings.RecordingTargetHelper;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TargetsBatchPostHandlerTest {
+
+    TargetsBatchPostHandler handler;
+    @Mock AuthManager auth;
+    @Mock TargetConnectionManager connectionManager;
+    @Mock TargetTaskExecutor taskExecutor;
+    @Mock CredentialsManager credentialsManager;
+    @Mock RecordingTargetHelper recordingTargetHelper;
+    @Mock RecordingOptionsBuilderFactory recordingOptionsBuilderFactory;
+    @Mock WebServer webServer;
+    @Mock Logger logger;
+    Gson gson = MainModule.provideGson(logger);
+
+    @BeforeEach
+    void setup() {
+        Provider<WebServer> webServerProvider = () -> webServer;
+        this.handler =
+                new TargetsBatchPostHandler(
+                        auth,
+                        connectionManager,
+                        taskExecutor,
+                        credentialsManager,
+                        recordingTargetHelper,
+                        recordingOptionsBuilderFactory,
+                        webServerProvider,
+                        1,
+                        gson);
+    }
+
+    @Test
+    void shouldBeV2Handler() {
+        MatcherAssert.assertThat(handler.apiVersion(), Matchers.equalTo(ApiVersion.V2));
+    }
+
+    @Test
+    void shouldHandlePOST() {
+        MatcherAssert.assertThat(handler.httpMethod(), Matchers.equalTo(HttpMethod.POST));
+    }
+
+    @Test
+    void shouldHandleCorrectPath() {
+        MatcherAssert.assertThat(handler.path(), Matchers.equalTo("/api/v2/targets/batch"));
+    }
+
+    @Test
+    void shouldHaveExpectedRequiredPermissions() {
+        MatcherAssert.assertThat(
+                handler.resourceActions(), Matchers.equalTo(Set.of(ResourceAction.READ_TARGET)));
+    }
+
+    @Nested
+    class Requests {
+
+        @Mock RoutingContext ctx;
+        @Mock HttpServerRequest req;
+        @Mock HttpServerResponse resp;
+        @Mock Vertx vertx;
+        @Mock Context context;
+        List<Handler<Void>> scheduled = new CopyOnWriteArrayList<>();
+
+        @BeforeEach
+        void setup() {
+            Mockito.when(auth.validateHttpHeader(Mockito.any(), Mockito.any()))
+                    .thenReturn(CompletableFuture.completedFuture(true));
+            Mockito.when(ctx.request()).thenReturn(req);
+            Mockito.lenient().when(ctx.response()).thenReturn(resp);
+            Mockito.lenient().when(ctx.vertx()).thenReturn(vertx);
+            Mockito.lenient().when(vertx.getOrCreateContext()).thenReturn(context);
+            Mockito.lenient()
+                    .doAnswer(
+                            invocation -> {
+                                Handler<Void> action = invocation.getArgument(0);
+                                action.handle(null);
+                                return null;
+                            })
+                    .when(context)
+                    .runOnContext(Mockito.any());
+        }
+
+        @Test
+        void shouldRespond400WhenBodyIsMalformed() {
+            Mockito.when(ctx.getBodyAsString()).thenReturn("{not json");
+
+            HttpStatusException ex =
+                    Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        }
+
+        @Test
+        void shouldRespond400WhenTargetsAreMissing() {
+            Mockito.when(ctx.getBodyAsString()).thenReturn("{\"operation\":\"recordings\"}");
+
+            HttpStatusException ex =
+                    Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        }
+
+        @Test
+        void shouldRespond400WhenStartIsMissingEvents() {
+            Mockito.when(ctx.getBodyAsString())
+                    .thenReturn(
+                            "{\"operation\":\"start\",\"targetIds\":[\"foo\"],"
+                                    + "\"recordingName\":\"bar\"}");
+
+            HttpStatusException ex =
+                    Assertions.assertThrows(HttpStatusException.class, () -> handler.handle(ctx));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        }
+
+        @Test
+        void shouldStreamOneResultPerTarget() throws Exception {
+            Mockito.when(ctx.getBodyAsString())
+                    .thenReturn("{\"operation\":\"templates\",\"targetIds\":[\"foo\",\"bar\"]}");
+            Mockito.when(taskExecutor.submit(Mockito.anyString(), Mockito.any()))
+                    .thenAnswer(
+                            invocation -> {
+                                Callable<?> task = invocation.getArgument(1);
+                                try {
+                                    return CompletableFuture.completedFuture(task.call());
+                                } catch (Exception e) {
+                                    return CompletableFuture.failedFuture(e);
+                                }
+                            });
+
+            JFRConnection connection = Mockito.mock(JFRConnection.class);
+            TemplateService templateService = Mockito.mock(TemplateService.class);
+            Mockito.when(connection.getTemplateService()).thenReturn(templateService);
+            Mockito.when(templateService.getTemplates()).thenReturn(List.<Template>of());
+            Mockito.when(
+                            connectionManager.executeConnectedTask(
+                                    Mockito.any(ConnectionDescriptor.class), Mockito.any()))
+                    .thenAnswer(
+                            invocation -> {
+                                ConnectionDescriptor cd = invocation.getArgument(0);
+                                if ("bar".equals(cd.getTargetId())) {
+                                    throw new ConnectionException("bar is unreachable");
+                                }
+                                TargetConnectionManager.ConnectedTask<?> task =
+                                        invocation.getArgument(1);
+                                return task.execute(connection);
+                            });
+
+            handler.handle(ctx);
+
+            Mockito.verify(resp).setChunked(true);
+            Mockito.verify(resp).putHeader(HttpHeaders.CONTENT_TYPE, HttpMimeType.NDJSON.mime());
+            ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+            Mockito.verify(resp, Mockito.times(2)).write(lines.capture());
+            Mockito.verify(resp).end();
+
+            List<Map<String, Object>> results =
+                    List.of(
+                            gson.fromJson(
+                                    lines.getAllValues().get(0),
+                                    new TypeToken<Map<String, Object>>() {}.getType()),
+                            gson.fromJson(
+                                    lines.getAllValues().get(1),
+                                    new TypeToken<Map<String, Object>>() {}.getType()));
+            MatcherAssert.assertThat(results.get(0).get("targetId"), Matchers.equalTo("foo"));
+            MatcherAssert.assertThat(results.get(0).get("status"), Matchers.equalTo(200.0));
+            MatcherAssert.assertThat(results.get(0).get("data"), Matchers.equalTo(List.of()));
+            MatcherAssert.assertThat(results.get(1).get("targetId"), Matchers.equalTo("bar"));
+            MatcherAssert.assertThat(results.get(1).get("status"), Matchers.equalTo(500.0));
+            MatcherAssert.assertThat(
+                    (String) results.get(1).get("error"),
+                    Matchers.containsString("bar is unreachable"));
+        }
+
+        @Test
+        void shouldWriteResultsOnRequestContextWhenCompletedOnAnotherThread() throws Exception {
+            Mockito.when(ctx.getBodyAsString())
+                    .thenReturn("{\"operation\":\"templates\",\"targetIds\":[\"foo\",\"bar\"]}");
+            CompletableFuture<Object> foo = new CompletableFuture<>();
+            CompletableFuture<Object> bar = new CompletableFuture<>();
+            Mockito.when(taskExecutor.submit(Mockito.eq("foo"), Mockito.any())).thenReturn(foo);
+            Mockito.when(taskExecutor.submit(Mockito.eq("bar"), Mockito.any())).thenReturn(bar);
+            Mockito.doAnswer(invocation -> scheduled.add(invocation.getArgument(0)))
+                    .when(context)
+                    .runOnContext(Mockito.any());
+
+            handler.handle(ctx);
+
+            Thread completer = new Thread(() -> foo.complete(List.of()));
+            completer.start();
+            completer.join();
+
+            Mockito.verify(resp, Mockito.never()).write(Mockito.anyString());
+            Mockito.verify(taskExecutor, Mockito.never()).submit(Mockito.eq("bar"), Mockito.any());
+            MatcherAssert.assertThat(scheduled, Matchers.hasSize(1));
+
+            scheduled.get(0).handle(null);
+
+            Mockito.verify(resp).write(Mockito.anyString());
+            Mockito.verify(taskExecutor).submit(Mockito.eq("bar"), Mockito.any());
+            Mockito.verify(resp, Mockito.never()).end();
+        }
+
+        @Test
+        void shouldStopWritingOnceClientCloses() throws Exception {
+            Mockito.when(ctx.getBodyAsString())
+                    .thenReturn("{\"operation\":\"templates\",\"targetIds\":[\"foo\"]}");
+            CompletableFuture<Object> foo = new CompletableFuture<>();
+            Mockito.when(taskExecutor.submit(Mockito.eq("foo"), Mockito.any())).thenReturn(foo);
+
+            handler.handle(ctx);
+
+            ArgumentCaptor<Handler<Void>> closeHandler = ArgumentCaptor.forClass(Handler.class);
+            Mockito.verify(resp).closeHandler(closeHandler.capture());
+            closeHandler.getValue().handle(null);
+            foo.complete(List.of());
+
+            Mockito.verify(resp, Mockito.never()).write(Mockito.anyString());
+            Mockito.verify(resp, Mockito.never()).end();
+        }
+    }
+
+    @Test
+    void shouldMapConnectionFailuresToStatusCodes() {
+        MatcherAssert.assertThat(
+                TargetsBatchPostHandler.statusOf(new IllegalArgumentException()),
+                Matchers.equalTo(400));
+        MatcherAssert.assertThat(
+                TargetsBatchPostHandler.statusOf(
+                        new CompletionException(new HttpStatusException(404))),
+                Matchers.equalTo(404));
+
+        ConnectionException authFailure = new ConnectionException("auth");
+        authFailure.initCause(new SecurityException());
+        MatcherAssert.assertThat(
+                TargetsBatchPostHandler.statusOf(authFailure), Matchers.equalTo(427));
+
+        ConnectionException unreachable = new ConnectionException("unreachable");
+        unreachable.initCause(new ConnectIOException("refused"));
+        MatcherAssert.assertThat(
+                TargetsBatchPostHandler.statusOf(unreachable), Matchers.equalTo(502));
+
+        ConnectionException unknownHost = new ConnectionException("unknown");
+        unknownHost.initCause(new UnknownHostException("foo"));
+        MatcherAssert.assertThat(
+                TargetsBatchPostHandler.statusOf(unknownHost), Matchers.equalTo(404));
+
+        MatcherAssert.assertThat(
+                TargetsBatchPostHandler.statusOf(
+                        new CompletionException(new RejectedExecutionException())),
+                Matchers.equalTo(503));
+
+        MatcherAssert.assertThat(
+                TargetsBatchPostHandler.statusOf(new RuntimeException()), Matchers.equalTo(500));
+    }
+}
@@ -39,7 +39,6 @@ package io.cryostat.net.web.http.api.v2;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -50,9 +49,9 @@ import io.cryostat.net.AuthManager;
 import io.cryostat.net.security.ResourceAction;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.net.web.http.api.ApiVersion;
-import io.cryostat.platform.PlatformClient;
 import io.cryostat.platform.ServiceRef;
 import io.cryostat.platform.ServiceRef.AnnotationKey;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.platform.internal.CustomTargetPlatformClient;
 
 import com.google.gson.Gson;
@@ -77,7 +76,7 @@ class TargetsPostHandlerTest {
 
     TargetsPostHandler handler;
     @Mock AuthManager auth;
-    @Mock PlatformClient platformClient;
+    @Mock ServiceRefRegistry serviceRefRegistry;
     @Mock CustomTargetPlatformClient customTargetPlatformClient;
     @Mock Logger logger;
     Gson gson = MainModule.provideGson(logger);
@@ -85,7 +84,7 @@ class TargetsPostHandlerTest {
     @BeforeEach
     void setup() {
         this.handler =
-                new TargetsPostHandler(auth, gson, platformClient, customTargetPlatformClient);
+                new TargetsPostHandler(auth, gson, serviceRefRegistry, customTargetPlatformClient);
     }
 
     @Test
@@ -135,7 +134,7 @@ class TargetsPostHandlerTest {
         RequestParameters requestParameters = Mockito.mock(RequestParameters.class);
         Mockito.when(requestParameters.getFormAttributes()).thenReturn(attrs);
         Mockito.when(customTargetPlatformClient.addTarget(Mockito.any())).thenReturn(true);
-        Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of());
+        Mockito.when(serviceRefRegistry.get(Mockito.any())).thenReturn(Optional.empty());
 
         String connectUrl = "service:jmx:rmi:///jndi/rmi://cryostat:9099/jmxrmi";
         String alias = "TestTarget";
@@ -198,6 +197,25 @@ class TargetsPostHandlerTest {
         MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
     }
 
+    @Test
+    void testRequestWithAlreadyDiscoveredTarget() throws Exception {
+        MultiMap attrs = MultiMap.caseInsensitiveMultiMap();
+        RequestParameters params = Mockito.mock(RequestParameters.class);
+        Mockito.when(params.getFormAttributes()).thenReturn(attrs);
+        String connectUrl = "service:jmx:rmi:///jndi/rmi://cryostat:9099/jmxrmi";
+
+        attrs.set("connectUrl", connectUrl);
+        attrs.set("alias", "TestTarget");
+
+        ServiceRef discovered = new ServiceRef(new URI(connectUrl), "DiscoveredTarget");
+        Mockito.when(serviceRefRegistry.get(new URI(connectUrl)))
+                .thenReturn(Optional.of(discovered));
+
+        ApiException ex = Assertions.assertThrows(ApiException.class, () -> handler.handle(params));
+        MatcherAssert.assertThat(ex.getStatusCode(), Matchers.equalTo(400));
+        Mockito.verifyNoInteractions(customTargetPlatformClient);
+    }
+
     @Test
     void testRequestWithAdditionalAnnotations() throws Exception {
         MultiMap attrs = MultiMap.caseInsensitiveMultiMap();
@@ -0,0 +1,181 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.platform;
+
+import java.net.URI;
+import java.util.List;
+
+import io.cryostat.core.net.discovery.JvmDiscoveryClient.EventKind;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ServiceRefRegistryTest {
+
+    ServiceRefRegistry registry;
+    @Mock PlatformClient platformClient;
+
+    ServiceRef fooRef;
+    ServiceRef barRef;
+
+    @BeforeEach
+    void setup() throws Exception {
+        this.registry = new ServiceRefRegistry(platformClient);
+        this.fooRef =
+                new ServiceRef(
+                        new URI("service:jmx:rmi:///jndi/rmi://foo:9091/jmxrmi"),
+                        "com.example.Foo");
+        this.barRef =
+                new ServiceRef(
+                        new URI("service:jmx:rmi:///jndi/rmi://bar:9091/jmxrmi"),
+                        "com.example.Bar");
+    }
+
+    @Test
+    void shouldListenForDiscoveryEvents() {
+        Mockito.verify(platformClient).addTargetDiscoveryListener(registry);
+    }
+
+    @Test
+    void shouldSeedFromPlatformClientOnStart() {
+        Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of(fooRef, barRef));
+
+        registry.start();
+
+        MatcherAssert.assertThat(registry.list(), Matchers.containsInAnyOrder(fooRef, barRef));
+        MatcherAssert.assertThat(
+                registry.get(fooRef.getServiceUri()).get(), Matchers.sameInstance(fooRef));
+    }
+
+    @Test
+    void shouldNotReplaceDiscoveredTargetsWhenSeeding() throws Exception {
+        ServiceRef updated = new ServiceRef(fooRef.getServiceUri(), "com.example.Updated");
+        registry.accept(new TargetDiscoveryEvent(EventKind.FOUND, updated));
+        Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of(fooRef));
+
+        registry.start();
+
+        MatcherAssert.assertThat(
+                registry.get(fooRef.getServiceUri()).get(), Matchers.sameInstance(updated));
+    }
+
+    @Test
+    void shouldIndexFoundTargets() {
+        registry.accept(new TargetDiscoveryEvent(EventKind.FOUND, fooRef));
+
+        MatcherAssert.assertThat(registry.list(), Matchers.contains(fooRef));
+        MatcherAssert.assertThat(
+                registry.get(fooRef.getServiceUri()).isPresent(), Matchers.is(true));
+        MatcherAssert.assertThat(
+                registry.get(barRef.getServiceUri()).isPresent(), Matchers.is(false));
+        Mockito.verify(platformClient, Mockito.never()).listDiscoverableServices();
+    }
+
+    @Test
+    void shouldRemoveLostTargets() {
+        registry.accept(new TargetDiscoveryEvent(EventKind.FOUND, fooRef));
+        registry.accept(new TargetDiscoveryEvent(EventKind.FOUND, barRef));
+
+        registry.accept(new TargetDiscoveryEvent(EventKind.LOST, fooRef));
+
+        MatcherAssert.assertThat(registry.list(), Matchers.contains(barRef));
+        MatcherAssert.assertThat(
+                registry.get(fooRef.getServiceUri()).isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldReplaceTargetWhenFoundAgain() {
+        ServiceRef renamed = new ServiceRef(fooRef.getServiceUri(), "com.example.Renamed");
+        registry.accept(new TargetDiscoveryEvent(EventKind.FOUND, fooRef));
+
+        registry.accept(new TargetDiscoveryEvent(EventKind.FOUND, renamed));
+
+        MatcherAssert.assertThat(registry.list(), Matchers.contains(renamed));
+        MatcherAssert.assertThat(
+                registry.get(fooRef.getServiceUri()).get(), Matchers.sameInstance(renamed));
+    }
+
+    @Test
+    void shouldNotSeedTargetsLostWhileListing() {
+        Mockito.when(platformClient.listDiscoverableServices())
+                .thenAnswer(
+                        invocation -> {
+                            registry.accept(new TargetDiscoveryEvent(EventKind.LOST, fooRef));
+                            return List.of(fooRef, barRef);
+                        });
+
+        registry.start();
+
+        MatcherAssert.assertThat(registry.list(), Matchers.contains(barRef));
+        MatcherAssert.assertThat(
+                registry.get(fooRef.getServiceUri()).isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldNotReplaceTargetsFoundWhileListing() {
+        ServiceRef updated = new ServiceRef(fooRef.getServiceUri(), "com.example.Updated");
+        Mockito.when(platformClient.listDiscoverableServices())
+                .thenAnswer(
+                        invocation -> {
+                            registry.accept(new TargetDiscoveryEvent(EventKind.FOUND, updated));
+                            return List.of(fooRef);
+                        });
+
+        registry.start();
+
+        MatcherAssert.assertThat(registry.list(), Matchers.contains(updated));
+    }
+
+    @Test
+    void shouldApplyEventsAfterSeeding() {
+        Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of(fooRef));
+        registry.start();
+
+        registry.accept(new TargetDiscoveryEvent(EventKind.LOST, fooRef));
+        registry.accept(new TargetDiscoveryEvent(EventKind.FOUND, fooRef));
+
+        MatcherAssert.assertThat(registry.list(), Matchers.contains(fooRef));
+    }
+}
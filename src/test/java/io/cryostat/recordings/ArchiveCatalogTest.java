@@ -0,0 +1,349 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.FileSystem;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveCatalogTest {
+
+    ArchiveCatalog catalog;
+    @Mock FileSystem fs;
+    @Mock ScheduledExecutorService executor;
+    @Mock Logger logger;
+    Gson gson = new GsonBuilder().create();
+
+    @TempDir Path archivePath;
+
+    @BeforeEach
+    void setup() throws Exception {
+        Mockito.lenient()
+                .when(fs.listDirectoryChildren(Mockito.any(Path.class)))
+                .thenAnswer(
+                        invocation -> {
+                            try (Stream<Path> children = Files.list(invocation.getArgument(0))) {
+                                return children.map(p -> p.getFileName().toString())
+                                        .collect(Collectors.toList());
+                            }
+                        });
+        this.catalog =
+                new ArchiveCatalog(
+                        fs,
+                        new LocalArchiveStorage(fs, archivePath, ArchiveCompression.NONE),
+                        gson,
+                        executor,
+                        logger);
+    }
+
+    @Test
+    void shouldIndexArchiveOnFirstAccess() throws Exception {
+        write("targetA", "foo.jfr", 3);
+        write("targetB", "bar.jfr", 5);
+
+        List<ArchiveCatalog.Entry> entries = catalog.list();
+
+        MatcherAssert.assertThat(
+                entries.stream().map(ArchiveCatalog.Entry::getName).collect(Collectors.toList()),
+                Matchers.contains("bar.jfr", "foo.jfr"));
+        ArchiveCatalog.Entry bar = entries.get(0);
+        MatcherAssert.assertThat(bar.getSubdirectory(), Matchers.equalTo("targetB"));
+        MatcherAssert.assertThat(bar.getSize(), Matchers.equalTo(5L));
+        MatcherAssert.assertThat(bar.getDataStartTime(), Matchers.nullValue());
+        MatcherAssert.assertThat(
+                bar.getPath(archivePath),
+                Matchers.equalTo(archivePath.resolve("targetB").resolve("bar.jfr")));
+
+        catalog.list();
+        Mockito.verify(fs, Mockito.times(3)).listDirectoryChildren(Mockito.any());
+    }
+
+    @Test
+    void shouldIgnoreUploadsAndCatalogFiles() throws Exception {
+        write("targetA", "foo.jfr", 1);
+        write(ArchiveCatalog.UPLOADS_SUBDIRECTORY, "partial-upload", 1);
+        write(ArchiveChunkStore.CHUNKS_DIRECTORY, "abcd.chunk", 1);
+        Files.writeString(archivePath.resolve(ArchiveCatalog.CATALOG_FILE_NAME), "{}");
+
+        MatcherAssert.assertThat(catalog.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(catalog.get("partial-upload").isPresent(), Matchers.is(false));
+        MatcherAssert.assertThat(catalog.get("abcd.chunk").isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldReportReassembledSizeOfDeduplicatedRecordings() throws Exception {
+        Path dir = Files.createDirectories(archivePath.resolve("targetA"));
+        Files.writeString(
+                dir.resolve("foo.jfr"),
+                String.format(
+                        "%s %d 12345%n%s 12345%n",
+                        ArchiveChunkStore.MANIFEST_HEADER,
+                        ArchiveChunkStore.MANIFEST_VERSION,
+                        "0".repeat(64)));
+
+        MatcherAssert.assertThat(catalog.get("foo.jfr").get().getSize(), Matchers.equalTo(12345L));
+    }
+
+    @Test
+    void shouldDeriveRuleFromAutomatedRecordingName() throws Exception {
+        write("targetA", "my-app_auto_my_rule_20210101T000000Z.jfr", 1);
+        write("targetA", "my-app_auto_my_rule_20210101T000000Z.2.jfr", 1);
+        write("targetA", "my-app_manual_20210101T000000Z.jfr", 1);
+
+        MatcherAssert.assertThat(
+                catalog.get("my-app_auto_my_rule_20210101T000000Z.jfr").get().getRule(),
+                Matchers.equalTo("my_rule"));
+        MatcherAssert.assertThat(
+                catalog.get("my-app_auto_my_rule_20210101T000000Z.2.jfr").get().getRule(),
+                Matchers.equalTo("my_rule"));
+        MatcherAssert.assertThat(
+                catalog.get("my-app_manual_20210101T000000Z.jfr").get().getRule(),
+                Matchers.nullValue());
+    }
+
+    @Test
+    void shouldAddAndRemoveEntries() throws Exception {
+        catalog.reconcile();
+        write("targetA", "foo.jfr", 7);
+
+        catalog.add("targetA", "foo.jfr", 100L, 200L);
+
+        ArchiveCatalog.Entry entry = catalog.get("foo.jfr").get();
+        MatcherAssert.assertThat(entry.getSize(), Matchers.equalTo(7L));
+        MatcherAssert.assertThat(entry.getDataStartTime(), Matchers.equalTo(100L));
+        MatcherAssert.assertThat(entry.getDataEndTime(), Matchers.equalTo(200L));
+
+        catalog.remove("foo.jfr");
+
+        MatcherAssert.assertThat(catalog.get("foo.jfr").isPresent(), Matchers.is(false));
+        MatcherAssert.assertThat(catalog.size(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldNotAddMissingFile() throws Exception {
+        catalog.reconcile();
+
+        catalog.add("targetA", "foo.jfr", null, null);
+
+        MatcherAssert.assertThat(catalog.size(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void reconcileShouldRetainMetadataAndDropDeletedFiles() throws Exception {
+        write("targetA", "foo.jfr", 1);
+        write("targetA", "bar.jfr", 1);
+        catalog.reconcile();
+        catalog.add("targetA", "foo.jfr", 100L, 200L);
+
+        Files.delete(archivePath.resolve("targetA").resolve("bar.jfr"));
+        catalog.reconcile();
+
+        MatcherAssert.assertThat(catalog.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(
+                catalog.get("foo.jfr").get().getDataStartTime(), Matchers.equalTo(100L));
+    }
+
+    @Test
+    void shouldNotReplaceKnownDataTimesWithNull() throws Exception {
+        catalog.reconcile();
+        write("targetA", "foo.jfr", 1);
+        catalog.add("targetA", "foo.jfr", 100L, 200L);
+
+        write("targetA", "foo.jfr", 2);
+        catalog.reconcile();
+        catalog.add("targetA", "foo.jfr", null, null);
+
+        ArchiveCatalog.Entry entry = catalog.get("foo.jfr").get();
+        MatcherAssert.assertThat(entry.getSize(), Matchers.equalTo(2L));
+        MatcherAssert.assertThat(entry.getDataStartTime(), Matchers.equalTo(100L));
+        MatcherAssert.assertThat(entry.getDataEndTime(), Matchers.equalTo(200L));
+    }
+
+    @Test
+    void shouldListPages() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            write("targetA", "recording" + i + ".jfr", 1);
+        }
+
+        MatcherAssert.assertThat(
+                catalog.list(1, 2).stream()
+                        .map(ArchiveCatalog.Entry::getName)
+                        .collect(Collectors.toList()),
+                Matchers.contains("recording1.jfr", "recording2.jfr"));
+        MatcherAssert.assertThat(catalog.list(4, 10), Matchers.hasSize(1));
+        MatcherAssert.assertThat(catalog.list(5, 10), Matchers.empty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> catalog.list(-1, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> catalog.list(0, -1));
+    }
+
+    @Test
+    void shouldSelectFilteredEntriesInOrder() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            write(i % 2 == 0 ? "targetA" : "targetB", "recording" + i + ".jfr", 10 - i);
+        }
+        Predicate<ArchiveCatalog.Entry> inTargetA = e -> e.getSubdirectory().equals("targetA");
+
+        MatcherAssert.assertThat(
+                names(catalog.list(inTargetA, null, 2)),
+                Matchers.contains("recording0.jfr", "recording2.jfr"));
+        MatcherAssert.assertThat(
+                names(
+                        catalog.list(
+                                e -> true,
+                                Comparator.comparingLong(ArchiveCatalog.Entry::getSize),
+                                3)),
+                Matchers.contains("recording5.jfr", "recording4.jfr", "recording3.jfr"));
+        MatcherAssert.assertThat(
+                names(
+                        catalog.list(
+                                inTargetA,
+                                Comparator.comparing(ArchiveCatalog.Entry::getName).reversed(),
+                                10)),
+                Matchers.contains("recording4.jfr", "recording2.jfr", "recording0.jfr"));
+        MatcherAssert.assertThat(
+                catalog.list(e -> true, Comparator.comparing(ArchiveCatalog.Entry::getName), 0),
+                Matchers.empty());
+    }
+
+    @Test
+    void shouldRestorePersistedSnapshot() throws Exception {
+        write("targetA", "foo.jfr", 1);
+        catalog.reconcile();
+        catalog.add("targetA", "foo.jfr", 100L, 200L);
+        catalog.persist();
+
+        Path catalogFile = archivePath.resolve(ArchiveCatalog.CATALOG_FILE_NAME);
+        MatcherAssert.assertThat(Files.exists(catalogFile), Matchers.is(true));
+        Mockito.when(fs.isDirectory(archivePath)).thenReturn(true);
+        Mockito.when(fs.exists(catalogFile)).thenReturn(true);
+        Mockito.when(fs.readFile(catalogFile))
+                .thenAnswer(
+                        invocation -> {
+                            BufferedReader reader =
+                                    Files.newBufferedReader(catalogFile, StandardCharsets.UTF_8);
+                            return reader;
+                        });
+
+        ArchiveCatalog restored =
+                new ArchiveCatalog(
+                        fs,
+                        new LocalArchiveStorage(fs, archivePath, ArchiveCompression.NONE),
+                        gson,
+                        executor,
+                        logger);
+        restored.start();
+
+        ArchiveCatalog.Entry entry = restored.get("foo.jfr").get();
+        MatcherAssert.assertThat(entry.getSubdirectory(), Matchers.equalTo("targetA"));
+        MatcherAssert.assertThat(entry.getDataStartTime(), Matchers.equalTo(100L));
+        MatcherAssert.assertThat(entry.getDataEndTime(), Matchers.equalTo(200L));
+        Mockito.verify(executor).execute(Mockito.any(Runnable.class));
+        Mockito.verify(fs, Mockito.times(2)).listDirectoryChildren(Mockito.any());
+    }
+
+    @Test
+    void startShouldDoNothingIfArchiveIsNotDirectory() throws Exception {
+        Mockito.when(fs.isDirectory(archivePath)).thenReturn(false);
+
+        catalog.start();
+
+        Mockito.verifyNoInteractions(executor);
+    }
+
+    @Test
+    void shouldListRemoteArchivePeriodically() throws Exception {
+        ArchiveStorage remote = Mockito.mock(ArchiveStorage.class);
+        Mockito.when(remote.getLocalPath()).thenReturn(Optional.empty());
+        Mockito.when(remote.listSubdirectories()).thenReturn(List.of("targetA"));
+        Mockito.when(remote.list("targetA"))
+                .thenReturn(List.of(new ArchiveStorage.StoredFile("foo.jfr", 7, 1000)));
+        ArchiveCatalog remoteCatalog = new ArchiveCatalog(fs, remote, gson, executor, logger);
+
+        remoteCatalog.start();
+
+        ArgumentCaptor<Runnable> reconcile = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(executor)
+                .scheduleWithFixedDelay(
+                        reconcile.capture(),
+                        Mockito.eq(0L),
+                        Mockito.eq(ArchiveCatalog.REMOTE_RECONCILE_INTERVAL_MS),
+                        Mockito.eq(TimeUnit.MILLISECONDS));
+        reconcile.getValue().run();
+        ArchiveCatalog.Entry entry = remoteCatalog.get("foo.jfr").get();
+        MatcherAssert.assertThat(entry.getSubdirectory(), Matchers.equalTo("targetA"));
+        MatcherAssert.assertThat(entry.getSize(), Matchers.equalTo(7L));
+        MatcherAssert.assertThat(entry.getArchivedTime(), Matchers.equalTo(1000L));
+        Mockito.verify(fs, Mockito.never()).listDirectoryChildren(Mockito.any());
+    }
+
+    private static List<String> names(List<ArchiveCatalog.Entry> entries) {
+        return entries.stream().map(ArchiveCatalog.Entry::getName).collect(Collectors.toList());
+    }
+
+    private void write(String subdirectory, String name, int size) throws Exception {
+        Path dir = Files.createDirectories(archivePath.resolve(subdirectory));
+        Files.write(dir.resolve(name), new byte[size]);
+    }
+}
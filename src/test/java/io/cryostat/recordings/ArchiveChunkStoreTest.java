@@ -0,0 +1,279 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.cryostat.core.log.Logger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveChunkStoreTest {
+
+    static final byte[] CHUNK_A = chunk("first chunk", 100);
+    static final byte[] CHUNK_B = chunk("second chunk", 200);
+    static final byte[] CHUNK_C = chunk("third chunk", 300);
+
+    ArchiveChunkStore store;
+    @Mock Logger logger;
+
+    @TempDir Path archivePath;
+    Path targetPath;
+
+    @BeforeEach
+    void setup() throws Exception {
+        this.targetPath = Files.createDirectory(archivePath.resolve("target"));
+        this.store = new ArchiveChunkStore(archivePath, ArchiveCompression.NONE, true, logger);
+    }
+
+    @Test
+    void shouldWriteManifestAndReassembleRecording() throws Exception {
+        byte[] recording = concat(CHUNK_A, CHUNK_B);
+        Path manifest = targetPath.resolve("foo.jfr");
+
+        store.write(new ByteArrayInputStream(recording), manifest);
+
+        Assertions.assertTrue(store.isManifest(manifest));
+        MatcherAssert.assertThat(Files.size(manifest), Matchers.lessThan((long) recording.length));
+        MatcherAssert.assertThat(
+                ArchiveChunkStore.getRecordingSize(manifest, Files.size(manifest)),
+                Matchers.equalTo((long) recording.length));
+        MatcherAssert.assertThat(read(manifest), Matchers.equalTo(recording));
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(2));
+    }
+
+    @Test
+    void shouldStoreSharedChunksOnce() throws Exception {
+        Path first = targetPath.resolve("first.jfr");
+        Path second = targetPath.resolve("second.jfr");
+
+        store.write(new ByteArrayInputStream(concat(CHUNK_A, CHUNK_B)), first);
+        store.write(new ByteArrayInputStream(concat(CHUNK_A, CHUNK_B, CHUNK_C)), second);
+
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(3));
+        MatcherAssert.assertThat(read(first), Matchers.equalTo(concat(CHUNK_A, CHUNK_B)));
+        MatcherAssert.assertThat(read(second), Matchers.equalTo(concat(CHUNK_A, CHUNK_B, CHUNK_C)));
+    }
+
+    @Test
+    void shouldStoreRepeatedChunkWithinRecordingOnce() throws Exception {
+        Path manifest = targetPath.resolve("foo.jfr");
+
+        store.write(new ByteArrayInputStream(concat(CHUNK_A, CHUNK_A)), manifest);
+
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(1));
+        MatcherAssert.assertThat(read(manifest), Matchers.equalTo(concat(CHUNK_A, CHUNK_A)));
+    }
+
+    @Test
+    void shouldOnlyDeleteUnsharedChunks() throws Exception {
+        Path first = targetPath.resolve("first.jfr");
+        Path second = targetPath.resolve("second.jfr");
+        store.write(new ByteArrayInputStream(concat(CHUNK_A, CHUNK_B)), first);
+        store.write(new ByteArrayInputStream(concat(CHUNK_B, CHUNK_C)), second);
+
+        store.delete(first);
+
+        Assertions.assertFalse(Files.exists(first));
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(2));
+        MatcherAssert.assertThat(read(second), Matchers.equalTo(concat(CHUNK_B, CHUNK_C)));
+
+        store.delete(second);
+
+        Assertions.assertFalse(Files.exists(second));
+        MatcherAssert.assertThat(chunkFiles(), Matchers.empty());
+    }
+
+    @Test
+    void shouldStoreDataWithoutChunkHeadersWhole() throws Exception {
+        byte[] data = "not a flight recording".getBytes(StandardCharsets.UTF_8);
+        Path manifest = targetPath.resolve("foo.jfr");
+
+        store.write(new ByteArrayInputStream(data), manifest);
+
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(1));
+        MatcherAssert.assertThat(read(manifest), Matchers.equalTo(data));
+    }
+
+    @Test
+    void shouldStoreUnfinishedTrailingChunkWhole() throws Exception {
+        byte[] unfinished = chunk("unfinished chunk", 50);
+        // a chunk still being written does not have its size filled in yet
+        ByteBuffer.wrap(unfinished).putLong(8, 0);
+        byte[] recording = concat(CHUNK_A, unfinished, CHUNK_B);
+        Path manifest = targetPath.resolve("foo.jfr");
+
+        store.write(new ByteArrayInputStream(recording), manifest);
+
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(2));
+        MatcherAssert.assertThat(read(manifest), Matchers.equalTo(recording));
+    }
+
+    @Test
+    void shouldCompressChunks() throws Exception {
+        store = new ArchiveChunkStore(archivePath, ArchiveCompression.GZIP, true, logger);
+        byte[] recording = concat(CHUNK_A, CHUNK_B);
+        Path manifest = targetPath.resolve("foo.jfr");
+
+        store.write(new ByteArrayInputStream(recording), manifest);
+
+        for (Path chunk : chunkFiles()) {
+            MatcherAssert.assertThat(
+                    ArchiveCompression.detect(chunk), Matchers.equalTo(ArchiveCompression.GZIP));
+        }
+        MatcherAssert.assertThat(read(manifest), Matchers.equalTo(recording));
+    }
+
+    @Test
+    void shouldNotTreatWholeRecordingsAsManifests() throws Exception {
+        Path file = Files.write(targetPath.resolve("foo.jfr"), CHUNK_A);
+
+        Assertions.assertFalse(store.isManifest(file));
+        MatcherAssert.assertThat(
+                ArchiveChunkStore.getRecordingSize(file, CHUNK_A.length),
+                Matchers.equalTo((long) CHUNK_A.length));
+    }
+
+    @Test
+    void shouldCountExistingManifestsAndRemoveOrphanedChunksOnLoad() throws Exception {
+        Path first = targetPath.resolve("first.jfr");
+        store.write(new ByteArrayInputStream(concat(CHUNK_A, CHUNK_B)), first);
+        Path orphan = store.chunkPath("ab".repeat(32));
+        Files.createDirectories(orphan.getParent());
+        Files.write(orphan, CHUNK_C);
+
+        // a new store, as after a restart, must learn the existing references from the archive
+        ArchiveChunkStore restarted =
+                new ArchiveChunkStore(archivePath, ArchiveCompression.NONE, true, logger);
+        Path second = targetPath.resolve("second.jfr");
+        restarted.write(new ByteArrayInputStream(concat(CHUNK_A)), second);
+
+        Assertions.assertFalse(Files.exists(orphan));
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(2));
+
+        restarted.delete(second);
+
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(2));
+        MatcherAssert.assertThat(read(first), Matchers.equalTo(concat(CHUNK_A, CHUNK_B)));
+    }
+
+    @Test
+    void shouldRemoveChunksOfManifestsDeletedOutOfBandOnCompaction() throws Exception {
+        Path first = targetPath.resolve("first.jfr");
+        store.write(new ByteArrayInputStream(concat(CHUNK_A, CHUNK_B)), first);
+        Path second = targetPath.resolve("second.jfr");
+        store.write(new ByteArrayInputStream(concat(CHUNK_A, CHUNK_C)), second);
+        Files.delete(second);
+
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(3));
+        store.compact();
+
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(2));
+        MatcherAssert.assertThat(read(first), Matchers.equalTo(concat(CHUNK_A, CHUNK_B)));
+
+        store.delete(first);
+
+        MatcherAssert.assertThat(chunkFiles(), Matchers.empty());
+    }
+
+    @Test
+    void shouldNotOverwriteExistingDestination() throws Exception {
+        Path existing = Files.write(targetPath.resolve("foo.jfr"), CHUNK_C);
+        Path other = targetPath.resolve("bar.jfr");
+        store.write(new ByteArrayInputStream(CHUNK_A), other);
+
+        Assertions.assertThrows(
+                FileAlreadyExistsException.class,
+                () -> store.write(new ByteArrayInputStream(CHUNK_B), existing));
+        MatcherAssert.assertThat(Files.readAllBytes(existing), Matchers.equalTo(CHUNK_C));
+        MatcherAssert.assertThat(read(other), Matchers.equalTo(CHUNK_A));
+        MatcherAssert.assertThat(chunkFiles(), Matchers.hasSize(1));
+    }
+
+    byte[] read(Path manifest) throws Exception {
+        try (InputStream in = store.open(manifest)) {
+            return in.readAllBytes();
+        }
+    }
+
+    List<Path> chunkFiles() throws Exception {
+        try (Stream<Path> walk =
+                Files.walk(archivePath.resolve(ArchiveChunkStore.CHUNKS_DIRECTORY))) {
+            return walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    static byte[] chunk(String content, int length) {
+        ByteBuffer buf = ByteBuffer.allocate(16 + length);
+        buf.put(new byte[] {'F', 'L', 'R', 0});
+        buf.putShort((short) 2);
+        buf.putShort((short) 0);
+        buf.putLong(16 + length);
+        byte[] body = new byte[length];
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(text, 0, body, 0, Math.min(text.length, length));
+        buf.put(body);
+        return buf.array();
+    }
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Arrays.stream(parts).forEach(out::writeBytes);
+        return out.toByteArray();
+    }
+}
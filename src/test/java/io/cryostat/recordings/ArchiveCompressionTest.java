@@ -0,0 +1,152 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ArchiveCompressionTest {
+
+    static final byte[] CONTENT =
+            "FLR\0 some recording content ".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    @TempDir Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " ", "none", "NONE"})
+    void shouldParseNone(String name) {
+        MatcherAssert.assertThat(
+                ArchiveCompression.fromName(name), Matchers.equalTo(ArchiveCompression.NONE));
+    }
+
+    @Test
+    void shouldParseNullAsNone() {
+        MatcherAssert.assertThat(
+                ArchiveCompression.fromName(null), Matchers.equalTo(ArchiveCompression.NONE));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"gzip", "GZip", " gzip "})
+    void shouldParseGzip(String name) {
+        MatcherAssert.assertThat(
+                ArchiveCompression.fromName(name), Matchers.equalTo(ArchiveCompression.GZIP));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"zstd", "lz4", "gz"})
+    void shouldRejectUnknownNames(String name) {
+        Assertions.assertThrows(
+                IllegalArgumentException.class, () -> ArchiveCompression.fromName(name));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "identity", "br", "gzip;q=0", "*;q=0", "*, gzip;q=0"})
+    void noneShouldAlwaysBeAccepted(String acceptEncoding) {
+        Assertions.assertTrue(ArchiveCompression.NONE.isAcceptedBy(acceptEncoding));
+        Assertions.assertTrue(ArchiveCompression.NONE.isAcceptedBy(null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"gzip", "GZIP", "deflate, gzip", "gzip;q=0.5", "br;q=1.0, *;q=0.1"})
+    void gzipShouldBeAcceptedBy(String acceptEncoding) {
+        Assertions.assertTrue(ArchiveCompression.GZIP.isAcceptedBy(acceptEncoding));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "identity", "br, deflate", "gzip;q=0", "*;q=0", "*, gzip;q=0"})
+    void gzipShouldNotBeAcceptedBy(String acceptEncoding) {
+        Assertions.assertFalse(ArchiveCompression.GZIP.isAcceptedBy(acceptEncoding));
+    }
+
+    @Test
+    void gzipShouldNotBeAcceptedWithoutHeader() {
+        Assertions.assertFalse(ArchiveCompression.GZIP.isAcceptedBy(null));
+    }
+
+    @Test
+    void shouldRoundTripGzip() throws Exception {
+        Path file = tempDir.resolve("recording.jfr");
+        ArchiveCompression.GZIP.write(new ByteArrayInputStream(CONTENT), file);
+
+        MatcherAssert.assertThat(Files.size(file), Matchers.lessThan((long) CONTENT.length));
+        MatcherAssert.assertThat(
+                ArchiveCompression.detect(file), Matchers.equalTo(ArchiveCompression.GZIP));
+        try (InputStream in = ArchiveCompression.decompress(Files.newInputStream(file))) {
+            MatcherAssert.assertThat(in.readAllBytes(), Matchers.equalTo(CONTENT));
+        }
+    }
+
+    @Test
+    void shouldPassThroughUncompressed() throws Exception {
+        Path file = tempDir.resolve("recording.jfr");
+        ArchiveCompression.NONE.write(new ByteArrayInputStream(CONTENT), file);
+
+        MatcherAssert.assertThat(Files.readAllBytes(file), Matchers.equalTo(CONTENT));
+        MatcherAssert.assertThat(
+                ArchiveCompression.detect(file), Matchers.equalTo(ArchiveCompression.NONE));
+        try (InputStream in = ArchiveCompression.decompress(Files.newInputStream(file))) {
+            MatcherAssert.assertThat(in.readAllBytes(), Matchers.equalTo(CONTENT));
+        }
+    }
+
+    @Test
+    void shouldDetectEmptyFileAsUncompressed() throws Exception {
+        Path file = Files.createFile(tempDir.resolve("empty.jfr"));
+        MatcherAssert.assertThat(
+                ArchiveCompression.detect(file), Matchers.equalTo(ArchiveCompression.NONE));
+    }
+
+    @Test
+    void shouldNotOverwriteExistingFiles() throws Exception {
+        Path file = Files.createFile(tempDir.resolve("recording.jfr"));
+        Assertions.assertThrows(
+                Exception.class,
+                () -> ArchiveCompression.GZIP.write(new ByteArrayInputStream(CONTENT), file));
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.Clock;
+import io.cryostat.messaging.notifications.Notification;
+import io.cryostat.messaging.notifications.NotificationFactory;
+import io.cryostat.net.web.http.HttpMimeType;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveRetentionTest {
+
+    static final long NOW = TimeUnit.DAYS.toMillis(365);
+    static final long INTERVAL_MS = 60_000;
+
+    @Mock ArchiveCatalog catalog;
+    @Mock RecordingArchiveHelper archiveHelper;
+    @Mock ArchiveChunkStore chunkStore;
+    @Mock NotificationFactory notificationFactory;
+    @Mock Notification notification;
+    @Mock Notification.Builder notificationBuilder;
+    @Mock Clock clock;
+    @Mock ScheduledExecutorService executor;
+    @Mock Logger logger;
+
+    @BeforeEach
+    void setup() {
+        Mockito.lenient().when(notificationFactory.createBuilder()).thenReturn(notificationBuilder);
+        Mockito.lenient()
+                .when(notificationBuilder.metaCategory(Mockito.any()))
+                .thenReturn(notificationBuilder);
+        Mockito.lenient()
+                .when(notificationBuilder.metaType(Mockito.any(HttpMimeType.class)))
+                .thenReturn(notificationBuilder);
+        Mockito.lenient()
+                .when(notificationBuilder.message(Mockito.any()))
+                .thenReturn(notificationBuilder);
+        Mockito.lenient().when(notificationBuilder.build()).thenReturn(notification);
+        Mockito.lenient().when(clock.getWallTime()).thenReturn(NOW);
+    }
+
+    ArchiveRetention retention(ArchiveRetention.Quota global, ArchiveRetention.Quota target) {
+        return new ArchiveRetention(
+                catalog,
+                archiveHelper,
+                chunkStore,
+                notificationFactory,
+                global,
+                target,
+                INTERVAL_MS,
+                0,
+                clock,
+                executor,
+                logger);
+    }
+
+    @Test
+    void shouldOnlyScheduleCompactionWithoutQuotas() {
+        retention(ArchiveRetention.Quota.UNLIMITED, ArchiveRetention.Quota.UNLIMITED).start();
+
+        Mockito.verify(executor)
+                .scheduleWithFixedDelay(
+                        Mockito.any(Runnable.class),
+                        Mockito.eq(ArchiveRetention.COMPACTION_INTERVAL_MS),
+                        Mockito.eq(ArchiveRetention.COMPACTION_INTERVAL_MS),
+                        Mockito.eq(TimeUnit.MILLISECONDS));
+        Mockito.verifyNoMoreInteractions(executor);
+    }
+
+    @Test
+    void shouldScheduleEnforcementWithQuota() {
+        retention(new ArchiveRetention.Quota(0, 0, 10), ArchiveRetention.Quota.UNLIMITED).start();
+
+        Mockito.verify(executor)
+                .scheduleWithFixedDelay(
+                        Mockito.any(Runnable.class),
+                        Mockito.eq(INTERVAL_MS),
+                        Mockito.eq(INTERVAL_MS),
+                        Mockito.eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void shouldEvictExpiredRecordings() throws Exception {
+        long maxAge = TimeUnit.DAYS.toMillis(7);
+        List<ArchiveCatalog.Entry> entries =
+                List.of(
+                        entry("a", "fresh.jfr", 10, NOW - maxAge + 1),
+                        entry("a", "stale.jfr", 10, NOW - maxAge - 1),
+                        entry("b", "older.jfr", 10, NOW - 2 * maxAge));
+
+        List<ArchiveCatalog.Entry> evictions =
+                retention(
+                                new ArchiveRetention.Quota(0, maxAge, 0),
+                                ArchiveRetention.Quota.UNLIMITED)
+                        .selectEvictions(entries, NOW);
+
+        MatcherAssert.assertThat(names(evictions), Matchers.contains("older.jfr", "stale.jfr"));
+    }
+
+    @Test
+    void shouldEvictOldestRecordingsOverGlobalCount() throws Exception {
+        List<ArchiveCatalog.Entry> entries =
+                List.of(
+                        entry("a", "3.jfr", 10, 3),
+                        entry("b", "1.jfr", 10, 1),
+                        entry("a", "4.jfr", 10, 4),
+                        entry("c", "2.jfr", 10, 2));
+
+        List<ArchiveCatalog.Entry> evictions =
+                retention(new ArchiveRetention.Quota(0, 0, 2), ArchiveRetention.Quota.UNLIMITED)
+                        .selectEvictions(entries, NOW);
+
+        MatcherAssert.assertThat(names(evictions), Matchers.contains("1.jfr", "2.jfr"));
+    }
+
+    @Test
+    void shouldEvictOldestRecordingsOverGlobalSize() throws Exception {
+        List<ArchiveCatalog.Entry> entries =
+                List.of(
+                        entry("a", "1.jfr", 100, 1),
+                        entry("a", "2.jfr", 50, 2),
+                        entry("b", "3.jfr", 50, 3),
+                        entry("b", "4.jfr", 60, 4));
+
+        List<ArchiveCatalog.Entry> evictions =
+                retention(new ArchiveRetention.Quota(120, 0, 0), ArchiveRetention.Quota.UNLIMITED)
+                        .selectEvictions(entries, NOW);
+
+        MatcherAssert.assertThat(names(evictions), Matchers.contains("1.jfr", "2.jfr"));
+    }
+
+    @Test
+    void shouldApplyTargetQuotaToEachTarget() throws Exception {
+        List<ArchiveCatalog.Entry> entries =
+                List.of(
+                        entry("a", "a1.jfr", 10, 1),
+                        entry("a", "a2.jfr", 10, 2),
+                        entry("a", "a3.jfr", 10, 5),
+                        entry("b", "b1.jfr", 10, 3),
+                        entry("b", "b2.jfr", 10, 4));
+
+        List<ArchiveCatalog.Entry> evictions =
+                retention(ArchiveRetention.Quota.UNLIMITED, new ArchiveRetention.Quota(0, 0, 2))
+                        .selectEvictions(entries, NOW);
+
+        MatcherAssert.assertThat(names(evictions), Matchers.contains("a1.jfr"));
+    }
+
+    @Test
+    void shouldApplyGlobalQuotaAfterTargetQuota() throws Exception {
+        List<ArchiveCatalog.Entry> entries =
+                List.of(
+                        entry("a", "a1.jfr", 10, 1),
+                        entry("a", "a2.jfr", 10, 2),
+                        entry("a", "a3.jfr", 10, 5),
+                        entry("b", "b1.jfr", 10, 3),
+                        entry("b", "b2.jfr", 10, 4));
+
+        List<ArchiveCatalog.Entry> evictions =
+                retention(new ArchiveRetention.Quota(30, 0, 0), new ArchiveRetention.Quota(0, 0, 2))
+                        .selectEvictions(entries, NOW);
+
+        MatcherAssert.assertThat(names(evictions), Matchers.contains("a1.jfr", "a2.jfr"));
+    }
+
+    @Test
+    void shouldEvictAndNotifyInBatches() throws Exception {
+        List<ArchiveCatalog.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < ArchiveRetention.NOTIFICATION_BATCH_SIZE + 50; i++) {
+            entries.add(entry("a", i + ".jfr", 10, i));
+        }
+        Mockito.when(catalog.list()).thenReturn(entries);
+
+        retention(new ArchiveRetention.Quota(0, 0, 10), ArchiveRetention.Quota.UNLIMITED).enforce();
+
+        Mockito.verify(archiveHelper, Mockito.times(ArchiveRetention.NOTIFICATION_BATCH_SIZE + 40))
+                .deleteArchivedRecording(Mockito.anyString());
+        Mockito.verify(archiveHelper).deleteArchivedRecording("0.jfr");
+        Mockito.verify(archiveHelper, Mockito.never()).deleteArchivedRecording("140.jfr");
+        Mockito.verify(archiveHelper, Mockito.never()).deleteRecording(Mockito.anyString());
+
+        ArgumentCaptor<Map<String, List<String>>> messageCaptor =
+                ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(notificationBuilder, Mockito.times(2))
+                .metaCategory(ArchiveRetention.EVICTION_NOTIFICATION_CATEGORY);
+        Mockito.verify(notificationBuilder, Mockito.times(2)).message(messageCaptor.capture());
+        MatcherAssert.assertThat(
+                messageCaptor.getAllValues().get(0).get("recordings"),
+                Matchers.hasSize(ArchiveRetention.NOTIFICATION_BATCH_SIZE));
+        MatcherAssert.assertThat(
+                messageCaptor.getAllValues().get(1).get("recordings"), Matchers.hasSize(40));
+        Mockito.verify(notification, Mockito.times(2)).send();
+    }
+
+    @Test
+    void shouldContinueAfterFailedEviction() throws Exception {
+        Mockito.when(catalog.list())
+                .thenReturn(
+                        List.of(
+                                entry("a", "1.jfr", 10, 1),
+                                entry("a", "2.jfr", 10, 2),
+                                entry("a", "3.jfr", 10, 3)));
+        Mockito.when(archiveHelper.deleteArchivedRecording("1.jfr"))
+                .thenThrow(new IOException("busy"));
+        Mockito.when(archiveHelper.deleteArchivedRecording("2.jfr"))
+                .thenReturn(Path.of("a", "2.jfr"));
+
+        retention(new ArchiveRetention.Quota(0, 0, 1), ArchiveRetention.Quota.UNLIMITED).enforce();
+
+        Mockito.verify(notificationBuilder).message(Map.of("recordings", List.of("2.jfr")));
+        Mockito.verify(notification).send();
+    }
+
+    @Test
+    void shouldNotNotifyWhenNothingEvicted() throws Exception {
+        Mockito.when(catalog.list()).thenReturn(List.of(entry("a", "1.jfr", 10, 1)));
+
+        retention(new ArchiveRetention.Quota(0, 0, 1), ArchiveRetention.Quota.UNLIMITED).enforce();
+
+        Mockito.verifyNoInteractions(archiveHelper);
+        Mockito.verifyNoInteractions(notificationFactory);
+    }
+
+    @Test
+    void shouldCompactChunkStore() throws Exception {
+        retention(ArchiveRetention.Quota.UNLIMITED, ArchiveRetention.Quota.UNLIMITED).compact();
+
+        Mockito.verify(chunkStore).compact();
+    }
+
+    static ArchiveCatalog.Entry entry(
+            String subdirectory, String name, long size, long archivedTime) {
+        return new ArchiveCatalog.Entry(subdirectory, name, size, archivedTime, null, null);
+    }
+
+    static List<String> names(List<ArchiveCatalog.Entry> entries) {
+        return entries.stream().map(ArchiveCatalog.Entry::getName).collect(Collectors.toList());
+    }
+}
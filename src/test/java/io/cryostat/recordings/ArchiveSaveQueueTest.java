@@ -0,0 +1,174 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.cryostat.recordings.ArchiveSaveQueue.Priority;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ArchiveSaveQueueTest {
+
+    Queue<Runnable> workers;
+    ArchiveSaveQueue saveQueue;
+
+    @BeforeEach
+    void setup() {
+        this.workers = new ArrayDeque<>();
+        this.saveQueue = new ArchiveSaveQueue(workers::add, 2, 2);
+    }
+
+    @Test
+    void shouldCompleteWithTaskResult() throws Exception {
+        CompletableFuture<String> future =
+                saveQueue.submit("foo", Priority.INTERACTIVE, () -> "bar");
+        MatcherAssert.assertThat(future.isDone(), Matchers.is(false));
+
+        workers.poll().run();
+
+        MatcherAssert.assertThat(future.get(), Matchers.equalTo("bar"));
+    }
+
+    @Test
+    void shouldCompleteExceptionallyWithTaskFailure() throws Exception {
+        CompletableFuture<String> future =
+                saveQueue.submit(
+                        "foo",
+                        Priority.INTERACTIVE,
+                        () -> {
+                            throw new IllegalStateException("dummy");
+                        });
+
+        workers.poll().run();
+
+        ExecutionException ee = Assertions.assertThrows(ExecutionException.class, future::get);
+        MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    void shouldSerializeSavesOfSameTarget() throws Exception {
+        CompletableFuture<String> first = saveQueue.submit("foo", Priority.INTERACTIVE, () -> "1");
+        CompletableFuture<String> second = saveQueue.submit("foo", Priority.INTERACTIVE, () -> "2");
+
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(saveQueue.getActiveSaves(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(saveQueue.getQueueDepth(), Matchers.equalTo(1));
+
+        workers.poll().run();
+
+        MatcherAssert.assertThat(first.get(), Matchers.equalTo("1"));
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(saveQueue.getQueueDepth(), Matchers.equalTo(0));
+
+        workers.poll().run();
+
+        MatcherAssert.assertThat(second.get(), Matchers.equalTo("2"));
+        MatcherAssert.assertThat(saveQueue.getActiveSaves(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldRunSavesOfDifferentTargetsConcurrently() {
+        saveQueue.submit("foo", Priority.BACKGROUND, () -> null);
+        saveQueue.submit("bar", Priority.BACKGROUND, () -> null);
+        saveQueue.submit("baz", Priority.BACKGROUND, () -> null);
+
+        MatcherAssert.assertThat(workers.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(saveQueue.getActiveSaves(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(saveQueue.getQueueDepth(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldStartInteractiveSavesBeforeBackgroundSaves() {
+        this.saveQueue = new ArchiveSaveQueue(workers::add, 1, 4);
+        List<String> order = new ArrayList<>();
+        saveQueue.submit("foo", Priority.BACKGROUND, () -> order.add("foo"));
+        saveQueue.submit("bar", Priority.BACKGROUND, () -> order.add("bar"));
+        saveQueue.submit("baz", Priority.INTERACTIVE, () -> order.add("baz"));
+
+        while (!workers.isEmpty()) {
+            workers.poll().run();
+        }
+
+        MatcherAssert.assertThat(order, Matchers.contains("foo", "baz", "bar"));
+    }
+
+    @Test
+    void shouldRejectSavesWhenQueueFull() {
+        saveQueue.submit("foo", Priority.INTERACTIVE, () -> null);
+        saveQueue.submit("foo", Priority.INTERACTIVE, () -> null);
+        saveQueue.submit("foo", Priority.INTERACTIVE, () -> null);
+        CompletableFuture<Object> rejected =
+                saveQueue.submit("foo", Priority.INTERACTIVE, () -> null);
+
+        ExecutionException ee = Assertions.assertThrows(ExecutionException.class, rejected::get);
+        MatcherAssert.assertThat(
+                ee.getCause(), Matchers.instanceOf(RejectedExecutionException.class));
+        MatcherAssert.assertThat(saveQueue.getQueueDepth(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void shouldReleaseTargetIfWorkersRejectSave() throws Exception {
+        this.saveQueue =
+                new ArchiveSaveQueue(
+                        r -> {
+                            throw new RejectedExecutionException();
+                        },
+                        1,
+                        1);
+
+        CompletableFuture<Object> future =
+                saveQueue.submit("foo", Priority.INTERACTIVE, () -> null);
+
+        ExecutionException ee = Assertions.assertThrows(ExecutionException.class, future::get);
+        MatcherAssert.assertThat(
+                ee.getCause(), Matchers.instanceOf(RejectedExecutionException.class));
+        MatcherAssert.assertThat(saveQueue.getActiveSaves(), Matchers.equalTo(0));
+        MatcherAssert.assertThat(saveQueue.getQueueDepth(), Matchers.equalTo(0));
+    }
+}
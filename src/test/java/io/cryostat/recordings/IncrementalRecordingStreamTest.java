@@ -0,0 +1,181 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IncrementalRecordingStreamTest {
+
+    static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    static final byte[] CHUNK_1 = chunk(10 * SECOND_NANOS, 10 * SECOND_NANOS, 100, 1);
+    static final byte[] CHUNK_2 = chunk(20 * SECOND_NANOS, 10 * SECOND_NANOS, 200, 2);
+    static final byte[] CHUNK_3 = chunk(30 * SECOND_NANOS, 10 * SECOND_NANOS, 300, 3);
+    static final byte[] CHUNK_4 = chunk(40 * SECOND_NANOS, 10 * SECOND_NANOS, 400, 4);
+
+    @Test
+    void shouldAppendNewerChunksSkippingThoseAlreadyArchived() throws Exception {
+        byte[] result = join(concat(CHUNK_1, CHUNK_2), concat(CHUNK_2, CHUNK_3, CHUNK_4), 0);
+
+        MatcherAssert.assertThat(
+                result, Matchers.equalTo(concat(CHUNK_1, CHUNK_2, CHUNK_3, CHUNK_4)));
+    }
+
+    @Test
+    void shouldDropArchivedChunksNoLongerRetained() throws Exception {
+        byte[] result =
+                join(
+                        concat(CHUNK_1, CHUNK_2, CHUNK_3),
+                        concat(CHUNK_3, CHUNK_4),
+                        25 * SECOND_NANOS);
+
+        // chunk 2 ends after the retention point, so is still held by the active recording
+        MatcherAssert.assertThat(result, Matchers.equalTo(concat(CHUNK_2, CHUNK_3, CHUNK_4)));
+    }
+
+    @Test
+    void shouldStillSkipOverlapIfAllArchivedChunksAreDropped() throws Exception {
+        byte[] result = join(concat(CHUNK_1, CHUNK_2), concat(CHUNK_2, CHUNK_3), 35 * SECOND_NANOS);
+
+        MatcherAssert.assertThat(result, Matchers.equalTo(CHUNK_3));
+    }
+
+    @Test
+    void shouldYieldArchivedChunksIfNothingNewer() throws Exception {
+        byte[] result = join(concat(CHUNK_1, CHUNK_2), CHUNK_2, 0);
+
+        MatcherAssert.assertThat(result, Matchers.equalTo(concat(CHUNK_1, CHUNK_2)));
+    }
+
+    @Test
+    void shouldReadSingleBytes() throws Exception {
+        try (InputStream stream =
+                new IncrementalRecordingStream(
+                        new ByteArrayInputStream(CHUNK_1), new ByteArrayInputStream(CHUNK_2), 0)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int b;
+            while ((b = stream.read()) != -1) {
+                out.write(b);
+            }
+            MatcherAssert.assertThat(out.toByteArray(), Matchers.equalTo(concat(CHUNK_1, CHUNK_2)));
+        }
+    }
+
+    @Test
+    void shouldThrowIfArchivedCopyIsNotJfr() throws Exception {
+        byte[] garbage = new byte[JfrChunkHeader.LENGTH];
+        Assertions.assertThrows(IOException.class, () -> join(garbage, CHUNK_1, 0));
+    }
+
+    @Test
+    void shouldThrowIfChunkIsTruncated() throws Exception {
+        byte[] truncated = Arrays.copyOf(CHUNK_3, CHUNK_3.length - 10);
+        Assertions.assertThrows(IOException.class, () -> join(CHUNK_1, truncated, 0));
+    }
+
+    @Test
+    void shouldCloseBothStreams() throws Exception {
+        InputStream archived = new ByteArrayInputStream(CHUNK_1);
+        InputStream newer = new ByteArrayInputStream(CHUNK_2);
+        boolean[] closed = new boolean[2];
+        InputStream stream =
+                new IncrementalRecordingStream(
+                        new FilterInputStream(archived) {
+                            @Override
+                            public void close() {
+                                closed[0] = true;
+                            }
+                        },
+                        new FilterInputStream(newer) {
+                            @Override
+                            public void close() {
+                                closed[1] = true;
+                            }
+                        },
+                        0);
+
+        stream.close();
+
+        Assertions.assertTrue(closed[0]);
+        Assertions.assertTrue(closed[1]);
+    }
+
+    static byte[] join(byte[] archived, byte[] newer, long retainFromNanos) throws IOException {
+        try (InputStream stream =
+                new IncrementalRecordingStream(
+                        new ByteArrayInputStream(archived),
+                        new ByteArrayInputStream(newer),
+                        retainFromNanos)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    static byte[] chunk(long startNanos, long durationNanos, int payloadSize, int fill) {
+        ByteBuffer buf = ByteBuffer.allocate(JfrChunkHeader.LENGTH + payloadSize);
+        buf.put(new byte[] {'F', 'L', 'R', 0});
+        buf.putShort((short) 2);
+        buf.putShort((short) 0);
+        buf.putLong(buf.capacity());
+        buf.putLong(0);
+        buf.putLong(0);
+        buf.putLong(startNanos);
+        buf.putLong(durationNanos);
+        for (int i = 0; i < payloadSize; i++) {
+            buf.put((byte) fill);
+        }
+        return buf.array();
+    }
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Arrays.stream(parts).forEach(out::writeBytes);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.nio.ByteBuffer;
+
+import io.cryostat.recordings.JfrStreamValidator.InvalidJfrStreamException;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class JfrStreamValidatorTest {
+
+    JfrStreamValidator validator;
+
+    @BeforeEach
+    void setup() {
+        this.validator = new JfrStreamValidator();
+    }
+
+    @Test
+    void shouldAcceptCompleteChunks() throws Exception {
+        byte[] recording = concat(chunk(2, 100), chunk(2, 40));
+
+        validator.update(recording, 0, recording.length);
+        validator.finish();
+
+        MatcherAssert.assertThat(validator.getChunkCount(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void shouldAcceptChunksSplitAcrossUpdates() throws Exception {
+        byte[] recording = concat(chunk(1, 50), chunk(2, 30));
+
+        // feed one byte at a time so that every header is split
+        for (int i = 0; i < recording.length; i++) {
+            validator.update(recording, i, 1);
+        }
+        validator.finish();
+
+        MatcherAssert.assertThat(validator.getChunkCount(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void shouldRejectMissingMagic() {
+        byte[] recording = chunk(2, 64);
+        recording[0] = 'X';
+
+        Assertions.assertThrows(
+                InvalidJfrStreamException.class,
+                () -> validator.update(recording, 0, recording.length));
+    }
+
+    @Test
+    void shouldRejectGarbageAfterChunk() {
+        byte[] recording = concat(chunk(2, 64), "trailing garbage".getBytes());
+
+        Assertions.assertThrows(
+                InvalidJfrStreamException.class,
+                () -> validator.update(recording, 0, recording.length));
+    }
+
+    @Test
+    void shouldRejectUnsupportedVersion() {
+        byte[] recording = chunk(3, 64);
+
+        Assertions.assertThrows(
+                InvalidJfrStreamException.class,
+                () -> validator.update(recording, 0, recording.length));
+    }
+
+    @Test
+    void shouldRejectUnfinishedChunk() {
+        byte[] recording = chunk(2, 64);
+        ByteBuffer.wrap(recording).putLong(8, 0);
+
+        Assertions.assertThrows(
+                InvalidJfrStreamException.class,
+                () -> validator.update(recording, 0, recording.length));
+    }
+
+    @Test
+    void shouldRejectTruncatedChunk() throws Exception {
+        byte[] recording = chunk(2, 64);
+
+        validator.update(recording, 0, 40);
+
+        Assertions.assertThrows(InvalidJfrStreamException.class, validator::finish);
+    }
+
+    @Test
+    void shouldRejectEmptyStream() {
+        Assertions.assertThrows(InvalidJfrStreamException.class, validator::finish);
+    }
+
+    static byte[] chunk(int majorVersion, int size) {
+        ByteBuffer chunk = ByteBuffer.allocate(size);
+        chunk.put(new byte[] {'F', 'L', 'R', 0});
+        chunk.putShort((short) majorVersion);
+        chunk.putShort((short) 0);
+        chunk.putLong(size);
+        return chunk.array();
+    }
+
+    static byte[] concat(byte[] a, byte[] b) {
+        return ByteBuffer.allocate(a.length + b.length).put(a).put(b).array();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.cryostat.core.sys.FileSystem;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class LocalArchiveStorageTest {
+
+    LocalArchiveStorage storage;
+    @Mock FileSystem fs;
+
+    @TempDir Path archivePath;
+
+    @BeforeEach
+    void setup() {
+        this.storage =
+                Mockito.spy(new LocalArchiveStorage(fs, archivePath, ArchiveCompression.NONE));
+    }
+
+    @Test
+    void shouldStoreByMovingSourceIntoArchive() throws Exception {
+        Path source = Files.writeString(archivePath.resolve("source.jfr"), "recording");
+        Mockito.doNothing().when(storage).move(Mockito.any(), Mockito.any());
+
+        storage.store("target", "foo.jfr", source);
+
+        Mockito.verify(storage).move(source, archivePath.resolve("target").resolve("foo.jfr"));
+        Mockito.verify(fs).exists(archivePath.resolve("target"));
+    }
+
+    @Test
+    void shouldMoveStoredFileIntoPlace() throws Exception {
+        Path source = Files.writeString(archivePath.resolve("source.jfr"), "recording");
+
+        storage.store("target", "foo.jfr", source);
+
+        MatcherAssert.assertThat(Files.exists(source), Matchers.is(false));
+        MatcherAssert.assertThat(
+                Files.readString(archivePath.resolve("target").resolve("foo.jfr")),
+                Matchers.equalTo("recording"));
+    }
+
+    @Test
+    void shouldWriteUnderInProgressNameAndMoveIntoPlace() throws Exception {
+        AtomicReference<Path> written = new AtomicReference<>();
+        Mockito.when(fs.copy(Mockito.any(InputStream.class), Mockito.any(Path.class)))
+                .thenAnswer(
+                        invocation -> {
+                            Path path = invocation.getArgument(1);
+                            written.set(path);
+                            return Files.copy((InputStream) invocation.getArgument(0), path);
+                        });
+
+        storage.write("target", "foo.jfr", stream("recording"));
+
+        Path destination = archivePath.resolve("target").resolve("foo.jfr");
+        String inProgressName = written.get().getFileName().toString();
+        MatcherAssert.assertThat(
+                written.get().getParent(), Matchers.equalTo(destination.getParent()));
+        MatcherAssert.assertThat(
+                LocalArchiveStorage.isInProgress(inProgressName), Matchers.is(true));
+        MatcherAssert.assertThat(
+                storage.stat("target", inProgressName).isPresent(), Matchers.is(false));
+        MatcherAssert.assertThat(Files.readString(destination), Matchers.equalTo("recording"));
+        MatcherAssert.assertThat(children("target"), Matchers.contains("foo.jfr"));
+        Mockito.verify(fs).deleteIfExists(written.get());
+    }
+
+    @Test
+    void shouldNotOverwriteExistingFile() throws Exception {
+        Path destination = archivePath.resolve("target").resolve("foo.jfr");
+        Mockito.when(fs.exists(Mockito.any(Path.class)))
+                .thenAnswer(invocation -> destination.equals(invocation.getArgument(0)));
+
+        Assertions.assertThrows(
+                FileAlreadyExistsException.class,
+                () -> storage.write("target", "foo.jfr", stream("recording")));
+
+        Mockito.verify(fs, Mockito.never()).copy(Mockito.any(InputStream.class), Mockito.any());
+        Mockito.verify(storage, Mockito.never()).move(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void shouldDeletePartialFileWhenWriteFails() throws Exception {
+        AtomicReference<Path> written = new AtomicReference<>();
+        Mockito.when(fs.copy(Mockito.any(InputStream.class), Mockito.any(Path.class)))
+                .thenAnswer(
+                        invocation -> {
+                            written.set(invocation.getArgument(1));
+                            throw new IOException("upload interrupted");
+                        });
+
+        Assertions.assertThrows(
+                IOException.class, () -> storage.write("target", "foo.jfr", stream("recording")));
+
+        Mockito.verify(fs).deleteIfExists(written.get());
+        Mockito.verify(storage, Mockito.never()).move(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void shouldNotListInProgressFiles() throws Exception {
+        Path dir = Files.createDirectories(archivePath.resolve("target"));
+        Files.writeString(dir.resolve("foo.jfr"), "recording");
+        Files.writeString(dir.resolve(".bar.jfr.1234.part"), "partial");
+        Mockito.when(fs.listDirectoryChildren(dir)).thenReturn(children("target"));
+
+        List<ArchiveStorage.StoredFile> files = storage.list("target");
+
+        MatcherAssert.assertThat(
+                files.stream().map(ArchiveStorage.StoredFile::getName).collect(Collectors.toList()),
+                Matchers.contains("foo.jfr"));
+    }
+
+    private List<String> children(String subdirectory) throws IOException {
+        try (Stream<Path> children = Files.list(archivePath.resolve(subdirectory))) {
+            return children.map(p -> p.getFileName().toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -46,11 +46,15 @@ import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
 
 import javax.management.remote.JMXServiceURL;
 
@@ -59,6 +63,7 @@ import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor;
 
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.net.discovery.JvmDiscoveryClient.EventKind;
 import io.cryostat.core.sys.Clock;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.messaging.notifications.Notification;
@@ -69,6 +74,9 @@ import io.cryostat.net.web.WebServer;
 import io.cryostat.net.web.http.HttpMimeType;
 import io.cryostat.platform.PlatformClient;
 import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.ServiceRefRegistry;
+import io.cryostat.platform.TargetDiscoveryEvent;
+import io.cryostat.rules.ArchivePathException;
 import io.cryostat.rules.ArchivedRecordingInfo;
 import io.cryostat.util.URIUtil;
 
@@ -95,15 +103,17 @@ class RecordingArchiveHelperTest {
     @Mock FileSystem fs;
     @Mock WebServer webServer;
     @Mock Logger logger;
-    @Mock Path destinationFile;
     @Mock Path archivedRecordingsPath;
-    @Mock Path archivedRecordingsReportPath;
     @Mock Clock clock;
     @Mock PlatformClient platformClient;
+    ServiceRefRegistry serviceRefRegistry;
     @Mock NotificationFactory notificationFactory;
     @Mock Notification notification;
     @Mock Notification.Builder notificationBuilder;
     @Mock Base32 base32;
+    @Mock ArchiveCatalog archiveCatalog;
+    @Mock ArchiveStorage storage;
+    @Mock ArchiveChunkStore chunkStore;
 
     @Mock JFRConnection connection;
     @Mock IFlightRecorderService service;
@@ -125,18 +135,46 @@ class RecordingArchiveHelperTest {
                 .thenReturn(notificationBuilder);
         lenient().when(notificationBuilder.message(Mockito.any())).thenReturn(notificationBuilder);
         lenient().when(notificationBuilder.build()).thenReturn(notification);
+        this.serviceRefRegistry = new ServiceRefRegistry(platformClient);
         this.recordingArchiveHelper =
                 new RecordingArchiveHelper(
                         fs,
                         () -> webServer,
                         logger,
                         archivedRecordingsPath,
-                        archivedRecordingsReportPath,
                         targetConnectionManager,
                         clock,
-                        platformClient,
+                        serviceRefRegistry,
                         notificationFactory,
-                        base32);
+                        base32,
+                        new SegmentedRecordingTransfer(
+                                fs,
+                                clock,
+                                targetConnectionManager,
+                                Runnable::run,
+                                1,
+                                Duration.ofSeconds(30),
+                                logger),
+                        archiveCatalog,
+                        storage,
+                        chunkStore,
+                        new ArchiveSaveQueue(Runnable::run, 1, 64));
+    }
+
+    @Test
+    void shouldNameSubdirectoryAfterServiceUrlOfHostPortTarget() throws Exception {
+        Mockito.when(targetConnectionManager.getServiceURL("cryostat:9091"))
+                .thenReturn(
+                        new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9091/jmxrmi"));
+        Mockito.when(
+                        base32.encodeAsString(
+                                "service:jmx:rmi:///jndi/rmi://cryostat:9091/jmxrmi"
+                                        .getBytes(StandardCharsets.UTF_8)))
+                .thenReturn("encodedServiceUri");
+
+        MatcherAssert.assertThat(
+                recordingArchiveHelper.getSubdirectoryName("cryostat:9091"),
+                Matchers.equalTo("encodedServiceUri"));
     }
 
     @Test
@@ -215,8 +253,7 @@ class RecordingArchiveHelperTest {
                                         "service:jmx:rmi:///jndi/rmi://cryostat:9093/jmxrmi")),
                         "some.Alias.3");
 
-        Mockito.when(platformClient.listDiscoverableServices())
-                .thenReturn(List.of(serviceRef1, serviceRef2, serviceRef3));
+        discover(serviceRef1, serviceRef2, serviceRef3);
         Mockito.when(connection.getJMXURL())
                 .thenReturn(
                         (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9092/jmxrmi")));
@@ -224,14 +261,9 @@ class RecordingArchiveHelperTest {
 
         Instant now = Instant.now();
         Mockito.when(clock.now()).thenReturn(now);
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true).thenReturn(false);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
         InputStream stream = new ByteArrayInputStream("someRecordingData".getBytes());
         Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
-        Path specificRecordingsPath = Mockito.mock(Path.class);
-        Mockito.when(archivedRecordingsPath.resolve(Mockito.anyString()))
-                .thenReturn(specificRecordingsPath);
-        Path destination = Mockito.mock(Path.class);
-        Mockito.when(specificRecordingsPath.resolve(Mockito.anyString())).thenReturn(destination);
 
         String saveName =
                 recordingArchiveHelper
@@ -241,7 +273,17 @@ class RecordingArchiveHelperTest {
         String timestamp = now.truncatedTo(ChronoUnit.SECONDS).toString().replaceAll("[-:]+", "");
         MatcherAssert.assertThat(
                 saveName, Matchers.equalTo("some-Alias-2_someRecording_" + timestamp + ".jfr"));
-        Mockito.verify(fs).copy(Mockito.isA(BufferedInputStream.class), Mockito.eq(destination));
+        Mockito.verify(storage)
+                .write(
+                        Mockito.eq("encodedServiceUri"),
+                        Mockito.eq(saveName),
+                        Mockito.isA(BufferedInputStream.class));
+        Mockito.verify(archiveCatalog)
+                .add(
+                        "encodedServiceUri",
+                        "some-Alias-2_someRecording_" + timestamp + ".jfr",
+                        null,
+                        null);
         Mockito.verify(notificationFactory).createBuilder();
         Mockito.verify(notificationBuilder).metaCategory("RecordingArchived");
         Mockito.verify(notificationBuilder).metaType(HttpMimeType.JSON);
@@ -291,7 +333,7 @@ class RecordingArchiveHelperTest {
                                         "service:jmx:rmi:///jndi/rmi://cryostat:9091/jmxrmi")),
                         alias);
 
-        Mockito.when(platformClient.listDiscoverableServices()).thenReturn(List.of(serviceRef1));
+        discover(serviceRef1);
         Mockito.when(connection.getJMXURL())
                 .thenReturn(
                         (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9091/jmxrmi")));
@@ -299,14 +341,9 @@ class RecordingArchiveHelperTest {
 
         Instant now = Instant.now();
         Mockito.when(clock.now()).thenReturn(now);
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true).thenReturn(false);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
         InputStream stream = new ByteArrayInputStream("someRecordingData".getBytes());
         Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
-        Path specificRecordingsPath = Mockito.mock(Path.class);
-        Mockito.when(archivedRecordingsPath.resolve(Mockito.anyString()))
-                .thenReturn(specificRecordingsPath);
-        Path destination = Mockito.mock(Path.class);
-        Mockito.when(specificRecordingsPath.resolve(Mockito.anyString())).thenReturn(destination);
 
         String saveName =
                 recordingArchiveHelper
@@ -320,7 +357,11 @@ class RecordingArchiveHelperTest {
                         + timestamp
                         + ".jfr";
         MatcherAssert.assertThat(saveName, Matchers.equalTo(recordingName));
-        Mockito.verify(fs).copy(Mockito.isA(BufferedInputStream.class), Mockito.eq(destination));
+        Mockito.verify(storage)
+                .write(
+                        Mockito.eq("encodedServiceUri"),
+                        Mockito.eq(saveName),
+                        Mockito.isA(BufferedInputStream.class));
         Mockito.verify(notificationFactory).createBuilder();
         Mockito.verify(notificationBuilder).metaCategory("RecordingArchived");
         Mockito.verify(notificationBuilder).metaType(HttpMimeType.JSON);
@@ -376,8 +417,7 @@ class RecordingArchiveHelperTest {
                                         "service:jmx:rmi:///jndi/rmi://cryostat:9093/jmxrmi")),
                         "some.Alias.3");
 
-        Mockito.when(platformClient.listDiscoverableServices())
-                .thenReturn(List.of(serviceRef1, serviceRef2, serviceRef3));
+        discover(serviceRef1, serviceRef2, serviceRef3);
         Mockito.when(connection.getJMXURL())
                 .thenReturn(
                         (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9092/jmxrmi")));
@@ -386,14 +426,9 @@ class RecordingArchiveHelperTest {
 
         Instant now = Instant.now();
         Mockito.when(clock.now()).thenReturn(now);
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true).thenReturn(false);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
         InputStream stream = new ByteArrayInputStream("someRecordingData".getBytes());
         Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
-        Path specificRecordingsPath = Mockito.mock(Path.class);
-        Mockito.when(archivedRecordingsPath.resolve(Mockito.anyString()))
-                .thenReturn(specificRecordingsPath);
-        Path destination = Mockito.mock(Path.class);
-        Mockito.when(specificRecordingsPath.resolve(Mockito.anyString())).thenReturn(destination);
 
         String saveName =
                 recordingArchiveHelper
@@ -404,7 +439,11 @@ class RecordingArchiveHelperTest {
         MatcherAssert.assertThat(
                 saveName,
                 Matchers.equalTo("some-hostname-local_someRecording_" + timestamp + ".jfr"));
-        Mockito.verify(fs).copy(Mockito.isA(BufferedInputStream.class), Mockito.eq(destination));
+        Mockito.verify(storage)
+                .write(
+                        Mockito.eq("encodedServiceUri"),
+                        Mockito.eq(saveName),
+                        Mockito.isA(BufferedInputStream.class));
         Mockito.verify(notificationFactory).createBuilder();
         Mockito.verify(notificationBuilder).metaCategory("RecordingArchived");
         Mockito.verify(notificationBuilder).metaType(HttpMimeType.JSON);
@@ -454,8 +493,7 @@ class RecordingArchiveHelperTest {
                                         "service:jmx:rmi:///jndi/rmi://cryostat:9093/jmxrmi")),
                         "some.Alias.3");
 
-        Mockito.when(platformClient.listDiscoverableServices())
-                .thenReturn(List.of(serviceRef1, serviceRef3));
+        discover(serviceRef1, serviceRef3);
         Mockito.when(connection.getJMXURL())
                 .thenReturn(
                         (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9092/jmxrmi")));
@@ -464,14 +502,9 @@ class RecordingArchiveHelperTest {
 
         Instant now = Instant.now();
         Mockito.when(clock.now()).thenReturn(now);
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true).thenReturn(false);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
         InputStream stream = new ByteArrayInputStream("someRecordingData".getBytes());
         Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
-        Path specificRecordingsPath = Mockito.mock(Path.class);
-        Mockito.when(archivedRecordingsPath.resolve(Mockito.anyString()))
-                .thenReturn(specificRecordingsPath);
-        Path destination = Mockito.mock(Path.class);
-        Mockito.when(specificRecordingsPath.resolve(Mockito.anyString())).thenReturn(destination);
 
         String saveName =
                 recordingArchiveHelper
@@ -482,7 +515,11 @@ class RecordingArchiveHelperTest {
         MatcherAssert.assertThat(
                 saveName,
                 Matchers.equalTo("some-hostname-local_someRecording_" + timestamp + ".jfr"));
-        Mockito.verify(fs).copy(Mockito.isA(BufferedInputStream.class), Mockito.eq(destination));
+        Mockito.verify(storage)
+                .write(
+                        Mockito.eq("encodedServiceUri"),
+                        Mockito.eq(saveName),
+                        Mockito.isA(BufferedInputStream.class));
         Mockito.verify(notificationFactory).createBuilder();
         Mockito.verify(notificationBuilder).metaCategory("RecordingArchived");
         Mockito.verify(notificationBuilder).metaType(HttpMimeType.JSON);
@@ -539,8 +576,7 @@ class RecordingArchiveHelperTest {
                                         "service:jmx:rmi:///jndi/rmi://cryostat:9093/jmxrmi")),
                         "some.Alias.3");
 
-        Mockito.when(platformClient.listDiscoverableServices())
-                .thenReturn(List.of(serviceRef1, serviceRef2, serviceRef3));
+        discover(serviceRef1, serviceRef2, serviceRef3);
         Mockito.when(connection.getJMXURL())
                 .thenReturn(
                         (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9092/jmxrmi")));
@@ -548,14 +584,9 @@ class RecordingArchiveHelperTest {
 
         Instant now = Instant.now();
         Mockito.when(clock.now()).thenReturn(now);
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true).thenReturn(false);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
         InputStream stream = new ByteArrayInputStream("someRecordingData".getBytes());
         Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
-        Path specificRecordingsPath = Mockito.mock(Path.class);
-        Mockito.when(archivedRecordingsPath.resolve(Mockito.anyString()))
-                .thenReturn(specificRecordingsPath);
-        Path destination = Mockito.mock(Path.class);
-        Mockito.when(specificRecordingsPath.resolve(Mockito.anyString())).thenReturn(destination);
 
         String saveName =
                 recordingArchiveHelper
@@ -565,7 +596,11 @@ class RecordingArchiveHelperTest {
         String timestamp = now.truncatedTo(ChronoUnit.SECONDS).toString().replaceAll("[-:]+", "");
         MatcherAssert.assertThat(
                 saveName, Matchers.equalTo("some-Alias-2_someRecording_" + timestamp + ".jfr"));
-        Mockito.verify(fs).copy(Mockito.isA(BufferedInputStream.class), Mockito.eq(destination));
+        Mockito.verify(storage)
+                .write(
+                        Mockito.eq("encodedServiceUri"),
+                        Mockito.eq(saveName),
+                        Mockito.isA(BufferedInputStream.class));
         Mockito.verify(notificationFactory).createBuilder();
         Mockito.verify(notificationBuilder).metaCategory("RecordingArchived");
         Mockito.verify(notificationBuilder).metaType(HttpMimeType.JSON);
@@ -606,8 +641,7 @@ class RecordingArchiveHelperTest {
                                         "service:jmx:rmi:///jndi/rmi://cryostat:9093/jmxrmi")),
                         "some.Alias.3");
 
-        Mockito.when(platformClient.listDiscoverableServices())
-                .thenReturn(List.of(serviceRef1, serviceRef2, serviceRef3));
+        discover(serviceRef1, serviceRef2, serviceRef3);
         Mockito.when(connection.getJMXURL())
                 .thenReturn(
                         (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9092/jmxrmi")));
@@ -615,21 +649,17 @@ class RecordingArchiveHelperTest {
 
         Instant now = Instant.now();
         Mockito.when(clock.now()).thenReturn(now);
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true).thenReturn(false);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
         InputStream stream =
                 new ByteArrayInputStream("".getBytes()); // intentionally empty recording stream
         Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
-        Path specificRecordingsPath = Mockito.mock(Path.class);
-        Mockito.when(archivedRecordingsPath.resolve(Mockito.anyString()))
-                .thenReturn(specificRecordingsPath);
-        Path destination = Mockito.mock(Path.class);
-        Mockito.when(specificRecordingsPath.resolve(Mockito.anyString())).thenReturn(destination);
 
         Assertions.assertThrows(
                 EmptyRecordingException.class,
                 () -> recordingArchiveHelper.writeRecordingToDestination(connection, descriptor));
 
-        Mockito.verify(fs).deleteIfExists(Mockito.any());
+        Mockito.verify(storage, Mockito.never())
+                .write(Mockito.any(), Mockito.any(), Mockito.any(InputStream.class));
     }
 
     @Test
@@ -673,8 +703,7 @@ class RecordingArchiveHelperTest {
                                         "service:jmx:rmi:///jndi/rmi://cryostat:9093/jmxrmi")),
                         "some.Alias.3");
 
-        Mockito.when(platformClient.listDiscoverableServices())
-                .thenReturn(List.of(serviceRef1, serviceRef2, serviceRef3));
+        discover(serviceRef1, serviceRef2, serviceRef3);
         Mockito.when(connection.getJMXURL())
                 .thenReturn(
                         (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9092/jmxrmi")));
@@ -682,14 +711,11 @@ class RecordingArchiveHelperTest {
 
         Instant now = Instant.now();
         Mockito.when(clock.now()).thenReturn(now);
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true).thenReturn(true).thenReturn(false);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString()))
+                .thenReturn(true)
+                .thenReturn(false);
         InputStream stream = new ByteArrayInputStream("someRecordingData".getBytes());
         Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
-        Path specificRecordingsPath = Mockito.mock(Path.class);
-        Mockito.when(archivedRecordingsPath.resolve(Mockito.anyString()))
-                .thenReturn(specificRecordingsPath);
-        Path destination = Mockito.mock(Path.class);
-        Mockito.when(specificRecordingsPath.resolve(Mockito.anyString())).thenReturn(destination);
 
         String saveName =
                 recordingArchiveHelper
@@ -699,7 +725,11 @@ class RecordingArchiveHelperTest {
         String timestamp = now.truncatedTo(ChronoUnit.SECONDS).toString().replaceAll("[-:]+", "");
         MatcherAssert.assertThat(
                 saveName, Matchers.equalTo("some-Alias-2_someRecording_" + timestamp + ".1.jfr"));
-        Mockito.verify(fs).copy(Mockito.isA(BufferedInputStream.class), Mockito.eq(destination));
+        Mockito.verify(storage)
+                .write(
+                        Mockito.eq("encodedServiceUri"),
+                        Mockito.eq(saveName),
+                        Mockito.isA(BufferedInputStream.class));
         Mockito.verify(notificationFactory).createBuilder();
         Mockito.verify(notificationBuilder).metaCategory("RecordingArchived");
         Mockito.verify(notificationBuilder).metaType(HttpMimeType.JSON);
@@ -718,31 +748,20 @@ class RecordingArchiveHelperTest {
     void shouldDeleteRecording() throws Exception {
         String recordingName = "123recording";
 
-        List<String> subdirectories = List.of("encodedServiceUriA", "encodedServiceUri123");
-        Mockito.when(fs.listDirectoryChildren(archivedRecordingsPath)).thenReturn(subdirectories);
-
-        Mockito.when(archivedRecordingsPath.resolve(subdirectories.get(0)))
-                .thenReturn(Path.of(subdirectories.get(0)));
-        Mockito.when(fs.listDirectoryChildren(Path.of(subdirectories.get(0))))
-                .thenReturn(List.of("recordingA"));
-
-        Mockito.when(archivedRecordingsPath.resolve(subdirectories.get(1)))
-                .thenReturn(Path.of(subdirectories.get(1)));
-        Mockito.when(fs.listDirectoryChildren(Path.of(subdirectories.get(1))))
-                .thenReturn(List.of(recordingName));
-
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true);
-        Mockito.when(fs.isRegularFile(Mockito.any())).thenReturn(true);
-        Mockito.when(fs.isReadable(Mockito.any())).thenReturn(true);
+        Mockito.when(archiveCatalog.get(recordingName))
+                .thenReturn(
+                        Optional.of(
+                                new ArchiveCatalog.Entry(
+                                        "encodedServiceUri123", recordingName, 1, 1, null, null)));
+        Mockito.when(archivedRecordingsPath.resolve("encodedServiceUri123"))
+                .thenReturn(Path.of("encodedServiceUri123"));
 
-        Mockito.when(archivedRecordingsReportPath.resolve(Mockito.anyString()))
-                .thenReturn(archivedRecordingsReportPath);
-        Mockito.when(archivedRecordingsReportPath.toAbsolutePath())
-                .thenReturn(archivedRecordingsReportPath);
+        Mockito.when(storage.exists("encodedServiceUri123", recordingName)).thenReturn(true);
 
         recordingArchiveHelper.deleteRecording(recordingName);
 
-        Mockito.verify(fs, Mockito.times(2)).deleteIfExists(Mockito.any());
+        Mockito.verify(storage).delete("encodedServiceUri123", recordingName);
+        Mockito.verify(archiveCatalog).remove(recordingName);
         Mockito.verify(notificationFactory).createBuilder();
         Mockito.verify(notificationBuilder).metaCategory("RecordingDeleted");
         Mockito.verify(notificationBuilder).metaType(HttpMimeType.JSON);
@@ -751,53 +770,172 @@ class RecordingArchiveHelperTest {
         Mockito.verify(notification).send();
     }
 
-    @ParameterizedTest
-    @ValueSource(booleans = {true, false})
-    void deleteReportShouldDelegateToFileSystem(boolean deleted) throws IOException {
-        Mockito.when(fs.deleteIfExists(Mockito.any())).thenReturn(deleted);
-        Mockito.when(archivedRecordingsReportPath.resolve(Mockito.anyString()))
-                .thenReturn(destinationFile);
-        Mockito.when(destinationFile.toAbsolutePath()).thenReturn(destinationFile);
+    @Test
+    void shouldSaveRecordingIntoChunkStoreIfDeduplicating() throws Exception {
+        Mockito.when(
+                        targetConnectionManager.executeConnectedTask(
+                                Mockito.any(),
+                                Mockito.any(TargetConnectionManager.ConnectedTask.class),
+                                Mockito.anyBoolean()))
+                .thenAnswer(
+                        invocation -> {
+                            TargetConnectionManager.ConnectedTask task =
+                                    (TargetConnectionManager.ConnectedTask)
+                                            invocation.getArgument(1);
+                            return task.execute(connection);
+                        });
+        Mockito.when(connection.getService()).thenReturn(service);
+        IRecordingDescriptor descriptor = Mockito.mock(IRecordingDescriptor.class);
+        Mockito.when(descriptor.getName()).thenReturn(recordingName);
+        Mockito.when(service.getAvailableRecordings()).thenReturn(List.of(descriptor));
+        Mockito.when(connection.getHost()).thenReturn("some-host");
+        Mockito.when(connection.getJMXURL())
+                .thenReturn(
+                        (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9092/jmxrmi")));
+        Mockito.when(base32.encodeAsString(Mockito.any())).thenReturn("encodedServiceUri");
 
-        MatcherAssert.assertThat(
-                recordingArchiveHelper.deleteReport("foo"), Matchers.equalTo(deleted));
+        Instant now = Instant.now();
+        Mockito.when(clock.now()).thenReturn(now);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
+        InputStream stream = new ByteArrayInputStream("someRecordingData".getBytes());
+        Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
+        Path specificRecordingsPath = Mockito.mock(Path.class);
+        Mockito.when(archivedRecordingsPath.resolve(Mockito.anyString()))
+                .thenReturn(specificRecordingsPath);
+        Path destination = Mockito.mock(Path.class);
+        Mockito.when(specificRecordingsPath.resolve(Mockito.anyString())).thenReturn(destination);
+        Mockito.when(chunkStore.isEnabled()).thenReturn(true);
 
-        Mockito.verify(fs).deleteIfExists(destinationFile);
-        Mockito.verify(archivedRecordingsReportPath).resolve("foo.report.html");
+        String saveName =
+                recordingArchiveHelper
+                        .saveRecording(new ConnectionDescriptor(targetId), recordingName)
+                        .get();
+
+        String timestamp = now.truncatedTo(ChronoUnit.SECONDS).toString().replaceAll("[-:]+", "");
+        MatcherAssert.assertThat(
+                saveName, Matchers.equalTo("some-host_someRecording_" + timestamp + ".jfr"));
+        Mockito.verify(chunkStore)
+                .write(Mockito.isA(BufferedInputStream.class), Mockito.eq(destination));
+        Mockito.verify(storage, Mockito.never())
+                .write(Mockito.any(), Mockito.any(), Mockito.any(InputStream.class));
+        Mockito.verify(archiveCatalog).add("encodedServiceUri", saveName, null, null);
     }
 
     @Test
-    void deleteReportShouldReturnFalseIfFileSystemThrows() throws IOException {
-        Mockito.when(fs.deleteIfExists(Mockito.any())).thenThrow(IOException.class);
-        Mockito.when(archivedRecordingsReportPath.resolve(Mockito.anyString()))
-                .thenReturn(destinationFile);
-        Mockito.when(destinationFile.toAbsolutePath()).thenReturn(destinationFile);
+    void saveRecordingIncrementallyShouldTransferInFullIfBaseUnknown() throws Exception {
+        Mockito.when(
+                        targetConnectionManager.executeConnectedTask(
+                                Mockito.any(),
+                                Mockito.any(TargetConnectionManager.ConnectedTask.class),
+                                Mockito.anyBoolean()))
+                .thenAnswer(
+                        invocation -> {
+                            TargetConnectionManager.ConnectedTask task =
+                                    (TargetConnectionManager.ConnectedTask)
+                                            invocation.getArgument(1);
+                            return task.execute(connection);
+                        });
+        Mockito.when(connection.getService()).thenReturn(service);
+        IRecordingDescriptor descriptor = Mockito.mock(IRecordingDescriptor.class);
+        Mockito.when(descriptor.getName()).thenReturn(recordingName);
+        Mockito.when(service.getAvailableRecordings()).thenReturn(List.of(descriptor));
+        Mockito.when(connection.getHost()).thenReturn("some-host");
+        Mockito.when(connection.getJMXURL())
+                .thenReturn(
+                        (new JMXServiceURL("service:jmx:rmi:///jndi/rmi://cryostat:9092/jmxrmi")));
+        Mockito.when(base32.encodeAsString(Mockito.any())).thenReturn("encodedServiceUri");
+        Mockito.when(archiveCatalog.get("base.jfr")).thenReturn(Optional.empty());
+
+        Instant now = Instant.now();
+        Mockito.when(clock.now()).thenReturn(now);
+        Mockito.when(storage.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
+        InputStream stream = new ByteArrayInputStream("someRecordingData".getBytes());
+        Mockito.when(service.openStream(descriptor, false)).thenReturn(stream);
 
+        String saveName =
+                recordingArchiveHelper
+                        .saveRecordingIncrementally(
+                                new ConnectionDescriptor(targetId), recordingName, "base.jfr")
+                        .get();
+
+        String timestamp = now.truncatedTo(ChronoUnit.SECONDS).toString().replaceAll("[-:]+", "");
         MatcherAssert.assertThat(
-                recordingArchiveHelper.deleteReport("foo"), Matchers.equalTo(false));
+                saveName, Matchers.equalTo("some-host_someRecording_" + timestamp + ".jfr"));
+        Mockito.verify(service).openStream(descriptor, false);
+        Mockito.verify(storage)
+                .write(
+                        Mockito.eq("encodedServiceUri"),
+                        Mockito.eq(saveName),
+                        Mockito.isA(BufferedInputStream.class));
+        Mockito.verify(archiveCatalog).add("encodedServiceUri", saveName, null, null);
+    }
+
+    @Test
+    void shouldDeleteDeduplicatedRecordingFromChunkStore() throws Exception {
+        String recordingName = "123recording";
+        Path archivedRecording = Path.of("encodedServiceUri123", recordingName);
 
-        Mockito.verify(fs).deleteIfExists(destinationFile);
-        Mockito.verify(archivedRecordingsReportPath).resolve("foo.report.html");
+        Mockito.when(archiveCatalog.get(recordingName))
+                .thenReturn(
+                        Optional.of(
+                                new ArchiveCatalog.Entry(
+                                        "encodedServiceUri123", recordingName, 1, 1, null, null)));
+        Mockito.when(archivedRecordingsPath.resolve("encodedServiceUri123"))
+                .thenReturn(Path.of("encodedServiceUri123"));
+
+        Mockito.when(storage.exists("encodedServiceUri123", recordingName)).thenReturn(true);
+        Mockito.when(storage.getLocalPath()).thenReturn(Optional.of(archivedRecordingsPath));
+        Mockito.when(chunkStore.isManifest(Mockito.any())).thenReturn(true);
+
+        recordingArchiveHelper.deleteRecording(recordingName).get();
+
+        Mockito.verify(chunkStore).delete(archivedRecording.toAbsolutePath());
+        Mockito.verify(storage, Mockito.never()).delete(Mockito.any(), Mockito.any());
+        Mockito.verify(archiveCatalog).remove(recordingName);
     }
 
     @Test
-    void shouldGetRecordings() throws Exception {
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true);
-        Mockito.when(fs.isReadable(Mockito.any())).thenReturn(true);
-        Mockito.when(fs.isDirectory(Mockito.any())).thenReturn(true);
+    void getRecordingPathShouldThrowIfNotCataloged() throws Exception {
+        Mockito.when(archiveCatalog.get("foo")).thenReturn(Optional.empty());
 
-        List<String> subdirectories = List.of("encodedServiceUriA", "encodedServiceUri123");
-        Mockito.when(fs.listDirectoryChildren(archivedRecordingsPath)).thenReturn(subdirectories);
+        ExecutionException ee =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () -> recordingArchiveHelper.getRecordingPath("foo").get());
+        MatcherAssert.assertThat(
+                ee.getCause(), Matchers.instanceOf(RecordingNotFoundException.class));
+        Mockito.verify(fs, Mockito.never()).listDirectoryChildren(Mockito.any());
+    }
 
-        Mockito.when(archivedRecordingsPath.resolve(subdirectories.get(0)))
-                .thenReturn(Path.of(subdirectories.get(0)));
-        Mockito.when(fs.listDirectoryChildren(Path.of(subdirectories.get(0))))
-                .thenReturn(List.of("recordingA"));
+    @Test
+    void getRecordingPathShouldEvictCatalogEntryIfFileMissing() throws Exception {
+        Mockito.when(archiveCatalog.get("foo"))
+                .thenReturn(
+                        Optional.of(
+                                new ArchiveCatalog.Entry(
+                                        "encodedServiceUri", "foo", 1, 1, null, null)));
+        Mockito.when(archivedRecordingsPath.resolve("encodedServiceUri"))
+                .thenReturn(Path.of("encodedServiceUri"));
+        Mockito.when(storage.exists("encodedServiceUri", "foo")).thenReturn(false);
+
+        ExecutionException ee =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () -> recordingArchiveHelper.getRecordingPath("foo").get());
+        MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(ArchivePathException.class));
+        Mockito.verify(archiveCatalog).remove("foo");
+    }
+
+    @Test
+    void shouldGetRecordings() throws Exception {
 
-        Mockito.when(archivedRecordingsPath.resolve(subdirectories.get(1)))
-                .thenReturn(Path.of(subdirectories.get(1)));
-        Mockito.when(fs.listDirectoryChildren(Path.of(subdirectories.get(1))))
-                .thenReturn(List.of("123recording"));
+        Mockito.when(archiveCatalog.list())
+                .thenReturn(
+                        List.of(
+                                new ArchiveCatalog.Entry(
+                                        "encodedServiceUriA", "recordingA", 1, 1, null, null),
+                                new ArchiveCatalog.Entry(
+                                        "encodedServiceUri123", "123recording", 1, 1, null, null)));
 
         Mockito.when(webServer.getArchivedReportURL(Mockito.anyString()))
                 .thenAnswer(
@@ -834,12 +972,37 @@ class RecordingArchiveHelperTest {
         MatcherAssert.assertThat(result, Matchers.equalTo(expected));
     }
 
+    @Test
+    void shouldQueryCatalog() throws Exception {
+        List<ArchiveCatalog.Entry> entries =
+                List.of(new ArchiveCatalog.Entry("encodedServiceUri", "foo", 1, 1, null, null));
+        Predicate<ArchiveCatalog.Entry> filter = e -> true;
+        Comparator<ArchiveCatalog.Entry> order =
+                Comparator.comparingLong(ArchiveCatalog.Entry::getSize);
+        Mockito.when(archiveCatalog.list(filter, order, 10)).thenReturn(entries);
+
+        MatcherAssert.assertThat(
+                recordingArchiveHelper.getRecordings(filter, order, 10).get(),
+                Matchers.equalTo(entries));
+    }
+
+    @Test
+    void queryShouldFailIfArchiveMissing() throws Exception {
+        Mockito.doThrow(new ArchivePathException("/flightrecordings", "does not exist"))
+                .when(storage)
+                .validate();
+
+        ExecutionException ee =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () -> recordingArchiveHelper.getRecordings(e -> true, null, 10).get());
+        MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(ArchivePathException.class));
+        Mockito.verifyNoInteractions(archiveCatalog);
+    }
+
     @Test
     void getRecordingsShouldHandleIOException() throws Exception {
-        Mockito.when(fs.exists(Mockito.any())).thenReturn(true);
-        Mockito.when(fs.isReadable(Mockito.any())).thenReturn(true);
-        Mockito.when(fs.isDirectory(Mockito.any())).thenReturn(true);
-        Mockito.when(fs.listDirectoryChildren(Mockito.any())).thenThrow(IOException.class);
+        Mockito.when(archiveCatalog.list()).thenThrow(IOException.class);
 
         Assertions.assertThrows(
                 ExecutionException.class,
@@ -852,4 +1015,10 @@ class RecordingArchiveHelperTest {
                     }
                 });
     }
+
+    private void discover(ServiceRef... serviceRefs) {
+        for (ServiceRef serviceRef : serviceRefs) {
+            serviceRefRegistry.accept(new TargetDiscoveryEvent(EventKind.FOUND, serviceRef));
+        }
+    }
 }
@@ -42,6 +42,7 @@ import static org.mockito.Mockito.lenient;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -58,6 +59,8 @@ import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor;
 
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.sys.Clock;
+import io.cryostat.core.sys.FileSystem;
 import io.cryostat.jmc.serialization.HyperlinkedSerializableRecordingDescriptor;
 import io.cryostat.messaging.notifications.Notification;
 import io.cryostat.messaging.notifications.NotificationFactory;
@@ -93,6 +96,8 @@ public class RecordingTargetHelperTest {
     @Mock Notification notification;
     @Mock Notification.Builder notificationBuilder;
     @Mock ReportService reportService;
+    @Mock FileSystem fs;
+    @Mock Clock clock;
     @Mock Logger logger;
 
     @Mock JFRConnection connection;
@@ -120,6 +125,14 @@ public class RecordingTargetHelperTest {
                         notificationFactory,
                         recordingOptionsBuilderFactory,
                         reportService,
+                        new SegmentedRecordingTransfer(
+                                fs,
+                                clock,
+                                targetConnectionManager,
+                                Runnable::run,
+                                1,
+                                Duration.ofSeconds(30),
+                                logger),
                         logger);
     }
 
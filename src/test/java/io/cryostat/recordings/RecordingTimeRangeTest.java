@@ -0,0 +1,152 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import io.vertx.core.MultiMap;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class RecordingTimeRangeTest {
+
+    static final long NOW_MS = 1_600_000_000_000L;
+
+    @Test
+    void shouldBeUnboundedWithoutParams() {
+        MatcherAssert.assertThat(
+                RecordingTimeRange.fromQueryParams(MultiMap.caseInsensitiveMultiMap()),
+                Matchers.sameInstance(RecordingTimeRange.UNBOUNDED));
+        MatcherAssert.assertThat(
+                RecordingTimeRange.fromQueryParams(null),
+                Matchers.sameInstance(RecordingTimeRange.UNBOUNDED));
+        Assertions.assertTrue(RecordingTimeRange.UNBOUNDED.isUnbounded());
+    }
+
+    @Test
+    void shouldParseIsoAndEpochTimestamps() {
+        RecordingTimeRange range =
+                RecordingTimeRange.fromQueryParams(
+                        MultiMap.caseInsensitiveMultiMap()
+                                .add("since", "2020-09-13T12:26:40Z")
+                                .add("until", String.valueOf(NOW_MS + 1000)));
+
+        Assertions.assertFalse(range.isUnbounded());
+        MatcherAssert.assertThat(range.getSince(0), Matchers.equalTo(Optional.of(NOW_MS)));
+        MatcherAssert.assertThat(range.getUntil(), Matchers.equalTo(Optional.of(NOW_MS + 1000)));
+        MatcherAssert.assertThat(
+                range,
+                Matchers.equalTo(
+                        RecordingTimeRange.of(
+                                Instant.ofEpochMilli(NOW_MS),
+                                Instant.ofEpochMilli(NOW_MS + 1000))));
+    }
+
+    @Test
+    void shouldAllowOpenEndedRange() {
+        RecordingTimeRange range =
+                RecordingTimeRange.fromQueryParams(
+                        MultiMap.caseInsensitiveMultiMap().add("until", String.valueOf(NOW_MS)));
+
+        MatcherAssert.assertThat(range.getSince(NOW_MS), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(range.getUntil(), Matchers.equalTo(Optional.of(NOW_MS)));
+    }
+
+    @Test
+    void shouldResolveLastSecondsAgainstRetrievalTime() {
+        RecordingTimeRange range =
+                RecordingTimeRange.fromQueryParams(
+                        MultiMap.caseInsensitiveMultiMap().add("lastSeconds", "90"));
+
+        Assertions.assertFalse(range.isUnbounded());
+        MatcherAssert.assertThat(
+                range.getSince(NOW_MS), Matchers.equalTo(Optional.of(NOW_MS - 90_000)));
+        MatcherAssert.assertThat(range.getUntil(), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(
+                range, Matchers.equalTo(RecordingTimeRange.last(Duration.ofSeconds(90))));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-1", "ten", "1.5"})
+    void shouldRejectInvalidLastSeconds(String lastSeconds) {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        RecordingTimeRange.fromQueryParams(
+                                MultiMap.caseInsensitiveMultiMap()
+                                        .add("lastSeconds", lastSeconds)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"yesterday", "2020-09-13", "-5"})
+    void shouldRejectInvalidTimestamps(String since) {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        RecordingTimeRange.fromQueryParams(
+                                MultiMap.caseInsensitiveMultiMap().add("since", since)));
+    }
+
+    @Test
+    void shouldRejectLastSecondsCombinedWithSince() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        RecordingTimeRange.fromQueryParams(
+                                MultiMap.caseInsensitiveMultiMap()
+                                        .add("lastSeconds", "30")
+                                        .add("since", String.valueOf(NOW_MS))));
+    }
+
+    @Test
+    void shouldRejectInvertedRange() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        RecordingTimeRange.fromQueryParams(
+                                MultiMap.caseInsensitiveMultiMap()
+                                        .add("since", String.valueOf(NOW_MS))
+                                        .add("until", String.valueOf(NOW_MS - 1))));
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.sys.Clock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class S3ArchiveStorageTest {
+
+    static final int PART_SIZE = 16;
+
+    FakeS3 s3;
+    @Mock Clock clock;
+    @Mock Logger logger;
+
+    @BeforeEach
+    void setup() throws IOException {
+        Mockito.lenient().when(clock.now()).thenReturn(Instant.parse("2022-01-01T00:00:00Z"));
+        s3 = new FakeS3("archives");
+    }
+
+    @AfterEach
+    void teardown() {
+        s3.stop();
+    }
+
+    S3ArchiveStorage storage(ArchiveCompression compression) {
+        return new S3ArchiveStorage(
+                HttpClient.newHttpClient(),
+                s3.endpoint(),
+                "archives",
+                new S3RequestSigner("us-east-1", "access", "secret"),
+                compression,
+                PART_SIZE,
+                clock,
+                logger);
+    }
+
+    @Test
+    void shouldUploadSmallFileInSingleRequest() throws Exception {
+        S3ArchiveStorage storage = storage(ArchiveCompression.NONE);
+
+        storage.write("target", "foo.jfr", stream("small"));
+
+        MatcherAssert.assertThat(s3.object("target/foo.jfr"), Matchers.equalTo("small"));
+        MatcherAssert.assertThat(s3.multipartUploads.get(), Matchers.equalTo(0));
+        MatcherAssert.assertThat(
+                s3.authorizations,
+                Matchers.everyItem(
+                        Matchers.startsWith("AWS4-HMAC-SHA256 Credential=access/20220101/")));
+    }
+
+    @Test
+    void shouldUploadLargeFileInParts() throws Exception {
+        S3ArchiveStorage storage = storage(ArchiveCompression.NONE);
+        String content = "0123456789".repeat(4);
+
+        storage.write("target", "foo.jfr", stream(content));
+
+        MatcherAssert.assertThat(s3.object("target/foo.jfr"), Matchers.equalTo(content));
+        MatcherAssert.assertThat(s3.multipartUploads.get(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(s3.partSizes, Matchers.contains(16, 16, 8));
+        MatcherAssert.assertThat(s3.uploads.isEmpty(), Matchers.is(true));
+    }
+
+    @Test
+    void shouldAbortUploadIfContentFails() throws Exception {
+        S3ArchiveStorage storage = storage(ArchiveCompression.NONE);
+        InputStream failing =
+                new InputStream() {
+                    int n;
+
+                    @Override
+                    public int read() throws IOException {
+                        if (n++ > 2 * PART_SIZE) {
+                            throw new IOException("connection lost");
+                        }
+                        return 'x';
+                    }
+                };
+
+        Assertions.assertThrows(
+                IOException.class, () -> storage.write("target", "foo.jfr", failing));
+
+        MatcherAssert.assertThat(s3.objects.containsKey("target/foo.jfr"), Matchers.is(false));
+        MatcherAssert.assertThat(s3.multipartUploads.get(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(s3.uploads.isEmpty(), Matchers.is(true));
+    }
+
+    @Test
+    void shouldNotOverwriteExistingFile() throws Exception {
+        S3ArchiveStorage storage = storage(ArchiveCompression.NONE);
+        s3.objects.put("target/foo.jfr", "old".getBytes(StandardCharsets.UTF_8));
+
+        Assertions.assertThrows(
+                FileAlreadyExistsException.class,
+                () -> storage.write("target", "foo.jfr", stream("new")));
+
+        MatcherAssert.assertThat(s3.object("target/foo.jfr"), Matchers.equalTo("old"));
+    }
+
+    @Test
+    void shouldCompressWhileUploading() throws Exception {
+        S3ArchiveStorage storage = storage(ArchiveCompression.GZIP);
+        String content = "compressible ".repeat(100);
+
+        storage.write("target", "foo.jfr", stream(content));
+
+        byte[] stored = s3.objects.get("target/foo.jfr");
+        MatcherAssert.assertThat(stored[0] & 0xff, Matchers.equalTo(0x1f));
+        MatcherAssert.assertThat(stored[1] & 0xff, Matchers.equalTo(0x8b));
+        try (InputStream in = ArchiveCompression.decompress(storage.read("target", "foo.jfr"))) {
+            MatcherAssert.assertThat(
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8),
+                    Matchers.equalTo(content));
+        }
+    }
+
+    @Test
+    void shouldReadRanges() throws Exception {
+        S3ArchiveStorage storage = storage(ArchiveCompression.NONE);
+        s3.objects.put("target/foo.jfr", "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        MatcherAssert.assertThat(
+                read(storage.read("target", "foo.jfr", 2, 3)), Matchers.equalTo("234"));
+        MatcherAssert.assertThat(
+                read(storage.read("target", "foo.jfr", 8, 10)), Matchers.equalTo("89"));
+        MatcherAssert.assertThat(
+                read(storage.read("target", "foo.jfr", 20, 2)), Matchers.equalTo(""));
+        MatcherAssert.assertThat(s3.ranges, Matchers.hasItem("bytes=2-4"));
+    }
+
+    @Test
+    void shouldThrowIfReadingMissingFile() {
+        S3ArchiveStorage storage = storage(ArchiveCompression.NONE);
+
+        Assertions.assertThrows(NoSuchFileException.class, () -> storage.read("target", "foo.jfr"));
+    }
+
+    @Test
+    void shouldListAcrossPages() throws Exception {
+        S3ArchiveStorage storage = storage(ArchiveCompression.NONE);
+        for (String key : List.of("a/1.jfr", "a/2.jfr", "a/3.jfr", "b/4.jfr", "c/5.jfr")) {
+            s3.objects.put(key, key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        MatcherAssert.assertThat(storage.listSubdirectories(), Matchers.contains("a", "b", "c"));
+        List<ArchiveStorage.StoredFile> files = storage.list("a");
+        MatcherAssert.assertThat(
+                files.stream().map(ArchiveStorage.StoredFile::getName).collect(Collectors.toList()),
+                Matchers.contains("1.jfr", "2.jfr", "3.jfr"));
+        MatcherAssert.assertThat(files.get(0).getSize(), Matchers.equalTo(7L));
+        MatcherAssert.assertThat(storage.list("missing"), Matchers.empty());
+    }
+
+    @Test
+    void shouldStatAndDelete() throws Exception {
+        S3ArchiveStorage storage = storage(ArchiveCompression.NONE);
+        s3.objects.put("target/foo.jfr", "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        ArchiveStorage.StoredFile file = storage.stat("target", "foo.jfr").get();
+        MatcherAssert.assertThat(file.getSize(), Matchers.equalTo(10L));
+        MatcherAssert.assertThat(
+                file.getLastModified(), Matchers.equalTo(FakeS3.LAST_MODIFIED.toEpochMilli()));
+
+        MatcherAssert.assertThat(storage.delete("target", "foo.jfr"), Matchers.is(true));
+        MatcherAssert.assertThat(storage.delete("target", "foo.jfr"), Matchers.is(false));
+        MatcherAssert.assertThat(storage.stat("target", "foo.jfr").isPresent(), Matchers.is(false));
+    }
+
+    static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /** A minimal in-memory stand-in for an S3-compatible object store such as MinIO. */
+    static class FakeS3 {
+        static final Instant LAST_MODIFIED = Instant.parse("2021-12-31T12:00:00Z");
+        static final int PAGE_SIZE = 2;
+
+        final HttpServer server;
+        final String bucket;
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        final Map<String, TreeMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+        final AtomicInteger multipartUploads = new AtomicInteger();
+        final List<Integer> partSizes = new CopyOnWriteArrayList<>();
+        final List<String> ranges = new CopyOnWriteArrayList<>();
+        final List<String> authorizations = new CopyOnWriteArrayList<>();
+
+        FakeS3(String bucket) throws IOException {
+            this.bucket = bucket;
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        URI endpoint() {
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        }
+
+        String object(String key) {
+            return new String(objects.get(key), StandardCharsets.UTF_8);
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                String path = exchange.getRequestURI().getRawPath();
+                String prefix = "/" + bucket + "/";
+                if (!path.startsWith(prefix)) {
+                    respond(exchange, 404, "<Error><Code>NoSuchBucket</Code></Error>");
+                    return;
+                }
+                String key =
+                        URLDecoder.decode(path.substring(prefix.length()), StandardCharsets.UTF_8);
+                Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                String method = exchange.getRequestMethod();
+                if (key.isEmpty() && "GET".equals(method)) {
+                    list(exchange, query);
+                } else if ("POST".equals(method) && query.containsKey("uploads")) {
+                    String uploadId = "upload-" + multipartUploads.incrementAndGet();
+                    uploads.put(uploadId, new TreeMap<>());
+                    respond(
+                            exchange,
+                            200,
+                            "<InitiateMultipartUploadResult><UploadId>"
+                                    + uploadId
+                                    + "</UploadId></InitiateMultipartUploadResult>");
+                } else if ("PUT".equals(method) && query.containsKey("partNumber")) {
+                    uploads.get(query.get("uploadId"))
+                            .put(Integer.parseInt(query.get("partNumber")), body);
+                    partSizes.add(body.length);
+                    exchange.getResponseHeaders().add("ETag", "\"etag\"");
+                    respond(exchange, 200, "");
+                } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+                    TreeMap<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+                    if (objects.containsKey(key)) {
+                        respond(exchange, 412, "<Error><Code>PreconditionFailed</Code></Error>");
+                        return;
+                    }
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    for (byte[] part : parts.values()) {
+                        out.write(part);
+                    }
+                    objects.put(key, out.toByteArray());
+                    respond(exchange, 200, "<CompleteMultipartUploadResult/>");
+                } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+                    uploads.remove(query.get("uploadId"));
+                    respond(exchange, 204, null);
+                } else if ("PUT".equals(method)) {
+                    if (objects.containsKey(key)) {
+                        respond(exchange, 412, "<Error><Code>PreconditionFailed</Code></Error>");
+                        return;
+                    }
+                    objects.put(key, body);
+                    respond(exchange, 200, "");
+                } else if ("DELETE".equals(method)) {
+                    objects.remove(key);
+                    respond(exchange, 204, null);
+                } else if ("HEAD".equals(method) || "GET".equals(method)) {
+                    get(exchange, key, "HEAD".equals(method));
+                } else {
+                    respond(exchange, 405, "");
+                }
+            }
+        }
+
+        private void get(HttpExchange exchange, String key, boolean head) throws IOException {
+            byte[] object = objects.get(key);
+            if (object == null) {
+                if (head) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    respond(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                }
+                return;
+            }
+            exchange.getResponseHeaders()
+                    .add(
+                            "Last-Modified",
+                            DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                                    LAST_MODIFIED.atZone(ZoneOffset.UTC)));
+            if (head) {
+                exchange.getResponseHeaders()
+                        .add("Content-Length", Integer.toString(object.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range == null) {
+                exchange.sendResponseHeaders(200, object.length);
+                exchange.getResponseBody().write(object);
+                return;
+            }
+            ranges.add(range);
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = Math.min(Integer.parseInt(bounds[1]), object.length - 1);
+            if (start >= object.length) {
+                respond(exchange, 416, "<Error><Code>InvalidRange</Code></Error>");
+                return;
+            }
+            exchange.sendResponseHeaders(206, end - start + 1);
+            exchange.getResponseBody().write(object, start, end - start + 1);
+        }
+
+        private void list(HttpExchange exchange, Map<String, String> query) throws IOException {
+            String prefix = query.getOrDefault("prefix", "");
+            String delimiter = query.get("delimiter");
+            TreeSet<String> entries = new TreeSet<>();
+            for (String key : objects.keySet()) {
+                if (!key.startsWith(prefix)) {
+                    continue;
+                }
+                int d = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+                entries.add(d < 0 ? key : key.substring(0, d + 1));
+            }
+            String token = query.get("continuation-token");
+            List<String> page =
+                    new ArrayList<>(token == null ? entries : entries.tailSet(token, false));
+            boolean truncated = page.size() > PAGE_SIZE;
+            page = page.subList(0, Math.min(PAGE_SIZE, page.size()));
+            StringBuilder xml = new StringBuilder("<ListBucketResult>");
+            xml.append("<Prefix>").append(prefix).append("</Prefix>");
+            for (String entry : page) {
+                if (entry.endsWith("/")) {
+                    xml.append("<CommonPrefixes><Prefix>")
+                            .append(entry)
+                            .append("</Prefix></CommonPrefixes>");
+                } else {
+                    xml.append("<Contents><Key>")
+                            .append(entry)
+                            .append("</Key><Size>")
+                            .append(objects.get(entry).length)
+                            .append("</Size><LastModified>")
+                            .append(LAST_MODIFIED)
+                            .append("</LastModified></Contents>");
+                }
+            }
+            xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+            if (truncated) {
+                xml.append("<NextContinuationToken>")
+                        .append(page.get(page.size() - 1))
+                        .append("</NextContinuationToken>");
+            }
+            xml.append("</ListBucketResult>");
+            respond(exchange, 200, xml.toString());
+        }
+
+        private static Map<String, String> query(String rawQuery) {
+            Map<String, String> query = new HashMap<>();
+            if (rawQuery == null) {
+                return query;
+            }
+            for (String param : rawQuery.split("&")) {
+                String[] kv = param.split("=", 2);
+                query.put(
+                        URLDecoder.decode(kv[0], StandardCharsets.UTF_8),
+                        kv.length > 1 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "");
+            }
+            return query;
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body)
+                throws IOException {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/*
+ * Copyright The Cryostat Authors
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or data
+ * (collectively the "Software"), free of charge and under any and all copyright
+ * rights in the Software, and any and all patent rights owned or freely
+ * licensable by each licensor hereunder covering either (i) the unmodified
+ * Software as contributed to or provided by such licensor, or (ii) the Larger
+ * Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software (each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ * The above copyright notice and either this complete permission notice or at
+ * a minimum a reference to the UPL must be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.remote.JMXServiceURL;
+
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.rjmx.services.jfr.FlightRecorderException;
+import org.openjdk.jmc.rjmx.services.jfr.IFlightRecorderService;
+import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor;
+import org.openjdk.jmc.rjmx.services.jfr.IRecordingDescriptor.RecordingState;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.sys.Clock;
+import io.cryostat.core.sys.FileSystem;
+import io.cryostat.net.ConnectionDescriptor;
+import io.cryostat.net.TargetConnectionManager;
+import io.cryostat.net.TargetConnectionManager.ConnectedTask;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SegmentedRecordingTransferTest {
+
+    static final long START_MS = 1_600_000_000_000L;
+    static final long TEN_MINUTES_MS = 10 * 60 * 1000L;
+
+    @Mock FileSystem fs;
+    @Mock Clock clock;
+    @Mock Logger logger;
+    @Mock TargetConnectionManager targetConnectionManager;
+    @Mock JFRConnection connection;
+    @Mock IFlightRecorderService service;
+    @Mock IRecordingDescriptor descriptor;
+    ConnectionDescriptor connectionDescriptor = new ConnectionDescriptor("foo");
+    List<Path> tempFiles;
+
+    @BeforeEach
+    void setup() throws Exception {
+        this.tempFiles = new ArrayList<>();
+        Mockito.lenient()
+                .when(fs.createTempFile(Mockito.any(), Mockito.any()))
+                .thenAnswer(
+                        invocation -> {
+                            Path p = Files.createTempFile(null, null);
+                            tempFiles.add(p);
+                            return p;
+                        });
+        Mockito.lenient()
+                .when(fs.deleteIfExists(Mockito.any(Path.class)))
+                .thenAnswer(invocation -> Files.deleteIfExists(invocation.getArgument(0)));
+        Mockito.lenient()
+                .when(connection.getJMXURL())
+                .thenReturn(
+                        new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:9091/jmxrmi"));
+        Mockito.lenient().when(connection.getService()).thenReturn(service);
+        Mockito.lenient().when(descriptor.getName()).thenReturn("myrecording");
+        Mockito.lenient()
+                .when(targetConnectionManager.tryExecutePooledTask(Mockito.any(), Mockito.any()))
+                .thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        for (Path p : tempFiles) {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    SegmentedRecordingTransfer createTransfer(int parallelism) {
+        return createTransfer(parallelism, Runnable::run, Duration.ofSeconds(30));
+    }
+
+    SegmentedRecordingTransfer createTransfer(
+            int parallelism, Executor executor, Duration segmentTimeout) {
+        return new SegmentedRecordingTransfer(
+                fs, clock, targetConnectionManager, executor, parallelism, segmentTimeout, logger);
+    }
+
+    void givenRecordingSpan(long durationMs, RecordingState state) throws Exception {
+        IQuantity start = Mockito.mock(IQuantity.class);
+        IQuantity end = Mockito.mock(IQuantity.class);
+        Mockito.when(start.longValueIn(UnitLookup.EPOCH_MS)).thenReturn(START_MS);
+        Mockito.when(end.longValueIn(UnitLookup.EPOCH_MS)).thenReturn(START_MS + durationMs);
+        Mockito.when(descriptor.getDataStartTime()).thenReturn(start);
+        Mockito.when(descriptor.getDataEndTime()).thenReturn(end);
+        Mockito.when(descriptor.getState()).thenReturn(state);
+    }
+
+    static byte[] chunk(long startNanos, int payloadSize, int fill) {
+        ByteBuffer buf = ByteBuffer.allocate(JfrChunkHeader.LENGTH + payloadSize);
+        buf.put(new byte[] {'F', 'L', 'R', 0});
+        buf.putShort((short) 2);
+        buf.putShort((short) 0);
+        buf.putLong(buf.capacity());
+        buf.putLong(0);
+        buf.putLong(0);
+        buf.putLong(startNanos);
+        for (int i = 0; i < payloadSize; i++) {
+            buf.put((byte) fill);
+        }
+        return buf.array();
+    }
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void shouldStreamSequentiallyWithoutParallelism() throws Exception {
+        byte[] src = concat(chunk(1, 100, 1), chunk(2, 100, 2));
+        Mockito.when(service.openStream(descriptor, false))
+                .thenReturn(new ByteArrayInputStream(src));
+
+        byte[] result =
+                readAll(createTransfer(1).openStream(connectionDescriptor, connection, descriptor));
+
+        Assertions.assertArrayEquals(src, result);
+        Mockito.verify(service, Mockito.never())
+                .openStream(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyBoolean());
+        Mockito.verifyNoInteractions(fs);
+    }
+
+    @Test
+    void shouldStreamSequentiallyIfRecordingIsTooShortToSplit() throws Exception {
+        givenRecordingSpan(
+                SegmentedRecordingTransfer.MIN_SEGMENT_DURATION_MS, RecordingState.STOPPED);
+        byte[] src = chunk(1, 100, 1);
+        Mockito.when(service.openStream(descriptor, false))
+                .thenReturn(new ByteArrayInputStream(src));
+
+        byte[] result =
+                readAll(createTransfer(4).openStream(connectionDescriptor, connection, descriptor));
+
+        Assertions.assertArrayEquals(src, result);
+        Mockito.verifyNoInteractions(fs);
+    }
+
+    @Test
+    void shouldSplitRecordingIntoContiguousRanges() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.STOPPED);
+
+        List<long[]> ranges = createTransfer(4).split(descriptor);
+
+        MatcherAssert.assertThat(ranges, Matchers.hasSize(4));
+        Assertions.assertEquals(START_MS, ranges.get(0)[0]);
+        for (int i = 1; i < ranges.size(); i++) {
+            Assertions.assertEquals(ranges.get(i - 1)[1], ranges.get(i)[0]);
+        }
+        Assertions.assertEquals(START_MS + TEN_MINUTES_MS, ranges.get(3)[1]);
+    }
+
+    @Test
+    void shouldLimitSegmentsByMinimumSegmentDuration() throws Exception {
+        givenRecordingSpan(
+                3 * SegmentedRecordingTransfer.MIN_SEGMENT_DURATION_MS, RecordingState.STOPPED);
+
+        MatcherAssert.assertThat(createTransfer(8).split(descriptor), Matchers.hasSize(3));
+    }
+
+    @Test
+    void shouldExtendRunningRecordingRangeToCurrentTime() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.RUNNING);
+        Mockito.when(clock.getWallTime()).thenReturn(START_MS + 2 * TEN_MINUTES_MS);
+
+        List<long[]> ranges = createTransfer(2).split(descriptor);
+
+        MatcherAssert.assertThat(ranges, Matchers.hasSize(2));
+        Assertions.assertEquals(START_MS + TEN_MINUTES_MS, ranges.get(0)[1]);
+        Assertions.assertEquals(START_MS + 2 * TEN_MINUTES_MS, ranges.get(1)[1]);
+    }
+
+    @Test
+    void shouldFetchBoundedRangeWithRangedRequestWithoutParallelism() throws Exception {
+        IQuantity dataStart = Mockito.mock(IQuantity.class);
+        Mockito.when(dataStart.longValueIn(UnitLookup.EPOCH_MS)).thenReturn(START_MS);
+        Mockito.when(descriptor.getDataStartTime()).thenReturn(dataStart);
+        byte[] src = chunk(1, 100, 1);
+        Mockito.when(
+                        service.openStream(
+                                Mockito.eq(descriptor),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(false)))
+                .thenReturn(new ByteArrayInputStream(src));
+        RecordingTimeRange range =
+                RecordingTimeRange.of(
+                        Instant.ofEpochMilli(START_MS + 60_000),
+                        Instant.ofEpochMilli(START_MS + 120_000));
+
+        byte[] result =
+                readAll(
+                        createTransfer(1)
+                                .openStream(connectionDescriptor, connection, descriptor, range));
+
+        Assertions.assertArrayEquals(src, result);
+        Mockito.verify(service, Mockito.never()).openStream(descriptor, false);
+        Mockito.verifyNoInteractions(fs);
+        List<long[]> ranges = createTransfer(1).split(descriptor, range);
+        MatcherAssert.assertThat(ranges, Matchers.hasSize(1));
+        Assertions.assertArrayEquals(
+                new long[] {START_MS + 60_000, START_MS + 120_000}, ranges.get(0));
+    }
+
+    @Test
+    void shouldClampOpenRangeToRecordingData() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.STOPPED);
+        RecordingTimeRange range =
+                RecordingTimeRange.of(Instant.ofEpochMilli(START_MS - TEN_MINUTES_MS), null);
+
+        List<long[]> ranges = createTransfer(1).split(descriptor, range);
+
+        MatcherAssert.assertThat(ranges, Matchers.hasSize(1));
+        Assertions.assertArrayEquals(
+                new long[] {START_MS, START_MS + TEN_MINUTES_MS}, ranges.get(0));
+    }
+
+    @Test
+    void shouldSplitRelativeRangeEndingAtCurrentTime() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.RUNNING);
+        Mockito.when(clock.getWallTime()).thenReturn(START_MS + TEN_MINUTES_MS);
+        RecordingTimeRange range = RecordingTimeRange.last(Duration.ofMinutes(2));
+
+        List<long[]> ranges = createTransfer(8).split(descriptor, range);
+
+        MatcherAssert.assertThat(ranges, Matchers.hasSize(4));
+        Assertions.assertEquals(START_MS + 8 * 60_000, ranges.get(0)[0]);
+        Assertions.assertEquals(START_MS + TEN_MINUTES_MS, ranges.get(3)[1]);
+    }
+
+    @Test
+    void shouldReassembleSegmentsInOrderWithoutDuplicateChunks() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.STOPPED);
+        byte[] c1 = chunk(100, 1000, 1);
+        byte[] c2 = chunk(200, 2000, 2);
+        byte[] c3 = chunk(300, 500, 3);
+        byte[] c4 = chunk(400, 1500, 4);
+        // c2 spans the first range boundary and c3 the second, so each is in two segments
+        Mockito.when(
+                        service.openStream(
+                                Mockito.eq(descriptor),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(false)))
+                .thenReturn(
+                        new ByteArrayInputStream(concat(c1, c2)),
+                        new ByteArrayInputStream(concat(c2, c3)),
+                        new ByteArrayInputStream(concat(c3, c4)));
+
+        byte[] result =
+                readAll(createTransfer(3).openStream(connectionDescriptor, connection, descriptor));
+
+        Assertions.assertArrayEquals(concat(c1, c2, c3, c4), result);
+        Mockito.verify(service, Mockito.never()).openStream(descriptor, false);
+        MatcherAssert.assertThat(tempFiles, Matchers.hasSize(3));
+        for (Path p : tempFiles) {
+            Assertions.assertFalse(Files.exists(p));
+        }
+    }
+
+    @Test
+    void shouldFetchLaterSegmentsOverPooledConnections() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.STOPPED);
+        byte[] c1 = chunk(100, 1000, 1);
+        byte[] c2 = chunk(200, 2000, 2);
+        byte[] c3 = chunk(300, 500, 3);
+        Mockito.when(
+                        service.openStream(
+                                Mockito.eq(descriptor),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(false)))
+                .thenReturn(new ByteArrayInputStream(c1), new ByteArrayInputStream(c3));
+        JFRConnection pooled = Mockito.mock(JFRConnection.class);
+        IFlightRecorderService pooledService = Mockito.mock(IFlightRecorderService.class);
+        Mockito.when(pooled.getService()).thenReturn(pooledService);
+        Mockito.when(
+                        pooledService.openStream(
+                                Mockito.eq(descriptor),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(false)))
+                .thenReturn(new ByteArrayInputStream(c2));
+        // the pool has capacity for one more connection to the target
+        Mockito.when(
+                        targetConnectionManager.tryExecutePooledTask(
+                                Mockito.eq(connectionDescriptor), Mockito.any()))
+                .thenAnswer(
+                        invocation ->
+                                Optional.of(
+                                        ((ConnectedTask<?>) invocation.getArgument(1))
+                                                .execute(pooled)))
+                .thenReturn(Optional.empty());
+
+        byte[] result =
+                readAll(createTransfer(3).openStream(connectionDescriptor, connection, descriptor));
+
+        Assertions.assertArrayEquals(concat(c1, c2, c3), result);
+        Mockito.verify(targetConnectionManager, Mockito.times(2))
+                .tryExecutePooledTask(Mockito.eq(connectionDescriptor), Mockito.any());
+        Mockito.verify(service, Mockito.times(2))
+                .openStream(
+                        Mockito.eq(descriptor), Mockito.any(), Mockito.any(), Mockito.eq(false));
+    }
+
+    @Test
+    void shouldFailIfSegmentCannotBeFetched() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.STOPPED);
+        Mockito.when(
+                        service.openStream(
+                                Mockito.eq(descriptor),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(false)))
+                .thenReturn(new ByteArrayInputStream(chunk(100, 10, 1)))
+                .thenThrow(new FlightRecorderException("segment failed"));
+
+        InputStream stream =
+                createTransfer(2).openStream(connectionDescriptor, connection, descriptor);
+
+        IOException ex = Assertions.assertThrows(IOException.class, () -> readAll(stream));
+        MatcherAssert.assertThat(ex.getCause(), Matchers.instanceOf(FlightRecorderException.class));
+        for (Path p : tempFiles) {
+            Assertions.assertFalse(Files.exists(p));
+        }
+    }
+
+    @Test
+    void shouldFailIfSegmentIsNotJfrData() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.STOPPED);
+        Mockito.when(
+                        service.openStream(
+                                Mockito.eq(descriptor),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(false)))
+                .thenReturn(
+                        new ByteArrayInputStream(new byte[100]),
+                        new ByteArrayInputStream(new byte[100]));
+
+        InputStream stream =
+                createTransfer(2).openStream(connectionDescriptor, connection, descriptor);
+
+        Assertions.assertThrows(IOException.class, () -> readAll(stream));
+    }
+
+    @Test
+    void shouldFailAndCancelRemainingSegmentsIfSegmentTimesOut() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.STOPPED);
+        Mockito.when(
+                        service.openStream(
+                                Mockito.eq(descriptor),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(false)))
+                .thenReturn(
+                        new ByteArrayInputStream(chunk(100, 1000, 1)),
+                        new ByteArrayInputStream(chunk(200, 1000, 2)),
+                        new ByteArrayInputStream(chunk(300, 1000, 3)));
+        // the first segment is fetched immediately, the others hang until the reader gives up
+        List<Runnable> hung = new ArrayList<>();
+        Executor executor =
+                task -> {
+                    if (tempFiles.isEmpty()) {
+                        task.run();
+                    } else {
+                        hung.add(task);
+                    }
+                };
+
+        InputStream stream =
+                createTransfer(3, executor, Duration.ofMillis(10))
+                        .openStream(connectionDescriptor, connection, descriptor);
+
+        IOException ex = Assertions.assertThrows(IOException.class, () -> readAll(stream));
+        MatcherAssert.assertThat(ex.getCause(), Matchers.instanceOf(TimeoutException.class));
+        MatcherAssert.assertThat(hung, Matchers.hasSize(2));
+        hung.forEach(Runnable::run);
+        MatcherAssert.assertThat(tempFiles, Matchers.hasSize(3));
+        for (Path p : tempFiles) {
+            Assertions.assertFalse(Files.exists(p));
+        }
+    }
+
+    @Test
+    void shouldDeleteSpooledSegmentsWhenClosedEarly() throws Exception {
+        givenRecordingSpan(TEN_MINUTES_MS, RecordingState.STOPPED);
+        Mockito.when(
+                        service.openStream(
+                                Mockito.eq(descriptor),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(false)))
+                .thenReturn(
+                        new ByteArrayInputStream(chunk(100, 1000, 1)),
+                        new ByteArrayInputStream(chunk(200, 1000, 2)));
+
+        InputStream stream =
+                createTransfer(2).openStream(connectionDescriptor, connection, descriptor);
+        Assertions.assertNotEquals(-1, stream.read(new byte[10]));
+        stream.close();
+
+        MatcherAssert.assertThat(tempFiles, Matchers.hasSize(2));
+        for (Path p : tempFiles) {
+            Assertions.assertFalse(Files.exists(p));
+        }
+    }
+}
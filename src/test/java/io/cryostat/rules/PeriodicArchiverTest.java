@@ -49,7 +49,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 import io.cryostat.configuration.CredentialsManager;
 import io.cryostat.core.log.Logger;
 import io.cryostat.platform.ServiceRef;
+import io.cryostat.recordings.ArchiveSaveQueue;
 import io.cryostat.recordings.RecordingArchiveHelper;
+import io.cryostat.recordings.RecordingNotFoundException;
 
 import org.apache.commons.codec.binary.Base32;
 import org.hamcrest.MatcherAssert;
@@ -102,7 +104,8 @@ class PeriodicArchiverTest {
                             return null;
                         },
                         logger,
-                        base32);
+                        base32,
+                        false);
     }
 
     @Test
@@ -113,13 +116,21 @@ class PeriodicArchiverTest {
 
         CompletableFuture<String> stringFuture = new CompletableFuture<>();
         stringFuture.complete("someRecording.jfr");
-        Mockito.when(recordingArchiveHelper.saveRecording(Mockito.any(), Mockito.anyString()))
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.anyString(),
+                                Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND)))
                 .thenReturn(stringFuture);
 
         archiver.run();
 
         Mockito.verify(credentialsManager).getCredentials(serviceRef);
-        Mockito.verify(recordingArchiveHelper).saveRecording(Mockito.any(), Mockito.anyString());
+        Mockito.verify(recordingArchiveHelper)
+                .saveRecording(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND));
     }
 
     @Test
@@ -129,7 +140,11 @@ class PeriodicArchiverTest {
         Mockito.when(recordingArchiveHelper.getRecordings()).thenReturn(listFuture);
 
         CompletableFuture<String> future = Mockito.mock(CompletableFuture.class);
-        Mockito.when(recordingArchiveHelper.saveRecording(Mockito.any(), Mockito.any()))
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND)))
                 .thenReturn(future);
         ExecutionException e = Mockito.mock(ExecutionException.class);
         Mockito.when(future.get()).thenThrow(e);
@@ -149,7 +164,10 @@ class PeriodicArchiverTest {
 
         Mockito.doThrow(SecurityException.class)
                 .when(recordingArchiveHelper)
-                .saveRecording(Mockito.any(), Mockito.any());
+                .saveRecording(
+                        Mockito.any(),
+                        Mockito.any(),
+                        Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND));
         MatcherAssert.assertThat(failureCounter.intValue(), Matchers.equalTo(0));
 
         archiver.run();
@@ -165,7 +183,11 @@ class PeriodicArchiverTest {
 
         CompletableFuture<String> stringFuture = new CompletableFuture<>();
         stringFuture.complete("someRecording.jfr");
-        Mockito.when(recordingArchiveHelper.saveRecording(Mockito.any(), Mockito.anyString()))
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.anyString(),
+                                Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND)))
                 .thenReturn(stringFuture);
 
         CompletableFuture<Path> pathFuture = new CompletableFuture<>();
@@ -182,11 +204,49 @@ class PeriodicArchiverTest {
 
         Mockito.verify(credentialsManager, Mockito.times(3)).getCredentials(serviceRef);
         Mockito.verify(recordingArchiveHelper, Mockito.times(3))
-                .saveRecording(Mockito.any(), Mockito.anyString());
+                .saveRecording(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND));
         Mockito.verify(recordingArchiveHelper, Mockito.times(1))
                 .deleteRecording(Mockito.anyString());
     }
 
+    @Test
+    void testPruneArchiveToleratesAlreadyEvictedRecording() throws Exception {
+        CompletableFuture<List<ArchivedRecordingInfo>> listFuture = new CompletableFuture<>();
+        listFuture.complete(new ArrayList<>());
+        Mockito.when(recordingArchiveHelper.getRecordings()).thenReturn(listFuture);
+
+        CompletableFuture<String> stringFuture = new CompletableFuture<>();
+        stringFuture.complete("someRecording.jfr");
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.anyString(),
+                                Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND)))
+                .thenReturn(stringFuture);
+
+        CompletableFuture<Path> pathFuture = new CompletableFuture<>();
+        pathFuture.completeExceptionally(
+                new RecordingNotFoundException("archives", "someRecording.jfr"));
+        Mockito.when(recordingArchiveHelper.deleteRecording(Mockito.anyString()))
+                .thenReturn(pathFuture);
+
+        for (int i = 0; i < rule.getPreservedArchives() + 2; i++) {
+            archiver.run();
+        }
+
+        MatcherAssert.assertThat(failureCounter.intValue(), Matchers.equalTo(0));
+        Mockito.verify(recordingArchiveHelper, Mockito.times(4))
+                .saveRecording(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND));
+        Mockito.verify(recordingArchiveHelper, Mockito.times(2))
+                .deleteRecording(Mockito.anyString());
+    }
+
     @Test
     void testArchiveScanning() throws Exception {
         // populate the archive with various recordings, two of which are for  the current target
@@ -224,7 +284,11 @@ class PeriodicArchiverTest {
         CompletableFuture<String> stringFuture = new CompletableFuture<>();
         String newlySavedRecording = "someRecording.jfr";
         stringFuture.complete(newlySavedRecording);
-        Mockito.when(recordingArchiveHelper.saveRecording(Mockito.any(), Mockito.anyString()))
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.anyString(),
+                                Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND)))
                 .thenReturn(stringFuture);
 
         archiver.run();
@@ -237,6 +301,70 @@ class PeriodicArchiverTest {
         Assertions.assertEquals(newlySavedRecording, previousRecordings.remove());
 
         Mockito.verify(credentialsManager).getCredentials(serviceRef);
-        Mockito.verify(recordingArchiveHelper).saveRecording(Mockito.any(), Mockito.anyString());
+        Mockito.verify(recordingArchiveHelper)
+                .saveRecording(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND));
+    }
+
+    @Test
+    void testIncrementalArchivalExtendsPreviousArchiveBeforePruning() throws Exception {
+        PeriodicArchiver incrementalArchiver =
+                new PeriodicArchiver(
+                        serviceRef,
+                        credentialsManager,
+                        rule,
+                        recordingArchiveHelper,
+                        p -> {
+                            failureCounter.incrementAndGet();
+                            return null;
+                        },
+                        logger,
+                        base32,
+                        true);
+        CompletableFuture<List<ArchivedRecordingInfo>> listFuture = new CompletableFuture<>();
+        listFuture.complete(new ArrayList<>());
+        Mockito.when(recordingArchiveHelper.getRecordings()).thenReturn(listFuture);
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.anyString(),
+                                Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND)))
+                .thenReturn(CompletableFuture.completedFuture("first.jfr"));
+        Mockito.when(
+                        recordingArchiveHelper.saveRecordingIncrementally(
+                                Mockito.any(), Mockito.anyString(), Mockito.anyString()))
+                .thenReturn(
+                        CompletableFuture.completedFuture("second.jfr"),
+                        CompletableFuture.completedFuture("third.jfr"));
+        Mockito.when(recordingArchiveHelper.deleteRecording(Mockito.anyString()))
+                .thenReturn(CompletableFuture.completedFuture(Path.of("/some/path")));
+
+        incrementalArchiver.run();
+        incrementalArchiver.run();
+        incrementalArchiver.run();
+
+        Mockito.verify(recordingArchiveHelper, Mockito.times(1))
+                .saveRecording(
+                        Mockito.any(),
+                        Mockito.anyString(),
+                        Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND));
+        Mockito.verify(recordingArchiveHelper)
+                .saveRecordingIncrementally(
+                        Mockito.any(),
+                        Mockito.eq(rule.getRecordingName()),
+                        Mockito.eq("first.jfr"));
+        Mockito.verify(recordingArchiveHelper)
+                .saveRecordingIncrementally(
+                        Mockito.any(),
+                        Mockito.eq(rule.getRecordingName()),
+                        Mockito.eq("second.jfr"));
+        Mockito.verify(recordingArchiveHelper).deleteRecording("first.jfr");
+        Mockito.verify(recordingArchiveHelper, Mockito.times(1))
+                .deleteRecording(Mockito.anyString());
+        MatcherAssert.assertThat(
+                incrementalArchiver.getPreviousRecordings(),
+                Matchers.contains("second.jfr", "third.jfr"));
     }
 }
@@ -43,6 +43,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 import org.openjdk.jmc.common.unit.IConstrainedMap;
@@ -60,7 +61,9 @@ import io.cryostat.net.ConnectionDescriptor;
 import io.cryostat.net.TargetConnectionManager;
 import io.cryostat.platform.PlatformClient;
 import io.cryostat.platform.ServiceRef;
+import io.cryostat.platform.ServiceRefRegistry;
 import io.cryostat.platform.TargetDiscoveryEvent;
+import io.cryostat.recordings.ArchiveSaveQueue;
 import io.cryostat.recordings.RecordingArchiveHelper;
 import io.cryostat.recordings.RecordingOptionsBuilderFactory;
 import io.cryostat.recordings.RecordingTargetHelper;
@@ -84,6 +87,7 @@ class RuleProcessorTest {
 
     RuleProcessor processor;
     @Mock PlatformClient platformClient;
+    @Mock ServiceRefRegistry serviceRefRegistry;
     @Mock RuleRegistry registry;
     @Mock ScheduledExecutorService scheduler;
     @Mock CredentialsManager credentialsManager;
@@ -103,6 +107,7 @@ class RuleProcessorTest {
         this.processor =
                 new RuleProcessor(
                         platformClient,
+                        serviceRefRegistry,
                         registry,
                         scheduler,
                         credentialsManager,
@@ -273,7 +278,11 @@ class RuleProcessorTest {
 
         Mockito.when(registry.getRules(serviceRef)).thenReturn(Set.of(rule));
 
-        Mockito.when(recordingArchiveHelper.saveRecording(Mockito.any(), Mockito.any()))
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND)))
                 .thenReturn(CompletableFuture.completedFuture("unusedPath"));
 
         processor.accept(tde);
@@ -286,7 +295,9 @@ class RuleProcessorTest {
         inOrder.verify(service).getSnapshotRecording();
         inOrder.verify(recordingArchiveHelper)
                 .saveRecording(
-                        connectionDescriptorCaptor.capture(), recordingSaveNameCaptor.capture());
+                        connectionDescriptorCaptor.capture(),
+                        recordingSaveNameCaptor.capture(),
+                        Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND));
         inOrder.verify(service).close(snapshot);
 
         ConnectionDescriptor connectionDescriptor = connectionDescriptorCaptor.getValue();
@@ -299,6 +310,65 @@ class RuleProcessorTest {
                 recordingSaveNameCaptor.getValue(), Matchers.equalTo(snapshot.getName()));
     }
 
+    @Test
+    void archiverShouldNotHoldConnectionWhileWaitingForSave() throws Exception {
+        AtomicBoolean connected = new AtomicBoolean();
+        Mockito.when(
+                        targetConnectionManager.executeConnectedTask(
+                                Mockito.any(), Mockito.any(), Mockito.anyBoolean()))
+                .thenAnswer(
+                        arg0 -> {
+                            connected.set(true);
+                            try {
+                                return ((TargetConnectionManager.ConnectedTask<Object>)
+                                                arg0.getArgument(1))
+                                        .execute(connection);
+                            } finally {
+                                connected.set(false);
+                            }
+                        });
+        Mockito.when(connection.getService()).thenReturn(service);
+
+        IRecordingDescriptor snapshot = Mockito.mock(IRecordingDescriptor.class);
+        Mockito.when(snapshot.getName()).thenReturn("Snapshot-1");
+        Mockito.when(service.getSnapshotRecording()).thenReturn(snapshot);
+
+        String jmxUrl = "service:jmx:rmi://localhost:9091/jndi/rmi://fooHost:9091/jmxrmi";
+        ServiceRef serviceRef = new ServiceRef(new URI(jmxUrl), "com.example.App");
+
+        TargetDiscoveryEvent tde = new TargetDiscoveryEvent(EventKind.FOUND, serviceRef);
+
+        Rule rule =
+                new Rule.Builder()
+                        .name("Test Rule")
+                        .description("Automated unit test rule")
+                        .matchExpression("target.alias == 'com.example.App'")
+                        .eventSpecifier("archive")
+                        .build();
+
+        Mockito.when(registry.getRules(serviceRef)).thenReturn(Set.of(rule));
+
+        Mockito.when(
+                        recordingArchiveHelper.saveRecording(
+                                Mockito.any(),
+                                Mockito.eq("Snapshot-1"),
+                                Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND)))
+                .thenAnswer(
+                        invocation -> {
+                            MatcherAssert.assertThat(connected.get(), Matchers.is(false));
+                            return CompletableFuture.completedFuture("unusedPath");
+                        });
+
+        processor.accept(tde);
+
+        Mockito.verify(recordingArchiveHelper)
+                .saveRecording(
+                        Mockito.any(),
+                        Mockito.eq("Snapshot-1"),
+                        Mockito.eq(ArchiveSaveQueue.Priority.BACKGROUND));
+        Mockito.verify(service).close(snapshot);
+    }
+
     @Test
     void testTaskCancellationOnFailure() throws Exception {
         String jmxUrl = "service:jmx:rmi://localhost:9091/jndi/rmi://fooHost:9091/jmxrmi";